@@ -10,6 +10,7 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.parameters.RequestBody;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import java.util.ArrayList;
 import java.util.List;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
@@ -70,15 +71,38 @@ public interface IdentityService {
   @ApiResponse(responseCode = "404", description = "Bad request")
   List<Registration> register(List<ResourceIdentity> identities);
 
+  /**
+   * Register resource identities, returning only the UUID of each, in the same order. Callers
+   * already have the identities, so implementations may avoid sending them back. By default, this
+   * is the UUIDs of {@link #register(List)}.
+   */
+  default List<String> registerUuids(List<ResourceIdentity> identities) {
+    List<Registration> registrations = register(identities);
+    List<String> uuids = new ArrayList<>(registrations.size());
+    for (Registration registration : registrations) {
+      uuids.add(registration.uuid());
+    }
+    return uuids;
+  }
+
   class IdentityServiceException extends RuntimeException {
     IdentityServiceException(String message) {
       super(message);
     }
+
+    /**
+     * Expected outcomes, such as an ID that was never registered, are common and are not bugs.
+     * Capturing a stack trace for them is expensive and the trace is never useful.
+     */
+    IdentityServiceException(String message, boolean writableStackTrace) {
+      super(message, null, false, writableStackTrace);
+    }
   }
 
+  /** The ID is not known. This is an expected outcome and does not capture a stack trace. */
   class UnknownIdentity extends IdentityServiceException {
     public UnknownIdentity(String id) {
-      super(id);
+      super(id, false);
     }
   }
 
@@ -5,12 +5,11 @@ import static org.apache.commons.lang3.ObjectUtils.isEmpty;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -20,10 +19,9 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
 import lombok.Value;
 
-@RequiredArgsConstructor
+@AllArgsConstructor
 public class IdentitySubstitution<ReferenceT> {
 
   protected final IdentityService identityService;
@@ -32,6 +30,20 @@ public class IdentitySubstitution<ReferenceT> {
 
   protected final Function<String, RuntimeException> throwWhenNotFound;
 
+  /**
+   * Register with {@link IdentityService#registerUuids(List)}, so the service only returns UUIDs
+   * instead of echoing every identity back.
+   */
+  protected final boolean registerUuidsOnly;
+
+  /** Create an instance that registers using full registration responses. */
+  public IdentitySubstitution(
+      IdentityService identityService,
+      Function<ReferenceT, Optional<ResourceIdentity>> toResourceIdentity,
+      Function<String, RuntimeException> throwWhenNotFound) {
+    this(identityService, toResourceIdentity, throwWhenNotFound, false);
+  }
+
   /** Attempt to lookup the private ID for the given public ID and system. */
   public Optional<String> privateIdOf(@NonNull String system, @NonNull String publicId) {
     return identityService.lookup(publicId).stream()
@@ -55,7 +67,14 @@ public class IdentitySubstitution<ReferenceT> {
 
   /** Register IDs and return an IdentityMapping that can be used to easily find public IDs. */
   public IdentityMapping registerAndMap(Collection<ResourceIdentity> ids) {
-    return new IdentityMapping(register(ids));
+    if (!registerUuidsOnly) {
+      return new IdentityMapping(register(ids));
+    }
+    if (isEmpty(ids)) {
+      return new IdentityMapping(emptyList());
+    }
+    List<ResourceIdentity> identities = new ArrayList<>(ids);
+    return new IdentityMapping(identities, identityService.registerUuids(identities));
   }
 
   /** Lookup and convert the given public ID to a ResourceIdentity. */
@@ -83,20 +102,43 @@ public class IdentitySubstitution<ReferenceT> {
     return ids;
   }
 
+  /**
+   * Public IDs by resource name and private ID. These are kept in an open addressing table of just
+   * the strings, so large bundles do not keep registrations alive and lookups allocate no keys.
+   */
   public static class IdentityMapping {
-    /** Mapping of resource name and private ID to registration. */
-    private final Map<IdentityMappingKey, Registration> ids;
+    private final PublicIdIndex ids;
 
     /** Create a new instance with the given registrations. */
     public IdentityMapping(List<Registration> registrations) {
-      ids = new HashMap<>();
+      int count = 0;
+      for (Registration r : registrations) {
+        count += r.resourceIdentities().size();
+      }
+      ids = new PublicIdIndex(count);
       for (Registration r : registrations) {
         for (ResourceIdentity id : r.resourceIdentities()) {
-          ids.put(IdentityMappingKey.of(id.resource(), id.identifier()), r);
+          ids.put(id.resource(), id.identifier(), r.uuid());
         }
       }
     }
 
+    /**
+     * Create a new instance from registered identities and their UUIDs, in the same order, as
+     * returned by {@link IdentityService#registerUuids(List)}.
+     */
+    public IdentityMapping(List<ResourceIdentity> identities, List<String> uuids) {
+      if (identities.size() != uuids.size()) {
+        throw new IdentityService.RegistrationFailed(
+            "Expected " + identities.size() + " UUIDs, but " + uuids.size() + " were returned");
+      }
+      ids = new PublicIdIndex(identities.size());
+      for (int i = 0; i < identities.size(); i++) {
+        ResourceIdentity id = identities.get(i);
+        ids.put(id.resource(), id.identifier(), uuids.get(i));
+      }
+    }
+
     /**
      * Return the mapping for the public ID of the resource and id if it exists. The resource name
      * should be in IdentityService format, e.g. DIAGNOSTIC_REPORT instead of "DiagnosticReport"
@@ -105,20 +147,38 @@ public class IdentitySubstitution<ReferenceT> {
       if (resourceInIdentityServiceFormat == null || privateId == null) {
         return Optional.empty();
       }
-      Registration registration =
-          ids.get(IdentityMappingKey.of(resourceInIdentityServiceFormat, privateId));
-      return Optional.ofNullable(registration == null ? null : registration.uuid());
+      return Optional.ofNullable(ids.get(resourceInIdentityServiceFormat, privateId));
     }
 
     /**
      * For each resource provided, extract, filter, and update references with public IDs. This
      * method assumes that private IDs are held as a reference object. To accommodate that, a series
      * of operations are performed, defined by a group of functions.
+     *
+     * <p>If the operations allow concurrent updates and there are at least as many resources as
+     * their parallel threshold, resources are split across their fork join pool. Each reference is
+     * updated exactly as it would be sequentially, only the order of updates differs.
      */
     public <T, ReferenceT> void replacePrivateIdsWithPublicIds(
         Collection<T> resources, Operations<T, ReferenceT> operations) {
-      resources.stream()
-          .flatMap(operations.toReferences())
+      if (!operations.concurrentUpdates() || resources.size() < operations.parallelThreshold()) {
+        resources.forEach(resource -> replacePrivateIdsWithPublicIds(resource, operations));
+        return;
+      }
+      ForkJoinPool pool = operations.pool() == null ? ForkJoinPool.commonPool() : operations.pool();
+      pool.submit(
+              () ->
+                  resources
+                      .parallelStream()
+                      .forEach(resource -> replacePrivateIdsWithPublicIds(resource, operations)))
+          .join();
+    }
+
+    private <T, ReferenceT> void replacePrivateIdsWithPublicIds(
+        T resource, Operations<T, ReferenceT> operations) {
+      operations
+          .toReferences()
+          .apply(resource)
           .filter(Objects::nonNull)
           .filter(operations.isReplaceable())
           .forEach(
@@ -132,6 +192,63 @@ public class IdentitySubstitution<ReferenceT> {
                 }
               });
     }
+
+    /**
+     * Linear probing hash table with parallel arrays of resource names, private IDs, and public
+     * IDs. It is at most half full, so probes are short. Keys are compared in place.
+     */
+    private static final class PublicIdIndex {
+      private final String[] resources;
+
+      private final String[] privateIds;
+
+      private final String[] publicIds;
+
+      private final int mask;
+
+      PublicIdIndex(int expectedSize) {
+        int capacity = 2;
+        while (capacity < expectedSize * 2L) {
+          capacity <<= 1;
+        }
+        resources = new String[capacity];
+        privateIds = new String[capacity];
+        publicIds = new String[capacity];
+        mask = capacity - 1;
+      }
+
+      /** Spread the combined, cached, string hashes over the table. */
+      private static int hash(String resource, String privateId) {
+        int h = (resource.hashCode() * 31 + privateId.hashCode()) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+      }
+
+      String get(String resource, String privateId) {
+        for (int i = hash(resource, privateId) & mask; ; i = (i + 1) & mask) {
+          if (resources[i] == null) {
+            return null;
+          }
+          if (resources[i].equals(resource) && privateIds[i].equals(privateId)) {
+            return publicIds[i];
+          }
+        }
+      }
+
+      /** Map the key to the public ID, replacing any previous mapping. Null keys are ignored. */
+      void put(String resource, String privateId, String publicId) {
+        if (resource == null || privateId == null) {
+          return;
+        }
+        int i = hash(resource, privateId) & mask;
+        while (resources[i] != null
+            && !(resources[i].equals(resource) && privateIds[i].equals(privateId))) {
+          i = (i + 1) & mask;
+        }
+        resources[i] = resource;
+        privateIds[i] = privateId;
+        publicIds[i] = publicId;
+      }
+    }
   }
 
   @Value
@@ -150,5 +267,17 @@ public class IdentitySubstitution<ReferenceT> {
     @NonNull private final Function<ReferenceT, String> resourceNameOf;
     @NonNull private final Function<ReferenceT, String> privateIdOf;
     @NonNull private final BiConsumer<ReferenceT, Optional<String>> updatePrivateIdToPublicId;
+
+    /**
+     * Declare that {@code updatePrivateIdToPublicId} may be called for references of different
+     * resources at the same time, allowing large collections to be processed in parallel.
+     */
+    @Builder.Default private final boolean concurrentUpdates = false;
+
+    /** The fewest resources worth processing in parallel. */
+    @Builder.Default private final int parallelThreshold = 1000;
+
+    /** The pool parallel processing runs in, or null for the common pool. */
+    private final ForkJoinPool pool;
   }
 }
@@ -0,0 +1,22 @@
+package gov.va.api.health.ids.api;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.List;
+import javax.validation.Valid;
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
+@Schema(description = "Registrations in the order they were stored, one page at a time.")
+public class RegistrationPage {
+  @Schema(
+      description =
+          "Cursor for the next page. It is the same as the requested cursor if there are no"
+              + " registrations after it yet.")
+  long next;
+
+  @Valid List<Registration> registrations;
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import io.swagger.v3.oas.annotations.media.Schema;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Size;
 import lombok.Builder;
 import lombok.Value;
 
@@ -18,14 +19,17 @@ import lombok.Value;
 public class ResourceIdentity {
   @Schema(description = "Unique identifier for the resource type in the given system.")
   @NotBlank
+  @Size(max = 45)
   String identifier;
 
   @Schema(description = "The system that defines the identifier.")
   @NotBlank
+  @Size(max = 45)
   String system;
 
   @Schema(description = "A resource type narrows the identifier within the system.")
   @NotBlank
+  @Size(max = 45)
   @Pattern(regexp = "[-A-Za-z0-9_]+")
   String resource;
 }
@@ -0,0 +1,86 @@
+package gov.va.api.health.ids.api;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * How the identity service stores public IDs. UUIDs, which are almost all public IDs, are stored as
+ * a marker byte followed by their 16 bytes. Anything else, such as patient ICNs, is stored as its
+ * UTF-8 text, which never starts with the marker. UUIDs are always read back in lower case.
+ *
+ * <p>Stored UUIDs sort as unsigned numbers, so tools that read the table directly, ordered by
+ * public ID, see UUIDs in that order. This is shared by the service and those tools so they cannot
+ * disagree about the format.
+ */
+public final class StoredPublicId {
+  private static final byte UUID_MARKER = 0x01;
+
+  private static final int UUID_LENGTH = 17;
+
+  private StoredPublicId() {}
+
+  /** Convert stored bytes back into the public ID. */
+  public static String decode(byte[] stored) {
+    if (stored == null) {
+      return null;
+    }
+    UUID uuid = uuidOf(stored);
+    if (uuid != null) {
+      return uuid.toString();
+    }
+    return new String(stored, StandardCharsets.UTF_8);
+  }
+
+  /** Convert a public ID into the bytes that are stored. */
+  public static byte[] encode(String publicId) {
+    if (publicId == null) {
+      return null;
+    }
+    if (!isUuid(publicId)) {
+      return publicId.getBytes(StandardCharsets.UTF_8);
+    }
+    UUID uuid = UUID.fromString(publicId);
+    return ByteBuffer.allocate(UUID_LENGTH)
+        .put(UUID_MARKER)
+        .putLong(uuid.getMostSignificantBits())
+        .putLong(uuid.getLeastSignificantBits())
+        .array();
+  }
+
+  private static boolean isHex(char c) {
+    return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+  }
+
+  /** True if the stored bytes are a UUID in its binary form, the 16 bytes following the marker. */
+  public static boolean isStoredUuid(byte[] stored) {
+    return stored.length == UUID_LENGTH && stored[0] == UUID_MARKER;
+  }
+
+  /**
+   * Only the canonical 8-4-4-4-12 form is stored as binary, since {@link UUID#fromString(String)}
+   * also accepts shorter forms that would not read back the same way.
+   */
+  public static boolean isUuid(String value) {
+    if (value.length() != 36) {
+      return false;
+    }
+    for (int i = 0; i < 36; i++) {
+      char c = value.charAt(i);
+      boolean dash = i == 8 || i == 13 || i == 18 || i == 23;
+      if (dash ? c != '-' : !isHex(c)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** The UUID held by the stored bytes, or null if they hold some other public ID. */
+  public static UUID uuidOf(byte[] stored) {
+    if (!isStoredUuid(stored)) {
+      return null;
+    }
+    ByteBuffer halves = ByteBuffer.wrap(stored, 1, 16);
+    return new UUID(halves.getLong(), halves.getLong());
+  }
+}
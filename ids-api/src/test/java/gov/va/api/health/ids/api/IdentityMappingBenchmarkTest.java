@@ -0,0 +1,114 @@
+package gov.va.api.health.ids.api;
+
+import gov.va.api.health.ids.api.IdentitySubstitution.IdentityMapping;
+import gov.va.api.health.ids.api.IdentitySubstitution.IdentityMappingKey;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares building and searching an identity mapping for a bundle of 10,000 references with the
+ * hash map of registrations it replaced. The GC profiler reports allocation per operation. This is
+ * only run when requested, e.g. {@code mvn test -Dbenchmark=true
+ * -Dtest=IdentityMappingBenchmarkTest}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdentityMappingBenchmarkTest {
+  private final List<ResourceIdentity> bundle = IdentitySubstitutionTest.bundle(10_000);
+
+  private final List<Registration> registrations = registrations(bundle);
+
+  private final Map<IdentityMappingKey, Registration> hashMap = hashMap();
+
+  private final IdentityMapping mapping = new IdentityMapping(registrations);
+
+  private static List<Registration> registrations(List<ResourceIdentity> bundle) {
+    List<Registration> registrations = new ArrayList<>(bundle.size());
+    for (int i = 0; i < bundle.size(); i++) {
+      registrations.add(
+          Registration.builder()
+              .uuid(String.format("00000000-0000-5000-8000-%012d", i))
+              .resourceIdentities(List.of(bundle.get(i)))
+              .build());
+    }
+    return registrations;
+  }
+
+  /** The previous implementation. */
+  @Benchmark
+  public Map<IdentityMappingKey, Registration> buildHashMap() {
+    return hashMap();
+  }
+
+  @Benchmark
+  public IdentityMapping buildIndex() {
+    return new IdentityMapping(registrations);
+  }
+
+  private Map<IdentityMappingKey, Registration> hashMap() {
+    Map<IdentityMappingKey, Registration> ids = new HashMap<>();
+    for (Registration r : registrations) {
+      for (ResourceIdentity id : r.resourceIdentities()) {
+        ids.put(IdentityMappingKey.of(id.resource(), id.identifier()), r);
+      }
+    }
+    return ids;
+  }
+
+  /** The previous implementation. */
+  @Benchmark
+  public int lookUpHashMap() {
+    int found = 0;
+    for (ResourceIdentity id : bundle) {
+      Registration registration =
+          hashMap.get(IdentityMappingKey.of(id.resource(), id.identifier()));
+      if (registration != null && registration.uuid() != null) {
+        found++;
+      }
+    }
+    return found;
+  }
+
+  @Benchmark
+  public int lookUpIndex() {
+    int found = 0;
+    for (ResourceIdentity id : bundle) {
+      if (mapping.publicIdOf(id.resource(), id.identifier()).isPresent()) {
+        found++;
+      }
+    }
+    return found;
+  }
+
+  @Test
+  @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+  public void run() throws Exception {
+    new Runner(
+            new OptionsBuilder()
+                .include(getClass().getName())
+                .addProfiler(GCProfiler.class)
+                .build())
+        .run();
+  }
+}
@@ -3,13 +3,21 @@ package gov.va.api.health.ids.api;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import gov.va.api.health.ids.api.IdentitySubstitution.Operations;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.stream.Collectors;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -22,11 +30,61 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 @ExtendWith(MockitoExtension.class)
 public class IdentitySubstitutionTest {
+  private static final List<String> RESOURCES =
+      List.of(
+          "PATIENT",
+          "OBSERVATION",
+          "CONDITION",
+          "MEDICATION_ORDER",
+          "DIAGNOSTIC_REPORT",
+          "PROCEDURE",
+          "IMMUNIZATION",
+          "ALLERGY_INTOLERANCE");
 
   @Mock IdentityService ids;
 
   IdentitySubstitution<Ref> wp;
 
+  /** Identities shaped like the references of a large FHIR bundle. */
+  static List<ResourceIdentity> bundle(int size) {
+    List<ResourceIdentity> bundle = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      String resource = RESOURCES.get(i % RESOURCES.size());
+      bundle.add(
+          ResourceIdentity.builder()
+              .system("CDW")
+              .resource(resource)
+              .identifier(resource.equals("PATIENT") ? "1011537977V" + i : "800" + i + ":L")
+              .build());
+    }
+    return bundle;
+  }
+
+  private static Ref ref(ResourceIdentity identity) {
+    return Ref.of().type(identity.resource()).reference(identity.identifier()).build();
+  }
+
+  /** Operations replacing each reference with its public ID. */
+  private static Operations.OperationsBuilder<List<Ref>, Ref> replaceOperations() {
+    return Operations.<List<Ref>, Ref>builder()
+        .toReferences(List::stream)
+        .isReplaceable(r -> true)
+        .resourceNameOf(Ref::type)
+        .privateIdOf(Ref::reference)
+        .updatePrivateIdToPublicId((ref, id) -> ref.reference(id.get()));
+  }
+
+  /** Resources with two references of their own, one shared reference, and one unknown. */
+  private static List<List<Ref>> resourcesReferencing(List<ResourceIdentity> identities) {
+    List<List<Ref>> resources = new ArrayList<>();
+    for (int i = 0; i + 1 < identities.size(); i += 2) {
+      resources.add(
+          List.of(ref(identities.get(i)), ref(identities.get(i + 1)), ref(identities.get(0))));
+    }
+    resources.add(List.of(Ref.of().type("UNKNOWN").reference("nope").build()));
+    return resources;
+  }
+
   @BeforeEach
   void _init() {
     wp =
@@ -42,6 +100,74 @@ public class IdentitySubstitutionTest {
             FugaziException::new);
   }
 
+  @Test
+  public void identityMappingFindsEveryIdentityOfLargeBundles() {
+    List<ResourceIdentity> identities = bundle(10_000);
+    List<String> uuids =
+        identities.stream()
+            .map(id -> id.resource() + "/" + id.identifier())
+            .collect(Collectors.toList());
+    var idmap = new IdentitySubstitution.IdentityMapping(identities, uuids);
+    for (ResourceIdentity id : identities) {
+      assertThat(idmap.publicIdOf(id.resource(), id.identifier()))
+          .contains(id.resource() + "/" + id.identifier());
+    }
+    assertThat(idmap.publicIdOf("PATIENT", "nope")).isEmpty();
+    assertThat(idmap.publicIdOf("NOPE", identities.get(0).identifier())).isEmpty();
+    assertThat(idmap.publicIdOf(null, "x")).isEmpty();
+  }
+
+  @Test
+  public void identityMappingKeepsTheLastPublicIdOfDuplicates() {
+    ResourceIdentity a =
+        ResourceIdentity.builder().system("CDW").resource("WITNESS").identifier("a").build();
+    ResourceIdentity noId = a.toBuilder().identifier(null).build();
+    var idmap =
+        new IdentitySubstitution.IdentityMapping(List.of(a, noId, a), List.of("u1", "u2", "u3"));
+    assertThat(idmap.publicIdOf("WITNESS", "a")).contains("u3");
+    assertThat(new IdentitySubstitution.IdentityMapping(List.of()).publicIdOf("WITNESS", "a"))
+        .isEmpty();
+  }
+
+  @Test
+  public void parallelReplacementMatchesSequentialReplacement() {
+    List<ResourceIdentity> identities = bundle(5_000);
+    var idmap =
+        new IdentitySubstitution.IdentityMapping(
+            identities,
+            identities.stream()
+                .map(id -> "public-" + id.identifier())
+                .collect(Collectors.toList()));
+    List<List<Ref>> sequential = resourcesReferencing(identities);
+    idmap.replacePrivateIdsWithPublicIds(sequential, replaceOperations().build());
+    assertThat(sequential.get(0).get(0).reference())
+        .isEqualTo("public-" + identities.get(0).identifier());
+    assertThat(sequential.get(sequential.size() - 1).get(0).reference()).isEqualTo("nope");
+    List<List<Ref>> parallel = resourcesReferencing(identities);
+    Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      idmap.replacePrivateIdsWithPublicIds(
+          parallel,
+          replaceOperations()
+              .updatePrivateIdToPublicId(
+                  (ref, id) -> {
+                    threads.add(Thread.currentThread());
+                    ref.reference(id.get());
+                  })
+              .concurrentUpdates(true)
+              .parallelThreshold(100)
+              .pool(pool)
+              .build());
+    } finally {
+      pool.shutdown();
+    }
+    assertThat(parallel).isEqualTo(sequential);
+    assertThat(threads)
+        .allMatch(
+            t -> t instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) t).getPool() == pool);
+  }
+
   @Test
   void privateIdOf() {
     when(ids.lookup(anyString())).thenReturn(List.of());
@@ -112,6 +238,37 @@ public class IdentitySubstitutionTest {
     assertThat(wp.register(List.of())).isEmpty();
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  public void registerUuidsOnlyPairsUuidsWithIdentitiesInOrder() {
+    wp = new IdentitySubstitution<>(ids, ref -> Optional.empty(), FugaziException::new, true);
+    when(ids.registerUuids(Mockito.any()))
+        .thenAnswer(
+            invocation ->
+                ((List<ResourceIdentity>) invocation.getArgument(0))
+                    .stream()
+                        .map(identity -> "u" + identity.identifier())
+                        .collect(Collectors.toList()));
+    ResourceIdentity a =
+        ResourceIdentity.builder().system("CDW").resource("WITNESS").identifier("a").build();
+    ResourceIdentity b = a.toBuilder().resource("WHATEVER").identifier("b").build();
+    var idmap = wp.registerAndMap(Set.of(a, b));
+    assertThat(idmap.publicIdOf("WITNESS", "a")).contains("ua");
+    assertThat(idmap.publicIdOf("WHATEVER", "b")).contains("ub");
+    assertThat(idmap.publicIdOf("WHATEVER", "a")).isEmpty();
+    verify(ids, never()).register(Mockito.any());
+    assertThat(wp.registerAndMap(List.of()).publicIdOf("WITNESS", "a")).isEmpty();
+  }
+
+  @Test
+  public void registerUuidsOnlyRequiresAUuidForEachIdentity() {
+    ResourceIdentity a =
+        ResourceIdentity.builder().system("CDW").resource("WITNESS").identifier("a").build();
+    assertThrows(
+        IdentityService.RegistrationFailed.class,
+        () -> new IdentitySubstitution.IdentityMapping(List.of(a), List.of()));
+  }
+
   private Registration registration(String resource, String id) {
     return Registration.builder()
         .uuid(id)
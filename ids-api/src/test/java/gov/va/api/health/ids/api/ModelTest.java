@@ -20,6 +20,13 @@ public class ModelTest {
     new RegistrationFailed("some reason");
   }
 
+  @Test
+  public void expectedExceptionsDoNotCaptureStackTraces() {
+    assertThat(new UnknownIdentity("some id").getStackTrace()).isEmpty();
+    assertThat(new LookupFailed("some id", "some reason").getStackTrace()).isNotEmpty();
+    assertThat(new RegistrationFailed("some reason").getStackTrace()).isNotEmpty();
+  }
+
   private ResourceIdentity id() {
     return ResourceIdentity.builder().identifier("i1").resource("r1").system("s1").build();
   }
@@ -29,6 +36,17 @@ public class ModelTest {
     roundTrip(Registration.builder().uuid("u1").resourceIdentities(List.of(id())).build());
   }
 
+  @Test
+  public void registrationPage() {
+    roundTrip(
+        RegistrationPage.builder()
+            .next(42)
+            .registrations(
+                List.of(
+                    Registration.builder().uuid("u1").resourceIdentities(List.of(id())).build()))
+            .build());
+  }
+
   @Test
   public void resouceIdentity() {
     roundTrip(id());
@@ -0,0 +1,27 @@
+package gov.va.api.health.ids.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+public class StoredPublicIdTest {
+  @Test
+  public void storedUuidsSortAsUnsignedNumbers() {
+    byte[] low = StoredPublicId.encode("7fffffff-ffff-5fff-bfff-ffffffffffff");
+    byte[] high = StoredPublicId.encode("80000000-0000-5000-8000-000000000000");
+    assertThat(Arrays.compareUnsigned(low, high)).isNegative();
+  }
+
+  @Test
+  public void uuidOfOtherPublicIdsIsNull() {
+    assertThat(StoredPublicId.uuidOf(StoredPublicId.encode("1011537977V693883"))).isNull();
+  }
+
+  @Test
+  public void uuidOfStoredUuid() {
+    UUID uuid = UUID.fromString("6d0d3ad3-ea34-5ac3-a03c-6dafd30f6a4f");
+    assertThat(StoredPublicId.uuidOf(StoredPublicId.encode(uuid.toString()))).isEqualTo(uuid);
+  }
+}
@@ -0,0 +1,160 @@
+package gov.va.api.health.ids.client;
+
+import gov.va.api.health.ids.api.ResourceIdentity;
+import gov.va.api.health.ids.api.StoredPublicId;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Lookup responses kept for as long as their Cache-Control headers allow. Fresh responses are used
+ * without a request. Stale responses with an ETag are revalidated with If-None-Match, and a 304 Not
+ * Modified makes them fresh again. Unknown IDs are remembered for the, usually short, lifetime the
+ * service gives them. Responses without a max-age, or marked no-store, are not kept.
+ *
+ * <p>UUIDs are matched without regard to case, as the service does, but other IDs, such as patient
+ * ICNs, are matched exactly. An ID remembered as unknown is forgotten once it is registered by this
+ * client. The least recently used response is dropped once the cache holds the maximum number of
+ * entries.
+ */
+final class HttpLookupCache {
+  private final int maximumEntries;
+
+  private final LongSupplier clock;
+
+  private final Map<String, Entry> entries;
+
+  HttpLookupCache(int maximumEntries, LongSupplier clock) {
+    if (maximumEntries <= 0) {
+      throw new IllegalArgumentException("maximumEntries must be positive");
+    }
+    this.maximumEntries = maximumEntries;
+    this.clock = clock;
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > HttpLookupCache.this.maximumEntries;
+          }
+        };
+  }
+
+  private static String key(String id) {
+    return StoredPublicId.isUuid(id) ? id.toLowerCase(Locale.ENGLISH) : id;
+  }
+
+  /**
+   * The number of seconds the response may be used for, or -1 if it must not be kept. Immutable
+   * responses still only last for their max-age.
+   */
+  static long maxAgeSeconds(HttpHeaders headers) {
+    String cacheControl = headers.getCacheControl();
+    if (cacheControl == null) {
+      return -1;
+    }
+    long maxAge = -1;
+    for (String directive : cacheControl.split(",")) {
+      String d = directive.trim().toLowerCase(Locale.ENGLISH);
+      if (d.equals("no-store")) {
+        return -1;
+      }
+      if (d.equals("no-cache")) {
+        maxAge = 0;
+      } else if (d.startsWith("max-age=") && maxAge != 0) {
+        try {
+          maxAge = Math.max(0, Long.parseLong(d.substring("max-age=".length())));
+        } catch (NumberFormatException e) {
+          return -1;
+        }
+      }
+    }
+    return maxAge;
+  }
+
+  /** A cache of the given size using the system clock. */
+  static HttpLookupCache of(int maximumEntries) {
+    return new HttpLookupCache(maximumEntries, System::nanoTime);
+  }
+
+  /** Remember the identities found for the ID, if the response allows it. */
+  void found(String id, List<ResourceIdentity> identities, HttpHeaders headers) {
+    put(id, List.copyOf(identities), headers.getETag(), headers);
+  }
+
+  /** The cached response for the ID, fresh or stale, or null. */
+  synchronized Entry get(String id) {
+    return entries.get(key(id));
+  }
+
+  /** Remember that the ID is unknown, if the response allows it. */
+  void notFound(String id, HttpHeaders headers) {
+    put(id, null, null, headers);
+  }
+
+  /** The ID was registered, so forget if it was remembered as unknown. */
+  synchronized void registered(String id) {
+    Entry entry = entries.get(key(id));
+    if (entry != null && entry.notFound()) {
+      entries.remove(key(id));
+    }
+  }
+
+  private void put(String id, List<ResourceIdentity> identities, String eTag, HttpHeaders headers) {
+    long maxAge = maxAgeSeconds(headers);
+    if (maxAge < 0) {
+      return;
+    }
+    long expires = clock.getAsLong() + TimeUnit.SECONDS.toNanos(maxAge);
+    Entry entry = new Entry(identities, eTag, expires);
+    synchronized (this) {
+      entries.put(key(id), entry);
+    }
+  }
+
+  /**
+   * The service confirmed the cached response is unchanged, keep it for as long as the 304 response
+   * allows.
+   */
+  void revalidated(String id, Entry entry, HttpHeaders headers) {
+    put(id, entry.identities(), entry.eTag(), headers);
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  /** A cached response. The identities are null if the ID was not found. */
+  final class Entry {
+    private final List<ResourceIdentity> identities;
+
+    private final String eTag;
+
+    private final long expires;
+
+    Entry(List<ResourceIdentity> identities, String eTag, long expires) {
+      this.identities = identities;
+      this.eTag = eTag;
+      this.expires = expires;
+    }
+
+    String eTag() {
+      return eTag;
+    }
+
+    boolean fresh() {
+      return clock.getAsLong() - expires < 0;
+    }
+
+    List<ResourceIdentity> identities() {
+      return identities;
+    }
+
+    boolean notFound() {
+      return identities == null;
+    }
+  }
+}
@@ -10,15 +10,16 @@ public interface IdEncoder {
 
   /**
    * BadId can happen fairly easily since IDs are provided by callers. This indicates the IDs could
-   * not be decoded for any reason.
+   * not be decoded for any reason. Since it is routine, it does not capture a stack trace, but the
+   * cause, if any, keeps its own.
    */
   class BadId extends EncoderException {
     public BadId(String message, Throwable cause) {
-      super(message, cause);
+      super(message, cause, false);
     }
 
     public BadId(String message) {
-      super(message, null);
+      super(message, null, false);
     }
   }
 
@@ -27,6 +28,10 @@ public interface IdEncoder {
     EncoderException(String message, Throwable cause) {
       super(message, cause);
     }
+
+    EncoderException(String message, Throwable cause, boolean writableStackTrace) {
+      super(message, cause, false, writableStackTrace);
+    }
   }
 
   /**
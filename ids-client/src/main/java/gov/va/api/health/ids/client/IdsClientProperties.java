@@ -2,6 +2,8 @@ package gov.va.api.health.ids.client;
 
 import static org.apache.logging.log4j.util.Strings.isNotBlank;
 
+import java.util.ArrayList;
+import java.util.List;
 import javax.validation.constraints.AssertTrue;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -110,9 +112,101 @@ public class IdsClientProperties {
     @Builder.Default private boolean enabled = false;
     private String url;
 
+    /** More replicas of the service at the URL. Requests are balanced across all of them. */
+    @Builder.Default private List<String> urls = new ArrayList<>();
+
+    /** Replicas are ejected after this many errors or slow responses in a row. */
+    @Builder.Default private int outlierFailureThreshold = 5;
+
+    /** Responses slower than this count as failures when ejecting replicas, 0 to ignore speed. */
+    @Builder.Default private long outlierSlowResponseMillis = 0;
+
+    /** How long ejected replicas are avoided. */
+    @Builder.Default private long outlierEjectionSeconds = 30;
+
+    /**
+     * Lookups slower than this percentile of recent lookups, e.g. 0.95, are also sent to another
+     * replica, and whichever answers first is used. 0 disables hedging.
+     */
+    @Builder.Default private double hedgePercentile = 0;
+
+    /**
+     * Lookup responses kept as long as the service allows, by their Cache-Control and ETag headers.
+     * 0 disables caching.
+     */
+    @Builder.Default private int lookupCacheMaximumEntries = 10_000;
+
+    /**
+     * Exchange registrations and the registration feed as Smile instead of JSON. Only enable this
+     * once every service replica supports Smile.
+     */
+    @Builder.Default private boolean smileEnabled = false;
+
+    /**
+     * Ask the service for only the UUIDs of registrations, in request order, instead of having
+     * every identity echoed back. Only enable this once every service replica supports it.
+     */
+    @Builder.Default private boolean registerUuidsOnly = false;
+
+    /**
+     * Optional snapshot file, created by UuidSnapshotExport, used to look up UUIDs locally. UUIDs
+     * that are not in the snapshot are looked up from the service at the URL.
+     */
+    private String snapshotFile;
+
+    /** How often to check whether the snapshot file has been replaced. */
+    @Builder.Default private long snapshotCheckIntervalSeconds = 60;
+
+    /**
+     * Keep a local cache of UUIDs, warmed and kept up to date from the service registration feed.
+     */
+    @Builder.Default private boolean registrationFeedEnabled = false;
+
+    /** How often to check the registration feed for new registrations. */
+    @Builder.Default private long registrationFeedIntervalSeconds = 60;
+
+    /** How many registrations to request at a time, the service allows up to 10,000. */
+    @Builder.Default private int registrationFeedPageSize = 1000;
+
+    /** Beyond this many UUIDs, the least recently used is evicted from the cache. */
+    @Builder.Default private int registrationFeedMaximumEntries = 1_000_000;
+
+    /** The URL followed by any additional replicas. */
+    public List<String> serviceUrls() {
+      List<String> all = new ArrayList<>();
+      if (isNotBlank(getUrl())) {
+        all.add(getUrl());
+      }
+      if (getUrls() != null) {
+        getUrls().stream().filter(u -> isNotBlank(u)).forEach(all::add);
+      }
+      return all;
+    }
+
+    public boolean isRegistrationFeedCacheEnabled() {
+      return isEnabled() && isRegistrationFeedEnabled();
+    }
+
+    public boolean isSnapshotEnabled() {
+      return isEnabled() && isNotBlank(getSnapshotFile());
+    }
+
     @AssertTrue
     public boolean isValid() {
-      return !isEnabled() || isNotBlank(getUrl());
+      return !isEnabled()
+          || (!serviceUrls().isEmpty()
+              && getOutlierFailureThreshold() > 0
+              && getOutlierSlowResponseMillis() >= 0
+              && getOutlierEjectionSeconds() > 0
+              && getHedgePercentile() >= 0
+              && getHedgePercentile() < 1
+              && getLookupCacheMaximumEntries() >= 0
+              && getSnapshotCheckIntervalSeconds() > 0
+              && (!isRegistrationFeedEnabled()
+                  || (getRegistrationFeedIntervalSeconds() > 0
+                      && getRegistrationFeedPageSize() > 0
+                      && getRegistrationFeedPageSize() <= 10_000
+                      && getRegistrationFeedMaximumEntries() > 0)));
     }
   }
 }
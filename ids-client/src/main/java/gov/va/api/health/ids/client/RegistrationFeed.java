@@ -0,0 +1,19 @@
+package gov.va.api.health.ids.client;
+
+import gov.va.api.health.ids.api.RegistrationPage;
+
+/** Registrations in the order they were stored by the identity service. */
+public interface RegistrationFeed {
+  /**
+   * Read a page of registrations in the order they were stored, starting after the cursor. Use the
+   * `next` value of the page as the cursor for the following page, starting with 0.
+   */
+  RegistrationPage registrationsAfter(long cursor, int count);
+
+  /** The page could not be read, the cursor should be tried again later. */
+  class RegistrationFeedFailed extends RuntimeException {
+    public RegistrationFeedFailed(String message) {
+      super(message);
+    }
+  }
+}
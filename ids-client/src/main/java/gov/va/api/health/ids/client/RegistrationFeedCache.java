@@ -0,0 +1,178 @@
+package gov.va.api.health.ids.client;
+
+import gov.va.api.health.ids.api.IdentityService;
+import gov.va.api.health.ids.api.Registration;
+import gov.va.api.health.ids.api.RegistrationPage;
+import gov.va.api.health.ids.api.ResourceIdentity;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * An identity service that keeps a local copy of registrations, read from the identity service
+ * registration feed. Once started, the feed is read from the beginning to warm the cache, then
+ * periodically to pick up new registrations. Lookups are answered from the cache when possible and
+ * from the identity service otherwise. Registrations are always made with the identity service.
+ *
+ * <p>Once the cache holds the maximum number of entries, the least recently used entry is evicted
+ * for each new one, so the feed keeps being read and recent registrations stay local. Reaching the
+ * limit is logged once, and evictions are counted. Lookups for anything that is not cached still
+ * work, they are just not local.
+ */
+@Slf4j
+public final class RegistrationFeedCache implements IdentityService, AutoCloseable {
+  private final IdentityService delegate;
+
+  private final RegistrationFeed feed;
+
+  private final int pageSize;
+
+  private final int maximumEntries;
+
+  private final Duration refreshInterval;
+
+  /** Least recently used first, guarded by this. */
+  private final Map<String, List<ResourceIdentity>> identities;
+
+  private long evictions;
+
+  private volatile long cursor;
+
+  private ScheduledExecutorService refresher;
+
+  @Builder
+  private RegistrationFeedCache(
+      @NonNull IdentityService delegate,
+      @NonNull RegistrationFeed feed,
+      int pageSize,
+      int maximumEntries,
+      @NonNull Duration refreshInterval) {
+    this.delegate = delegate;
+    this.feed = feed;
+    this.pageSize = pageSize;
+    this.maximumEntries = maximumEntries;
+    this.refreshInterval = refreshInterval;
+    this.identities =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, List<ResourceIdentity>> eldest) {
+            if (size() <= RegistrationFeedCache.this.maximumEntries) {
+              return false;
+            }
+            evicted();
+            return true;
+          }
+        };
+  }
+
+  private static String key(String uuid) {
+    return uuid.toLowerCase(Locale.ENGLISH);
+  }
+
+  private synchronized void cache(Registration registration) {
+    identities.put(key(registration.uuid()), List.copyOf(registration.resourceIdentities()));
+  }
+
+  /** Stop reading the feed. */
+  @Override
+  public synchronized void close() {
+    if (refresher != null) {
+      refresher.shutdownNow();
+      refresher = null;
+    }
+  }
+
+  /** The feed cursor of the last registration read. */
+  long cursor() {
+    return cursor;
+  }
+
+  private void evicted() {
+    if (evictions++ == 0) {
+      log.warn(
+          "Registration feed cache is full at {} entries, evicting the least recently used",
+          maximumEntries);
+    }
+  }
+
+  /** The number of entries evicted to stay within the maximum. */
+  synchronized long evictions() {
+    return evictions;
+  }
+
+  @Override
+  public List<ResourceIdentity> lookup(String id) {
+    List<ResourceIdentity> cached;
+    synchronized (this) {
+      cached = identities.get(key(id));
+    }
+    if (cached != null) {
+      return cached;
+    }
+    return delegate.lookup(id);
+  }
+
+  /**
+   * Read every page of registrations after the cursor. Failures are logged, the next refresh picks
+   * up where this one stopped. Returns the number of registrations read.
+   */
+  int refresh() {
+    int read = 0;
+    try {
+      RegistrationPage page;
+      do {
+        page = feed.registrationsAfter(cursor, pageSize);
+        page.registrations().forEach(this::cache);
+        read += page.registrations().size();
+        cursor = page.next();
+      } while (page.registrations().size() == pageSize);
+      if (read > 0) {
+        log.info("Read {} registrations, {} cached", read, size());
+      }
+    } catch (RuntimeException e) {
+      log.warn("Failed to read registrations after {}: {}", cursor, e.getMessage());
+    }
+    return read;
+  }
+
+  @Override
+  public List<Registration> register(List<ResourceIdentity> resourceIdentities) {
+    List<Registration> registrations = delegate.register(resourceIdentities);
+    registrations.forEach(this::cache);
+    return registrations;
+  }
+
+  /** True once started, until closed. */
+  synchronized boolean running() {
+    return refresher != null;
+  }
+
+  /** The number of cached public IDs. */
+  public synchronized int size() {
+    return identities.size();
+  }
+
+  /** Warm the cache in the background, then keep it up to date. */
+  public synchronized RegistrationFeedCache start() {
+    if (refresher == null) {
+      refresher =
+          Executors.newSingleThreadScheduledExecutor(
+              r -> {
+                Thread thread = new Thread(r, "ids-registration-feed");
+                thread.setDaemon(true);
+                return thread;
+              });
+      refresher.scheduleWithFixedDelay(
+          this::refresh, 0, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+    return this;
+  }
+}
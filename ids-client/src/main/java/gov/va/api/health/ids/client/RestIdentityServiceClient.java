@@ -1,12 +1,27 @@
 package gov.va.api.health.ids.client;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import gov.va.api.health.autoconfig.configuration.JacksonConfig;
 import gov.va.api.health.ids.api.IdentityService;
 import gov.va.api.health.ids.api.Registration;
+import gov.va.api.health.ids.api.RegistrationPage;
 import gov.va.api.health.ids.api.ResourceIdentity;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.NonNull;
@@ -19,13 +34,33 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.web.client.ResponseErrorHandler;
 import org.springframework.web.client.RestTemplate;
 
-/** Rest client for the identity service. */
+/**
+ * Rest client for the identity service. Requests are balanced across the service replicas, and
+ * lookups may be hedged, see {@link ServiceEndpoints}. Lookup responses may be kept according to
+ * their caching headers, see {@link HttpLookupCache}.
+ *
+ * <p>Registrations and the registration feed may be exchanged as Smile, a binary form of JSON that
+ * is much smaller and quicker to read and write for large batches. The service must support it,
+ * since requests are sent as Smile. Lookups are small and always JSON.
+ *
+ * <p>Registration can also ask the service for only the UUIDs, in request order, and pair them with
+ * the identities that were sent, rather than having every identity echoed back.
+ */
 @Slf4j
 @Builder
-public final class RestIdentityServiceClient implements IdentityService {
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public final class RestIdentityServiceClient implements IdentityService, RegistrationFeed {
+  private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+  private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+  private static final ObjectMapper MAPPER = JacksonConfig.createMapper();
+
+  private static final ObjectMapper SMILE_MAPPER = smileMapper();
 
   /**
    * This rest template is used a base for each request. However, it is not used to make requests
@@ -33,11 +68,26 @@ public final class RestIdentityServiceClient implements IdentityService {
    */
   @NonNull private final RestTemplate baseRestTemplate;
 
-  @NonNull private final String url;
+  @NonNull private final ServiceEndpoints endpoints;
 
   /** This is used to create a new rest template that can be modified for each request. */
   @NonNull private final Supplier<RestTemplate> newRestTemplateSupplier;
 
+  /** Optional cache of lookup responses, null to make a request for every lookup. */
+  private final HttpLookupCache lookupCache;
+
+  /** Exchange registrations as Smile instead of JSON. */
+  private final boolean smile;
+
+  /** Ask the service for only the UUIDs of registrations. */
+  private final boolean registerUuidsOnly;
+
+  /** A JSON client for a single service replica, without a lookup cache. */
+  RestIdentityServiceClient(
+      RestTemplate baseRestTemplate, String url, Supplier<RestTemplate> newRestTemplateSupplier) {
+    this(baseRestTemplate, ServiceEndpoints.of(url), newRestTemplateSupplier, null, false, false);
+  }
+
   /**
    * If the given value is null, an IllegalStateException is thrown. Otherwise, the value is
    * returned. Use this method for clean inline null checks.
@@ -49,6 +99,25 @@ public final class RestIdentityServiceClient implements IdentityService {
     return maybe;
   }
 
+  /** A Smile mapper with the same configuration as the JSON mapper, so builders are used. */
+  private static ObjectMapper smileMapper() {
+    ObjectMapper smile =
+        new ObjectMapper(
+            SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build());
+    smile.setConfig(MAPPER.getSerializationConfig());
+    smile.setConfig(MAPPER.getDeserializationConfig());
+    return smile;
+  }
+
+  private List<ResourceIdentity> cachedIdentities(String id, HttpLookupCache.Entry cached) {
+    if (cached.notFound()) {
+      throw new UnknownIdentity(id);
+    }
+    return cached.identities();
+  }
+
   private HttpHeaders headers() {
     HttpHeaders headers = new HttpHeaders();
     headers.setContentType(MediaType.APPLICATION_JSON);
@@ -58,22 +127,52 @@ public final class RestIdentityServiceClient implements IdentityService {
 
   @Override
   public List<ResourceIdentity> lookup(String id) {
-    log.info("Looking up {}", id);
-    RestTemplate restTemplate = newRestTemplate(new LookupErrorHandler(id));
-    ResponseEntity<List<ResourceIdentity>> response =
-        notNull(
-            restTemplate.exchange(
-                url + "/api/resourceIdentity/{id}",
-                HttpMethod.GET,
-                new HttpEntity<List<ResourceIdentity>>(headers()),
-                new ParameterizedTypeReference<List<ResourceIdentity>>() {},
-                id));
+    HttpLookupCache.Entry cached = lookupCache == null ? null : lookupCache.get(id);
+    if (cached != null && cached.fresh()) {
+      return cachedIdentities(id, cached);
+    }
+    return endpoints.hedged(url -> lookup(url, id, cached));
+  }
+
+  /** Look up the ID, revalidating the stale cached response if it has an ETag. */
+  private List<ResourceIdentity> lookup(String url, String id, HttpLookupCache.Entry stale) {
+    log.info("Looking up {} at {}", id, url);
+    HttpHeaders headers = headers();
+    if (stale != null && stale.eTag() != null) {
+      headers.setIfNoneMatch(stale.eTag());
+    }
+    LookupErrorHandler errorHandler = new LookupErrorHandler(id);
+    RestTemplate restTemplate = newRestTemplate(errorHandler);
+    ResponseEntity<List<ResourceIdentity>> response;
+    try {
+      response =
+          notNull(
+              restTemplate.exchange(
+                  url + "/api/resourceIdentity/{id}",
+                  HttpMethod.GET,
+                  new HttpEntity<List<ResourceIdentity>>(headers),
+                  new ParameterizedTypeReference<List<ResourceIdentity>>() {},
+                  id));
+    } catch (UnknownIdentity e) {
+      if (lookupCache != null && errorHandler.notFoundHeaders != null) {
+        lookupCache.notFound(id, errorHandler.notFoundHeaders);
+      }
+      throw e;
+    }
+    if (response.getStatusCode() == HttpStatus.NOT_MODIFIED && stale != null) {
+      log.info("{} {} unchanged", response.getStatusCode(), id);
+      lookupCache.revalidated(id, stale, response.getHeaders());
+      return cachedIdentities(id, stale);
+    }
     List<ResourceIdentity> body = notNull(response.getBody());
     log.info("{} {}", response.getStatusCode(), body);
     if (body.isEmpty()) {
       throw new LookupFailed(
           id, "No identities returned, but status was " + response.getStatusCode());
     }
+    if (lookupCache != null) {
+      lookupCache.found(id, body, response.getHeaders());
+    }
     return body;
   }
 
@@ -94,13 +193,33 @@ public final class RestIdentityServiceClient implements IdentityService {
     if (baseRestTemplate.getRequestFactory() != null) {
       copy.setRequestFactory(baseRestTemplate.getRequestFactory());
     }
+    if (smile) {
+      copy.getMessageConverters()
+          .add(0, new MappingJackson2SmileHttpMessageConverter(SMILE_MAPPER));
+    }
     copy.setErrorHandler(errorHandler);
     return copy;
   }
 
   @Override
   public List<Registration> register(List<ResourceIdentity> identities) {
-    log.info("Registering {} identities", identities.size());
+    if (!registerUuidsOnly) {
+      return endpoints.call(url -> register(url, identities));
+    }
+    List<String> uuids = registerUuids(identities);
+    List<Registration> registrations = new ArrayList<>(uuids.size());
+    for (int i = 0; i < uuids.size(); i++) {
+      registrations.add(
+          Registration.builder()
+              .uuid(uuids.get(i))
+              .resourceIdentities(List.of(identities.get(i)))
+              .build());
+    }
+    return registrations;
+  }
+
+  private List<Registration> register(String url, List<ResourceIdentity> identities) {
+    log.info("Registering {} identities at {}", identities.size(), url);
     log.debug("Registering {}", identities);
     RestTemplate restTemplate = newRestTemplate(new RegisterErrorHandler());
     ResponseEntity<List<Registration>> response =
@@ -108,7 +227,7 @@ public final class RestIdentityServiceClient implements IdentityService {
             restTemplate.exchange(
                 url + "/api/resourceIdentity",
                 HttpMethod.POST,
-                new HttpEntity<>(identities, headers()),
+                new HttpEntity<>(identities, registrationHeaders()),
                 new ParameterizedTypeReference<List<Registration>>() {}));
     List<Registration> body = notNull(response.getBody());
     log.debug("{}: {} identities registered", response.getStatusCode(), body.size());
@@ -116,17 +235,177 @@ public final class RestIdentityServiceClient implements IdentityService {
       throw new RegistrationFailed(
           "No registrations returned, but status was " + response.getStatusCode());
     }
+    body.forEach(r -> registered(r.uuid()));
     return body;
   }
 
-  @AllArgsConstructor
+  /**
+   * Register identities as newline delimited JSON, without holding the registrations in memory.
+   * Identities are written as they are taken from the stream, and each registration is given to the
+   * consumer as it is read from the response, in the same order. The whole request is sent before
+   * the response is read, so the base rest template must buffer request bodies, as the default
+   * request factory does. Returns the number of registrations, which is always the number of
+   * identities. A failure reported by the service part way, or a response that ends early, throws
+   * {@link RegistrationFailed}, but the registrations already given to the consumer stand.
+   */
+  public long registerStream(
+      Stream<ResourceIdentity> identities, Consumer<Registration> registrations) {
+    log.info("Registering stream of identities");
+    RestTemplate restTemplate = newRestTemplate(new RegisterErrorHandler());
+    Long count =
+        endpoints.call(url -> registerStream(restTemplate, url, identities, registrations));
+    log.debug("{} identities registered", count);
+    return notNull(count);
+  }
+
+  private Long registerStream(
+      RestTemplate restTemplate,
+      String url,
+      Stream<ResourceIdentity> identities,
+      Consumer<Registration> registrations) {
+    long[] sent = {0};
+    return restTemplate.execute(
+        url + "/api/v1/ids",
+        HttpMethod.POST,
+        request -> {
+          request.getHeaders().setContentType(NDJSON);
+          request.getHeaders().setAccept(List.of(NDJSON, MediaType.APPLICATION_JSON));
+          ObjectWriter writer =
+              MAPPER.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+          try (JsonGenerator out = MAPPER.getFactory().createGenerator(request.getBody())) {
+            for (Iterator<ResourceIdentity> i = identities.iterator(); i.hasNext(); ) {
+              writer.writeValue(out, i.next());
+              out.writeRaw('\n');
+              sent[0]++;
+            }
+          }
+        },
+        response -> {
+          long read = 0;
+          try (MappingIterator<JsonNode> body =
+              MAPPER.readerFor(JsonNode.class).readValues(response.getBody())) {
+            while (body.hasNextValue()) {
+              JsonNode line = body.nextValue();
+              if (!line.has("uuid")) {
+                throw new RegistrationFailed(
+                    "Registration failed after "
+                        + read
+                        + " of "
+                        + sent[0]
+                        + " identities: "
+                        + line);
+              }
+              Registration registration = MAPPER.treeToValue(line, Registration.class);
+              registered(registration.uuid());
+              registrations.accept(registration);
+              read++;
+            }
+          }
+          if (read != sent[0]) {
+            throw new RegistrationFailed(
+                "Expected " + sent[0] + " registrations, but " + read + " were returned");
+          }
+          return read;
+        });
+  }
+
+  @Override
+  public List<String> registerUuids(List<ResourceIdentity> identities) {
+    if (!registerUuidsOnly) {
+      return IdentityService.super.registerUuids(identities);
+    }
+    return endpoints.call(url -> registerUuids(url, identities));
+  }
+
+  private List<String> registerUuids(String url, List<ResourceIdentity> identities) {
+    log.info("Registering {} identities at {} for UUIDs", identities.size(), url);
+    RestTemplate restTemplate = newRestTemplate(new RegisterErrorHandler());
+    ResponseEntity<List<String>> response =
+        notNull(
+            restTemplate.exchange(
+                url + "/api/resourceIdentity?response=uuids",
+                HttpMethod.POST,
+                new HttpEntity<>(identities, registrationHeaders()),
+                new ParameterizedTypeReference<List<String>>() {}));
+    List<String> body = notNull(response.getBody());
+    if (body.size() != identities.size()) {
+      throw new RegistrationFailed(
+          "Expected " + identities.size() + " UUIDs, but " + body.size() + " were returned");
+    }
+    body.forEach(this::registered);
+    return body;
+  }
+
+  /** A newly registered ID may have been cached as unknown, which it no longer is. */
+  private void registered(String uuid) {
+    if (lookupCache != null) {
+      lookupCache.registered(uuid);
+    }
+  }
+
+  /** Headers for registration requests, which are Smile if enabled, otherwise JSON. */
+  private HttpHeaders registrationHeaders() {
+    if (!smile) {
+      return headers();
+    }
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(SMILE);
+    headers.setAccept(List.of(SMILE, MediaType.APPLICATION_JSON));
+    return headers;
+  }
+
+  @Override
+  public RegistrationPage registrationsAfter(long cursor, int count) {
+    log.debug("Reading {} registrations after {}", count, cursor);
+    RestTemplate restTemplate = newRestTemplate(new FeedErrorHandler());
+    ResponseEntity<RegistrationPage> response =
+        notNull(
+            endpoints.call(
+                url ->
+                    restTemplate.exchange(
+                        url + "/api/v1/registrations?after={after}&count={count}",
+                        HttpMethod.GET,
+                        new HttpEntity<RegistrationPage>(registrationHeaders()),
+                        RegistrationPage.class,
+                        cursor,
+                        count)));
+    return notNull(response.getBody());
+  }
+
+  /**
+   * Any error reading the feed is a failure, including a 404 from a replica without the feed, since
+   * there is no identity that could be unknown.
+   */
+  static class FeedErrorHandler implements ResponseErrorHandler {
+
+    @Override
+    public void handleError(ClientHttpResponse response) throws IOException {
+      if (response.getStatusCode() != HttpStatus.OK) {
+        throw new RegistrationFeedFailed("Http Response: " + response.getStatusCode());
+      }
+    }
+
+    @Override
+    public boolean hasError(ClientHttpResponse response) throws IOException {
+      return response.getStatusCode().isError();
+    }
+  }
+
   static class LookupErrorHandler implements ResponseErrorHandler {
 
     private final String id;
 
+    /** The headers of the not found response, which say how long it may be cached. */
+    private HttpHeaders notFoundHeaders;
+
+    LookupErrorHandler(String id) {
+      this.id = id;
+    }
+
     @Override
     public void handleError(ClientHttpResponse response) throws IOException {
       if (response.getStatusCode() == HttpStatus.NOT_FOUND) {
+        notFoundHeaders = response.getHeaders();
         throw new UnknownIdentity(id);
       }
       if (response.getStatusCode() != HttpStatus.OK) {
@@ -154,4 +433,11 @@ public final class RestIdentityServiceClient implements IdentityService {
       return response.getStatusCode().isError();
     }
   }
+
+  public static class RestIdentityServiceClientBuilder {
+    /** Use a single service replica. */
+    public RestIdentityServiceClientBuilder url(String url) {
+      return endpoints(ServiceEndpoints.of(url));
+    }
+  }
 }
@@ -9,9 +9,13 @@ import static gov.va.api.health.ids.client.EncryptingIdEncoder.UrlSafeEncodings.
 
 import gov.va.api.health.ids.api.IdentityService;
 import gov.va.api.health.ids.client.EncryptingIdEncoder.Codebook;
+import gov.va.api.health.ids.client.IdsClientProperties.UuidFormatProperties;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.context.annotation.Bean;
@@ -25,11 +29,18 @@ import org.springframework.web.client.RestTemplate;
  */
 @Configuration
 @Slf4j
-public class RestIdentityServiceClientConfig {
+public class RestIdentityServiceClientConfig implements DisposableBean {
   private final RestTemplate restTemplate;
 
   private final IdsClientProperties properties;
 
+  /**
+   * Background resources started for the client. They are not beans of their own, which would make
+   * them candidates wherever an IdentityService is injected, so they are closed with this
+   * configuration instead.
+   */
+  private final List<AutoCloseable> resources = new ArrayList<>();
+
   /** Constructor that includes the value annotations. */
   @SuppressWarnings("SpringJavaInjectionPointsAutowiringInspection")
   @Autowired
@@ -39,6 +50,15 @@ public class RestIdentityServiceClientConfig {
     this.properties = properties;
   }
 
+  /** Stop the background work of the clients created by this configuration. */
+  @Override
+  public void destroy() throws Exception {
+    for (AutoCloseable resource : resources) {
+      resource.close();
+    }
+    resources.clear();
+  }
+
   /**
    * Create a new IdentityService that uses encoded IDs and will fallback REST for communication for
    * legacy IDs.
@@ -88,14 +108,62 @@ public class RestIdentityServiceClientConfig {
     }
 
     if (properties.getUuid().isEnabled()) {
-      log.info("Support UUIDs from service at {}", properties.getUuid().getUrl());
-      formats.add(
-          UuidFormat.of(
-              RestIdentityServiceClient.builder()
-                  .baseRestTemplate(restTemplate)
-                  .newRestTemplateSupplier(RestTemplate::new)
-                  .url(properties.getUuid().getUrl())
-                  .build()));
+      UuidFormatProperties uuid = properties.getUuid();
+      log.info("Support UUIDs from service at {}", uuid.serviceUrls());
+      if (uuid.isSmileEnabled()) {
+        log.info("Exchanging registrations as Smile");
+      }
+      if (uuid.getHedgePercentile() > 0) {
+        log.info("Hedging lookups slower than the {} percentile", uuid.getHedgePercentile());
+      }
+      ServiceEndpoints endpoints =
+          ServiceEndpoints.builder()
+              .urls(uuid.serviceUrls())
+              .failureThreshold(uuid.getOutlierFailureThreshold())
+              .slowResponse(Duration.ofMillis(uuid.getOutlierSlowResponseMillis()))
+              .ejection(Duration.ofSeconds(uuid.getOutlierEjectionSeconds()))
+              .hedgePercentile(uuid.getHedgePercentile())
+              .build();
+      resources.add(endpoints);
+      RestIdentityServiceClient restService =
+          RestIdentityServiceClient.builder()
+              .baseRestTemplate(restTemplate)
+              .newRestTemplateSupplier(RestTemplate::new)
+              .endpoints(endpoints)
+              .lookupCache(
+                  uuid.getLookupCacheMaximumEntries() > 0
+                      ? HttpLookupCache.of(uuid.getLookupCacheMaximumEntries())
+                      : null)
+              .smile(uuid.isSmileEnabled())
+              .registerUuidsOnly(uuid.isRegisterUuidsOnly())
+              .build();
+      IdentityService uuidService = restService;
+      if (properties.getUuid().isRegistrationFeedCacheEnabled()) {
+        log.info(
+            "Caching up to {} UUIDs from registration feed",
+            properties.getUuid().getRegistrationFeedMaximumEntries());
+        RegistrationFeedCache feedCache =
+            RegistrationFeedCache.builder()
+                .delegate(restService)
+                .feed(restService)
+                .pageSize(properties.getUuid().getRegistrationFeedPageSize())
+                .maximumEntries(properties.getUuid().getRegistrationFeedMaximumEntries())
+                .refreshInterval(
+                    Duration.ofSeconds(properties.getUuid().getRegistrationFeedIntervalSeconds()))
+                .build();
+        resources.add(feedCache);
+        uuidService = feedCache.start();
+      }
+      if (properties.getUuid().isSnapshotEnabled()) {
+        log.info("Support UUIDs from snapshot {}", properties.getUuid().getSnapshotFile());
+        formats.add(
+            SnapshotUuidFormat.of(
+                Path.of(properties.getUuid().getSnapshotFile()),
+                Duration.ofSeconds(properties.getUuid().getSnapshotCheckIntervalSeconds()),
+                uuidService));
+      } else {
+        formats.add(UuidFormat.of(uuidService));
+      }
     }
 
     return EncodingIdentityServiceClient.of(formats);
@@ -0,0 +1,369 @@
+package gov.va.api.health.ids.client;
+
+import gov.va.api.health.ids.api.IdentityService.UnknownIdentity;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The replicas of the identity service that requests are balanced across. Each request goes to the
+ * less busy of two randomly chosen replicas, by requests outstanding from this client, then by
+ * recent latency. This avoids both the herd behavior of always choosing the least busy replica and
+ * the cost of comparing every replica.
+ *
+ * <p>Replicas are passively checked. One that fails, or is slower than the slow response threshold,
+ * too many times in a row is ejected for a while. If every replica is ejected, they are all used
+ * again.
+ *
+ * <p>Lookups can be hedged: if the first replica has not answered by a percentile of recent lookup
+ * latency, the lookup is also sent to another replica. The first answer from either is used, where
+ * an unknown identity counts as an answer, and the other request is left to finish unobserved. This
+ * trades a few percent more requests for a much shorter tail. Hedged lookups run on a bounded pool
+ * of background threads, stopped when the endpoints are closed. When every thread is busy, or after
+ * closing, lookups run on the calling thread without hedging.
+ */
+@Slf4j
+public final class ServiceEndpoints implements AutoCloseable {
+  /** Hedging waits until enough lookups have been timed to estimate the percentile. */
+  static final int MINIMUM_HEDGE_SAMPLES = 32;
+
+  /** Lookups beyond this many in progress at once are not hedged. */
+  private static final int LOOKUP_THREADS = 64;
+
+  private static final double LATENCY_ALPHA = 0.2;
+
+  private final List<Endpoint> endpoints;
+
+  private final int failureThreshold;
+
+  private final long slowResponseNanos;
+
+  private final long ejectionNanos;
+
+  private final double hedgePercentile;
+
+  private final LongSupplier clock;
+
+  private final LatencyWindow lookupLatency = new LatencyWindow(256);
+
+  private final AtomicInteger hedgedRequests = new AtomicInteger();
+
+  private final ThreadPoolExecutor hedges;
+
+  @Builder
+  private ServiceEndpoints(
+      @NonNull List<String> urls,
+      int failureThreshold,
+      Duration slowResponse,
+      Duration ejection,
+      double hedgePercentile,
+      LongSupplier clock) {
+    if (urls.isEmpty()) {
+      throw new IllegalArgumentException("At least one URL is required");
+    }
+    if (hedgePercentile < 0 || hedgePercentile >= 1) {
+      throw new IllegalArgumentException("Hedge percentile must be at least 0 and less than 1");
+    }
+    this.endpoints = urls.stream().map(Endpoint::new).collect(Collectors.toUnmodifiableList());
+    this.failureThreshold = failureThreshold > 0 ? failureThreshold : 5;
+    this.slowResponseNanos = slowResponse == null ? 0 : slowResponse.toNanos();
+    this.ejectionNanos = (ejection == null ? Duration.ofSeconds(30) : ejection).toNanos();
+    this.hedgePercentile = hedgePercentile;
+    this.clock = clock == null ? System::nanoTime : clock;
+    if (hedgePercentile > 0 && endpoints.size() > 1) {
+      hedges =
+          new ThreadPoolExecutor(
+              0,
+              LOOKUP_THREADS,
+              60,
+              TimeUnit.SECONDS,
+              new SynchronousQueue<>(),
+              r -> {
+                Thread thread = new Thread(r, "ids-client-hedge");
+                thread.setDaemon(true);
+                return thread;
+              });
+    } else {
+      hedges = null;
+    }
+  }
+
+  /**
+   * Complete with the first answer, or the last failure if neither answers. An unknown identity is
+   * an answer, so it is not hidden by the other replica failing.
+   */
+  private static <T> CompletableFuture<T> firstAnswer(
+      CompletableFuture<T> primary, CompletableFuture<T> backup) {
+    CompletableFuture<T> winner = new CompletableFuture<>();
+    AtomicInteger failures = new AtomicInteger();
+    for (CompletableFuture<T> attempt : List.of(primary, backup)) {
+      attempt.whenComplete(
+          (result, failure) -> {
+            if (failure == null) {
+              winner.complete(result);
+            } else if (failure instanceof UnknownIdentity || failures.incrementAndGet() == 2) {
+              winner.completeExceptionally(failure);
+            }
+          });
+    }
+    return winner;
+  }
+
+  /** A single replica with default outlier ejection and no hedging. */
+  public static ServiceEndpoints of(String... urls) {
+    return builder().urls(List.of(urls)).build();
+  }
+
+  /** Invoke the request on the chosen replica, measuring it for balancing and ejection. */
+  private <T> T attempt(Endpoint endpoint, Function<String, T> request) {
+    long start = clock.getAsLong();
+    endpoint.outstanding.incrementAndGet();
+    try {
+      T result = request.apply(endpoint.url);
+      completed(endpoint, clock.getAsLong() - start, true);
+      return result;
+    } catch (UnknownIdentity e) {
+      /* The replica answered, there just was no such ID. */
+      completed(endpoint, clock.getAsLong() - start, true);
+      throw e;
+    } catch (RuntimeException e) {
+      completed(endpoint, clock.getAsLong() - start, false);
+      throw e;
+    } finally {
+      endpoint.outstanding.decrementAndGet();
+    }
+  }
+
+  /** Make the request on one replica. */
+  public <T> T call(Function<String, T> request) {
+    return attempt(choose(null), request);
+  }
+
+  /**
+   * Choose the less busy of two random replicas, other than the excluded one. Ejected replicas are
+   * only chosen if there are no others.
+   */
+  Endpoint choose(Endpoint excluded) {
+    long now = clock.getAsLong();
+    List<Endpoint> candidates = new ArrayList<>(endpoints.size());
+    for (Endpoint endpoint : endpoints) {
+      if (endpoint != excluded && now - endpoint.ejectedUntil >= 0) {
+        candidates.add(endpoint);
+      }
+    }
+    if (candidates.isEmpty()) {
+      for (Endpoint endpoint : endpoints) {
+        if (endpoint != excluded) {
+          candidates.add(endpoint);
+        }
+      }
+    }
+    if (candidates.isEmpty()) {
+      return endpoints.get(0);
+    }
+    if (candidates.size() == 1) {
+      return candidates.get(0);
+    }
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int i = random.nextInt(candidates.size());
+    int j = random.nextInt(candidates.size() - 1);
+    if (j >= i) {
+      j++;
+    }
+    Endpoint a = candidates.get(i);
+    Endpoint b = candidates.get(j);
+    int busier = Integer.compare(a.outstanding.get(), b.outstanding.get());
+    if (busier == 0) {
+      busier = Double.compare(a.latencyNanos, b.latencyNanos);
+    }
+    return busier <= 0 ? a : b;
+  }
+
+  /** Stop the lookup threads. Lookups made afterwards are not hedged. */
+  @Override
+  public void close() {
+    if (hedges != null) {
+      hedges.shutdownNow();
+    }
+  }
+
+  private synchronized void completed(Endpoint endpoint, long elapsedNanos, boolean succeeded) {
+    endpoint.latencyNanos =
+        endpoint.latencyNanos == 0
+            ? elapsedNanos
+            : endpoint.latencyNanos + LATENCY_ALPHA * (elapsedNanos - endpoint.latencyNanos);
+    boolean slow = slowResponseNanos > 0 && elapsedNanos >= slowResponseNanos;
+    if (succeeded && !slow) {
+      endpoint.consecutiveFailures = 0;
+      return;
+    }
+    endpoint.consecutiveFailures++;
+    if (endpoint.consecutiveFailures >= failureThreshold) {
+      endpoint.consecutiveFailures = 0;
+      endpoint.ejectedUntil = clock.getAsLong() + ejectionNanos;
+      log.warn(
+          "Ejecting {} for {} ms after {} {} responses",
+          endpoint.url,
+          TimeUnit.NANOSECONDS.toMillis(ejectionNanos),
+          failureThreshold,
+          slow ? "slow" : "failed");
+    }
+  }
+
+  /**
+   * Make a lookup, hedging it on a second replica if the first is slow to answer. Without hedging,
+   * this is the same as {@link #call(Function)}.
+   */
+  @SneakyThrows
+  public <T> T hedged(Function<String, T> lookup) {
+    if (hedges == null) {
+      return call(lookup);
+    }
+    long delay = lookupLatency.percentile(hedgePercentile);
+    Endpoint first = choose(null);
+    if (delay <= 0) {
+      return timed(first, lookup);
+    }
+    CompletableFuture<T> primary = new CompletableFuture<>();
+    if (!submit(primary, () -> timed(first, lookup))) {
+      return timed(first, lookup);
+    }
+    try {
+      return primary.get(delay, TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      /* Hedge. */
+    } catch (ExecutionException e) {
+      throw e.getCause();
+    }
+    CompletableFuture<T> backup = new CompletableFuture<>();
+    Endpoint second = choose(first);
+    CompletableFuture<T> answer =
+        submit(backup, () -> attempt(second, lookup)) ? firstAnswer(primary, backup) : primary;
+    if (answer != primary) {
+      hedgedRequests.incrementAndGet();
+    }
+    try {
+      return answer.get();
+    } catch (ExecutionException e) {
+      throw e.getCause();
+    }
+  }
+
+  /** The number of lookups that were sent to a second replica. */
+  int hedgedRequests() {
+    return hedgedRequests.get();
+  }
+
+  /**
+   * Run the request on a lookup thread, completing the future with its result. False if no thread
+   * is available.
+   */
+  private <T> boolean submit(CompletableFuture<T> future, Supplier<T> request) {
+    try {
+      hedges.execute(
+          () -> {
+            try {
+              future.complete(request.get());
+            } catch (RuntimeException e) {
+              future.completeExceptionally(e);
+            }
+          });
+      return true;
+    } catch (RejectedExecutionException e) {
+      return false;
+    }
+  }
+
+  /** Make a lookup and record its latency, which the hedging delay is based on. */
+  private <T> T timed(Endpoint endpoint, Function<String, T> lookup) {
+    long start = clock.getAsLong();
+    T result = attempt(endpoint, lookup);
+    lookupLatency.add(clock.getAsLong() - start);
+    return result;
+  }
+
+  List<String> urls() {
+    return endpoints.stream().map(e -> e.url).collect(Collectors.toList());
+  }
+
+  static final class Endpoint {
+    private final String url;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    private volatile double latencyNanos;
+
+    private volatile long ejectedUntil;
+
+    private int consecutiveFailures;
+
+    Endpoint(String url) {
+      this.url = url;
+      /* Avoid treating the initial value as a time in the future. */
+      this.ejectedUntil = Long.MIN_VALUE / 2;
+    }
+
+    String url() {
+      return url;
+    }
+  }
+
+  /** The most recent latencies, from which percentiles are computed. */
+  static final class LatencyWindow {
+    private final long[] samples;
+
+    private int next;
+
+    private int size;
+
+    private double cachedPercentile = -1;
+
+    private long cachedValue;
+
+    LatencyWindow(int capacity) {
+      samples = new long[capacity];
+    }
+
+    synchronized void add(long nanos) {
+      samples[next] = nanos;
+      next = (next + 1) % samples.length;
+      size = Math.min(size + 1, samples.length);
+      if (next % 16 == 0) {
+        cachedPercentile = -1;
+      }
+    }
+
+    /** The latency at the percentile, e.g. 0.95, or 0 if too few have been recorded. */
+    synchronized long percentile(double percentile) {
+      if (size < MINIMUM_HEDGE_SAMPLES) {
+        return 0;
+      }
+      if (cachedPercentile != percentile) {
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        cachedValue =
+            sorted[Math.max(0, Math.min(size - 1, (int) Math.ceil(percentile * size) - 1))];
+        cachedPercentile = percentile;
+      }
+      return cachedValue;
+    }
+  }
+}
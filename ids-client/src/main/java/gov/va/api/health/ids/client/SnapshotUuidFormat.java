@@ -0,0 +1,136 @@
+package gov.va.api.health.ids.client;
+
+import gov.va.api.health.ids.api.IdentityService;
+import gov.va.api.health.ids.api.ResourceIdentity;
+import gov.va.api.health.ids.client.Format.LookupHandler;
+import gov.va.api.health.ids.client.Format.LookupOnlyFormat;
+import gov.va.api.health.ids.client.UuidFormat.UuidLookupHandler;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Lookup only format that answers UUIDs from a local {@link UuidSnapshot} file, using a dedicated
+ * IdentityService (usually external) for UUIDs that are not in the snapshot.
+ */
+@UtilityClass
+public class SnapshotUuidFormat {
+  public static Format of(Path snapshot, Duration checkInterval, IdentityService delegate) {
+    return LookupOnlyFormat.builder()
+        .lookupHandler(SnapshotLookupHandler.of(snapshot, checkInterval, delegate))
+        .build();
+  }
+
+  /**
+   * This handler understands UUID and looks them up in the snapshot, delegating misses. The file is
+   * checked for replacement at most once per check interval, on the thread performing a lookup. A
+   * replaced file is mapped and swapped in whole, lookups already in progress finish against the
+   * previous snapshot. If the file does not exist or cannot be read, all lookups are delegated
+   * until it can be.
+   */
+  @Slf4j
+  public static class SnapshotLookupHandler implements LookupHandler {
+    @Getter private final Path snapshot;
+
+    private final long checkIntervalNanos;
+
+    private final UuidLookupHandler remote;
+
+    private final AtomicLong nextCheck;
+
+    private volatile Loaded loaded;
+
+    private SnapshotLookupHandler(Path snapshot, Duration checkInterval, IdentityService delegate) {
+      this.snapshot = snapshot;
+      this.checkIntervalNanos = checkInterval.toNanos();
+      this.remote = UuidLookupHandler.of(delegate);
+      reload();
+      nextCheck = new AtomicLong(System.nanoTime() + checkIntervalNanos);
+    }
+
+    public static SnapshotLookupHandler of(
+        Path snapshot, Duration checkInterval, IdentityService delegate) {
+      return new SnapshotLookupHandler(snapshot, checkInterval, delegate);
+    }
+
+    @Override
+    public boolean accept(String id) {
+      return remote.accept(id);
+    }
+
+    /** The snapshot currently in use, if any. */
+    UuidSnapshot current() {
+      Loaded current = loaded;
+      return current == null ? null : current.snapshot;
+    }
+
+    @Override
+    public List<ResourceIdentity> lookup(String id) {
+      long now = System.nanoTime();
+      long next = nextCheck.get();
+      if (now - next >= 0 && nextCheck.compareAndSet(next, now + checkIntervalNanos)) {
+        reload();
+      }
+      UuidSnapshot current = current();
+      ResourceIdentity identity = current == null ? null : current.find(id);
+      if (identity != null) {
+        return List.of(identity);
+      }
+      return remote.lookup(id);
+    }
+
+    /**
+     * Map the snapshot file if it has been replaced since it was last mapped. Returns true if a new
+     * snapshot is in use.
+     */
+    public synchronized boolean reload() {
+      Object version;
+      try {
+        BasicFileAttributes attributes = Files.readAttributes(snapshot, BasicFileAttributes.class);
+        version =
+            List.of(
+                Objects.toString(attributes.fileKey()),
+                attributes.lastModifiedTime(),
+                attributes.size());
+      } catch (IOException e) {
+        if (loaded == null) {
+          log.warn("UUID snapshot {} is not available: {}", snapshot, e.getMessage());
+        }
+        return false;
+      }
+      if (loaded != null && loaded.version.equals(version)) {
+        return false;
+      }
+      try {
+        long start = System.currentTimeMillis();
+        UuidSnapshot opened = UuidSnapshot.open(snapshot);
+        loaded = new Loaded(opened, version);
+        log.info(
+            "Loaded {} UUIDs from snapshot {} in {} ms",
+            opened.size(),
+            snapshot,
+            System.currentTimeMillis() - start);
+        return true;
+      } catch (IOException | RuntimeException e) {
+        log.warn("Failed to load UUID snapshot {}: {}", snapshot, e.getMessage());
+        return false;
+      }
+    }
+
+    @AllArgsConstructor
+    private static final class Loaded {
+      private final UuidSnapshot snapshot;
+
+      private final Object version;
+    }
+  }
+}
@@ -0,0 +1,269 @@
+package gov.va.api.health.ids.client;
+
+import gov.va.api.health.ids.api.ResourceIdentity;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import lombok.Getter;
+
+/**
+ * A read-only file of UUID public IDs and their identities, produced by {@link UuidSnapshotExport}
+ * and memory mapped for lookups. The file is never read into the heap, lookups binary search the
+ * mapped records directly.
+ *
+ * <pre>
+ * magic            8 bytes  IDSNAP01
+ * type count       int
+ * types            system and resource, each as a short length and UTF-8 bytes
+ * record count     int
+ * records          24 bytes each, ordered by UUID as unsigned numbers
+ *                    most significant bits      long
+ *                    least significant bits     long
+ *                    type                       short
+ *                    identifier length          short
+ *                    identifier offset          int
+ * identifiers      UTF-8 bytes
+ * </pre>
+ */
+public final class UuidSnapshot {
+  static final long MAGIC = 0x4944534E_41503031L;
+
+  private static final int RECORD_BYTES = 24;
+
+  private final MappedByteBuffer buffer;
+
+  private final List<String[]> types;
+
+  private final int recordsStart;
+
+  @Getter private final int size;
+
+  private final int identifiersStart;
+
+  private UuidSnapshot(MappedByteBuffer buffer) {
+    this.buffer = buffer;
+    if (buffer.getLong(0) != MAGIC) {
+      throw new IllegalArgumentException("Not a UUID snapshot");
+    }
+    int position = 8;
+    int typeCount = buffer.getInt(position);
+    position += 4;
+    types = new ArrayList<>(typeCount);
+    for (int i = 0; i < typeCount; i++) {
+      String system = readString(buffer, position);
+      position += 2 + buffer.getShort(position);
+      String resource = readString(buffer, position);
+      position += 2 + buffer.getShort(position);
+      types.add(new String[] {system, resource});
+    }
+    size = buffer.getInt(position);
+    recordsStart = position + 4;
+    identifiersStart = recordsStart + size * RECORD_BYTES;
+  }
+
+  /** Map the snapshot file. The file may be replaced, or removed, while it is mapped. */
+  public static UuidSnapshot open(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Snapshot is too large to map: " + file);
+      }
+      return new UuidSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  private static String readString(ByteBuffer buffer, int position) {
+    return readString(buffer, position + 2, buffer.getShort(position));
+  }
+
+  private static String readString(ByteBuffer buffer, int position, int length) {
+    byte[] bytes = new byte[length];
+    buffer.duplicate().position(position).get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /** Start writing a new snapshot, which replaces the file when committed. */
+  public static Writer writer(Path file) throws IOException {
+    return new Writer(file);
+  }
+
+  /** The identity for the UUID, or null if it is not in the snapshot or not a UUID. */
+  public ResourceIdentity find(String id) {
+    UUID uuid;
+    try {
+      uuid = UUID.fromString(id);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+    long msb = uuid.getMostSignificantBits();
+    long lsb = uuid.getLeastSignificantBits();
+    int low = 0;
+    int high = size - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int record = recordsStart + middle * RECORD_BYTES;
+      int compared = Long.compareUnsigned(buffer.getLong(record), msb);
+      if (compared == 0) {
+        compared = Long.compareUnsigned(buffer.getLong(record + 8), lsb);
+      }
+      if (compared < 0) {
+        low = middle + 1;
+      } else if (compared > 0) {
+        high = middle - 1;
+      } else {
+        String[] type = types.get(buffer.getShort(record + 16));
+        return ResourceIdentity.builder()
+            .system(type[0])
+            .resource(type[1])
+            .identifier(
+                readString(
+                    buffer,
+                    identifiersStart + buffer.getInt(record + 20),
+                    buffer.getShort(record + 18)))
+            .build();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Writes a snapshot. Records must be added in order, which is the order of the binary UUIDs
+   * stored by the identity service. Records and identifiers are written to temporary files next to
+   * the snapshot, which are combined on commit and moved into place in a single step, so readers
+   * see either the old or the new snapshot.
+   */
+  public static final class Writer implements AutoCloseable {
+    private final Path file;
+
+    private final Path records;
+
+    private final Path identifiers;
+
+    private final DataOutputStream recordsOut;
+
+    private final DataOutputStream identifiersOut;
+
+    private final List<String[]> types = new ArrayList<>();
+
+    private final Map<String, Short> typeCodes = new HashMap<>();
+
+    private int count;
+
+    private long lastMsb;
+
+    private long lastLsb;
+
+    private Writer(Path file) throws IOException {
+      this.file = file.toAbsolutePath();
+      Path directory = this.file.getParent();
+      records = Files.createTempFile(directory, file.getFileName().toString(), ".records");
+      identifiers = Files.createTempFile(directory, file.getFileName().toString(), ".identifiers");
+      recordsOut = open(records);
+      identifiersOut = open(identifiers);
+    }
+
+    private static DataOutputStream open(Path path) throws IOException {
+      return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      out.writeShort(bytes.length);
+      out.write(bytes);
+    }
+
+    /** Add the next record, which must come after the previous one. */
+    public void add(long msb, long lsb, String system, String resource, String identifier)
+        throws IOException {
+      if (count > 0) {
+        int compared = Long.compareUnsigned(msb, lastMsb);
+        if (compared < 0 || (compared == 0 && Long.compareUnsigned(lsb, lastLsb) <= 0)) {
+          throw new IllegalArgumentException(
+              "Records must be added in increasing UUID order: " + new UUID(msb, lsb));
+        }
+      }
+      byte[] bytes = identifier.getBytes(StandardCharsets.UTF_8);
+      if (bytes.length > Short.MAX_VALUE) {
+        throw new IllegalArgumentException("Identifier is too long: " + identifier);
+      }
+      recordsOut.writeLong(msb);
+      recordsOut.writeLong(lsb);
+      recordsOut.writeShort(typeCode(system, resource));
+      recordsOut.writeShort(bytes.length);
+      recordsOut.writeInt(identifiersOut.size());
+      identifiersOut.write(bytes);
+      lastMsb = msb;
+      lastLsb = lsb;
+      count++;
+    }
+
+    /** Discard anything that was not committed. */
+    @Override
+    public void close() throws IOException {
+      recordsOut.close();
+      identifiersOut.close();
+      Files.deleteIfExists(records);
+      Files.deleteIfExists(identifiers);
+    }
+
+    /** Write the snapshot and atomically replace the file. */
+    public void commit() throws IOException {
+      recordsOut.close();
+      identifiersOut.close();
+      Path combined = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+      try {
+        try (OutputStream stream = Files.newOutputStream(combined);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+          out.writeLong(MAGIC);
+          out.writeInt(types.size());
+          for (String[] type : types) {
+            writeString(out, type[0]);
+            writeString(out, type[1]);
+          }
+          out.writeInt(count);
+          Files.copy(records, out);
+          Files.copy(identifiers, out);
+        }
+        try (FileChannel channel = FileChannel.open(combined, StandardOpenOption.WRITE)) {
+          channel.force(true);
+        }
+        Files.move(
+            combined, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } finally {
+        Files.deleteIfExists(combined);
+      }
+    }
+
+    /** The number of records added so far. */
+    public int size() {
+      return count;
+    }
+
+    private short typeCode(String system, String resource) {
+      String key = system + '\u0000' + resource;
+      Short code = typeCodes.get(key);
+      if (code == null) {
+        if (types.size() > Short.MAX_VALUE) {
+          throw new IllegalStateException("Too many distinct systems and resources");
+        }
+        code = (short) types.size();
+        types.add(new String[] {system, resource});
+        typeCodes.put(key, code);
+      }
+      return code;
+    }
+  }
+}
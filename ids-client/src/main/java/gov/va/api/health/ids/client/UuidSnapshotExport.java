@@ -0,0 +1,114 @@
+package gov.va.api.health.ids.client;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+import gov.va.api.health.ids.api.StoredPublicId;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+import lombok.AllArgsConstructor;
+import lombok.SneakyThrows;
+
+/**
+ * Export every UUID public ID from the identity service database to a {@link UuidSnapshot}. Rows
+ * are streamed in UUID order, so the export uses a small, fixed amount of memory regardless of the
+ * size of the table. Public IDs that are not UUIDs are skipped, clients continue to look those up
+ * from the identity service.
+ */
+@AllArgsConstructor(staticName = "of")
+public class UuidSnapshotExport {
+  /**
+   * Stored UUIDs sort as unsigned numbers, see {@link StoredPublicId}, which is the order the
+   * snapshot requires.
+   */
+  private static final String QUERY =
+      "select uuid, system, resource, identifier from resource_identity_detail order by uuid";
+
+  private final String url;
+
+  private final String user;
+
+  private final String password;
+
+  private static String appName() {
+    return System.getProperty("app.name", "ids-client-tools");
+  }
+
+  /** Export from the command line. */
+  public static void main(String[] args) {
+    if (args.length != 2) {
+      usage();
+      return;
+    }
+    int rows =
+        UuidSnapshotExport.of(args[0], property("user"), property("password"))
+            .export(Path.of(args[1]));
+    System.out.println(rows + " UUIDs exported to " + args[1]);
+  }
+
+  private static String property(String name) {
+    String value = System.getProperty(name);
+    if (isBlank(value)) {
+      throw new Tools.MissingProperty(name);
+    }
+    return value;
+  }
+
+  private static void usage() {
+    System.out.println(
+        String.join(
+            "\n",
+            List.of(
+                "Usage:",
+                appName() + " <jdbc-url> <snapshot-file>",
+                "System properties:",
+                "-Duser=<database user>",
+                "-Dpassword=<database password>")));
+  }
+
+  /** Write the snapshot, replacing the file once complete. Returns the number of UUIDs exported. */
+  @SneakyThrows({SQLException.class, IOException.class})
+  public int export(Path file) {
+    try (Connection connection = DriverManager.getConnection(url, user, password);
+        UuidSnapshot.Writer writer = UuidSnapshot.writer(file)) {
+      connection.setAutoCommit(false);
+      connection.setReadOnly(true);
+      try (PreparedStatement statement =
+          connection.prepareStatement(
+              QUERY, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+        statement.setFetchSize(fetchSize());
+        try (ResultSet rs = statement.executeQuery()) {
+          while (rs.next()) {
+            UUID uuid = StoredPublicId.uuidOf(rs.getBytes(1));
+            if (uuid == null) {
+              continue;
+            }
+            writer.add(
+                uuid.getMostSignificantBits(),
+                uuid.getLeastSignificantBits(),
+                rs.getString(2),
+                rs.getString(3),
+                rs.getString(4));
+          }
+        }
+      }
+      connection.rollback();
+      writer.commit();
+      return writer.size();
+    }
+  }
+
+  /**
+   * The MySQL driver reads the entire result into memory unless the fetch size is exactly
+   * Integer.MIN_VALUE, which makes it stream one row at a time. Other drivers page by fetch size.
+   */
+  private int fetchSize() {
+    return url.startsWith("jdbc:mysql:") ? Integer.MIN_VALUE : 10_000;
+  }
+}
@@ -2,6 +2,7 @@ package gov.va.api.health.ids.client;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
 
 import gov.va.api.health.ids.api.ResourceIdentity;
 import gov.va.api.health.ids.client.EncryptingIdEncoder.Codebook;
@@ -55,6 +56,23 @@ public class EncryptingIdEncoderTest {
         .isThrownBy(() -> encoder.decode(encoded.substring(0, encoded.length() - 7)));
   }
 
+  @Test
+  public void badIdDoesNotCaptureStackTrace() {
+    EncryptingIdEncoder encoder = encoder();
+    String encoded =
+        encoder.encode(
+            ResourceIdentity.builder()
+                .system("WHATEVER")
+                .resource("ANYTHING")
+                .identifier("1")
+                .build());
+    BadId badId =
+        catchThrowableOfType(() -> encoder.decode(encoded.replaceAll("[A-M]", "X")), BadId.class);
+    assertThat(badId.getStackTrace()).isEmpty();
+    assertThat(badId.getCause().getStackTrace()).isNotEmpty();
+    assertThat(new BadId("nope").getStackTrace()).isEmpty();
+  }
+
   @Test
   public void codebookShortens() {
     Codebook cb =
@@ -0,0 +1,185 @@
+package gov.va.api.health.ids.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+import gov.va.api.health.autoconfig.configuration.JacksonConfig;
+import gov.va.api.health.ids.api.IdentityService.UnknownIdentity;
+import gov.va.api.health.ids.api.ResourceIdentity;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+public class HttpLookupCacheTest {
+  private static final String UUID = "4d1f5a3e-9c1b-4f7a-8e2d-0b6c3a9f1e25";
+
+  private static final String IDENTITIES =
+      "[{\"system\":\"CDW\",\"resource\":\"PATIENT\",\"identifier\":\"123\"}]";
+
+  private final AtomicLong now = new AtomicLong();
+
+  private final RestTemplate restTemplate =
+      new RestTemplate(
+          List.of(new MappingJackson2HttpMessageConverter(JacksonConfig.createMapper())));
+
+  private final MockRestServiceServer server = MockRestServiceServer.bindTo(restTemplate).build();
+
+  private final RestIdentityServiceClient client =
+      new RestIdentityServiceClient(
+          restTemplate,
+          ServiceEndpoints.of("http://ids"),
+          RestTemplate::new,
+          new HttpLookupCache(10, now::get),
+          false,
+          false);
+
+  private static HttpHeaders cacheControl(String value) {
+    HttpHeaders headers = new HttpHeaders();
+    headers.setCacheControl(value);
+    return headers;
+  }
+
+  private static HttpHeaders found(String eTag, String cacheControl) {
+    HttpHeaders headers = cacheControl(cacheControl);
+    headers.setETag(eTag);
+    return headers;
+  }
+
+  private static List<ResourceIdentity> identities(String identifier) {
+    return List.of(
+        ResourceIdentity.builder()
+            .system("CDW")
+            .resource("PATIENT")
+            .identifier(identifier)
+            .build());
+  }
+
+  private void advanceSeconds(long seconds) {
+    now.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+  }
+
+  @Test
+  public void freshLookupsAreNotRequestedAgain() {
+    server
+        .expect(ExpectedCount.once(), requestTo("http://ids/api/resourceIdentity/" + UUID))
+        .andRespond(
+            withSuccess(IDENTITIES, MediaType.APPLICATION_JSON)
+                .headers(found("\"1\"", "max-age=60, public, immutable")));
+    assertThat(client.lookup(UUID)).isEqualTo(identities("123"));
+    advanceSeconds(59);
+    assertThat(client.lookup(UUID.toUpperCase(Locale.ENGLISH))).isEqualTo(identities("123"));
+    server.verify();
+  }
+
+  @Test
+  public void leastRecentlyUsedResponsesAreDropped() {
+    HttpLookupCache cache = new HttpLookupCache(2, now::get);
+    HttpHeaders headers = found("\"1\"", "max-age=60");
+    cache.found("a", identities("a"), headers);
+    cache.found("b", identities("b"), headers);
+    assertThat(cache.get("a")).isNotNull();
+    cache.found("c", identities("c"), headers);
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.get("a")).isNotNull();
+    assertThat(cache.get("b")).isNull();
+    assertThat(cache.get("c")).isNotNull();
+  }
+
+  @Test
+  public void maxAgeIsReadFromCacheControl() {
+    assertThat(HttpLookupCache.maxAgeSeconds(new HttpHeaders())).isEqualTo(-1);
+    assertThat(HttpLookupCache.maxAgeSeconds(cacheControl("max-age=31536000, public, immutable")))
+        .isEqualTo(31536000);
+    assertThat(HttpLookupCache.maxAgeSeconds(cacheControl("private, max-age=5"))).isEqualTo(5);
+    assertThat(HttpLookupCache.maxAgeSeconds(cacheControl("no-cache, max-age=5"))).isZero();
+    assertThat(HttpLookupCache.maxAgeSeconds(cacheControl("max-age=5, no-store"))).isEqualTo(-1);
+    assertThat(HttpLookupCache.maxAgeSeconds(cacheControl("max-age=soon"))).isEqualTo(-1);
+    assertThat(HttpLookupCache.maxAgeSeconds(cacheControl("public"))).isEqualTo(-1);
+  }
+
+  @Test
+  public void onlyUuidsAreMatchedWithoutRegardToCase() {
+    HttpLookupCache cache = new HttpLookupCache(10, now::get);
+    HttpHeaders headers = found("\"1\"", "max-age=60");
+    cache.found(UUID, identities("a"), headers);
+    cache.found("I2-ABC", identities("b"), headers);
+    assertThat(cache.get(UUID.toUpperCase(Locale.ENGLISH))).isNotNull();
+    assertThat(cache.get("I2-ABC")).isNotNull();
+    assertThat(cache.get("i2-abc")).isNull();
+  }
+
+  @Test
+  public void registeringForgetsUnknownIds() {
+    server
+        .expect(ExpectedCount.once(), requestTo("http://ids/api/resourceIdentity/" + UUID))
+        .andRespond(withStatus(HttpStatus.NOT_FOUND).headers(cacheControl("max-age=30, public")));
+    server
+        .expect(ExpectedCount.once(), requestTo("http://ids/api/resourceIdentity"))
+        .andRespond(
+            withSuccess(
+                "[{\"uuid\":\"" + UUID + "\",\"resourceIdentities\":" + IDENTITIES + "}]",
+                MediaType.APPLICATION_JSON));
+    server
+        .expect(ExpectedCount.once(), requestTo("http://ids/api/resourceIdentity/" + UUID))
+        .andRespond(
+            withSuccess(IDENTITIES, MediaType.APPLICATION_JSON)
+                .headers(found("\"1\"", "max-age=60")));
+    assertThatExceptionOfType(UnknownIdentity.class).isThrownBy(() -> client.lookup(UUID));
+    client.register(identities("123"));
+    assertThat(client.lookup(UUID)).isEqualTo(identities("123"));
+    server.verify();
+  }
+
+  @Test
+  public void responsesThatMustNotBeStoredAreNotKept() {
+    HttpLookupCache cache = new HttpLookupCache(10, now::get);
+    cache.found("a", identities("a"), found("\"1\"", "no-store"));
+    cache.notFound("b", new HttpHeaders());
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test
+  public void staleLookupsAreRevalidated() {
+    server
+        .expect(ExpectedCount.once(), requestTo("http://ids/api/resourceIdentity/abc"))
+        .andRespond(
+            withSuccess(IDENTITIES, MediaType.APPLICATION_JSON)
+                .headers(found("\"1\"", "max-age=60")));
+    server
+        .expect(ExpectedCount.once(), requestTo("http://ids/api/resourceIdentity/abc"))
+        .andExpect(header(HttpHeaders.IF_NONE_MATCH, "\"1\""))
+        .andRespond(withStatus(HttpStatus.NOT_MODIFIED).headers(found("\"1\"", "max-age=60")));
+    assertThat(client.lookup("abc")).isEqualTo(identities("123"));
+    advanceSeconds(60);
+    assertThat(client.lookup("abc")).isEqualTo(identities("123"));
+    advanceSeconds(30);
+    assertThat(client.lookup("abc")).isEqualTo(identities("123"));
+    server.verify();
+  }
+
+  @Test
+  public void unknownIdsAreRememberedBriefly() {
+    server
+        .expect(ExpectedCount.twice(), requestTo("http://ids/api/resourceIdentity/abc"))
+        .andRespond(withStatus(HttpStatus.NOT_FOUND).headers(cacheControl("max-age=5, public")));
+    assertThatExceptionOfType(UnknownIdentity.class).isThrownBy(() -> client.lookup("abc"));
+    advanceSeconds(4);
+    assertThatExceptionOfType(UnknownIdentity.class).isThrownBy(() -> client.lookup("abc"));
+    advanceSeconds(1);
+    assertThatExceptionOfType(UnknownIdentity.class).isThrownBy(() -> client.lookup("abc"));
+    server.verify();
+  }
+}
@@ -6,6 +6,7 @@ import static org.junit.jupiter.params.provider.Arguments.arguments;
 import gov.va.api.health.ids.client.IdsClientProperties.EncodedIdsFormatProperties;
 import gov.va.api.health.ids.client.IdsClientProperties.PatientIcnFormatProperties;
 import gov.va.api.health.ids.client.IdsClientProperties.UuidFormatProperties;
+import java.util.List;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -62,6 +63,64 @@ class IdsClientPropertiesTest {
     assertThat(empty.getUuid()).isNotNull();
   }
 
+  @Test
+  void registrationFeedRequiresReasonablePaging() {
+    var p =
+        UuidFormatProperties.builder()
+            .enabled(true)
+            .url("http://uuid.com")
+            .registrationFeedEnabled(true)
+            .build();
+    assertThat(p.isRegistrationFeedCacheEnabled()).isTrue();
+    assertThat(p.isValid()).isTrue();
+    p.setRegistrationFeedPageSize(10_001);
+    assertThat(p.isValid()).isFalse();
+    p.setRegistrationFeedPageSize(500);
+    p.setRegistrationFeedIntervalSeconds(0);
+    assertThat(p.isValid()).isFalse();
+    p.setEnabled(false);
+    assertThat(p.isRegistrationFeedCacheEnabled()).isFalse();
+  }
+
+  @Test
+  void replicasAndOutlierEjectionAreValidated() {
+    var p =
+        UuidFormatProperties.builder()
+            .enabled(true)
+            .urls(List.of("http://uuid-1.com", " "))
+            .build();
+    assertThat(p.isValid()).isTrue();
+    p.setUrl("http://uuid.com");
+    assertThat(p.serviceUrls()).containsExactly("http://uuid.com", "http://uuid-1.com");
+    p.setHedgePercentile(0.95);
+    assertThat(p.isValid()).isTrue();
+    p.setHedgePercentile(1);
+    assertThat(p.isValid()).isFalse();
+    p.setHedgePercentile(0);
+    p.setOutlierEjectionSeconds(0);
+    assertThat(p.isValid()).isFalse();
+    p.setOutlierEjectionSeconds(30);
+    p.setOutlierFailureThreshold(0);
+    assertThat(p.isValid()).isFalse();
+    p.setOutlierFailureThreshold(5);
+    p.setUrl(null);
+    p.setUrls(List.of());
+    assertThat(p.isValid()).isFalse();
+  }
+
+  @Test
+  void snapshotIsOnlyEnabledWithUuidsAndFile() {
+    var p = UuidFormatProperties.builder().enabled(true).url("http://uuid.com").build();
+    assertThat(p.isSnapshotEnabled()).isFalse();
+    p.setSnapshotFile("uuids.snapshot");
+    assertThat(p.isSnapshotEnabled()).isTrue();
+    assertThat(p.isValid()).isTrue();
+    p.setSnapshotCheckIntervalSeconds(0);
+    assertThat(p.isValid()).isFalse();
+    p.setEnabled(false);
+    assertThat(p.isSnapshotEnabled()).isFalse();
+  }
+
   @Test
   void toStringDoesNotLeakPassword() {
     var p =
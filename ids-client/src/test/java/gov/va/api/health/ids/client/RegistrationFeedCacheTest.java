@@ -0,0 +1,118 @@
+package gov.va.api.health.ids.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import gov.va.api.health.ids.api.IdentityService;
+import gov.va.api.health.ids.api.Registration;
+import gov.va.api.health.ids.api.RegistrationPage;
+import gov.va.api.health.ids.api.ResourceIdentity;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class RegistrationFeedCacheTest {
+  @Mock IdentityService delegate;
+
+  @Mock RegistrationFeed feed;
+
+  private static ResourceIdentity identity(int i) {
+    return ResourceIdentity.builder().system("CDW").resource("PATIENT").identifier("p" + i).build();
+  }
+
+  private static RegistrationPage page(long next, int from, int to) {
+    return RegistrationPage.builder()
+        .next(next)
+        .registrations(
+            IntStream.range(from, to)
+                .mapToObj(
+                    i ->
+                        Registration.builder()
+                            .uuid("U" + i)
+                            .resourceIdentities(List.of(identity(i)))
+                            .build())
+                .collect(Collectors.toList()))
+        .build();
+  }
+
+  private RegistrationFeedCache cache(int maximumEntries) {
+    return RegistrationFeedCache.builder()
+        .delegate(delegate)
+        .feed(feed)
+        .pageSize(2)
+        .maximumEntries(maximumEntries)
+        .refreshInterval(Duration.ofMinutes(1))
+        .build();
+  }
+
+  @Test
+  void cacheEvictsLeastRecentlyUsedAtMaximumEntries() {
+    var cache = cache(2);
+    when(feed.registrationsAfter(0, 2)).thenReturn(page(20, 0, 2));
+    when(feed.registrationsAfter(20, 2)).thenReturn(page(30, 2, 3));
+    assertThat(cache.refresh()).isEqualTo(3);
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.evictions()).isEqualTo(1);
+    assertThat(cache.lookup("U1")).containsExactly(identity(1));
+    when(delegate.register(List.of(identity(9)))).thenReturn(page(0, 9, 10).registrations());
+    cache.register(List.of(identity(9)));
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.evictions()).isEqualTo(2);
+    assertThat(cache.lookup("U1")).containsExactly(identity(1));
+    assertThat(cache.lookup("U9")).containsExactly(identity(9));
+    when(delegate.lookup("U2")).thenReturn(List.of(identity(2)));
+    assertThat(cache.lookup("U2")).containsExactly(identity(2));
+  }
+
+  @Test
+  void failedRefreshResumesFromLastPage() {
+    var cache = cache(100);
+    when(feed.registrationsAfter(0, 2)).thenReturn(page(20, 0, 2));
+    when(feed.registrationsAfter(20, 2)).thenThrow(new IllegalStateException("boom"));
+    assertThat(cache.refresh()).isEqualTo(2);
+    assertThat(cache.cursor()).isEqualTo(20);
+    Mockito.reset(feed);
+    when(feed.registrationsAfter(20, 2)).thenReturn(page(30, 2, 3));
+    assertThat(cache.refresh()).isEqualTo(1);
+    assertThat(cache.cursor()).isEqualTo(30);
+    assertThat(cache.size()).isEqualTo(3);
+  }
+
+  @Test
+  void lookupUsesCacheThenDelegate() {
+    var cache = cache(100);
+    when(feed.registrationsAfter(0, 2)).thenReturn(page(20, 0, 2));
+    when(feed.registrationsAfter(20, 2)).thenReturn(page(30, 2, 3));
+    assertThat(cache.refresh()).isEqualTo(3);
+    assertThat(cache.lookup("u1")).containsExactly(identity(1));
+    assertThat(cache.lookup("U2")).containsExactly(identity(2));
+    when(delegate.lookup("U7")).thenReturn(List.of(identity(7)));
+    assertThat(cache.lookup("U7")).containsExactly(identity(7));
+    verify(delegate, never()).lookup("U1");
+  }
+
+  @Test
+  void refreshWithNothingNewKeepsCursor() {
+    var cache = cache(100);
+    when(feed.registrationsAfter(0, 2)).thenReturn(page(0, 0, 0));
+    assertThat(cache.refresh()).isEqualTo(0);
+    assertThat(cache.cursor()).isEqualTo(0);
+  }
+
+  @Test
+  void registrationsAreCached() {
+    var cache = cache(100);
+    when(delegate.register(List.of(identity(4)))).thenReturn(page(0, 4, 5).registrations());
+    assertThat(cache.register(List.of(identity(4)))).hasSize(1);
+    assertThat(cache.lookup("U4")).containsExactly(identity(4));
+  }
+}
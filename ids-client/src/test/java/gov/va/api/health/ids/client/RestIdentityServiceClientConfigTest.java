@@ -14,9 +14,11 @@ import gov.va.api.health.ids.client.IdsClientProperties.PatientIcnFormatProperti
 import gov.va.api.health.ids.client.IdsClientProperties.UuidFormatProperties;
 import gov.va.api.health.ids.client.PatientIcnFormat.PatientIcnLookupHandler;
 import gov.va.api.health.ids.client.PatientIcnFormat.PatientRegistrationHandler;
+import gov.va.api.health.ids.client.SnapshotUuidFormat.SnapshotLookupHandler;
 import gov.va.api.health.ids.client.UuidFormat.UuidLookupHandler;
 import java.util.List;
 import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
@@ -28,7 +30,6 @@ import org.springframework.web.client.RestTemplate;
 
 @ExtendWith(MockitoExtension.class)
 public class RestIdentityServiceClientConfigTest {
-
   @Mock RestTemplate rt;
 
   public static Stream<Arguments> createWithFormats() {
@@ -115,4 +116,43 @@ public class RestIdentityServiceClientConfigTest {
       assertFormatType(formats.next(), UuidLookupHandler.class, null);
     }
   }
+
+  @Test
+  void createWithRegistrationFeedCache() throws Exception {
+    IdsClientProperties properties =
+        IdsClientProperties.builder()
+            .uuid(
+                UuidFormatProperties.builder()
+                    .url("http://whatever.com")
+                    .enabled(true)
+                    .registrationFeedEnabled(true)
+                    .build())
+            .build();
+    var config = new RestIdentityServiceClientConfig(rt, properties);
+    EncodingIdentityServiceClient c =
+        (EncodingIdentityServiceClient) config.encodingIdentityServiceClient(null);
+    UuidLookupHandler handler = (UuidLookupHandler) c.formats().get(0).lookupHandler();
+    assertThat(handler.delegate()).isInstanceOf(RegistrationFeedCache.class);
+    assertThat(((RegistrationFeedCache) handler.delegate()).running()).isTrue();
+    config.destroy();
+    assertThat(((RegistrationFeedCache) handler.delegate()).running()).isFalse();
+  }
+
+  @Test
+  void createWithSnapshotFormat() {
+    IdsClientProperties properties =
+        IdsClientProperties.builder()
+            .uuid(
+                UuidFormatProperties.builder()
+                    .url("http://whatever.com")
+                    .enabled(true)
+                    .snapshotFile("does-not-exist.snapshot")
+                    .build())
+            .build();
+    EncodingIdentityServiceClient c =
+        (EncodingIdentityServiceClient)
+            new RestIdentityServiceClientConfig(rt, properties).encodingIdentityServiceClient(null);
+    assertThat(c.formats()).hasSize(1);
+    assertFormatType(c.formats().get(0), SnapshotLookupHandler.class, null);
+  }
 }
@@ -5,33 +5,56 @@ import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.content;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import gov.va.api.health.autoconfig.configuration.JacksonConfig;
 import gov.va.api.health.ids.api.IdentityService.LookupFailed;
 import gov.va.api.health.ids.api.IdentityService.RegistrationFailed;
 import gov.va.api.health.ids.api.IdentityService.UnknownIdentity;
 import gov.va.api.health.ids.api.Registration;
+import gov.va.api.health.ids.api.RegistrationPage;
 import gov.va.api.health.ids.api.ResourceIdentity;
+import gov.va.api.health.ids.client.RegistrationFeed.RegistrationFeedFailed;
+import gov.va.api.health.ids.client.RestIdentityServiceClient.FeedErrorHandler;
 import gov.va.api.health.ids.client.RestIdentityServiceClient.LookupErrorHandler;
 import gov.va.api.health.ids.client.RestIdentityServiceClient.RegisterErrorHandler;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import lombok.SneakyThrows;
 import org.assertj.core.util.Lists;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 
 @SuppressWarnings("unchecked")
 public class RestIdentityServiceClientTest {
+  private static final String SMILE = "application/x-jackson-smile";
+
   @Mock RestTemplate baseRestTemplate;
   @Mock RestTemplate restTemplate;
   private RestIdentityServiceClient client;
@@ -71,6 +94,16 @@ public class RestIdentityServiceClientTest {
     return Arrays.asList(a, b, c);
   }
 
+  @SneakyThrows
+  @Test
+  public void feedErrorHandlerTreatsNotFoundAsFailure() {
+    ClientHttpResponse r = mock(ClientHttpResponse.class);
+    when(r.getStatusCode()).thenReturn(HttpStatus.NOT_FOUND);
+    FeedErrorHandler h = new FeedErrorHandler();
+    assertThat(h.hasError(r)).isTrue();
+    assertThatExceptionOfType(RegistrationFeedFailed.class).isThrownBy(() -> h.handleError(r));
+  }
+
   @SneakyThrows
   @Test
   public void lookupErrorHandlerAllowsOk() {
@@ -145,6 +178,15 @@ public class RestIdentityServiceClientTest {
         .thenReturn(new ResponseEntity<>(body, status));
   }
 
+  @SneakyThrows
+  private String ndjson(List<Registration> registrations) {
+    StringBuilder body = new StringBuilder();
+    for (Registration registration : registrations) {
+      body.append(JacksonConfig.createMapper().writeValueAsString(registration)).append('\n');
+    }
+    return body.toString();
+  }
+
   @SneakyThrows
   @Test()
   public void registerErrorHandlerAllowsOk() {
@@ -165,6 +207,63 @@ public class RestIdentityServiceClientTest {
     assertThatExceptionOfType(RegistrationFailed.class).isThrownBy(() -> h.handleError(r));
   }
 
+  @SneakyThrows
+  private long registerStream(String responseBody, List<Registration> actual) {
+    ArgumentCaptor<RequestCallback> requestCallback =
+        ArgumentCaptor.forClass(RequestCallback.class);
+    ArgumentCaptor<ResponseExtractor<Long>> responseExtractor =
+        ArgumentCaptor.forClass(ResponseExtractor.class);
+    when(restTemplate.execute(
+            Mockito.eq("http://whatever.com/api/v1/ids"),
+            Mockito.eq(HttpMethod.POST),
+            requestCallback.capture(),
+            responseExtractor.capture()))
+        .thenAnswer(
+            invocation -> {
+              MockClientHttpRequest request = new MockClientHttpRequest();
+              requestCallback.getValue().doWithRequest(request);
+              assertThat(request.getHeaders().getContentType())
+                  .isEqualTo(MediaType.parseMediaType("application/x-ndjson"));
+              assertThat(request.getBodyAsString().split("\n")).hasSize(3);
+              return responseExtractor
+                  .getValue()
+                  .extractData(
+                      new MockClientHttpResponse(
+                          responseBody.getBytes(StandardCharsets.UTF_8), HttpStatus.CREATED));
+            });
+    return client.registerStream(identities().stream(), actual::add);
+  }
+
+  @Test
+  public void registerStreamFailsWhenResponseEndsEarly() {
+    assertThatExceptionOfType(RegistrationFailed.class)
+        .isThrownBy(() -> registerStream(ndjson(registrations().subList(0, 2)), new ArrayList<>()))
+        .withMessageContaining("Expected 3 registrations, but 2");
+  }
+
+  @Test
+  public void registerStreamFailsWhenServiceReportsError() {
+    List<Registration> actual = new ArrayList<>();
+    assertThatExceptionOfType(RegistrationFailed.class)
+        .isThrownBy(
+            () ->
+                registerStream(
+                    ndjson(registrations().subList(0, 1))
+                        + "{\"timestamp\":1,\"type\":\"Oops\",\"message\":\"boom\"}\n",
+                    actual))
+        .withMessageContaining("boom");
+    assertThat(actual).containsExactly(registrations().get(0));
+  }
+
+  @Test
+  public void registerStreamWritesAndReadsNewlineDelimitedJson() {
+    List<Registration> expected = registrations();
+    List<Registration> actual = new ArrayList<>();
+    assertThat(registerStream(ndjson(expected), actual)).isEqualTo(3);
+    assertThat(actual).isEqualTo(expected);
+    verify(restTemplate).setErrorHandler(Mockito.any(RegisterErrorHandler.class));
+  }
+
   @Test
   public void registrationFailedExceptionIsThrownWhenBodyIsEmpty() {
     mockRegisterResponse(HttpStatus.OK, Lists.emptyList());
@@ -177,6 +276,33 @@ public class RestIdentityServiceClientTest {
     assertRegisterErrorHandler();
   }
 
+  @Test
+  @SneakyThrows
+  public void registrationIsSmileWhenEnabled() {
+    RestTemplate base = new RestTemplate();
+    MockRestServiceServer server = MockRestServiceServer.bindTo(base).build();
+    ObjectMapper smile = new ObjectMapper(new SmileFactory());
+    List<Registration> registrations =
+        List.of(Registration.builder().uuid("u").resourceIdentities(identities()).build());
+    server
+        .expect(requestTo("http://ids/api/resourceIdentity"))
+        .andExpect(content().contentType(SMILE))
+        .andExpect(header(HttpHeaders.ACCEPT, SMILE + ", " + MediaType.APPLICATION_JSON))
+        .andExpect(
+            request ->
+                assertThat(smile.readTree(((MockClientHttpRequest) request).getBodyAsBytes()))
+                    .isEqualTo(smile.valueToTree(identities())))
+        .andRespond(
+            withStatus(HttpStatus.CREATED)
+                .contentType(MediaType.parseMediaType(SMILE))
+                .body(smile.writeValueAsBytes(registrations)));
+    RestIdentityServiceClient smileClient =
+        new RestIdentityServiceClient(
+            base, ServiceEndpoints.of("http://ids"), RestTemplate::new, null, true, false);
+    assertThat(smileClient.register(identities())).isEqualTo(registrations);
+    server.verify();
+  }
+
   @Test
   public void registrationReturnsResourceIdentities() {
     List<Registration> expected = registrations();
@@ -197,6 +323,63 @@ public class RestIdentityServiceClientTest {
     return Arrays.asList(x, y, z);
   }
 
+  @Test
+  public void registrationsAfterReturnsPage() {
+    RegistrationPage expected =
+        RegistrationPage.builder().next(8).registrations(registrations()).build();
+    when(restTemplate.exchange(
+            Mockito.anyString(),
+            Mockito.eq(HttpMethod.GET),
+            Mockito.any(HttpEntity.class),
+            Mockito.eq(RegistrationPage.class),
+            Mockito.eq(5L),
+            Mockito.eq(3)))
+        .thenReturn(new ResponseEntity<>(expected, HttpStatus.OK));
+    assertThat(client.registrationsAfter(5, 3)).isEqualTo(expected);
+    verify(restTemplate).setErrorHandler(Mockito.any(FeedErrorHandler.class));
+  }
+
+  @Test
+  public void registrationsArePairedWithUuidsWhenOnlyUuidsAreRequested() {
+    RestTemplate base =
+        new RestTemplate(
+            List.of(new MappingJackson2HttpMessageConverter(JacksonConfig.createMapper())));
+    MockRestServiceServer server = MockRestServiceServer.bindTo(base).build();
+    server
+        .expect(requestTo("http://ids/api/resourceIdentity?response=uuids"))
+        .andRespond(
+            withStatus(HttpStatus.CREATED)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body("[\"ua\",\"ub\",\"uc\"]"));
+    server
+        .expect(requestTo("http://ids/api/resourceIdentity?response=uuids"))
+        .andRespond(
+            withStatus(HttpStatus.CREATED)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body("[\"ua\"]"));
+    RestIdentityServiceClient uuidsOnlyClient =
+        new RestIdentityServiceClient(
+            base, ServiceEndpoints.of("http://ids"), RestTemplate::new, null, false, true);
+    List<ResourceIdentity> identities = identities();
+    assertThat(uuidsOnlyClient.register(identities))
+        .containsExactly(
+            Registration.builder()
+                .uuid("ua")
+                .resourceIdentities(List.of(identities.get(0)))
+                .build(),
+            Registration.builder()
+                .uuid("ub")
+                .resourceIdentities(List.of(identities.get(1)))
+                .build(),
+            Registration.builder()
+                .uuid("uc")
+                .resourceIdentities(List.of(identities.get(2)))
+                .build());
+    assertThatExceptionOfType(RegistrationFailed.class)
+        .isThrownBy(() -> uuidsOnlyClient.registerUuids(identities));
+    server.verify();
+  }
+
   @Test
   public void unknownIdentityExceptionIsThrownWhenStatusIs404() {
     assertLookupErrorHandler(UnknownIdentity.class, HttpStatus.NOT_FOUND);
@@ -0,0 +1,282 @@
+package gov.va.api.health.ids.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import gov.va.api.health.ids.api.IdentityService.UnknownIdentity;
+import gov.va.api.health.ids.client.ServiceEndpoints.LatencyWindow;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+
+public class ServiceEndpointsTest {
+  private final AtomicLong now = new AtomicLong();
+
+  private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+
+  private Function<String, String> failingAt(String failing, RuntimeException failure) {
+    return url -> {
+      requests.computeIfAbsent(url, u -> new AtomicInteger()).incrementAndGet();
+      if (url.equals(failing)) {
+        throw failure;
+      }
+      return url;
+    };
+  }
+
+  private int requestsTo(String url) {
+    return requests.getOrDefault(url, new AtomicInteger()).get();
+  }
+
+  private void callIgnoringFailures(ServiceEndpoints endpoints, Function<String, String> request) {
+    try {
+      endpoints.call(request);
+    } catch (IllegalStateException e) {
+      /* expected for the failing replica */
+    }
+  }
+
+  @Test
+  public void allReplicasAreUsedWhenAllAreEjected() {
+    ServiceEndpoints endpoints =
+        ServiceEndpoints.builder().urls(List.of("a")).failureThreshold(1).clock(now::get).build();
+    callIgnoringFailures(endpoints, failingAt("a", new IllegalStateException()));
+    assertThat(endpoints.<String>call(url -> url)).isEqualTo("a");
+  }
+
+  @Test
+  public void failingReplicasAreEjectedUntilTheEjectionTimePasses() {
+    ServiceEndpoints endpoints =
+        ServiceEndpoints.builder()
+            .urls(List.of("a", "b"))
+            .failureThreshold(2)
+            .ejection(Duration.ofNanos(100))
+            .clock(now::get)
+            .build();
+    Function<String, String> request = failingAt("a", new IllegalStateException());
+    for (int i = 0; i < 100; i++) {
+      callIgnoringFailures(endpoints, request);
+    }
+    assertThat(requestsTo("a")).isEqualTo(2);
+    assertThat(requestsTo("b")).isEqualTo(98);
+    now.addAndGet(100);
+    for (int i = 0; i < 100; i++) {
+      callIgnoringFailures(endpoints, request);
+    }
+    assertThat(requestsTo("a")).isEqualTo(4);
+  }
+
+  @Test
+  public void closedEndpointsDoNotHedge() {
+    ServiceEndpoints endpoints = hedging();
+    endpoints.close();
+    assertThat(endpoints.hedged(slowAtFirst(() -> "slow"))).isEqualTo("slow");
+    assertThat(endpoints.hedgedRequests()).isZero();
+  }
+
+  @Test
+  public void hedgeAnswersWhenTheFirstReplicaFails() {
+    ServiceEndpoints endpoints = hedging();
+    AtomicReference<String> slow = new AtomicReference<>();
+    String answer =
+        endpoints.hedged(
+            slowAtFirst(
+                () -> {
+                  throw new IllegalStateException();
+                },
+                slow));
+    assertThat(answer).isNotEqualTo(slow.get());
+    assertThat(endpoints.hedgedRequests()).isEqualTo(1);
+    endpoints.close();
+  }
+
+  @Test
+  public void hedgeFailureDoesNotHideUnknownIdentity() {
+    ServiceEndpoints endpoints = hedging();
+    assertThatExceptionOfType(UnknownIdentity.class)
+        .isThrownBy(
+            () ->
+                endpoints.hedged(
+                    slowAtFirst(
+                        () -> {
+                          throw new UnknownIdentity("x");
+                        },
+                        url -> {
+                          throw new IllegalStateException();
+                        })));
+    assertThatExceptionOfType(UnknownIdentity.class)
+        .isThrownBy(
+            () ->
+                endpoints.hedged(
+                    slowAtFirst(
+                        () -> {
+                          throw new IllegalStateException();
+                        },
+                        url -> {
+                          throw new UnknownIdentity("x");
+                        })));
+    assertThat(endpoints.hedgedRequests()).isEqualTo(2);
+    endpoints.close();
+  }
+
+  @Test
+  public void hedgeAnswersSoonerThanASlowFirstReplica() {
+    ServiceEndpoints endpoints = hedging();
+    AtomicReference<String> slow = new AtomicReference<>();
+    long start = System.nanoTime();
+    String answer = endpoints.hedged(slowAtFirst(() -> "slow", slow));
+    assertThat(answer).isNotEqualTo("slow").isNotEqualTo(slow.get());
+    assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(500));
+    assertThat(endpoints.hedgedRequests()).isEqualTo(1);
+    endpoints.close();
+  }
+
+  /** Endpoints that have timed enough lookups to hedge those slower than a few milliseconds. */
+  private ServiceEndpoints hedging() {
+    ServiceEndpoints endpoints =
+        ServiceEndpoints.builder().urls(List.of("a", "b")).hedgePercentile(0.9).build();
+    for (int i = 0; i < ServiceEndpoints.MINIMUM_HEDGE_SAMPLES; i++) {
+      endpoints.hedged(
+          url -> {
+            sleep(5);
+            return url;
+          });
+    }
+    assertThat(endpoints.hedgedRequests()).isZero();
+    return endpoints;
+  }
+
+  @Test
+  public void hedgingIsDisabledForOneReplica() {
+    ServiceEndpoints endpoints =
+        ServiceEndpoints.builder().urls(List.of("a")).hedgePercentile(0.9).build();
+    for (int i = 0; i < 100; i++) {
+      assertThat(endpoints.<String>hedged(url -> url)).isEqualTo("a");
+    }
+    assertThat(endpoints.hedgedRequests()).isZero();
+  }
+
+  @Test
+  public void invalidConfigurationIsRejected() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> ServiceEndpoints.builder().urls(List.of()).build());
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> ServiceEndpoints.builder().urls(List.of("a")).hedgePercentile(1).build());
+  }
+
+  @Test
+  public void lessBusyReplicaIsChosen() {
+    ServiceEndpoints endpoints = ServiceEndpoints.of("a", "b");
+    String busy =
+        endpoints.call(
+            url -> {
+              for (int i = 0; i < 10; i++) {
+                assertThat(endpoints.choose(null).url()).isNotEqualTo(url);
+              }
+              return url;
+            });
+    assertThat(endpoints.urls()).contains(busy);
+  }
+
+  @Test
+  public void latencyWindowPercentiles() {
+    LatencyWindow window = new LatencyWindow(100);
+    for (int i = 1; i < ServiceEndpoints.MINIMUM_HEDGE_SAMPLES; i++) {
+      window.add(i);
+    }
+    assertThat(window.percentile(0.5)).isZero();
+    for (int i = ServiceEndpoints.MINIMUM_HEDGE_SAMPLES; i <= 100; i++) {
+      window.add(i);
+    }
+    assertThat(window.percentile(0.5)).isEqualTo(50);
+    assertThat(window.percentile(0.95)).isEqualTo(95);
+    for (int i = 0; i < 100; i++) {
+      window.add(1000);
+    }
+    assertThat(window.percentile(0.95)).isEqualTo(1000);
+  }
+
+  @Test
+  public void slowReplicasAreEjected() {
+    ServiceEndpoints endpoints =
+        ServiceEndpoints.builder()
+            .urls(List.of("a", "b"))
+            .failureThreshold(1)
+            .slowResponse(Duration.ofNanos(10))
+            .clock(now::get)
+            .build();
+    Function<String, String> request =
+        url -> {
+          requests.computeIfAbsent(url, u -> new AtomicInteger()).incrementAndGet();
+          if (url.equals("a")) {
+            now.addAndGet(10);
+          }
+          return url;
+        };
+    for (int i = 0; i < 20; i++) {
+      endpoints.call(request);
+    }
+    assertThat(requestsTo("a")).isEqualTo(1);
+  }
+
+  /** The first request is slow before finishing, the others return the URL. */
+  private Function<String, String> slowAtFirst(Supplier<String> finish) {
+    return slowAtFirst(finish, new AtomicReference<>());
+  }
+
+  private Function<String, String> slowAtFirst(
+      Supplier<String> finish, AtomicReference<String> slow) {
+    return slowAtFirst(finish, slow, url -> url);
+  }
+
+  private Function<String, String> slowAtFirst(
+      Supplier<String> finish, Function<String, String> others) {
+    return slowAtFirst(finish, new AtomicReference<>(), others);
+  }
+
+  private Function<String, String> slowAtFirst(
+      Supplier<String> finish, AtomicReference<String> slow, Function<String, String> others) {
+    AtomicBoolean first = new AtomicBoolean(true);
+    return url -> {
+      if (first.getAndSet(false)) {
+        slow.set(url);
+        sleep(500);
+        return finish.get();
+      }
+      return others.apply(url);
+    };
+  }
+
+  @SneakyThrows
+  private void sleep(long millis) {
+    Thread.sleep(millis);
+  }
+
+  @Test
+  public void unknownIdentityIsNotAFailure() {
+    ServiceEndpoints endpoints =
+        ServiceEndpoints.builder()
+            .urls(List.of("a", "b"))
+            .failureThreshold(1)
+            .clock(now::get)
+            .build();
+    Function<String, String> request = failingAt("a", new UnknownIdentity("x"));
+    for (int i = 0; i < 100; i++) {
+      try {
+        endpoints.call(request);
+      } catch (UnknownIdentity e) {
+        /* expected */
+      }
+    }
+    assertThat(requestsTo("a")).isGreaterThan(10);
+  }
+}
@@ -0,0 +1,87 @@
+package gov.va.api.health.ids.client;
+
+import static gov.va.api.health.ids.client.UuidSnapshotTest.identity;
+import static gov.va.api.health.ids.client.UuidSnapshotTest.sortedUuids;
+import static gov.va.api.health.ids.client.UuidSnapshotTest.write;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import gov.va.api.health.ids.api.IdentityService;
+import gov.va.api.health.ids.client.SnapshotUuidFormat.SnapshotLookupHandler;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class SnapshotUuidFormatTest {
+  @TempDir Path directory;
+
+  @Mock IdentityService delegate;
+
+  @Test
+  void lookupAcceptsUuids() {
+    var handler =
+        SnapshotLookupHandler.of(directory.resolve("missing"), Duration.ofMinutes(1), delegate);
+    assertThat(handler.accept(UUID.randomUUID().toString())).isTrue();
+    assertThat(handler.accept("I2-ABC")).isFalse();
+  }
+
+  @Test
+  void lookupDelegatesUntilSnapshotExists() {
+    Path file = directory.resolve("uuids.snapshot");
+    var handler = SnapshotLookupHandler.of(file, Duration.ofMinutes(1), delegate);
+    List<UUID> uuids = sortedUuids(5);
+    String uuid = uuids.get(2).toString();
+    var remote = identity("REMOTE", "PATIENT", "r");
+    when(delegate.lookup(uuid)).thenReturn(List.of(remote));
+    assertThat(handler.lookup(uuid)).containsExactly(remote);
+    write(file, uuids, "local-");
+    assertThat(handler.reload()).isTrue();
+    assertThat(handler.lookup(uuid)).containsExactly(identity("CDW", "OBSERVATION", "local-2"));
+  }
+
+  @Test
+  void lookupDelegatesUuidsNotInSnapshot() {
+    Path file = directory.resolve("uuids.snapshot");
+    write(file, sortedUuids(5), "local-");
+    var handler = SnapshotLookupHandler.of(file, Duration.ofMinutes(1), delegate);
+    String uuid = UUID.randomUUID().toString();
+    var remote = identity("REMOTE", "PATIENT", "r");
+    when(delegate.lookup(uuid)).thenReturn(List.of(remote));
+    assertThat(handler.lookup(uuid)).containsExactly(remote);
+  }
+
+  @Test
+  void lookupUsesSnapshot() {
+    Path file = directory.resolve("uuids.snapshot");
+    List<UUID> uuids = sortedUuids(5);
+    write(file, uuids, "local-");
+    var handler = SnapshotLookupHandler.of(file, Duration.ofMinutes(1), delegate);
+    assertThat(handler.lookup(uuids.get(0).toString()))
+        .containsExactly(identity("CDW", "PATIENT", "local-0"));
+    verifyNoInteractions(delegate);
+  }
+
+  @Test
+  void replacedSnapshotIsSwappedInOnNextCheck() throws Exception {
+    Path file = directory.resolve("uuids.snapshot");
+    List<UUID> first = sortedUuids(5);
+    write(file, first, "first-");
+    var handler = SnapshotLookupHandler.of(file, Duration.ofMillis(1), delegate);
+    UuidSnapshot before = handler.current();
+    assertThat(handler.reload()).isFalse();
+    List<UUID> second = sortedUuids(5);
+    write(file, second, "second-");
+    Thread.sleep(5);
+    assertThat(handler.lookup(second.get(1).toString()))
+        .containsExactly(identity("MVI", "OBSERVATION", "second-1"));
+    assertThat(handler.current()).isNotSameAs(before);
+  }
+}
@@ -0,0 +1,60 @@
+package gov.va.api.health.ids.client;
+
+import static gov.va.api.health.ids.client.UuidSnapshotTest.identity;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import gov.va.api.health.ids.api.StoredPublicId;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.util.UUID;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class UuidSnapshotExportTest {
+  @TempDir Path directory;
+
+  @Test
+  @SneakyThrows
+  void uuidsAreExported() {
+    String url = "jdbc:h2:mem:" + UUID.randomUUID();
+    UUID[] uuids = new UUID[100];
+    try (Connection connection = DriverManager.getConnection(url, "sa", "sa")) {
+      connection
+          .createStatement()
+          .execute(
+              "create table resource_identity_detail (id bigint auto_increment primary key,"
+                  + " uuid varbinary(135) not null unique, system varchar(50) not null,"
+                  + " resource varchar(50) not null, identifier varchar(200) not null)");
+      try (PreparedStatement insert =
+          connection.prepareStatement(
+              "insert into resource_identity_detail (uuid, system, resource, identifier)"
+                  + " values (?, ?, ?, ?)")) {
+        for (int i = 0; i < uuids.length; i++) {
+          uuids[i] = UUID.randomUUID();
+          insert.setBytes(1, StoredPublicId.encode(uuids[i].toString()));
+          insert.setString(2, "CDW");
+          insert.setString(3, "PATIENT");
+          insert.setString(4, "p" + i);
+          insert.addBatch();
+        }
+        insert.setBytes(1, StoredPublicId.encode("I2-LEGACY"));
+        insert.setString(2, "CDW");
+        insert.setString(3, "PATIENT");
+        insert.setString(4, "legacy");
+        insert.addBatch();
+        insert.executeBatch();
+      }
+      Path file = directory.resolve("uuids.snapshot");
+      assertThat(UuidSnapshotExport.of(url, "sa", "sa").export(file)).isEqualTo(100);
+      UuidSnapshot snapshot = UuidSnapshot.open(file);
+      assertThat(snapshot.size()).isEqualTo(100);
+      for (int i = 0; i < uuids.length; i++) {
+        assertThat(snapshot.find(uuids[i].toString()))
+            .isEqualTo(identity("CDW", "PATIENT", "p" + i));
+      }
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package gov.va.api.health.ids.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import gov.va.api.health.ids.api.ResourceIdentity;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class UuidSnapshotTest {
+  @TempDir Path directory;
+
+  static ResourceIdentity identity(String system, String resource, String identifier) {
+    return ResourceIdentity.builder()
+        .system(system)
+        .resource(resource)
+        .identifier(identifier)
+        .build();
+  }
+
+  /** UUIDs in the order the snapshot requires. */
+  static List<UUID> sortedUuids(int count) {
+    List<UUID> uuids = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      uuids.add(UUID.randomUUID());
+    }
+    uuids.sort(
+        Comparator.<UUID>comparingLong(u -> u.getMostSignificantBits() ^ Long.MIN_VALUE)
+            .thenComparingLong(u -> u.getLeastSignificantBits() ^ Long.MIN_VALUE));
+    return uuids;
+  }
+
+  @SneakyThrows
+  static void write(Path file, List<UUID> uuids, String identifierPrefix) {
+    try (UuidSnapshot.Writer writer = UuidSnapshot.writer(file)) {
+      for (int i = 0; i < uuids.size(); i++) {
+        UUID uuid = uuids.get(i);
+        writer.add(
+            uuid.getMostSignificantBits(),
+            uuid.getLeastSignificantBits(),
+            i % 2 == 0 ? "CDW" : "MVI",
+            i % 3 == 0 ? "PATIENT" : "OBSERVATION",
+            identifierPrefix + i);
+      }
+      writer.commit();
+    }
+  }
+
+  @Test
+  @SneakyThrows
+  void allUuidsAreFound() {
+    Path file = directory.resolve("uuids.snapshot");
+    List<UUID> uuids = sortedUuids(1000);
+    write(file, uuids, "id-");
+    UuidSnapshot snapshot = UuidSnapshot.open(file);
+    assertThat(snapshot.size()).isEqualTo(1000);
+    for (int i = 0; i < uuids.size(); i++) {
+      assertThat(snapshot.find(uuids.get(i).toString().toUpperCase()))
+          .isEqualTo(
+              identity(
+                  i % 2 == 0 ? "CDW" : "MVI", i % 3 == 0 ? "PATIENT" : "OBSERVATION", "id-" + i));
+    }
+    assertThat(snapshot.find(UUID.randomUUID().toString())).isNull();
+    assertThat(snapshot.find("not-a-uuid")).isNull();
+    try (var files = Files.list(directory)) {
+      assertThat(files).containsExactly(file);
+    }
+  }
+
+  @Test
+  @SneakyThrows
+  void emptySnapshotFindsNothing() {
+    Path file = directory.resolve("uuids.snapshot");
+    write(file, List.of(), "");
+    assertThat(UuidSnapshot.open(file).find(UUID.randomUUID().toString())).isNull();
+  }
+
+  @Test
+  @SneakyThrows
+  void nonAsciiIdentifiersAreFound() {
+    Path file = directory.resolve("uuids.snapshot");
+    UUID uuid = UUID.randomUUID();
+    try (UuidSnapshot.Writer writer = UuidSnapshot.writer(file)) {
+      writer.add(
+          uuid.getMostSignificantBits(),
+          uuid.getLeastSignificantBits(),
+          "SYSTÈME",
+          "RÉSOURCE",
+          "日本語");
+      writer.commit();
+    }
+    assertThat(UuidSnapshot.open(file).find(uuid.toString()))
+        .isEqualTo(identity("SYSTÈME", "RÉSOURCE", "日本語"));
+  }
+
+  @Test
+  @SneakyThrows
+  void notASnapshotIsRejected() {
+    Path file = directory.resolve("uuids.snapshot");
+    Files.write(file, new byte[64]);
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> UuidSnapshot.open(file));
+  }
+
+  @Test
+  @SneakyThrows
+  void outOfOrderRecordsAreRejected() {
+    Path file = directory.resolve("uuids.snapshot");
+    List<UUID> uuids = sortedUuids(2);
+    try (UuidSnapshot.Writer writer = UuidSnapshot.writer(file)) {
+      writer.add(
+          uuids.get(1).getMostSignificantBits(),
+          uuids.get(1).getLeastSignificantBits(),
+          "S",
+          "R",
+          "1");
+      assertThatExceptionOfType(IllegalArgumentException.class)
+          .isThrownBy(
+              () ->
+                  writer.add(
+                      uuids.get(0).getMostSignificantBits(),
+                      uuids.get(0).getLeastSignificantBits(),
+                      "S",
+                      "R",
+                      "0"));
+    }
+    assertThat(file).doesNotExist();
+    try (var files = Files.list(directory)) {
+      assertThat(files).isEmpty();
+    }
+  }
+
+  @Test
+  @SneakyThrows
+  void replacingTheFileDoesNotDisturbOpenSnapshots() {
+    Path file = directory.resolve("uuids.snapshot");
+    List<UUID> first = sortedUuids(10);
+    write(file, first, "first-");
+    UuidSnapshot before = UuidSnapshot.open(file);
+    List<UUID> second = sortedUuids(10);
+    write(file, second, "second-");
+    UuidSnapshot after = UuidSnapshot.open(file);
+    assertThat(before.find(first.get(3).toString()).identifier()).isEqualTo("first-3");
+    assertThat(before.find(second.get(3).toString())).isNull();
+    assertThat(after.find(second.get(3).toString()).identifier()).isEqualTo("second-3");
+    assertThat(after.find(first.get(3).toString())).isNull();
+  }
+}
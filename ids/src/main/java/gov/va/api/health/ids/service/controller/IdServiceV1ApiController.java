@@ -2,42 +2,97 @@ package gov.va.api.health.ids.service.controller;
 
 import gov.va.api.health.ids.api.IdentityService.UnknownIdentity;
 import gov.va.api.health.ids.api.Registration;
+import gov.va.api.health.ids.api.RegistrationPage;
 import gov.va.api.health.ids.api.ResourceIdentity;
 import gov.va.api.health.ids.service.controller.impl.ResourceIdentityDetail;
 import gov.va.api.health.ids.service.controller.impl.ResourceIdentityDetailRepository;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.Pattern;
 import lombok.AllArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
 @Validated
 @RequestMapping("/api")
+@Profile("!reactive")
 @AllArgsConstructor(onConstructor = @__({@Autowired}))
 @Slf4j
 public class IdServiceV1ApiController {
+  /** The most registrations returned in a single page of the registration feed. */
+  static final int MAX_REGISTRATION_PAGE_SIZE = 10_000;
+
+  /**
+   * The identities for a public ID never change once registered, so lookups may be cached by
+   * clients and shared caches for a year without revalidation.
+   */
+  static final String LOOKUP_CACHE_CONTROL =
+      CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().getHeaderValue() + ", immutable";
+
   private final ResourceIdentityDetailRepository repository;
-  private final UuidGenerator uuidGenerator;
 
-  private List<Registration> find(ResourceIdentity identity) {
-    List<ResourceIdentityDetail> previouslyRegistered =
-        repository.findBySystemAndResourceAndIdentifier(
-            identity.system(), identity.resource(), identity.identifier());
-    return previouslyRegistered.stream().map(this::toRegistration).collect(Collectors.toList());
+  private final IdentityRegistrar registrar;
+
+  /**
+   * A strong entity tag for the identities, which is the same on every replica for the same
+   * response body.
+   */
+  static String eTag(List<ResourceIdentity> identities) {
+    StringBuilder content = new StringBuilder(identities.size() * 64);
+    for (ResourceIdentity identity : identities) {
+      content
+          .append(identity.system())
+          .append('\n')
+          .append(identity.resource())
+          .append('\n')
+          .append(identity.identifier())
+          .append('\n');
+    }
+    return '"'
+        + DigestUtils.md5DigestAsHex(content.toString().getBytes(StandardCharsets.UTF_8))
+        + '"';
+  }
+
+  /**
+   * A successful lookup response that may be cached forever. Requests whose If-None-Match matches
+   * the entity tag are answered with 304 Not Modified and no body.
+   */
+  static ResponseEntity<List<ResourceIdentity>> found(List<ResourceIdentity> identities) {
+    return ResponseEntity.ok()
+        .eTag(eTag(identities))
+        .header(HttpHeaders.CACHE_CONTROL, LOOKUP_CACHE_CONTROL)
+        .body(identities);
+  }
+
+  /** Identities are read from a replica if possible, and from the primary if not found there. */
+  private List<ResourceIdentity> findByUuid(String publicId) {
+    List<ResourceIdentity> identities = repository.readIdentitiesByUuid(publicId);
+    if (identities.isEmpty()) {
+      /* A replica may not have caught up with a recent registration. */
+      identities = repository.findIdentitiesByUuid(publicId);
+    }
+    return identities;
   }
 
   /** Implementation of GET /v1/ids/{publicId}. See api-v1.yaml. */
@@ -48,44 +103,95 @@ public class IdServiceV1ApiController {
   @SneakyThrows
   public ResponseEntity<List<ResourceIdentity>> lookup(
       @Valid @PathVariable("publicId") @Pattern(regexp = "[-A-Za-z0-9]+") String publicId) {
-    List<ResourceIdentity> identities =
-        repository.findByUuid(publicId).stream()
-            .map(ResourceIdentityDetail::asResourceIdentity)
-            .collect(Collectors.toList());
+    List<ResourceIdentity> identities = registrar.lookup(publicId, this::findByUuid);
     log.info("Found {} identities for {}", identities.size(), safe(publicId));
 
     if (identities.isEmpty()) {
       throw new UnknownIdentity(publicId);
     }
 
-    return ResponseEntity.ok().body(identities);
+    return found(identities);
   }
 
   /** Implementation of POST /v1/ids. See api-v1.yaml. */
   @RequestMapping(
       value = {"/v1/ids", "/resourceIdentity"},
-      produces = {"application/json"},
-      consumes = {"application/json"},
+      produces = {"application/json", SmileConfig.SMILE},
+      consumes = {"application/json", SmileConfig.SMILE},
       method = RequestMethod.POST)
   public ResponseEntity<List<Registration>> register(
       @Valid @RequestBody List<ResourceIdentity> identities) {
-    List<Registration> registrations = new ArrayList<>(identities.size());
-    List<ResourceIdentityDetail> newRegistrations = new ArrayList<>(identities.size());
+    return ResponseEntity.status(HttpStatus.CREATED).body(registerAll(identities));
+  }
 
-    for (ResourceIdentity identity : identities) {
-      List<Registration> previouslyRegistered = find(identity);
-      if (previouslyRegistered.isEmpty()) {
-        ResourceIdentityDetail databaseEntry = toDatabaseEntry(identity);
-        newRegistrations.add(databaseEntry);
-        registrations.add(toRegistration(databaseEntry));
-      } else {
-        registrations.addAll(previouslyRegistered);
-      }
+  /**
+   * Register the identities, returning registrations in the same order, including one for each
+   * duplicate.
+   */
+  public List<Registration> registerAll(List<ResourceIdentity> identities) {
+    return registered(identities).registrations();
+  }
+
+  /** Find or store the identities, returning the stored batch. */
+  private IdentityRegistrar.Batch registered(List<ResourceIdentity> identities) {
+    IdentityRegistrar.Batch batch = registrar.batch(identities);
+    for (List<ResourceIdentity> query : batch.queries()) {
+      ResourceIdentity first = query.get(0);
+      batch.found(
+          query,
+          repository.findBySystemAndResourceAndIdentifierIn(
+              first.system(),
+              first.resource(),
+              query.stream().map(ResourceIdentity::identifier).collect(Collectors.toList())));
     }
-    repository.saveAll(newRegistrations);
+    List<ResourceIdentityDetail> newRegistrations = batch.newRegistrations();
+    if (registrar.journaling()) {
+      registrar.journal(newRegistrations);
+    } else {
+      repository.insertAllIfAbsent(newRegistrations);
+    }
+    batch.stored();
+    return batch;
+  }
 
-    log.info("Register {} entries ({} are new)", identities.size(), newRegistrations.size());
-    return ResponseEntity.status(HttpStatus.CREATED).body(registrations);
+  /**
+   * Implementation of POST /v1/ids?response=uuids. Only the UUID of each identity is returned, in
+   * the same order, since the caller already has the identities. There is exactly one for each
+   * identity, even if it was registered more than once with differently cased identifiers. See
+   * api-v1.yaml.
+   */
+  @RequestMapping(
+      value = {"/v1/ids", "/resourceIdentity"},
+      params = {"response=uuids"},
+      produces = {"application/json", SmileConfig.SMILE},
+      consumes = {"application/json", SmileConfig.SMILE},
+      method = RequestMethod.POST)
+  public ResponseEntity<List<String>> registerUuids(
+      @Valid @RequestBody List<ResourceIdentity> identities) {
+    return ResponseEntity.status(HttpStatus.CREATED).body(registered(identities).uuids());
+  }
+
+  /**
+   * Implementation of GET /v1/registrations. Registrations are returned in the order they were
+   * stored, starting after the cursor, which is the `next` value of the previous page. Clients use
+   * this to catch up with new registrations. Registrations from concurrent transactions may become
+   * visible out of order, so a client that has caught up may still miss a few. Those are found by
+   * looking them up as usual.
+   */
+  @RequestMapping(
+      value = {"/v1/registrations"},
+      produces = {"application/json", SmileConfig.SMILE},
+      method = RequestMethod.GET)
+  public ResponseEntity<RegistrationPage> registrations(
+      @Valid @RequestParam(value = "after", defaultValue = "0") @Min(0) long after,
+      @Valid
+          @RequestParam(value = "count", defaultValue = "1000")
+          @Min(1)
+          @Max(MAX_REGISTRATION_PAGE_SIZE)
+          int count) {
+    RegistrationPage page = repository.readRegistrationsAfter(after, count);
+    log.info("Found {} registrations after {}", page.registrations().size(), after);
+    return ResponseEntity.ok().body(page);
   }
 
   /** Sanitize strings to prevent log forgery. */
@@ -96,22 +202,6 @@ public class IdServiceV1ApiController {
     return value.replaceAll("[\\s\r\n]", "");
   }
 
-  private ResourceIdentityDetail toDatabaseEntry(ResourceIdentity resourceIdentity) {
-    return ResourceIdentityDetail.builder()
-        .uuid(uuidGenerator.apply(resourceIdentity))
-        .system(resourceIdentity.system())
-        .resource(resourceIdentity.resource())
-        .identifier(resourceIdentity.identifier())
-        .build();
-  }
-
-  private Registration toRegistration(ResourceIdentityDetail resourceIdentityDetail) {
-    return Registration.builder()
-        .uuid(resourceIdentityDetail.uuid())
-        .resourceIdentities(List.of(resourceIdentityDetail.asResourceIdentity()))
-        .build();
-  }
-
   /**
    * Generates consistent public UUIDs for a given resource identity. This function should be
    * deterministic. Failure to do so will result in multiple registrations for the same identity.
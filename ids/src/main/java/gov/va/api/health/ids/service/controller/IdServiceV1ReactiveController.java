@@ -0,0 +1,245 @@
+package gov.va.api.health.ids.service.controller;
+
+import static gov.va.api.health.ids.service.controller.IdServiceV1ApiController.MAX_REGISTRATION_PAGE_SIZE;
+import static gov.va.api.health.ids.service.controller.IdServiceV1StreamingController.NDJSON;
+import static gov.va.api.health.ids.service.controller.IdServiceV1StreamingController.STREAM_CHUNK_SIZE;
+
+import gov.va.api.health.ids.api.IdentityService.UnknownIdentity;
+import gov.va.api.health.ids.api.Registration;
+import gov.va.api.health.ids.api.RegistrationPage;
+import gov.va.api.health.ids.api.ResourceIdentity;
+import gov.va.api.health.ids.service.controller.impl.ReactiveResourceIdentityDetailRepository;
+import gov.va.api.health.ids.service.controller.impl.ResourceIdentityDetail;
+import gov.va.api.health.ids.service.controller.impl.ResourceIdentityDetailRepository;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Valid;
+import javax.validation.Validator;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.Pattern;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Reactive implementation of the same API as {@link IdServiceV1ApiController} and {@link
+ * IdServiceV1StreamingController}, used instead of them with the {@code reactive} profile. Requests
+ * are served by WebFlux with non-blocking I/O and database work is done over R2DBC, so a request
+ * waiting on the database does not hold a thread. Everything else is shared with the servlet
+ * controllers through the {@link IdentityRegistrar}.
+ *
+ * <p>The registration journal writes to local disk, so appending is moved to a thread that may
+ * block. Read replicas are only reachable over JDBC, so when they are enabled, lookups query them
+ * on a thread that may block too, and only go to the primary over R2DBC if the replica has nothing.
+ */
+@RestController
+@Validated
+@RequestMapping("/api")
+@Profile("reactive")
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+@Slf4j
+public class IdServiceV1ReactiveController {
+  private final ReactiveResourceIdentityDetailRepository repository;
+
+  private final IdentityRegistrar registrar;
+
+  private final Validator validator;
+
+  /** The JDBC repository, which reads from replicas, or null if read replicas are not enabled. */
+  private final ResourceIdentityDetailRepository replicas;
+
+  /** Create the controller, reading from replicas if they are enabled. */
+  @Autowired
+  public IdServiceV1ReactiveController(
+      ReactiveResourceIdentityDetailRepository repository,
+      IdentityRegistrar registrar,
+      Validator validator,
+      ResourceIdentityDetailRepository jdbcRepository,
+      @Value("${ids.read-replicas.enabled:false}") boolean readReplicas) {
+    this(repository, registrar, validator, readReplicas ? jdbcRepository : null);
+  }
+
+  /** Find the details registered for one query of a batch. */
+  private Mono<List<ResourceIdentityDetail>> find(List<ResourceIdentity> query) {
+    ResourceIdentity first = query.get(0);
+    return repository
+        .findBySystemAndResourceAndIdentifierIn(
+            first.system(),
+            first.resource(),
+            query.stream().map(ResourceIdentity::identifier).collect(Collectors.toList()))
+        .collectList();
+  }
+
+  /**
+   * Identities are read from a replica if enabled, and from the primary if not found there, like
+   * {@link IdServiceV1ApiController}.
+   */
+  private CompletableFuture<List<ResourceIdentity>> findByUuid(String publicId) {
+    if (replicas == null) {
+      return repository.findIdentitiesByUuid(publicId).collectList().toFuture();
+    }
+    return Mono.fromCallable(() -> replicas.readIdentitiesByUuid(publicId))
+        .subscribeOn(Schedulers.boundedElastic())
+        .flatMap(
+            identities ->
+                identities.isEmpty()
+                    ? repository.findIdentitiesByUuid(publicId).collectList()
+                    : Mono.just(identities))
+        .toFuture();
+  }
+
+  /** Reactive implementation of GET /v1/ids/{publicId}. See api-v1.yaml. */
+  @RequestMapping(
+      value = {"/v1/ids/{publicId}", "/resourceIdentity/{publicId}"},
+      produces = {"application/json"},
+      method = RequestMethod.GET)
+  public Mono<ResponseEntity<List<ResourceIdentity>>> lookup(
+      @Valid @PathVariable("publicId") @Pattern(regexp = "[-A-Za-z0-9]+") String publicId) {
+    return Mono.fromFuture(() -> registrar.lookupAsync(publicId, this::findByUuid))
+        .flatMap(
+            identities -> {
+              log.info("Found {} identities for {}", identities.size(), safe(publicId));
+              if (identities.isEmpty()) {
+                return Mono.error(new UnknownIdentity(publicId));
+              }
+              return Mono.just(IdServiceV1ApiController.found(identities));
+            });
+  }
+
+  /** Reactive implementation of POST /v1/ids. See api-v1.yaml. */
+  @RequestMapping(
+      value = {"/v1/ids", "/resourceIdentity"},
+      produces = {"application/json", SmileConfig.SMILE},
+      consumes = {"application/json", SmileConfig.SMILE},
+      method = RequestMethod.POST)
+  public Mono<ResponseEntity<List<Registration>>> register(
+      @Valid @RequestBody List<ResourceIdentity> identities) {
+    return registerAll(identities)
+        .map(registrations -> ResponseEntity.status(HttpStatus.CREATED).body(registrations));
+  }
+
+  /**
+   * Register the identities, returning registrations in the same order, including one for each
+   * duplicate. New registrations are journaled or stored before they are returned.
+   */
+  Mono<List<Registration>> registerAll(List<ResourceIdentity> identities) {
+    return registered(identities).map(IdentityRegistrar.Batch::registrations);
+  }
+
+  /** Find or store the identities, emitting the stored batch. */
+  private Mono<IdentityRegistrar.Batch> registered(List<ResourceIdentity> identities) {
+    IdentityRegistrar.Batch batch = registrar.batch(identities);
+    return Flux.fromIterable(batch.queries())
+        .concatMap(query -> find(query).doOnNext(details -> batch.found(query, details)))
+        .then(Mono.defer(() -> store(batch.newRegistrations())))
+        .then(
+            Mono.fromSupplier(
+                () -> {
+                  batch.stored();
+                  return batch;
+                }));
+  }
+
+  /**
+   * Reactive implementation of POST /v1/ids with newline delimited JSON. Identities are registered
+   * a chunk at a time as they arrive, like {@link IdServiceV1StreamingController}.
+   */
+  @RequestMapping(
+      value = {"/v1/ids", "/resourceIdentity"},
+      produces = {NDJSON},
+      consumes = {NDJSON},
+      method = RequestMethod.POST)
+  @ResponseStatus(HttpStatus.CREATED)
+  public Flux<Registration> registerStream(@RequestBody Flux<ResourceIdentity> identities) {
+    return identities
+        .doOnNext(this::validate)
+        .buffer(STREAM_CHUNK_SIZE)
+        .concatMap(this::registerAll)
+        .flatMapIterable(registrations -> registrations);
+  }
+
+  /** Reactive implementation of POST /v1/ids?response=uuids. See api-v1.yaml. */
+  @RequestMapping(
+      value = {"/v1/ids", "/resourceIdentity"},
+      params = {"response=uuids"},
+      produces = {"application/json", SmileConfig.SMILE},
+      consumes = {"application/json", SmileConfig.SMILE},
+      method = RequestMethod.POST)
+  public Mono<ResponseEntity<List<String>>> registerUuids(
+      @Valid @RequestBody List<ResourceIdentity> identities) {
+    return registered(identities)
+        .map(batch -> ResponseEntity.status(HttpStatus.CREATED).body(batch.uuids()));
+  }
+
+  /** Reactive implementation of GET /v1/registrations. See api-v1.yaml. */
+  @RequestMapping(
+      value = {"/v1/registrations"},
+      produces = {"application/json", SmileConfig.SMILE},
+      method = RequestMethod.GET)
+  public Mono<ResponseEntity<RegistrationPage>> registrations(
+      @Valid @RequestParam(value = "after", defaultValue = "0") @Min(0) long after,
+      @Valid
+          @RequestParam(value = "count", defaultValue = "1000")
+          @Min(1)
+          @Max(MAX_REGISTRATION_PAGE_SIZE)
+          int count) {
+    return repository
+        .readRegistrationsAfter(after, count)
+        .map(
+            page -> {
+              log.info("Found {} registrations after {}", page.registrations().size(), after);
+              return ResponseEntity.ok().body(page);
+            });
+  }
+
+  /** Sanitize strings to prevent log forgery. */
+  private String safe(String value) {
+    if (value == null) {
+      return null;
+    }
+    return value.replaceAll("[\\s\r\n]", "");
+  }
+
+  /**
+   * Journal appends wait for the journal file to be forced to disk, so they are done on a thread
+   * that is allowed to block.
+   */
+  private Mono<Void> store(List<ResourceIdentityDetail> newRegistrations) {
+    if (newRegistrations.isEmpty()) {
+      return Mono.empty();
+    }
+    if (registrar.journaling()) {
+      return Mono.<Void>fromRunnable(() -> registrar.journal(newRegistrations))
+          .subscribeOn(Schedulers.boundedElastic());
+    }
+    return repository.insertAllIfAbsent(newRegistrations);
+  }
+
+  private void validate(ResourceIdentity identity) {
+    Set<ConstraintViolation<ResourceIdentity>> violations = validator.validate(identity);
+    if (!violations.isEmpty()) {
+      throw new ConstraintViolationException(violations);
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package gov.va.api.health.ids.service.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import gov.va.api.health.ids.api.Registration;
+import gov.va.api.health.ids.api.ResourceIdentity;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validator;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Registration of very large numbers of identities as newline delimited JSON, one resource identity
+ * per line, without holding them all in memory. Identities are read a chunk at a time, each chunk
+ * is registered in its own transaction, and its registrations are written back, one per line,
+ * before the next chunk is read.
+ *
+ * <p>Registration is idempotent, so if the request fails part way, it can simply be repeated. The
+ * response status is sent with the first chunk of registrations. Problems found after that, such as
+ * an invalid identity, are reported as an error response on the last line instead, so the response
+ * is never mistaken for a complete one.
+ */
+@RestController
+@RequestMapping("/api")
+@Profile("!reactive")
+@AllArgsConstructor(onConstructor = @__({@Autowired}))
+@Slf4j
+public class IdServiceV1StreamingController {
+  static final String NDJSON = "application/x-ndjson";
+
+  /** Identities are registered, and registrations written, this many at a time. */
+  static final int STREAM_CHUNK_SIZE = 1_000;
+
+  private final IdServiceV1ApiController registrar;
+
+  private final ObjectMapper mapper;
+
+  private final Validator validator;
+
+  private final TransactionTemplate transactions;
+
+  /** Read the next chunk of identities, which is empty once all have been read. */
+  private List<ResourceIdentity> readChunk(JsonParser parser) throws IOException {
+    List<ResourceIdentity> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+    while (chunk.size() < STREAM_CHUNK_SIZE && parser.nextToken() != null) {
+      if (parser.currentToken() != JsonToken.START_OBJECT) {
+        throw new JsonParseException(parser, "Expected a resource identity object");
+      }
+      ResourceIdentity identity = mapper.readValue(parser, ResourceIdentity.class);
+      Set<ConstraintViolation<ResourceIdentity>> violations = validator.validate(identity);
+      if (!violations.isEmpty()) {
+        throw new ConstraintViolationException(violations);
+      }
+      chunk.add(identity);
+    }
+    return chunk;
+  }
+
+  /** Implementation of POST /v1/ids with newline delimited JSON. See api-v1.yaml. */
+  @RequestMapping(
+      value = {"/v1/ids", "/resourceIdentity"},
+      produces = {NDJSON},
+      consumes = {NDJSON},
+      method = RequestMethod.POST)
+  public void registerStream(InputStream body, HttpServletResponse response) throws IOException {
+    int total = 0;
+    try (JsonParser parser = mapper.getFactory().createParser(body)) {
+      List<ResourceIdentity> chunk = readChunk(parser);
+      response.setStatus(HttpStatus.CREATED.value());
+      response.setContentType(NDJSON);
+      /* Registrations are sent a chunk at a time, not as each one is written. */
+      ObjectWriter writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+      try (JsonGenerator out = mapper.getFactory().createGenerator(response.getOutputStream())) {
+        try {
+          while (!chunk.isEmpty()) {
+            List<ResourceIdentity> identities = chunk;
+            List<Registration> registrations =
+                transactions.execute(status -> registrar.registerAll(identities));
+            for (Registration registration : registrations) {
+              writer.writeValue(out, registration);
+              out.writeRaw('\n');
+            }
+            out.flush();
+            total += identities.size();
+            chunk = readChunk(parser);
+          }
+        } catch (RuntimeException | IOException e) {
+          log.error("Streamed registration failed after {} entries", total, e);
+          writer.writeValue(out, ErrorResponse.of(e));
+          out.writeRaw('\n');
+          return;
+        }
+      }
+    }
+    log.info("Registered {} streamed entries", total);
+  }
+}
@@ -0,0 +1,292 @@
+package gov.va.api.health.ids.service.controller;
+
+import gov.va.api.health.ids.api.Registration;
+import gov.va.api.health.ids.api.ResourceIdentity;
+import gov.va.api.health.ids.service.controller.IdServiceV1ApiController.UuidGenerator;
+import gov.va.api.health.ids.service.controller.impl.HotKeys;
+import gov.va.api.health.ids.service.controller.impl.InMemoryIndex;
+import gov.va.api.health.ids.service.controller.impl.MembershipFilters;
+import gov.va.api.health.ids.service.controller.impl.RegistrationJournal;
+import gov.va.api.health.ids.service.controller.impl.ResourceIdentityCache;
+import gov.va.api.health.ids.service.controller.impl.ResourceIdentityDetail;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lookup and registration logic shared by the servlet and reactive controllers, which differ only
+ * in how they query and store registrations.
+ *
+ * <p>Lookups are answered from the cache, pending journal entries, and the in-memory index before
+ * the database, which is not asked about IDs the membership filters know were never registered.
+ * Concurrent misses for the same ID share a single database query.
+ *
+ * <p>Registration finds previous registrations with as few queries as possible, generates public
+ * IDs for the rest, and once they are stored, updates the filters and cache.
+ */
+@Component
+@AllArgsConstructor(onConstructor = @__({@Autowired}))
+@Slf4j
+public class IdentityRegistrar {
+  /**
+   * The maximum number of identifiers included in a single existence query. This keeps the IN
+   * clause and the resulting statement to a reasonable size for very large registrations.
+   */
+  static final int FIND_CHUNK_SIZE = 500;
+
+  /** Registrations with at least this many new identities generate their UUIDs in parallel. */
+  static final int PARALLEL_GENERATION_THRESHOLD = 1_000;
+
+  private final UuidGenerator uuidGenerator;
+
+  private final ResourceIdentityCache cache;
+
+  private final MembershipFilters filters;
+
+  private final RegistrationJournal journal;
+
+  private final InMemoryIndex index;
+
+  private final HotKeys hotKeys;
+
+  private static Registration toRegistration(ResourceIdentityDetail resourceIdentityDetail) {
+    return Registration.builder()
+        .uuid(resourceIdentityDetail.uuid())
+        .resourceIdentities(List.of(resourceIdentityDetail.asResourceIdentity()))
+        .build();
+  }
+
+  /** Start registering the identities. */
+  public Batch batch(List<ResourceIdentity> identities) {
+    return new Batch(identities);
+  }
+
+  /** Hot keys only count lookups that found the ID. */
+  private List<ResourceIdentity> counted(String publicId, List<ResourceIdentity> identities) {
+    if (!identities.isEmpty()) {
+      hotKeys.lookup(publicId);
+    }
+    return identities;
+  }
+
+  /**
+   * The identities for the public ID if they can be found without the database, an empty list if
+   * the ID has definitely never been registered, or null if the database must be asked.
+   */
+  private List<ResourceIdentity> findWithoutDatabase(String publicId) {
+    ResourceIdentityDetail pending = journal.findPending(publicId);
+    if (pending != null) {
+      return List.of(pending.asResourceIdentity());
+    }
+    List<ResourceIdentity> indexed = index.find(publicId);
+    if (!indexed.isEmpty()) {
+      return indexed;
+    }
+    if (!filters.mightContainUuid(publicId)) {
+      return List.of();
+    }
+    return null;
+  }
+
+  /** New registrations are appended to the journal, instead of being stored directly. */
+  public void journal(List<ResourceIdentityDetail> newRegistrations) {
+    journal.append(newRegistrations);
+  }
+
+  /** True if new registrations should be given to the journal instead of stored directly. */
+  public boolean journaling() {
+    return journal.enabled();
+  }
+
+  /**
+   * Find the identities for the public ID, asking the database only if needed. The result is empty
+   * if the ID is unknown.
+   */
+  public List<ResourceIdentity> lookup(
+      String publicId, Function<String, List<ResourceIdentity>> database) {
+    return counted(
+        publicId,
+        cache.lookup(
+            publicId,
+            id -> {
+              List<ResourceIdentity> identities = findWithoutDatabase(id);
+              return identities == null ? database.apply(id) : identities;
+            }));
+  }
+
+  /** Same as {@link #lookup(String, Function)} for callers that cannot wait on the database. */
+  public CompletableFuture<List<ResourceIdentity>> lookupAsync(
+      String publicId, Function<String, CompletableFuture<List<ResourceIdentity>>> database) {
+    return cache
+        .lookupAsync(
+            publicId,
+            id -> {
+              List<ResourceIdentity> identities = findWithoutDatabase(id);
+              return identities == null
+                  ? database.apply(id)
+                  : CompletableFuture.completedFuture(identities);
+            })
+        .thenApply(identities -> counted(publicId, identities));
+  }
+
+  private ResourceIdentityDetail toDatabaseEntry(ResourceIdentity resourceIdentity) {
+    return ResourceIdentityDetail.builder()
+        .uuid(uuidGenerator.apply(resourceIdentity))
+        .system(resourceIdentity.system())
+        .resource(resourceIdentity.resource())
+        .identifier(resourceIdentity.identifier())
+        .build();
+  }
+
+  /**
+   * Generating public IDs is CPU bound, so the work for large registrations is spread across the
+   * common fork join pool.
+   */
+  private List<ResourceIdentityDetail> toDatabaseEntries(List<ResourceIdentity> identities) {
+    Stream<ResourceIdentity> stream =
+        identities.size() >= PARALLEL_GENERATION_THRESHOLD
+            ? identities.parallelStream()
+            : identities.stream();
+    return stream.map(this::toDatabaseEntry).collect(Collectors.toList());
+  }
+
+  /**
+   * One registration request. The caller runs each of the {@link #queries()}, giving the results to
+   * {@link #found(List, Iterable)}, stores the {@link #newRegistrations()}, and calls {@link
+   * #stored()} before answering with the {@link #registrations()} or {@link #uuids()}. A batch is
+   * used by one request at a time.
+   */
+  public final class Batch {
+    private final List<ResourceIdentity> identities;
+
+    private final Set<ResourceIdentity> uniqueIdentities;
+
+    private final Map<ResourceIdentity, List<Registration>> registrationsByIdentity =
+        new HashMap<>();
+
+    private List<ResourceIdentityDetail> newRegistrations;
+
+    private Batch(List<ResourceIdentity> identities) {
+      this.identities = identities;
+      uniqueIdentities = new LinkedHashSet<>(identities);
+    }
+
+    /**
+     * Record the details found by one of the queries. Identifiers are matched without regard to
+     * case to be consistent with the database collation, so an identity may have several
+     * registrations. The one with exactly the same identifier, if any, comes first.
+     */
+    public void found(List<ResourceIdentity> query, Iterable<ResourceIdentityDetail> details) {
+      Map<String, List<ResourceIdentityDetail>> byIdentifier =
+          new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+      for (ResourceIdentityDetail detail : details) {
+        byIdentifier.computeIfAbsent(detail.identifier(), k -> new ArrayList<>(1)).add(detail);
+      }
+      for (ResourceIdentity identity : query) {
+        List<ResourceIdentityDetail> matches = byIdentifier.get(identity.identifier());
+        if (matches == null) {
+          continue;
+        }
+        List<Registration> registrations = new ArrayList<>(matches.size());
+        for (ResourceIdentityDetail match : matches) {
+          if (match.identifier().equals(identity.identifier())) {
+            registrations.add(0, toRegistration(match));
+          } else {
+            registrations.add(toRegistration(match));
+          }
+        }
+        registrationsByIdentity.put(identity, registrations);
+      }
+    }
+
+    /**
+     * Registrations for the identities that were not found, with newly generated public IDs. These
+     * must be stored, or journaled, before calling {@link #stored()}.
+     */
+    public List<ResourceIdentityDetail> newRegistrations() {
+      if (newRegistrations == null) {
+        List<ResourceIdentity> unregistered = new ArrayList<>();
+        for (ResourceIdentity identity : uniqueIdentities) {
+          if (!registrationsByIdentity.containsKey(identity)) {
+            unregistered.add(identity);
+          }
+        }
+        newRegistrations = toDatabaseEntries(unregistered);
+        for (int i = 0; i < unregistered.size(); i++) {
+          registrationsByIdentity.put(
+              unregistered.get(i), List.of(toRegistration(newRegistrations.get(i))));
+        }
+      }
+      return newRegistrations;
+    }
+
+    /**
+     * Identities that might have been registered, grouped by system and resource, in chunks that
+     * are each found with a single query. Identities that have definitely never been registered are
+     * left out.
+     */
+    public List<List<ResourceIdentity>> queries() {
+      List<List<ResourceIdentity>> queries = new ArrayList<>();
+      uniqueIdentities.stream()
+          .filter(filters::mightContainIdentity)
+          .collect(Collectors.groupingBy(i -> List.of(i.system(), i.resource())))
+          .values()
+          .forEach(
+              members -> {
+                for (int start = 0; start < members.size(); start += FIND_CHUNK_SIZE) {
+                  queries.add(
+                      members.subList(start, Math.min(start + FIND_CHUNK_SIZE, members.size())));
+                }
+              });
+      return queries;
+    }
+
+    /**
+     * The registrations in the same order as the identities, including one for each duplicate. An
+     * identity registered more than once with identifiers differing only by case has all of them.
+     */
+    public List<Registration> registrations() {
+      List<Registration> registrations = new ArrayList<>(identities.size());
+      for (ResourceIdentity identity : identities) {
+        registrations.addAll(registrationsByIdentity.get(identity));
+      }
+      return registrations;
+    }
+
+    /** Once the new registrations are stored, make them known to lookups. */
+    public void stored() {
+      for (ResourceIdentityDetail detail : newRegistrations()) {
+        filters.add(detail);
+        cache.put(detail.uuid(), List.of(detail.asResourceIdentity()));
+      }
+      for (Registration registration : registrations()) {
+        hotKeys.registration(registration.uuid());
+      }
+      log.info("Register {} entries ({} are new)", identities.size(), newRegistrations.size());
+    }
+
+    /**
+     * Exactly one public ID for each identity, in the same order, preferring the registration with
+     * exactly the same identifier.
+     */
+    public List<String> uuids() {
+      List<String> uuids = new ArrayList<>(identities.size());
+      for (ResourceIdentity identity : identities) {
+        uuids.add(registrationsByIdentity.get(identity).get(0).uuid());
+      }
+      return uuids;
+    }
+  }
+}
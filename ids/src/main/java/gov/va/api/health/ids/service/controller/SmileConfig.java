@@ -0,0 +1,55 @@
+package gov.va.api.health.ids.service.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import gov.va.api.health.autoconfig.configuration.JacksonConfig;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Registrations and the registration feed can be exchanged as Smile, a binary form of JSON, when
+ * clients ask for it with the {@value #SMILE} content type. Property names are written once per
+ * response and repeated values, such as systems and resources, are shared, so large batches are a
+ * fraction of the size of JSON and quicker to read and write. JSON remains the default.
+ *
+ * <p>The Smile mapper is configured the same as the JSON mapper, so builders are used to read the
+ * API types.
+ */
+@Configuration
+public class SmileConfig {
+  static final String SMILE = "application/x-jackson-smile";
+
+  /** A Smile mapper with the same configuration as the JSON mapper. */
+  public static ObjectMapper createMapper() {
+    ObjectMapper json = JacksonConfig.createMapper();
+    ObjectMapper smile =
+        new ObjectMapper(
+            SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build());
+    smile.setConfig(json.getSerializationConfig());
+    smile.setConfig(json.getDeserializationConfig());
+    return smile;
+  }
+
+  /** Replaces the default reactive Smile codecs, which do not read builders. */
+  @Bean
+  public CodecCustomizer smileCodecCustomizer() {
+    ObjectMapper mapper = createMapper();
+    return configurer -> {
+      configurer.defaultCodecs().jackson2SmileDecoder(new Jackson2SmileDecoder(mapper));
+      configurer.defaultCodecs().jackson2SmileEncoder(new Jackson2SmileEncoder(mapper));
+    };
+  }
+
+  /** Replaces the default Smile converter, which does not read builders. */
+  @Bean
+  public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter() {
+    return new MappingJackson2SmileHttpMessageConverter(createMapper());
+  }
+}
@@ -1,8 +1,21 @@
 package gov.va.api.health.ids.service.controller;
 
 import gov.va.api.health.ids.api.IdentityService.UnknownIdentity;
+import gov.va.api.health.ids.service.execution.ConcurrencyLimitExceeded;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseStatus;
@@ -11,32 +24,159 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 /**
  * Exceptions that escape the rest controllers will be processed by this handler. It will convert
  * exception into different HTTP status codes and produce an error response payload.
+ *
+ * <p>Bad requests, unknown IDs, and overload are expected outcomes. They are counted, but only
+ * logged once per type per interval, without a stack trace. Anything else is a genuine failure and
+ * is always logged with its stack trace.
+ *
+ * <p>Unknown IDs may be registered at any moment, so not found responses are only cacheable for a
+ * short time.
  */
 @RestControllerAdvice
 @RequestMapping(produces = {"application/json"})
 @Slf4j
 public class WebExceptionHandler {
-  @ExceptionHandler({javax.validation.ConstraintViolationException.class})
+  static final String ERRORS = "ids.errors";
+
+  private final MeterRegistry registry;
+
+  private final RateLimitedLog expectedLog;
+
+  private final CacheControl notFoundCacheControl;
+
+  /**
+   * Log each type of expected error at most once per the given number of seconds, and let clients
+   * cache unknown IDs for the given number of seconds.
+   */
+  @Autowired
+  public WebExceptionHandler(
+      MeterRegistry registry,
+      @Value("${ids.error-log.interval-seconds:60}") long logIntervalSeconds,
+      @Value("${ids.lookup.not-found-max-age-seconds:30}") long notFoundMaxAgeSeconds) {
+    this(
+        registry,
+        new RateLimitedLog(TimeUnit.SECONDS.toNanos(logIntervalSeconds), System::nanoTime),
+        notFoundMaxAgeSeconds > 0
+            ? CacheControl.maxAge(notFoundMaxAgeSeconds, TimeUnit.SECONDS).cachePublic()
+            : CacheControl.noStore());
+  }
+
+  WebExceptionHandler(
+      MeterRegistry registry, RateLimitedLog expectedLog, CacheControl notFoundCacheControl) {
+    this.registry = registry;
+    this.expectedLog = expectedLog;
+    this.notFoundCacheControl = notFoundCacheControl;
+  }
+
+  private void count(ErrorResponse response, HttpStatus status) {
+    Counter.builder(ERRORS)
+        .description("Error responses by exception type")
+        .tag("type", response.type())
+        .tag("status", String.valueOf(status.value()))
+        .register(registry)
+        .increment();
+  }
+
+  private ErrorResponse expected(Exception e, HttpStatus status) {
+    ErrorResponse response = ErrorResponse.of(e);
+    count(response, status);
+    long suppressed = expectedLog.admit(response.type());
+    if (suppressed >= 0) {
+      log.warn(
+          "{} {}: {} ({} more since last logged)",
+          status.value(),
+          response.type(),
+          response.message(),
+          suppressed);
+    }
+    return response;
+  }
+
+  @ExceptionHandler({
+    javax.validation.ConstraintViolationException.class,
+    com.fasterxml.jackson.core.JsonProcessingException.class
+  })
   @ResponseStatus(HttpStatus.BAD_REQUEST)
   public ErrorResponse handleBadRequest(Exception e) {
-    return responseFor(e);
+    return expected(e, HttpStatus.BAD_REQUEST);
+  }
+
+  /** Requests beyond the concurrency limit are turned away before doing any work. */
+  @ExceptionHandler({ConcurrencyLimitExceeded.class})
+  public ResponseEntity<ErrorResponse> handleConcurrencyLimitExceeded(ConcurrencyLimitExceeded e) {
+    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.retryAfterSeconds()))
+        .body(expected(e, HttpStatus.SERVICE_UNAVAILABLE));
   }
 
   @ExceptionHandler({UnknownIdentity.class})
-  @ResponseStatus(HttpStatus.NOT_FOUND)
-  public ErrorResponse handleNotFound(Exception e) {
-    return responseFor(e);
+  public ResponseEntity<ErrorResponse> handleNotFound(Exception e) {
+    return ResponseEntity.status(HttpStatus.NOT_FOUND)
+        .cacheControl(notFoundCacheControl)
+        .body(expected(e, HttpStatus.NOT_FOUND));
+  }
+
+  /**
+   * The database connection pool is the limit on concurrent requests. Requests that wait too long
+   * for a connection are turned away so the client can try again later.
+   */
+  @ExceptionHandler({
+    org.springframework.jdbc.CannotGetJdbcConnectionException.class,
+    org.springframework.transaction.CannotCreateTransactionException.class
+  })
+  @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+  public ErrorResponse handleOverloaded(Exception e) {
+    return expected(e, HttpStatus.SERVICE_UNAVAILABLE);
   }
 
   @ExceptionHandler({Exception.class})
   @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
   public ErrorResponse handleSnafu(Exception e) {
-    return responseFor(e);
-  }
-
-  private ErrorResponse responseFor(Exception e) {
     ErrorResponse response = ErrorResponse.of(e);
+    count(response, HttpStatus.INTERNAL_SERVER_ERROR);
     log.error("{}: {}", response.type(), response.message(), e);
     return response;
   }
+
+  /**
+   * Admits one message per key per interval. Messages that are not admitted are counted so the next
+   * admitted message can report how many were dropped.
+   */
+  static final class RateLimitedLog {
+    private final long intervalNanos;
+
+    private final LongSupplier clock;
+
+    private final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<>();
+
+    RateLimitedLog(long intervalNanos, LongSupplier clock) {
+      this.intervalNanos = intervalNanos;
+      this.clock = clock;
+    }
+
+    /**
+     * Return the number of messages suppressed since the key was last admitted, or -1 if this
+     * message should be suppressed.
+     */
+    long admit(String key) {
+      long now = clock.getAsLong();
+      Window window = windows.computeIfAbsent(key, k -> new Window(now));
+      long next = window.next.get();
+      if (now - next >= 0 && window.next.compareAndSet(next, now + intervalNanos)) {
+        return window.suppressed.sumThenReset();
+      }
+      window.suppressed.increment();
+      return -1;
+    }
+
+    private static final class Window {
+      private final AtomicLong next;
+
+      private final LongAdder suppressed = new LongAdder();
+
+      Window(long start) {
+        next = new AtomicLong(start);
+      }
+    }
+  }
 }
@@ -0,0 +1,101 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A compact, thread-safe Bloom filter for strings. It may report that a value is present when it is
+ * not, but never the reverse. Values cannot be removed.
+ */
+final class BloomFilter {
+  private final AtomicLongArray words;
+
+  private final long bitSize;
+
+  private final int hashFunctions;
+
+  private final LongAdder bitsSet = new LongAdder();
+
+  /** Size the filter for the expected number of values and desired false positive probability. */
+  BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+    if (expectedInsertions <= 0) {
+      throw new IllegalArgumentException("expected insertions must be positive");
+    }
+    if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+      throw new IllegalArgumentException("false positive probability must be between 0 and 1");
+    }
+    long optimalBits =
+        (long)
+            Math.ceil(
+                -expectedInsertions
+                    * Math.log(falsePositiveProbability)
+                    / (Math.log(2) * Math.log(2)));
+    words = new AtomicLongArray(Math.toIntExact(Math.max(1, (optimalBits + 63) / 64)));
+    bitSize = words.length() * 64L;
+    hashFunctions =
+        Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+  }
+
+  /** Murmur3 finalizer, used to spread the bits of the raw hash. */
+  static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /** FNV-1a over the characters of the value. */
+  static long rawHash(CharSequence value) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < value.length(); i++) {
+      h ^= value.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    return h;
+  }
+
+  long bitSize() {
+    return bitSize;
+  }
+
+  /** The false positive probability given the bits currently set. */
+  double expectedFalsePositiveProbability() {
+    return Math.pow((double) bitsSet.sum() / bitSize, hashFunctions);
+  }
+
+  int hashFunctions() {
+    return hashFunctions;
+  }
+
+  /** Return false if the value was definitely never added, true if it might have been. */
+  boolean mightContain(CharSequence value) {
+    long h = rawHash(value);
+    long h1 = mix(h);
+    long h2 = mix(h ^ 0x9e3779b97f4a7c15L) | 1;
+    for (int i = 0; i < hashFunctions; i++) {
+      long bit = Math.floorMod(h1 + i * h2, bitSize);
+      if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Add the value to the filter. */
+  void put(CharSequence value) {
+    long h = rawHash(value);
+    long h1 = mix(h);
+    long h2 = mix(h ^ 0x9e3779b97f4a7c15L) | 1;
+    for (int i = 0; i < hashFunctions; i++) {
+      long bit = Math.floorMod(h1 + i * h2, bitSize);
+      long mask = 1L << bit;
+      int word = (int) (bit >>> 6);
+      long before = words.getAndAccumulate(word, mask, (a, b) -> a | b);
+      if ((before & mask) == 0) {
+        bitsSet.increment();
+      }
+    }
+  }
+}
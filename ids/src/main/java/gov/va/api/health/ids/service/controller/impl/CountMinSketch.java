@@ -0,0 +1,71 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size, thread-safe count-min sketch for strings. Estimates may be too high, by about
+ * {@code e / width} of all counts, but never too low. Counters use conservative update, which only
+ * raises the counters that hold the current estimate, to keep overestimates small.
+ */
+final class CountMinSketch {
+  private static final int DEPTH = 4;
+
+  private final AtomicLongArray counters;
+
+  private final int mask;
+
+  /** Create a sketch whose width is the given number of counters, rounded up to a power of two. */
+  CountMinSketch(int width) {
+    if (width <= 0) {
+      throw new IllegalArgumentException("width must be positive");
+    }
+    int columns = Integer.highestOneBit(Math.max(1, width - 1)) << 1;
+    counters = new AtomicLongArray(Math.multiplyExact(columns, DEPTH));
+    mask = columns - 1;
+  }
+
+  private static long seed(long h, int row) {
+    return BloomFilter.mix(h + row * 0x9e3779b97f4a7c15L);
+  }
+
+  /** Count the value once and return its new estimate. */
+  long add(CharSequence value) {
+    long h = BloomFilter.rawHash(value);
+    int[] cells = new int[DEPTH];
+    long estimate = Long.MAX_VALUE;
+    for (int row = 0; row < DEPTH; row++) {
+      cells[row] = cell(h, row);
+      estimate = Math.min(estimate, counters.get(cells[row]));
+    }
+    long updated = estimate + 1;
+    for (int cell : cells) {
+      counters.accumulateAndGet(cell, updated, Math::max);
+    }
+    return updated;
+  }
+
+  private int cell(long h, int row) {
+    return row * (mask + 1) + (int) (seed(h, row) & mask);
+  }
+
+  /** Return the estimated count of the value. */
+  long estimate(CharSequence value) {
+    long h = BloomFilter.rawHash(value);
+    long estimate = Long.MAX_VALUE;
+    for (int row = 0; row < DEPTH; row++) {
+      estimate = Math.min(estimate, counters.get(cell(h, row)));
+    }
+    return estimate;
+  }
+
+  /** Halve every counter, so older counts matter less than recent ones. */
+  void halve() {
+    for (int i = 0; i < counters.length(); i++) {
+      counters.updateAndGet(i, c -> c >>> 1);
+    }
+  }
+
+  int width() {
+    return mask + 1;
+  }
+}
@@ -0,0 +1,309 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Streaming top-K of the public UUIDs that are found by lookups and registered, in fixed memory.
+ * Lookups of unknown IDs are not counted. Each request is counted in a count-min sketch. Keys whose
+ * estimate reaches the smallest count in the top-K replace it. This only takes a lock for keys that
+ * are, or are about to become, among the hottest. Counts are halved after every window of requests
+ * so the report follows recent traffic.
+ *
+ * <p>The report includes the hottest UUIDs, how skewed traffic is, and the share of requests for
+ * the hottest N keys. That share is the best hit ratio a cache of N entries could achieve, and is
+ * used to size the lookup cache.
+ */
+@Component
+@Slf4j
+public class HotKeys {
+  private final boolean enabled;
+
+  private final double sampleRate;
+
+  private final List<Integer> cacheSizes;
+
+  private final Tracker lookups;
+
+  private final Tracker registrations;
+
+  /** Create trackers that keep the given number of hottest keys. */
+  @Autowired
+  public HotKeys(
+      MeterRegistry registry,
+      @Value("${ids.hot-keys.enabled:false}") boolean enabled,
+      @Value("${ids.hot-keys.capacity:1000}") int capacity,
+      @Value("${ids.hot-keys.window:1000000}") long window,
+      @Value("${ids.hot-keys.sample-rate:1.0}") double sampleRate,
+      @Value("${ids.hot-keys.cache-sizes:10,100,1000}") List<Integer> cacheSizes) {
+    this.enabled = enabled;
+    this.sampleRate = sampleRate;
+    this.cacheSizes = List.copyOf(cacheSizes);
+    lookups = enabled ? new Tracker(capacity, window) : null;
+    registrations = enabled ? new Tracker(capacity, window) : null;
+    if (enabled) {
+      log.info(
+          "Tracking the {} hottest keys, sampling {} of requests, halving counts every {}",
+          capacity,
+          sampleRate,
+          window);
+      gauges(registry, "lookup", lookups);
+      gauges(registry, "registration", registrations);
+    }
+  }
+
+  /** Trackers that count nothing. */
+  public static HotKeys disabled(MeterRegistry registry) {
+    return new HotKeys(registry, false, 1, 1, 1, List.of());
+  }
+
+  /**
+   * Least squares fit of log(count) to log(rank), returning the Zipf exponent, e.g. 0 for uniform
+   * traffic and about 1 for typical skewed traffic. At least two distinct counts are needed.
+   */
+  static double zipfExponent(List<Key> hottest) {
+    int n = 0;
+    double sumX = 0;
+    double sumY = 0;
+    double sumXx = 0;
+    double sumXy = 0;
+    for (int rank = 1; rank <= hottest.size(); rank++) {
+      long count = hottest.get(rank - 1).count();
+      if (count <= 0) {
+        break;
+      }
+      double x = Math.log(rank);
+      double y = Math.log(count);
+      n++;
+      sumX += x;
+      sumY += y;
+      sumXx += x * x;
+      sumXy += x * y;
+    }
+    double denominator = n * sumXx - sumX * sumX;
+    if (n < 2 || denominator == 0) {
+      return 0;
+    }
+    return Math.max(0, -(n * sumXy - sumX * sumY) / denominator);
+  }
+
+  private void gauges(MeterRegistry registry, String path, Tracker tracker) {
+    Gauge.builder("ids.hot.keys.skew", tracker, t -> zipfExponent(t.hottest()))
+        .tag("path", path)
+        .description("Zipf exponent fitted to the hottest keys, 0 is uniform")
+        .register(registry);
+    for (int size : cacheSizes) {
+      Gauge.builder("ids.hot.keys.hit.ratio.estimate", tracker, t -> t.share(size))
+          .tag("path", path)
+          .tag("cache.size", String.valueOf(size))
+          .description("Share of requests for the hottest keys that a cache of this size holds")
+          .register(registry);
+    }
+  }
+
+  /** Count a lookup that found the public ID. */
+  public void lookup(String publicId) {
+    record(lookups, publicId);
+  }
+
+  private void record(Tracker tracker, String publicId) {
+    if (!enabled) {
+      return;
+    }
+    if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+      return;
+    }
+    tracker.add(publicId.toLowerCase(Locale.ENGLISH));
+  }
+
+  /** Count a registration resulting in the public ID, whether new or not. */
+  public void registration(String publicId) {
+    record(registrations, publicId);
+  }
+
+  /** Report on lookups and registrations, with at most the given number of hottest keys each. */
+  public Map<String, Report> report(int top) {
+    if (!enabled) {
+      return Map.of();
+    }
+    Map<String, Report> report = new LinkedHashMap<>();
+    report.put("lookups", report(lookups, top));
+    report.put("registrations", report(registrations, top));
+    return report;
+  }
+
+  private Report report(Tracker tracker, int top) {
+    List<Key> hottest = tracker.hottest();
+    Map<String, Double> hitRatios = new LinkedHashMap<>();
+    for (int size : cacheSizes) {
+      hitRatios.put(String.valueOf(size), tracker.share(size));
+    }
+    return Report.builder()
+        .requests(tracker.total())
+        .skew(zipfExponent(hottest))
+        .estimatedHitRatio(hitRatios)
+        .hottest(hottest.subList(0, Math.min(Math.max(0, top), hottest.size())))
+        .build();
+  }
+
+  /** A key and its estimated count in the current window. */
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
+  public static class Key {
+    String uuid;
+
+    long count;
+  }
+
+  /** Summary of the traffic a tracker has seen. */
+  @Data
+  @Builder
+  @NoArgsConstructor
+  @AllArgsConstructor
+  @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
+  public static class Report {
+    /** Requests counted, halved along with the keys at the end of each window. */
+    long requests;
+
+    double skew;
+
+    /** Best possible hit ratio by cache size. */
+    Map<String, Double> estimatedHitRatio;
+
+    List<Key> hottest;
+  }
+
+  /** Count-min sketch plus the hottest keys, ordered by count then key. */
+  static final class Tracker {
+    private static final Comparator<Entry> ORDER =
+        Comparator.comparingLong((Entry e) -> e.count).thenComparing(e -> e.key);
+
+    private final int capacity;
+
+    private final long window;
+
+    private final CountMinSketch sketch;
+
+    private final AtomicLong total = new AtomicLong();
+
+    /** Requests since the tracker started, which unlike the total is never halved. */
+    private final AtomicLong seen = new AtomicLong();
+
+    private final Map<String, Entry> members = new HashMap<>();
+
+    private TreeSet<Entry> heap = new TreeSet<>(ORDER);
+
+    /** The smallest count among the hottest keys, once there are enough of them. */
+    private volatile long floor;
+
+    Tracker(int capacity, long window) {
+      if (capacity <= 0 || window <= 0) {
+        throw new IllegalArgumentException("capacity and window must be positive");
+      }
+      this.capacity = capacity;
+      this.window = window;
+      sketch = new CountMinSketch(Math.max(1024, capacity * 16));
+    }
+
+    void add(String key) {
+      long estimate = sketch.add(key);
+      if (estimate > floor) {
+        offer(key, estimate);
+      }
+      total.incrementAndGet();
+      if (seen.incrementAndGet() % window == 0) {
+        decay();
+      }
+    }
+
+    private synchronized void decay() {
+      sketch.halve();
+      total.updateAndGet(t -> t >>> 1);
+      TreeSet<Entry> halved = new TreeSet<>(ORDER);
+      for (Entry entry : heap) {
+        entry.count >>>= 1;
+        halved.add(entry);
+      }
+      heap = halved;
+      floor = members.size() < capacity ? 0 : heap.first().count;
+    }
+
+    /** The hottest keys, hottest first. */
+    synchronized List<Key> hottest() {
+      List<Key> hottest = new ArrayList<>(heap.size());
+      for (Entry entry : heap.descendingSet()) {
+        hottest.add(new Key(entry.key, entry.count));
+      }
+      return hottest;
+    }
+
+    private synchronized void offer(String key, long estimate) {
+      Entry entry = members.get(key);
+      if (entry != null) {
+        heap.remove(entry);
+        entry.count = Math.max(entry.count, estimate);
+        heap.add(entry);
+      } else if (members.size() < capacity) {
+        entry = new Entry(key, estimate);
+        members.put(key, entry);
+        heap.add(entry);
+      } else if (estimate > heap.first().count) {
+        Entry coldest = heap.pollFirst();
+        members.remove(coldest.key);
+        entry = new Entry(key, estimate);
+        members.put(key, entry);
+        heap.add(entry);
+      }
+      if (members.size() >= capacity) {
+        floor = heap.first().count;
+      }
+    }
+
+    /** The fraction of requests for the hottest keys, up to the given number of them. */
+    double share(int size) {
+      long requests = total();
+      if (requests == 0) {
+        return 0;
+      }
+      long[] counts = hottest().stream().mapToLong(Key::count).limit(size).toArray();
+      return Math.min(1, (double) Arrays.stream(counts).sum() / requests);
+    }
+
+    long total() {
+      return total.get();
+    }
+
+    private static final class Entry {
+      private final String key;
+
+      private long count;
+
+      Entry(String key, long count) {
+        this.key = key;
+        this.count = count;
+      }
+    }
+  }
+}
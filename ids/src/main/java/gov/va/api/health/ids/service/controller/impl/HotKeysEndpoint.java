@@ -0,0 +1,26 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import gov.va.api.health.ids.service.controller.impl.HotKeys.Report;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/** Actuator endpoint at /actuator/hotkeys reporting the hottest public IDs. */
+@Component
+@Endpoint(id = "hotkeys")
+@AllArgsConstructor(onConstructor = @__({@Autowired}))
+public class HotKeysEndpoint {
+  static final int DEFAULT_TOP = 20;
+
+  private final HotKeys hotKeys;
+
+  /** Report on lookups and registrations, e.g. /actuator/hotkeys?top=100. */
+  @ReadOperation
+  public Map<String, Report> hotKeys(@Nullable Integer top) {
+    return hotKeys.report(top == null ? DEFAULT_TOP : top);
+  }
+}
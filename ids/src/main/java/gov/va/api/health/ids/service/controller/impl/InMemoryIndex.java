@@ -0,0 +1,187 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import gov.va.api.health.ids.api.ResourceIdentity;
+import gov.va.api.health.ids.api.StoredPublicId;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+/**
+ * All UUID public IDs held in memory, for deployments where the table rarely changes. Lookups are
+ * answered from memory, only registrations and misses go to the database.
+ *
+ * <p>The index is loaded once after startup by paging through resource_identity_detail by primary
+ * key, then published as a whole. Until then every lookup is a miss. Rows registered after the
+ * load, and public IDs that are not UUIDs, are always misses.
+ */
+@Component
+@Slf4j
+public class InMemoryIndex {
+  private static final String PAGE_QUERY =
+      "select id, uuid, system, resource, identifier from resource_identity_detail"
+          + " where id > ? order by id limit ?";
+
+  static final int PAGE_SIZE = 10_000;
+
+  private final JdbcTemplate jdbc;
+
+  private final boolean enabled;
+
+  private final int expectedRows;
+
+  private final long retryIntervalSeconds;
+
+  private final Counter hits;
+
+  private final Counter misses;
+
+  private volatile UuidIndex index;
+
+  private ScheduledExecutorService loader;
+
+  /** Create an index sized for the expected number of rows. */
+  @Autowired
+  public InMemoryIndex(
+      JdbcTemplate jdbc,
+      MeterRegistry registry,
+      @Value("${ids.in-memory-index.enabled:false}") boolean enabled,
+      @Value("${ids.in-memory-index.expected-rows:1000000}") int expectedRows,
+      @Value("${ids.in-memory-index.retry-interval-seconds:30}") long retryIntervalSeconds) {
+    this.jdbc = jdbc;
+    this.enabled = enabled;
+    this.expectedRows = expectedRows;
+    this.retryIntervalSeconds = retryIntervalSeconds;
+    hits = lookups(registry, "hit");
+    misses = lookups(registry, "miss");
+    if (enabled) {
+      Gauge.builder("ids.index.rows", this, i -> i.index == null ? 0 : i.index.size())
+          .description("Public IDs held in memory")
+          .register(registry);
+      Gauge.builder("ids.index.bytes", this, i -> i.index == null ? 0 : i.index.bytes())
+          .description("Memory used by the in-memory index")
+          .register(registry);
+    }
+  }
+
+  /** An index that never has anything in it. */
+  public static InMemoryIndex disabled(MeterRegistry registry) {
+    return new InMemoryIndex(null, registry, false, 0, 0);
+  }
+
+  private static Counter lookups(MeterRegistry registry, String result) {
+    return Counter.builder("ids.index.lookups")
+        .tag("result", result)
+        .description("Lookups answered by, or missing from, the in-memory index")
+        .register(registry);
+  }
+
+  /** The identities for the UUID, or an empty list if it is not in the index. */
+  public List<ResourceIdentity> find(String uuid) {
+    UuidIndex loaded = index;
+    if (loaded == null) {
+      return List.of();
+    }
+    ResourceIdentity identity = null;
+    if (StoredPublicId.isUuid(uuid)) {
+      UUID parsed = UUID.fromString(uuid);
+      identity = loaded.get(parsed.getMostSignificantBits(), parsed.getLeastSignificantBits());
+    }
+    if (identity == null) {
+      misses.increment();
+      return List.of();
+    }
+    hits.increment();
+    return List.of(identity);
+  }
+
+  /** Read every row with a UUID public ID. */
+  UuidIndex load() {
+    UuidIndex loading = new UuidIndex(expectedRows);
+    long[] highestId = {0};
+    int[] pageRows = {0};
+    do {
+      pageRows[0] = 0;
+      jdbc.query(
+          PAGE_QUERY,
+          (RowCallbackHandler)
+              rs -> {
+                highestId[0] = rs.getLong("id");
+                pageRows[0]++;
+                UUID uuid = StoredPublicId.uuidOf(rs.getBytes("uuid"));
+                if (uuid != null) {
+                  loading.put(
+                      uuid.getMostSignificantBits(),
+                      uuid.getLeastSignificantBits(),
+                      rs.getString("system"),
+                      rs.getString("resource"),
+                      rs.getString("identifier"));
+                }
+              },
+          highestId[0],
+          PAGE_SIZE);
+    } while (pageRows[0] == PAGE_SIZE);
+    loading.trim();
+    return loading;
+  }
+
+  /** Load the index unless it already has been. */
+  void refresh() {
+    if (index != null) {
+      return;
+    }
+    try {
+      long start = System.currentTimeMillis();
+      UuidIndex loaded = load();
+      index = loaded;
+      log.info(
+          "Loaded {} public IDs into memory ({} MB) in {} ms",
+          loaded.size(),
+          loaded.bytes() / (1024 * 1024),
+          System.currentTimeMillis() - start);
+      if (loader != null) {
+        loader.shutdown();
+      }
+    } catch (RuntimeException e) {
+      log.warn("Failed to load in-memory index: {}", e.getMessage());
+    }
+  }
+
+  /** Load the index in the background once the application is running. */
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (!enabled) {
+      return;
+    }
+    loader =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread thread = new Thread(r, "in-memory-index");
+              thread.setDaemon(true);
+              return thread;
+            });
+    loader.scheduleWithFixedDelay(
+        this::refresh, 0, Math.max(1, retryIntervalSeconds), TimeUnit.SECONDS);
+  }
+
+  /** Stop loading. */
+  @PreDestroy
+  public void stop() {
+    if (loader != null) {
+      loader.shutdownNow();
+    }
+  }
+}
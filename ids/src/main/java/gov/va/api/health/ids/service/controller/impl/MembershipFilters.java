@@ -0,0 +1,245 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import gov.va.api.health.ids.api.ResourceIdentity;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bloom filters over registered public UUIDs and private identities. These allow the service to
+ * skip database queries for values that have definitely never been registered. When disabled, or
+ * until the filters have been loaded, every value might be registered.
+ *
+ * <p>Filters are loaded after startup by paging through resource_identity_detail by primary key,
+ * then kept current with registrations made by this instance and periodic catch up queries for rows
+ * added by other instances. Between catch ups, a UUID registered by another instance may be
+ * reported as unknown by this one.
+ *
+ * <p>Auto increment IDs can commit out of order, so a row may appear below the highest ID already
+ * loaded. Each catch up reads again the trailing window of IDs below the highest, so such rows are
+ * still found as long as their transaction commits before that many newer IDs are allocated.
+ */
+@Component
+@Slf4j
+public class MembershipFilters {
+  private static final String PAGE_QUERY =
+      "select id, uuid, system, resource, identifier from resource_identity_detail"
+          + " where id > ? order by id limit ?";
+
+  static final int PAGE_SIZE = 10_000;
+
+  private final JdbcTemplate jdbc;
+
+  private final boolean enabled;
+
+  private final long refreshIntervalSeconds;
+
+  private final long rescanIds;
+
+  private final BloomFilter uuids;
+
+  private final BloomFilter identities;
+
+  private final Counter skippedLookups;
+
+  private final Counter skippedRegistrations;
+
+  private volatile boolean ready;
+
+  private long highestId;
+
+  private ScheduledExecutorService refresher;
+
+  /** Create filters sized for the expected number of registrations. */
+  @Autowired
+  public MembershipFilters(
+      JdbcTemplate jdbc,
+      MeterRegistry registry,
+      @Value("${ids.membership-filter.enabled:false}") boolean enabled,
+      @Value("${ids.membership-filter.expected-insertions:10000000}") long expectedInsertions,
+      @Value("${ids.membership-filter.false-positive-probability:0.01}")
+          double falsePositiveProbability,
+      @Value("${ids.membership-filter.refresh-interval-seconds:10}") long refreshIntervalSeconds,
+      @Value("${ids.membership-filter.rescan-ids:10000}") long rescanIds) {
+    this.jdbc = jdbc;
+    this.enabled = enabled;
+    this.refreshIntervalSeconds = refreshIntervalSeconds;
+    this.rescanIds = Math.max(0, rescanIds);
+    uuids = enabled ? new BloomFilter(expectedInsertions, falsePositiveProbability) : null;
+    identities = enabled ? new BloomFilter(expectedInsertions, falsePositiveProbability) : null;
+    skippedLookups = skipped(registry, "lookup");
+    skippedRegistrations = skipped(registry, "registration");
+    if (enabled) {
+      gauges(registry, "uuid", uuids);
+      gauges(registry, "identity", identities);
+    }
+  }
+
+  /** Filters that always report values as possibly registered. */
+  public static MembershipFilters disabled(MeterRegistry registry) {
+    return new MembershipFilters(null, registry, false, 1, 0.5, 0, 0);
+  }
+
+  private static void gauges(MeterRegistry registry, String name, BloomFilter filter) {
+    Gauge.builder("ids.membership.filter.bytes", filter, f -> f.bitSize() / 8.0)
+        .tag("filter", name)
+        .description("Memory used by the membership filter")
+        .register(registry);
+    Gauge.builder(
+            "ids.membership.filter.false.positive.rate",
+            filter,
+            BloomFilter::expectedFalsePositiveProbability)
+        .tag("filter", name)
+        .description("Estimated false positive rate given the values added so far")
+        .register(registry);
+  }
+
+  private static String identityKey(String system, String resource, String identifier) {
+    /* The database compares without regard to case, so must the filter. */
+    return (system + '\u0000' + resource + '\u0000' + identifier).toLowerCase(Locale.ENGLISH);
+  }
+
+  private static Counter skipped(MeterRegistry registry, String query) {
+    return Counter.builder("ids.membership.skipped")
+        .tag("query", query)
+        .description("Database queries skipped because the value was definitely not registered")
+        .register(registry);
+  }
+
+  private static String uuidKey(String uuid) {
+    return uuid.toLowerCase(Locale.ENGLISH);
+  }
+
+  /** Record a new registration. */
+  public void add(ResourceIdentityDetail detail) {
+    if (!enabled) {
+      return;
+    }
+    uuids.put(uuidKey(detail.uuid()));
+    identities.put(identityKey(detail.system(), detail.resource(), detail.identifier()));
+  }
+
+  /**
+   * Load rows added since the last load, reading the trailing window of IDs again for rows that
+   * committed out of order. Returns the number of rows above the previous highest ID.
+   */
+  synchronized long catchUp() {
+    long previousHighestId = highestId;
+    long loaded = 0;
+    long after = Math.max(0, highestId - rescanIds);
+    int pageRows;
+    do {
+      long[] page = {after, 0, 0};
+      jdbc.query(
+          PAGE_QUERY,
+          (RowCallbackHandler)
+              rs -> {
+                page[0] = rs.getLong("id");
+                page[1]++;
+                if (page[0] > previousHighestId) {
+                  page[2]++;
+                }
+                uuids.put(uuidKey(PublicIdConverter.decode(rs.getBytes("uuid"))));
+                identities.put(
+                    identityKey(
+                        rs.getString("system"),
+                        rs.getString("resource"),
+                        rs.getString("identifier")));
+              },
+          after,
+          PAGE_SIZE);
+      after = page[0];
+      pageRows = (int) page[1];
+      loaded += page[2];
+    } while (pageRows == PAGE_SIZE);
+    highestId = Math.max(highestId, after);
+    return loaded;
+  }
+
+  /**
+   * Return false if the identity has definitely never been registered, in which case the existence
+   * query can be skipped.
+   */
+  public boolean mightContainIdentity(ResourceIdentity identity) {
+    if (!ready) {
+      return true;
+    }
+    boolean maybe =
+        identities.mightContain(
+            identityKey(identity.system(), identity.resource(), identity.identifier()));
+    if (!maybe) {
+      skippedRegistrations.increment();
+    }
+    return maybe;
+  }
+
+  /**
+   * Return false if the UUID has definitely never been registered, in which case the lookup query
+   * can be skipped.
+   */
+  public boolean mightContainUuid(String uuid) {
+    if (!ready) {
+      return true;
+    }
+    boolean maybe = uuids.mightContain(uuidKey(uuid));
+    if (!maybe) {
+      skippedLookups.increment();
+    }
+    return maybe;
+  }
+
+  /** Catch up with new rows. The filters are ready for use after the first successful load. */
+  void refresh() {
+    try {
+      long start = System.currentTimeMillis();
+      long loaded = catchUp();
+      if (!ready) {
+        ready = true;
+        log.info(
+            "Loaded {} registrations into membership filters in {} ms",
+            loaded,
+            System.currentTimeMillis() - start);
+      }
+    } catch (RuntimeException e) {
+      log.warn("Failed to load membership filters: {}", e.getMessage());
+    }
+  }
+
+  /** Load the filters in the background once the application is running. */
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (!enabled) {
+      return;
+    }
+    refresher =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread thread = new Thread(r, "membership-filters");
+              thread.setDaemon(true);
+              return thread;
+            });
+    refresher.scheduleWithFixedDelay(
+        this::refresh, 0, Math.max(1, refreshIntervalSeconds), TimeUnit.SECONDS);
+  }
+
+  /** Stop catching up with registrations from other instances. */
+  @PreDestroy
+  public void stop() {
+    if (refresher != null) {
+      refresher.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import gov.va.api.health.ids.api.StoredPublicId;
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Stores public IDs compactly, in the {@link StoredPublicId} format. UUIDs are stored as a marker
+ * byte followed by their 16 bytes, 17 bytes in all. The marker keeps them apart from anything else,
+ * such as patient ICNs, which is stored as its UTF-8 text.
+ *
+ * <p>Binary values are compared byte for byte. UUIDs still match without regard to case, since
+ * both cases encode to the same bytes, but other public IDs now only match in the case they were
+ * registered in. The text column they replaced compared them without regard to case.
+ */
+@Converter
+public class PublicIdConverter implements AttributeConverter<String, byte[]> {
+  /** Convert stored bytes back into the public ID. */
+  public static String decode(byte[] stored) {
+    return StoredPublicId.decode(stored);
+  }
+
+  /** Convert a public ID into the bytes that are stored. */
+  public static byte[] encode(String publicId) {
+    return StoredPublicId.encode(publicId);
+  }
+
+  @Override
+  public byte[] convertToDatabaseColumn(String publicId) {
+    return encode(publicId);
+  }
+
+  @Override
+  public String convertToEntityAttribute(byte[] stored) {
+    return decode(stored);
+  }
+}
@@ -0,0 +1,186 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import static gov.va.api.health.ids.service.controller.impl.ResourceIdentityDetailRepositoryImpl.INSERT_CHUNK_SIZE;
+import static gov.va.api.health.ids.service.controller.impl.ResourceIdentityDetailRepositoryImpl.MAX_ATTEMPTS;
+
+import gov.va.api.health.ids.api.Registration;
+import gov.va.api.health.ids.api.RegistrationPage;
+import gov.va.api.health.ids.api.ResourceIdentity;
+import gov.va.api.health.ids.service.controller.impl.ResourceIdentityDetailRepositoryImpl.IdempotentInsert;
+import io.r2dbc.spi.R2dbcDataIntegrityViolationException;
+import io.r2dbc.spi.Row;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Non-blocking versions of the {@link ResourceIdentityDetailRepository} operations used by the
+ * reactive API. Spring Data R2DBC cannot apply the JPA converter for stored public IDs, so these
+ * use the same statements as the blocking repository, directly over R2DBC. There are no read
+ * replicas, all statements go to the primary database.
+ */
+@Component
+@Profile("reactive")
+@Slf4j
+public class ReactiveResourceIdentityDetailRepository {
+  private static final String IDENTITIES_BY_UUID =
+      "select system, resource, identifier from resource_identity_detail where uuid = :uuid";
+
+  private static final String DETAILS_BY_IDENTIFIERS =
+      "select uuid, system, resource, identifier from resource_identity_detail"
+          + " where system = :system and resource = :resource and identifier in (:identifiers)";
+
+  private static final String REGISTRATIONS_AFTER =
+      "select uuid, system, resource, identifier, id from resource_identity_detail"
+          + " where id > :cursor order by id limit :count";
+
+  /** The SQL state for unique constraint violations, and the MySQL specific error code. */
+  private static final String DUPLICATE_KEY_STATE = "23505";
+
+  private static final int MYSQL_DUPLICATE_KEY = 1062;
+
+  private final DatabaseClient database;
+
+  private final IdempotentInsert idempotentInsert;
+
+  /** Determine the idempotent insert syntax from the database the client is connected to. */
+  @Autowired
+  public ReactiveResourceIdentityDetailRepository(DatabaseClient database) {
+    this.database = database;
+    String product = database.getConnectionFactory().getMetadata().getName();
+    idempotentInsert = IdempotentInsert.forDatabase(product);
+    log.info("Using {} reactive idempotent inserts for {}", idempotentInsert, product);
+  }
+
+  /**
+   * Spring 5 translates every R2DBC integrity violation, including duplicate keys, to a general
+   * DataIntegrityViolationException, so the duplicate key is recognized from the driver exception.
+   */
+  private static boolean isConcurrentRegistration(Throwable e) {
+    if (e instanceof DuplicateKeyException || e instanceof ConcurrencyFailureException) {
+      return true;
+    }
+    if (!(e.getCause() instanceof R2dbcDataIntegrityViolationException)) {
+      return false;
+    }
+    R2dbcDataIntegrityViolationException cause =
+        (R2dbcDataIntegrityViolationException) e.getCause();
+    return DUPLICATE_KEY_STATE.equals(cause.getSqlState())
+        || cause.getErrorCode() == MYSQL_DUPLICATE_KEY;
+  }
+
+  private static ResourceIdentityDetail toDetail(Row row) {
+    return ResourceIdentityDetail.builder()
+        .uuid(PublicIdConverter.decode(row.get(0, byte[].class)))
+        .system(row.get(1, String.class))
+        .resource(row.get(2, String.class))
+        .identifier(row.get(3, String.class))
+        .build();
+  }
+
+  /** See {@link ResourceIdentityDetailRepository#findBySystemAndResourceAndIdentifierIn}. */
+  public Flux<ResourceIdentityDetail> findBySystemAndResourceAndIdentifierIn(
+      String system, String resource, Collection<String> identifiers) {
+    return database
+        .sql(DETAILS_BY_IDENTIFIERS)
+        .bind("system", system)
+        .bind("resource", resource)
+        .bind("identifiers", identifiers)
+        .map((row, metadata) -> toDetail(row))
+        .all();
+  }
+
+  /** See {@link ResourceIdentityDetailRepositoryCustom#findIdentitiesByUuid(String)}. */
+  public Flux<ResourceIdentity> findIdentitiesByUuid(String uuid) {
+    return database
+        .sql(IDENTITIES_BY_UUID)
+        .bind("uuid", PublicIdConverter.encode(uuid))
+        .map(
+            (row, metadata) ->
+                ResourceIdentity.builder()
+                    .system(row.get(0, String.class))
+                    .resource(row.get(1, String.class))
+                    .identifier(row.get(2, String.class))
+                    .build())
+        .all();
+  }
+
+  private Mono<Void> insert(List<ResourceIdentityDetail> chunk) {
+    GenericExecuteSpec statement = database.sql(idempotentInsert.namedSql(chunk.size()));
+    for (int i = 0; i < chunk.size(); i++) {
+      ResourceIdentityDetail detail = chunk.get(i);
+      statement =
+          statement
+              .bind("identifier" + i, detail.identifier())
+              .bind("uuid" + i, PublicIdConverter.encode(detail.uuid()))
+              .bind("system" + i, detail.system())
+              .bind("resource" + i, detail.resource());
+    }
+    return statement
+        .then()
+        .retryWhen(
+            Retry.max(MAX_ATTEMPTS - 1)
+                .filter(ReactiveResourceIdentityDetailRepository::isConcurrentRegistration)
+                .doBeforeRetry(
+                    signal ->
+                        log.info(
+                            "Retrying idempotent insert after concurrent registration: {}",
+                            signal.failure().getMessage())));
+  }
+
+  /**
+   * See {@link ResourceIdentityDetailRepositoryCustom#insertAllIfAbsent(Collection)}. Chunks are
+   * written one after another, in the same order as the blocking repository.
+   */
+  public Mono<Void> insertAllIfAbsent(Collection<ResourceIdentityDetail> details) {
+    if (details.isEmpty()) {
+      return Mono.empty();
+    }
+    List<ResourceIdentityDetail> sorted = new ArrayList<>(details);
+    sorted.sort(Comparator.comparing(ResourceIdentityDetail::uuid));
+    return Flux.fromIterable(sorted).buffer(INSERT_CHUNK_SIZE).concatMap(this::insert).then();
+  }
+
+  /** See {@link ResourceIdentityDetailRepositoryCustom#readRegistrationsAfter(long, int)}. */
+  public Mono<RegistrationPage> readRegistrationsAfter(long cursor, int count) {
+    return database
+        .sql(REGISTRATIONS_AFTER)
+        .bind("cursor", cursor)
+        .bind("count", count)
+        .map(
+            (row, metadata) -> {
+              ResourceIdentityDetail detail = toDetail(row);
+              detail.pk(((Number) row.get(4)).intValue());
+              return detail;
+            })
+        .all()
+        .collectList()
+        .map(
+            details ->
+                RegistrationPage.builder()
+                    .next(details.isEmpty() ? cursor : details.get(details.size() - 1).pk())
+                    .registrations(
+                        details.stream()
+                            .map(
+                                detail ->
+                                    Registration.builder()
+                                        .uuid(detail.uuid())
+                                        .resourceIdentities(List.of(detail.asResourceIdentity()))
+                                        .build())
+                            .collect(Collectors.toList()))
+                    .build());
+  }
+}
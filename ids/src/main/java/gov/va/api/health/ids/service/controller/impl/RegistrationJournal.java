@@ -0,0 +1,687 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import javax.annotation.PreDestroy;
+import javax.validation.ConstraintViolationException;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Durable local journal of new registrations that have not yet been written to the database. Since
+ * public UUIDs are deterministic, registrations can be answered as soon as they are safely on local
+ * disk. A background writer drains the journal into resource_identity_detail.
+ *
+ * <p>Since registrations are acknowledged before the database sees them, appends are refused if the
+ * database would not accept them. Refusals are counted by {@code ids.journal.refused}.
+ *
+ * <p>The journal is a series of append-only segment files. Appends are written to the active
+ * segment and forced to disk before returning. Concurrent appends are queued and written together
+ * by whichever of them holds the lock, so they share a single force. Periodically, the active
+ * segment is sealed and a new one started. Sealed segments are inserted into the database, then
+ * deleted. Segments left behind by a previous run are replayed on startup. Each record carries a
+ * checksum, so a record torn by a crash mid-write is discarded, which is safe since it was never
+ * acknowledged.
+ *
+ * <p>If the database rejects a segment, its records are inserted one at a time, and those the
+ * database still rejects are moved to a {@code .rejected} file next to the segment, so one bad
+ * record cannot hold up the rest. A segment with a corrupt record that is not at its end is kept as
+ * a {@code .corrupt} file after its readable records are drained, since the records after it may
+ * have been acknowledged. Both are counted and logged for an operator to inspect, and the number of
+ * these files in the directory is reported by {@code ids.journal.set.aside} until they are removed.
+ *
+ * <p>Pending registrations are indexed by UUID so this instance can answer lookups for them. Other
+ * instances will not find them until they have been drained.
+ */
+@Component
+@Slf4j
+public class RegistrationJournal {
+  private static final String SEGMENT_PREFIX = "registrations-";
+
+  private static final String SEGMENT_SUFFIX = ".journal";
+
+  private static final String REJECTED_SUFFIX = ".rejected";
+
+  private static final String CORRUPT_SUFFIX = ".corrupt";
+
+  /** The length and checksum that precede each record. */
+  private static final int RECORD_HEADER_BYTES = 12;
+
+  /** Records hold four short strings, anything longer is corrupt. */
+  private static final int MAX_RECORD_BYTES = 64 * 1024;
+
+  /** The width, in characters, of each resource_identity_detail column. */
+  private static final int MAX_COLUMN_LENGTH = 45;
+
+  /** The width of the binary uuid column, 45 characters of the utf8 column it replaced. */
+  private static final int MAX_STORED_PUBLIC_ID_BYTES = 135;
+
+  private final ResourceIdentityDetailRepository repository;
+
+  private final boolean enabled;
+
+  private final Path directory;
+
+  private final long drainIntervalMillis;
+
+  private final Map<String, ResourceIdentityDetail> pending = new ConcurrentHashMap<>();
+
+  /** Appends waiting for one of them to write the whole group. */
+  private final Queue<Append> queued = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Guards the active segment, the sealed list, and the outcome of queued appends. A lock rather
+   * than a monitor, since appends wait on disk writes, which would pin a virtual thread to its
+   * carrier.
+   */
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /** Sealed segments waiting to be drained, oldest first. */
+  private final List<Path> sealed = new ArrayList<>();
+
+  private final Counter drained;
+
+  private final Counter drainFailures;
+
+  private final Counter rejected;
+
+  private final Counter corruptSegments;
+
+  private final Counter refused;
+
+  private long nextSegment;
+
+  private FileChannel active;
+
+  private Path activePath;
+
+  private ScheduledExecutorService drainer;
+
+  /** Create a journal in the given directory, replaying anything left by a previous run. */
+  @Autowired
+  public RegistrationJournal(
+      ResourceIdentityDetailRepository repository,
+      MeterRegistry registry,
+      @Value("${ids.registration-journal.enabled:false}") boolean enabled,
+      @Value("${ids.registration-journal.directory:journal}") String directory,
+      @Value("${ids.registration-journal.drain-interval-millis:200}") long drainIntervalMillis) {
+    this.repository = repository;
+    this.enabled = enabled;
+    this.directory = enabled ? Paths.get(directory) : null;
+    this.drainIntervalMillis = drainIntervalMillis;
+    drained =
+        drainCounter(registry, "ids.journal.drained", "Registrations written to the database");
+    drainFailures =
+        drainCounter(registry, "ids.journal.drain.failures", "Attempts to drain that failed");
+    rejected =
+        drainCounter(
+            registry, "ids.journal.rejected", "Registrations the database rejected, set aside");
+    corruptSegments =
+        drainCounter(
+            registry,
+            "ids.journal.corrupt.segments",
+            "Segments kept because records after a corrupt one could not be read");
+    refused =
+        drainCounter(
+            registry,
+            "ids.journal.refused",
+            "Registrations refused before journaling because the database would reject them");
+    if (enabled) {
+      Gauge.builder("ids.journal.pending", pending, Map::size)
+          .description("Registrations in the journal that are not yet in the database")
+          .register(registry);
+      Gauge.builder("ids.journal.set.aside", this, RegistrationJournal::setAsideFiles)
+          .description("Rejected and corrupt files in the journal waiting for an operator")
+          .register(registry);
+      replay();
+    }
+  }
+
+  /** A journal that does nothing, registrations go straight to the database. */
+  public static RegistrationJournal disabled(MeterRegistry registry) {
+    return new RegistrationJournal(null, registry, false, null, 0);
+  }
+
+  /**
+   * Refuse a registration that the database insert would reject, since it could not be written
+   * after being acknowledged. Every column must have a value of at most 45 characters, all of which
+   * the utf8 columns can hold, and the stored public ID must fit its binary column.
+   */
+  private static void checkInsertable(ResourceIdentityDetail detail) {
+    checkColumn("uuid", detail.uuid());
+    checkColumn("system", detail.system());
+    checkColumn("resource", detail.resource());
+    checkColumn("identifier", detail.identifier());
+    if (PublicIdConverter.encode(detail.uuid()).length > MAX_STORED_PUBLIC_ID_BYTES) {
+      throw refusal("uuid", detail.uuid(), "is too long to store");
+    }
+  }
+
+  private static void checkColumn(String column, String value) {
+    if (value == null || value.isBlank()) {
+      throw refusal(column, value, "is missing");
+    }
+    if (value.length() > MAX_COLUMN_LENGTH) {
+      throw refusal(column, value, "is longer than " + MAX_COLUMN_LENGTH + " characters");
+    }
+    if (value.codePoints().anyMatch(Character::isSupplementaryCodePoint)) {
+      throw refusal(column, value, "has characters the database cannot store");
+    }
+  }
+
+  private static Counter drainCounter(MeterRegistry registry, String name, String description) {
+    return Counter.builder(name).description(description).register(registry);
+  }
+
+  private static String key(String uuid) {
+    return uuid.toLowerCase(Locale.ENGLISH);
+  }
+
+  private static ConstraintViolationException refusal(String column, String value, String reason) {
+    return new ConstraintViolationException(
+        "Cannot register " + column + " " + value + ", it " + reason, Set.of());
+  }
+
+  /**
+   * Read one record at the buffer's position, or return null if it is incomplete or corrupt. The
+   * buffer is left after the record.
+   */
+  private static ResourceIdentityDetail readRecord(ByteBuffer buffer) {
+    if (buffer.remaining() < RECORD_HEADER_BYTES) {
+      return null;
+    }
+    int length = buffer.getInt();
+    long checksum = buffer.getLong();
+    if (length < 0 || length > MAX_RECORD_BYTES || length > buffer.remaining()) {
+      return null;
+    }
+    byte[] record = new byte[length];
+    buffer.get(record);
+    CRC32 crc = new CRC32();
+    crc.update(record);
+    if (crc.getValue() != checksum) {
+      return null;
+    }
+    DataInputStream fields = new DataInputStream(new ByteArrayInputStream(record));
+    try {
+      return ResourceIdentityDetail.builder()
+          .uuid(readString(fields))
+          .system(readString(fields))
+          .resource(readString(fields))
+          .identifier(readString(fields))
+          .build();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Read the records of a segment, up to the first incomplete or corrupt record. Normally that can
+   * only be the last record, torn when the service stopped unexpectedly, and nothing is lost. If
+   * anything other than zeros follows it, the number of bytes that could not be read is reported.
+   */
+  static SegmentContents readSegment(Path segment) throws IOException {
+    byte[] bytes = Files.readAllBytes(segment);
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    List<ResourceIdentityDetail> records = new ArrayList<>();
+    while (buffer.hasRemaining()) {
+      int start = buffer.position();
+      ResourceIdentityDetail detail = readRecord(buffer);
+      if (detail == null) {
+        return new SegmentContents(records, tornTail(bytes, start) ? 0 : bytes.length - start);
+      }
+      records.add(detail);
+    }
+    return new SegmentContents(records, 0);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * A corrupt record is the torn end of the segment if the length in its header reaches the end of
+   * the file, or if nothing but zeros, which some file systems leave after a crash, follow it.
+   */
+  private static boolean tornTail(byte[] bytes, int start) {
+    if (bytes.length - start < RECORD_HEADER_BYTES) {
+      return true;
+    }
+    int length = ByteBuffer.wrap(bytes, start, RECORD_HEADER_BYTES).getInt();
+    if (length >= 0
+        && length <= MAX_RECORD_BYTES
+        && (long) start + RECORD_HEADER_BYTES + length >= bytes.length) {
+      return true;
+    }
+    for (int i = start; i < bytes.length; i++) {
+      if (bytes[i] != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void writeRecord(DataOutputStream out, ResourceIdentityDetail detail)
+      throws IOException {
+    ByteArrayOutputStream record = new ByteArrayOutputStream();
+    DataOutputStream fields = new DataOutputStream(record);
+    writeString(fields, detail.uuid());
+    writeString(fields, detail.system());
+    writeString(fields, detail.resource());
+    writeString(fields, detail.identifier());
+    byte[] bytes = record.toByteArray();
+    CRC32 crc = new CRC32();
+    crc.update(bytes);
+    out.writeInt(bytes.length);
+    out.writeLong(crc.getValue());
+    out.write(bytes);
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Durably record new registrations. Those already pending are not written again. When this
+   * returns, the registrations will be in the database eventually, even if the service stops. If
+   * any of them would be rejected by the database, none are recorded.
+   */
+  @SneakyThrows
+  public void append(Collection<ResourceIdentityDetail> details) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    List<ResourceIdentityDetail> appended = new ArrayList<>(details.size());
+    /* Concurrent appends of the same registration may both be written, draining is idempotent. */
+    for (ResourceIdentityDetail detail : details) {
+      if (pending.containsKey(key(detail.uuid()))) {
+        continue;
+      }
+      try {
+        checkInsertable(detail);
+      } catch (ConstraintViolationException e) {
+        refused.increment();
+        throw e;
+      }
+      writeRecord(out, detail);
+      appended.add(detail);
+    }
+    if (appended.isEmpty()) {
+      return;
+    }
+    Append append = new Append(bytes.toByteArray(), appended);
+    queued.add(append);
+    lock.lock();
+    try {
+      if (!append.written) {
+        writeQueued();
+      }
+    } finally {
+      lock.unlock();
+    }
+    if (append.failure != null) {
+      throw append.failure;
+    }
+  }
+
+  /**
+   * Write the sealed segments to the database, returning the number of registrations written. If
+   * the database cannot be reached, draining stops and is tried again later.
+   */
+  long drain() {
+    long count = 0;
+    for (Path segment : sealSegments()) {
+      try {
+        SegmentContents contents = readSegment(segment);
+        count += insert(segment, contents.records());
+        if (contents.unreadBytes() > 0) {
+          Path kept = sibling(segment, CORRUPT_SUFFIX);
+          Files.move(segment, kept, StandardCopyOption.REPLACE_EXISTING);
+          corruptSegments.increment();
+          log.error(
+              "Kept {}, {} bytes after a corrupt record could not be read",
+              kept,
+              contents.unreadBytes());
+        } else {
+          Files.delete(segment);
+        }
+        lock.lock();
+        try {
+          sealed.remove(segment);
+        } finally {
+          lock.unlock();
+        }
+        for (ResourceIdentityDetail detail : contents.records()) {
+          pending.remove(key(detail.uuid()));
+        }
+      } catch (IOException | RuntimeException e) {
+        drainFailures.increment();
+        log.warn("Failed to drain {}, will try again: {}", segment, e.getMessage());
+        break;
+      }
+    }
+    return count;
+  }
+
+  /** Return false if registrations are written directly to the database. */
+  public boolean enabled() {
+    return enabled;
+  }
+
+  /** The pending registration for the UUID, if it has not been drained yet. */
+  public ResourceIdentityDetail findPending(String uuid) {
+    if (!enabled || pending.isEmpty()) {
+      return null;
+    }
+    return pending.get(key(uuid));
+  }
+
+  /** Force the directory itself to disk so newly created segments survive a crash. */
+  private void forceDirectory() {
+    try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+      dir.force(true);
+    } catch (IOException e) {
+      /* Not every platform allows opening directories. */
+      log.debug("Cannot force {}: {}", directory, e.getMessage());
+    }
+  }
+
+  /**
+   * Insert the records of a segment, returning the number written. If the database rejects them,
+   * each is inserted on its own, and those it still rejects are moved to a file beside the segment.
+   * Any other failure is thrown so the whole segment is tried again, which is safe since inserts
+   * skip existing registrations.
+   */
+  private long insert(Path segment, List<ResourceIdentityDetail> records) throws IOException {
+    try {
+      repository.insertAllIfAbsent(records);
+      drained.increment(records.size());
+      return records.size();
+    } catch (DataIntegrityViolationException e) {
+      log.warn(
+          "Database rejected {}, inserting records one at a time: {}", segment, e.getMessage());
+    }
+    List<ResourceIdentityDetail> refused = new ArrayList<>();
+    for (ResourceIdentityDetail detail : records) {
+      try {
+        repository.insertAllIfAbsent(List.of(detail));
+      } catch (DataIntegrityViolationException e) {
+        refused.add(detail);
+      }
+    }
+    if (!refused.isEmpty()) {
+      Path rejectedPath = sibling(segment, REJECTED_SUFFIX);
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      for (ResourceIdentityDetail detail : refused) {
+        writeRecord(out, detail);
+      }
+      try (FileChannel file =
+          FileChannel.open(
+              rejectedPath,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.TRUNCATE_EXISTING)) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining()) {
+          file.write(buffer);
+        }
+        file.force(false);
+      }
+      rejected.increment(refused.size());
+      log.error("Moved {} registrations the database rejected to {}", refused.size(), rejectedPath);
+    }
+    drained.increment(records.size() - refused.size());
+    return records.size() - refused.size();
+  }
+
+  /**
+   * Write every queued append and force them to disk together. Appends that arrive while the disk
+   * is busy are written by the next one to get the lock. If writing fails, the segment is sealed so
+   * the partial write is its torn end. Called with the lock held.
+   */
+  private void writeQueued() {
+    List<Append> group = new ArrayList<>();
+    for (Append append = queued.poll(); append != null; append = queued.poll()) {
+      group.add(append);
+    }
+    IOException failure = null;
+    try {
+      if (active == null) {
+        openSegment();
+      }
+      ByteBuffer[] buffers = new ByteBuffer[group.size()];
+      for (int i = 0; i < buffers.length; i++) {
+        buffers[i] = ByteBuffer.wrap(group.get(i).bytes);
+      }
+      while (buffers[buffers.length - 1].hasRemaining()) {
+        active.write(buffers);
+      }
+      active.force(false);
+    } catch (IOException e) {
+      failure = e;
+      sealAfterFailure();
+    }
+    for (Append append : group) {
+      if (failure == null) {
+        for (ResourceIdentityDetail detail : append.records) {
+          pending.put(key(detail.uuid()), detail);
+        }
+      }
+      append.failure = failure;
+      append.written = true;
+    }
+  }
+
+  private void sealAfterFailure() {
+    if (active == null) {
+      return;
+    }
+    try {
+      active.close();
+    } catch (IOException e) {
+      log.warn("Cannot close {}: {}", activePath, e.getMessage());
+    }
+    sealed.add(activePath);
+    active = null;
+  }
+
+  private void openSegment() throws IOException {
+    activePath =
+        directory.resolve(
+            String.format("%s%019d%s", SEGMENT_PREFIX, nextSegment++, SEGMENT_SUFFIX));
+    active =
+        FileChannel.open(
+            activePath,
+            StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+    forceDirectory();
+  }
+
+  private void replay() {
+    try {
+      Files.createDirectories(directory);
+      List<Path> segments;
+      try (Stream<Path> files = Files.list(directory)) {
+        segments =
+            files
+                .filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                .filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                .sorted()
+                .collect(Collectors.toList());
+      }
+      long replayed = 0;
+      for (Path segment : segments) {
+        SegmentContents contents = readSegment(segment);
+        for (ResourceIdentityDetail detail : contents.records()) {
+          pending.put(key(detail.uuid()), detail);
+          replayed++;
+        }
+        if (contents.unreadBytes() > 0) {
+          log.warn(
+              "{} has {} bytes after a corrupt record that cannot be replayed",
+              segment,
+              contents.unreadBytes());
+        }
+        String name = segment.getFileName().toString();
+        nextSegment =
+            Math.max(
+                nextSegment,
+                Long.parseLong(
+                        name.substring(
+                            SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()))
+                    + 1);
+      }
+      sealed.addAll(segments);
+      log.info("Replayed {} pending registrations from {}", replayed, directory.toAbsolutePath());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot replay registration journal in " + directory, e);
+    }
+  }
+
+  /** Seal the active segment, if there is one, and return all sealed segments. */
+  @SneakyThrows
+  private List<Path> sealSegments() {
+    lock.lock();
+    try {
+      if (active != null) {
+        active.close();
+        sealed.add(activePath);
+        active = null;
+      }
+      return new ArrayList<>(sealed);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** The file a segment is renamed to, or set aside in, with the given suffix. */
+  private Path sibling(Path segment, String suffix) {
+    String name = segment.getFileName().toString();
+    return segment.resolveSibling(
+        name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + suffix);
+  }
+
+  /** The number of rejected and corrupt files left in the journal directory. */
+  private long setAsideFiles() {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+          .map(p -> p.getFileName().toString())
+          .filter(name -> name.endsWith(REJECTED_SUFFIX) || name.endsWith(CORRUPT_SUFFIX))
+          .count();
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  /** Drain the journal in the background once the application is running. */
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (!enabled) {
+      return;
+    }
+    drainer =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread thread = new Thread(r, "registration-journal");
+              thread.setDaemon(true);
+              return thread;
+            });
+    drainer.scheduleWithFixedDelay(
+        this::drain, 0, Math.max(1, drainIntervalMillis), TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stop draining, making one last attempt to write everything to the database. Anything left will
+   * be replayed on the next start.
+   */
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    if (!enabled) {
+      return;
+    }
+    if (drainer != null) {
+      drainer.shutdown();
+      drainer.awaitTermination(30, TimeUnit.SECONDS);
+    }
+    drain();
+    sealSegments();
+  }
+
+  /** Records waiting to be written by {@link #writeQueued()}, guarded by the lock. */
+  private static final class Append {
+    private final byte[] bytes;
+
+    private final List<ResourceIdentityDetail> records;
+
+    private boolean written;
+
+    private IOException failure;
+
+    Append(byte[] bytes, List<ResourceIdentityDetail> records) {
+      this.bytes = bytes;
+      this.records = records;
+    }
+  }
+
+  /** The readable records of a segment, and how many bytes after a corrupt record were not. */
+  static final class SegmentContents {
+    private final List<ResourceIdentityDetail> records;
+
+    private final long unreadBytes;
+
+    SegmentContents(List<ResourceIdentityDetail> records, long unreadBytes) {
+      this.records = records;
+      this.unreadBytes = unreadBytes;
+    }
+
+    List<ResourceIdentityDetail> records() {
+      return records;
+    }
+
+    long unreadBytes() {
+      return unreadBytes;
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import gov.va.api.health.ids.api.ResourceIdentity;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded, in-process cache of public UUID to resource identities. Once registered, the identities
+ * for a UUID never change, so entries never need to be invalidated. Unknown UUIDs are not cached
+ * since they may be registered later.
+ */
+@Component
+@Slf4j
+public class ResourceIdentityCache {
+  static final String NAME = "ids.lookup";
+
+  private final Cache<String, List<ResourceIdentity>> cache;
+
+  /** Loads in progress for callers that cannot wait, by UUID. */
+  private final ConcurrentHashMap<String, CompletableFuture<List<ResourceIdentity>>> loading =
+      new ConcurrentHashMap<>();
+
+  /** Create a cache holding up to the given number of UUIDs and publish its metrics. */
+  @Autowired
+  public ResourceIdentityCache(
+      @Value("${ids.lookup-cache.maximum-size:100000}") long maximumSize, MeterRegistry registry) {
+    log.info("Caching up to {} lookups", maximumSize);
+    cache = Caffeine.newBuilder().maximumSize(maximumSize).recordStats().build();
+    CaffeineCacheMetrics.monitor(registry, cache, NAME);
+    Gauge.builder(NAME + ".cache.hit.ratio", cache, c -> c.stats().hitRate())
+        .description("Fraction of lookups answered without querying the database")
+        .register(registry);
+  }
+
+  /**
+   * Return the cached identities for the UUID without loading them, or an empty list if they are
+   * not cached. This is for callers that cannot wait on a load, such as reactive requests.
+   */
+  public List<ResourceIdentity> find(String uuid) {
+    List<ResourceIdentity> identities = cache.getIfPresent(uuid);
+    return identities == null ? List.of() : identities;
+  }
+
+  /**
+   * Return the cached identities for the UUID, or load them with the given function. Concurrent
+   * misses for the same UUID wait for a single load. The loader should return an empty list if the
+   * UUID is unknown, which is returned but not cached.
+   */
+  public List<ResourceIdentity> lookup(
+      String uuid, Function<String, List<ResourceIdentity>> loader) {
+    List<ResourceIdentity> identities =
+        cache.get(
+            uuid,
+            u -> {
+              List<ResourceIdentity> loaded = loader.apply(u);
+              return loaded.isEmpty() ? null : List.copyOf(loaded);
+            });
+    return identities == null ? List.of() : identities;
+  }
+
+  /**
+   * Same as {@link #lookup(String, Function)} for callers that cannot wait on a load, such as
+   * reactive requests. Concurrent misses for the same UUID share a single load.
+   */
+  public CompletableFuture<List<ResourceIdentity>> lookupAsync(
+      String uuid, Function<String, CompletableFuture<List<ResourceIdentity>>> loader) {
+    List<ResourceIdentity> cached = cache.getIfPresent(uuid);
+    if (cached != null) {
+      return CompletableFuture.completedFuture(cached);
+    }
+    CompletableFuture<List<ResourceIdentity>> load = new CompletableFuture<>();
+    CompletableFuture<List<ResourceIdentity>> inProgress = loading.putIfAbsent(uuid, load);
+    if (inProgress != null) {
+      return inProgress;
+    }
+    CompletableFuture<List<ResourceIdentity>> loaded;
+    try {
+      loaded = loader.apply(uuid);
+    } catch (RuntimeException e) {
+      loaded = CompletableFuture.failedFuture(e);
+    }
+    loaded.whenComplete(
+        (identities, failure) -> {
+          if (failure == null && !identities.isEmpty()) {
+            cache.put(uuid, List.copyOf(identities));
+          }
+          loading.remove(uuid, load);
+          if (failure == null) {
+            load.complete(identities);
+          } else {
+            load.completeExceptionally(failure);
+          }
+        });
+    return load;
+  }
+
+  /** Populate the cache with a known mapping, e.g. from a new registration. */
+  public void put(String uuid, List<ResourceIdentity> identities) {
+    cache.put(uuid, List.copyOf(identities));
+  }
+}
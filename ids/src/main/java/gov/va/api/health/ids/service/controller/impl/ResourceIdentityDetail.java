@@ -3,6 +3,7 @@ package gov.va.api.health.ids.service.controller.impl;
 import gov.va.api.health.ids.api.ResourceIdentity;
 import java.util.Objects;
 import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
@@ -18,20 +19,23 @@ import lombok.Setter;
 import lombok.ToString;
 
 /**
- * The mapping between public UUID and system private identifiers.
+ * The mapping between public UUID and system private identifiers. The schema is managed by the
+ * migrations in {@code db/migration}. Public IDs are stored in the compact form described by {@link
+ * PublicIdConverter}.
  *
  * <pre>
  *   CREATE TABLE `resource_identity_detail` (
  *   `id` int(11) NOT NULL AUTO_INCREMENT,
  *   `identifier` varchar(45) NOT NULL,
  *   `station_identifier` varchar(45) DEFAULT NULL,
- *   `uuid` varchar(45) NOT NULL,
+ *   `uuid` varbinary(135) NOT NULL,
  *   `system` varchar(45) NOT NULL,
  *   `resource` varchar(45) NOT NULL,
  *   PRIMARY KEY (`id`),
  *   UNIQUE KEY `uuid_UNIQUE` (`uuid`),
- *   UNIQUE KEY `station_urn_UNIQUE` (`station_identifier`,`identifier`)
- * ) ENGINE=InnoDB AUTO_INCREMENT=3353 DEFAULT CHARSET=utf8;
+ *   UNIQUE KEY `station_urn_UNIQUE` (`station_identifier`,`identifier`),
+ *   KEY `system_resource_identifier` (`system`,`resource`,`identifier`,`uuid`)
+ * ) ENGINE=InnoDB DEFAULT CHARSET=utf8;
  * </pre>
  */
 @Entity
@@ -57,7 +61,8 @@ public class ResourceIdentityDetail {
   @Size(max = 45)
   String stationIdentifier;
 
-  @Column(name = "uuid", length = 45)
+  @Column(name = "uuid", length = 135, unique = true)
+  @Convert(converter = PublicIdConverter.class)
   @Size(max = 45)
   @NotBlank
   String uuid;
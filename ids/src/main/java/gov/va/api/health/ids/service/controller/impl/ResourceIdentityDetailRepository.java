@@ -1,12 +1,21 @@
 package gov.va.api.health.ids.service.controller.impl;
 
+import java.util.Collection;
 import java.util.List;
 import org.springframework.data.repository.CrudRepository;
 
 public interface ResourceIdentityDetailRepository
-    extends CrudRepository<ResourceIdentityDetail, Integer> {
+    extends CrudRepository<ResourceIdentityDetail, Integer>,
+        ResourceIdentityDetailRepositoryCustom {
   List<ResourceIdentityDetail> findBySystemAndResourceAndIdentifier(
       String system, String resource, String identifier);
 
+  /**
+   * Find all details for many identifiers of the same system and resource in a single query.
+   * Callers are responsible for keeping the number of identifiers reasonable.
+   */
+  List<ResourceIdentityDetail> findBySystemAndResourceAndIdentifierIn(
+      String system, String resource, Collection<String> identifiers);
+
   List<ResourceIdentityDetail> findByUuid(String uuid);
 }
@@ -0,0 +1,40 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import gov.va.api.health.ids.api.RegistrationPage;
+import gov.va.api.health.ids.api.ResourceIdentity;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.transaction.annotation.Transactional;
+
+/** Repository operations that are not well served by Spring Data derived queries. */
+public interface ResourceIdentityDetailRepositoryCustom {
+  /**
+   * Find the identities registered for a public ID. Only the columns needed are selected, straight
+   * into resource identities, without loading entities into the persistence context.
+   */
+  List<ResourceIdentity> findIdentitiesByUuid(String uuid);
+
+  /**
+   * Insert details that are not already present. Existence is determined by the unique UUID, which
+   * is deterministic for a given identity, making this safe to call concurrently for the same
+   * identities. Primary keys of the given details are ignored. Details are written with multi-row
+   * statements, one round trip per chunk, bypassing JPA since identity key generation prevents
+   * Hibernate from batching inserts.
+   */
+  void insertAllIfAbsent(Collection<ResourceIdentityDetail> details);
+
+  /**
+   * Same as {@link #findIdentitiesByUuid(String)}, but in a read-only transaction that may be
+   * served by a read replica.
+   */
+  @Transactional(readOnly = true)
+  List<ResourceIdentity> readIdentitiesByUuid(String uuid);
+
+  /**
+   * Read up to count registrations with a primary key greater than the cursor, in primary key
+   * order. This is keyset pagination, each page costs the same regardless of how far into the table
+   * it is.
+   */
+  @Transactional(readOnly = true)
+  RegistrationPage readRegistrationsAfter(long cursor, int count);
+}
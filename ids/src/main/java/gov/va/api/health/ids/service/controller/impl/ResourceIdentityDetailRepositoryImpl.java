@@ -0,0 +1,234 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import gov.va.api.health.ids.api.Registration;
+import gov.va.api.health.ids.api.RegistrationPage;
+import gov.va.api.health.ids.api.ResourceIdentity;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntFunction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * Spring Data fragment implementation of the custom repository operations. It is discovered by
+ * naming convention and combined with the derived {@link ResourceIdentityDetailRepository}.
+ */
+@Slf4j
+public class ResourceIdentityDetailRepositoryImpl
+    implements ResourceIdentityDetailRepositoryCustom {
+  /** Details are sent to the database in multi-row statements of up to this many rows. */
+  static final int INSERT_CHUNK_SIZE = 500;
+
+  /**
+   * Some databases implement the idempotent insert as an update-or-insert that can still collide
+   * with a concurrent insert of the same UUID, and concurrent multi-row inserts may deadlock. Since
+   * the statement is idempotent, it is simply retried.
+   */
+  static final int MAX_ATTEMPTS = 10;
+
+  private static final String IDENTITIES_BY_UUID =
+      "select system, resource, identifier from resource_identity_detail where uuid = ?";
+
+  private static final String REGISTRATIONS_AFTER =
+      "select id, uuid, system, resource, identifier from resource_identity_detail"
+          + " where id > ? order by id limit ?";
+
+  private static final RowMapper<ResourceIdentity> IDENTITY =
+      (rs, row) ->
+          ResourceIdentity.builder()
+              .system(rs.getString(1))
+              .resource(rs.getString(2))
+              .identifier(rs.getString(3))
+              .build();
+
+  private final JdbcTemplate jdbc;
+
+  private volatile IdempotentInsert idempotentInsert;
+
+  @Autowired
+  public ResourceIdentityDetailRepositoryImpl(JdbcTemplate jdbc) {
+    this.jdbc = jdbc;
+  }
+
+  @Override
+  public List<ResourceIdentity> findIdentitiesByUuid(String uuid) {
+    return jdbc.query(IDENTITIES_BY_UUID, IDENTITY, (Object) PublicIdConverter.encode(uuid));
+  }
+
+  private IdempotentInsert idempotentInsert() {
+    if (idempotentInsert == null) {
+      String product =
+          jdbc.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+      idempotentInsert = IdempotentInsert.forDatabase(product);
+      log.info("Using {} idempotent inserts for {}", idempotentInsert, product);
+    }
+    return idempotentInsert;
+  }
+
+  private void insert(List<ResourceIdentityDetail> chunk) {
+    String sql = idempotentInsert().sql(chunk.size());
+    Object[] args = new Object[chunk.size() * 4];
+    int i = 0;
+    for (ResourceIdentityDetail detail : chunk) {
+      args[i++] = detail.identifier();
+      args[i++] = PublicIdConverter.encode(detail.uuid());
+      args[i++] = detail.system();
+      args[i++] = detail.resource();
+    }
+    for (int attempt = 1; ; attempt++) {
+      try {
+        jdbc.update(sql, args);
+        return;
+      } catch (DuplicateKeyException | ConcurrencyFailureException e) {
+        if (attempt == MAX_ATTEMPTS) {
+          throw e;
+        }
+        log.info("Retrying idempotent insert after concurrent registration: {}", e.getMessage());
+      }
+    }
+  }
+
+  @Override
+  public void insertAllIfAbsent(Collection<ResourceIdentityDetail> details) {
+    if (details.isEmpty()) {
+      return;
+    }
+    /*
+     * Concurrent registrations lock rows in the same order, which keeps them from deadlocking.
+     */
+    List<ResourceIdentityDetail> sorted = new ArrayList<>(details);
+    sorted.sort(Comparator.comparing(ResourceIdentityDetail::uuid));
+    List<ResourceIdentityDetail> chunk =
+        new ArrayList<>(Math.min(sorted.size(), INSERT_CHUNK_SIZE));
+    for (ResourceIdentityDetail detail : sorted) {
+      chunk.add(detail);
+      if (chunk.size() == INSERT_CHUNK_SIZE) {
+        insert(chunk);
+        chunk.clear();
+      }
+    }
+    if (!chunk.isEmpty()) {
+      insert(chunk);
+    }
+  }
+
+  @Override
+  public List<ResourceIdentity> readIdentitiesByUuid(String uuid) {
+    return findIdentitiesByUuid(uuid);
+  }
+
+  @Override
+  public RegistrationPage readRegistrationsAfter(long cursor, int count) {
+    long[] next = {cursor};
+    List<Registration> registrations = new ArrayList<>(count);
+    jdbc.query(
+        REGISTRATIONS_AFTER,
+        (RowCallbackHandler)
+            rs -> {
+              next[0] = rs.getLong("id");
+              registrations.add(
+                  Registration.builder()
+                      .uuid(PublicIdConverter.decode(rs.getBytes("uuid")))
+                      .resourceIdentities(
+                          List.of(
+                              ResourceIdentity.builder()
+                                  .system(rs.getString("system"))
+                                  .resource(rs.getString("resource"))
+                                  .identifier(rs.getString("identifier"))
+                                  .build()))
+                      .build());
+            },
+        cursor,
+        count);
+    return RegistrationPage.builder().next(next[0]).registrations(registrations).build();
+  }
+
+  /**
+   * Single statement, multi-row inserts that leave existing rows with the same UUID untouched. The
+   * syntax is database specific.
+   */
+  enum IdempotentInsert {
+    /** MySQL only ignores duplicate key errors, unlike INSERT IGNORE which hides data errors. */
+    MYSQL(
+        "insert into resource_identity_detail (identifier, uuid, system, resource) values ",
+        "(%s,%s,%s,%s)",
+        " on duplicate key update uuid = uuid"),
+    /**
+     * H2, used for local testing, does not support MySQL syntax unless in compatibility mode. Only
+     * rows whose UUID is not already stored are inserted, once each, so existing rows are never
+     * overwritten. The UUID is cast so the rows keep it as binary.
+     */
+    H2(
+        "insert into resource_identity_detail (identifier, uuid, system, resource)"
+            + " select distinct * from (values ",
+        "(%s,cast(%s as varbinary(135)),%s,%s)",
+        ") v (identifier, uuid, system, resource) where not exists"
+            + " (select 1 from resource_identity_detail d where d.uuid = v.uuid)");
+
+    private final String prefix;
+
+    /** A row of the identifier, uuid, system and resource parameters. */
+    private final String rowFormat;
+
+    private final String positionalRow;
+
+    private final String suffix;
+
+    private final String fullChunk;
+
+    IdempotentInsert(String prefix, String rowFormat, String suffix) {
+      this.prefix = prefix;
+      this.rowFormat = rowFormat;
+      this.positionalRow = String.format(rowFormat, "?", "?", "?", "?");
+      this.suffix = suffix;
+      this.fullChunk = build(INSERT_CHUNK_SIZE);
+    }
+
+    static IdempotentInsert forDatabase(String productName) {
+      return "H2".equalsIgnoreCase(productName) ? H2 : MYSQL;
+    }
+
+    private String build(int rows) {
+      return build(rows, i -> positionalRow);
+    }
+
+    private String build(int rows, IntFunction<String> row) {
+      StringBuilder sql =
+          new StringBuilder(
+              prefix.length() + rows * (positionalRow.length() + 1) + suffix.length());
+      sql.append(prefix);
+      for (int i = 0; i < rows; i++) {
+        if (i > 0) {
+          sql.append(',');
+        }
+        sql.append(row.apply(i));
+      }
+      return sql.append(suffix).toString();
+    }
+
+    /**
+     * The statement with named parameters instead of positional ones, for clients that translate
+     * them to the database's own bind markers. Row i is bound to identifier{i}, uuid{i}, system{i}
+     * and resource{i}.
+     */
+    String namedSql(int rows) {
+      return build(
+          rows,
+          i ->
+              String.format(
+                  rowFormat, ":identifier" + i, ":uuid" + i, ":system" + i, ":resource" + i));
+    }
+
+    String sql(int rows) {
+      return rows == INSERT_CHUNK_SIZE ? fullChunk : build(rows);
+    }
+  }
+}
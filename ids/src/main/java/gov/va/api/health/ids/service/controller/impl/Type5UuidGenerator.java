@@ -1,11 +1,12 @@
 package gov.va.api.health.ids.service.controller.impl;
 
-import com.fasterxml.uuid.Generators;
 import gov.va.api.health.ids.api.ResourceIdentity;
 import gov.va.api.health.ids.service.controller.IdServiceV1ApiController.UuidGenerator;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.UUID;
-import lombok.AllArgsConstructor;
-import lombok.NoArgsConstructor;
 import lombok.NonNull;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -13,21 +14,33 @@ import org.springframework.stereotype.Service;
 /**
  * Generates a UUID in a deterministic approach using a seed UUID plus the resource type and
  * identifier.
+ *
+ * <p>These are name based (version 5) UUIDs of {@code resource:identifier} in the seed namespace,
+ * identical to those of the Java UUID Generator library. The seed is parsed once and each thread
+ * reuses its own SHA-1 digest and buffers, so instances are safe to share and allocate little
+ * beyond the resulting string.
  */
-@NoArgsConstructor
-@AllArgsConstructor
 @Service
 public class Type5UuidGenerator implements UuidGenerator {
-  @Value("${uuid.seed}")
-  private String seed;
+  private static final ThreadLocal<Hasher> HASHERS = ThreadLocal.withInitial(Hasher::new);
+
+  private final byte[] namespace;
+
+  public Type5UuidGenerator(@Value("${uuid.seed}") String seed) {
+    UUID uuid = UUID.fromString(seed);
+    namespace = new byte[16];
+    Hasher.putLong(namespace, 0, uuid.getMostSignificantBits());
+    Hasher.putLong(namespace, 8, uuid.getLeastSignificantBits());
+  }
 
   @Override
   public String apply(@NonNull ResourceIdentity resourceIdentity) {
     if (isSpecialPatient(resourceIdentity)) {
       return resourceIdentity.identifier();
     }
-    return Generators.nameBasedGenerator(UUID.fromString(seed))
-        .generate(resourceIdentity.resource() + ":" + resourceIdentity.identifier())
+    return HASHERS
+        .get()
+        .uuid(namespace, resourceIdentity.resource(), resourceIdentity.identifier())
         .toString();
   }
 
@@ -35,4 +48,91 @@ public class Type5UuidGenerator implements UuidGenerator {
   boolean isSpecialPatient(@NonNull ResourceIdentity resourceIdentity) {
     return "CDW".equals(resourceIdentity.system()) && "PATIENT".equals(resourceIdentity.resource());
   }
+
+  /** The per thread digest and buffers. */
+  private static final class Hasher {
+    private static final int SHA1_LENGTH = 20;
+
+    private final MessageDigest sha1;
+
+    private final byte[] hash = new byte[SHA1_LENGTH];
+
+    private byte[] name = new byte[128];
+
+    Hasher() {
+      try {
+        sha1 = MessageDigest.getInstance("SHA-1");
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException("SHA-1 is required of every Java platform", e);
+      }
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+      long value = 0;
+      for (int i = offset; i < offset + 8; i++) {
+        value = (value << 8) | (bytes[i] & 0xff);
+      }
+      return value;
+    }
+
+    static void putLong(byte[] bytes, int offset, long value) {
+      for (int i = offset + 7; i >= offset; i--) {
+        bytes[i] = (byte) value;
+        value >>>= 8;
+      }
+    }
+
+    /**
+     * Copy ASCII characters into the name buffer, returning the new position or -1 if there is a
+     * character that needs more than one byte in UTF-8.
+     */
+    private int ascii(String value, int position) {
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (c >= 0x80) {
+          return -1;
+        }
+        name[position++] = (byte) c;
+      }
+      return position;
+    }
+
+    /**
+     * The UTF-8 bytes of {@code resource:identifier} are hashed without building the string. Names
+     * that are not ASCII are encoded piece by piece, which gives the same bytes since the colon
+     * never completes a surrogate pair.
+     */
+    private void updateName(String resource, String identifier) {
+      int length = resource.length() + 1 + identifier.length();
+      if (name.length < length) {
+        name = new byte[Math.max(length, name.length * 2)];
+      }
+      int position = ascii(resource, 0);
+      if (position >= 0) {
+        name[position++] = ':';
+        position = ascii(identifier, position);
+      }
+      if (position >= 0) {
+        sha1.update(name, 0, position);
+        return;
+      }
+      sha1.update(resource.getBytes(StandardCharsets.UTF_8));
+      sha1.update((byte) ':');
+      sha1.update(identifier.getBytes(StandardCharsets.UTF_8));
+    }
+
+    UUID uuid(byte[] namespace, String resource, String identifier) {
+      sha1.reset();
+      sha1.update(namespace);
+      updateName(resource, identifier);
+      try {
+        sha1.digest(hash, 0, SHA1_LENGTH);
+      } catch (DigestException e) {
+        throw new IllegalStateException(e);
+      }
+      hash[6] = (byte) ((hash[6] & 0x0f) | 0x50);
+      hash[8] = (byte) ((hash[8] & 0x3f) | 0x80);
+      return new UUID(getLong(hash, 0), getLong(hash, 8));
+    }
+  }
 }
@@ -0,0 +1,190 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import gov.va.api.health.ids.api.ResourceIdentity;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact map of UUID to resource identity, kept in primitive arrays rather than objects. Rows
+ * are stored densely: the two halves of the UUID, a code for the system and resource pair, which
+ * only have a few distinct values, and the offset of the UTF-8 identifier in a shared byte array.
+ * An open addressing table of row numbers finds rows by UUID.
+ *
+ * <p>This is not thread-safe while being filled. Once filled, it can be safely published and read
+ * by any number of threads.
+ */
+final class UuidIndex {
+  private static final int NO_ROW = -1;
+
+  private final List<String[]> types = new ArrayList<>();
+
+  private final Map<String, Short> typeCodes = new HashMap<>();
+
+  private long[] mostSignificant;
+
+  private long[] leastSignificant;
+
+  private short[] typeOfRow;
+
+  private int[] identifierStart;
+
+  private byte[] identifiers;
+
+  private int identifiersLength;
+
+  private int[] slots;
+
+  private int size;
+
+  UuidIndex(int expectedRows) {
+    int capacity = Math.max(16, expectedRows);
+    mostSignificant = new long[capacity];
+    leastSignificant = new long[capacity];
+    typeOfRow = new short[capacity];
+    identifierStart = new int[capacity + 1];
+    identifiers = new byte[capacity * 16];
+    slots = emptySlots(tableSizeFor(capacity));
+  }
+
+  private static int[] emptySlots(int length) {
+    int[] empty = new int[length];
+    Arrays.fill(empty, NO_ROW);
+    return empty;
+  }
+
+  /** Murmur3 finalizer over both halves, random UUIDs are well spread but others may not be. */
+  private static int hash(long msb, long lsb) {
+    long h = msb ^ Long.rotateLeft(lsb, 32);
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return (int) h;
+  }
+
+  /** A power of two with room for the rows at no more than two thirds full. */
+  private static int tableSizeFor(int rows) {
+    return Integer.highestOneBit(Math.max(2, rows + rows / 2) - 1) << 1;
+  }
+
+  /** Approximate memory used by the arrays, in bytes. */
+  long bytes() {
+    return mostSignificant.length * 8L
+        + leastSignificant.length * 8L
+        + typeOfRow.length * 2L
+        + identifierStart.length * 4L
+        + identifiers.length
+        + slots.length * 4L;
+  }
+
+  private int find(long msb, long lsb) {
+    int mask = slots.length - 1;
+    for (int slot = hash(msb, lsb) & mask; ; slot = (slot + 1) & mask) {
+      int row = slots[slot];
+      if (row == NO_ROW || (mostSignificant[row] == msb && leastSignificant[row] == lsb)) {
+        return row;
+      }
+    }
+  }
+
+  /** The identity for the UUID, or null if it is not in the index. */
+  ResourceIdentity get(long msb, long lsb) {
+    int row = find(msb, lsb);
+    if (row == NO_ROW) {
+      return null;
+    }
+    String[] type = types.get(typeOfRow[row]);
+    int start = identifierStart[row];
+    return ResourceIdentity.builder()
+        .system(type[0])
+        .resource(type[1])
+        .identifier(
+            new String(
+                identifiers, start, identifierStart[row + 1] - start, StandardCharsets.UTF_8))
+        .build();
+  }
+
+  private void grow() {
+    int capacity = Math.max(16, mostSignificant.length + (mostSignificant.length >> 1));
+    mostSignificant = Arrays.copyOf(mostSignificant, capacity);
+    leastSignificant = Arrays.copyOf(leastSignificant, capacity);
+    typeOfRow = Arrays.copyOf(typeOfRow, capacity);
+    identifierStart = Arrays.copyOf(identifierStart, capacity + 1);
+    int[] resized = emptySlots(tableSizeFor(capacity));
+    int mask = resized.length - 1;
+    for (int row = 0; row < size; row++) {
+      int slot = hash(mostSignificant[row], leastSignificant[row]) & mask;
+      while (resized[slot] != NO_ROW) {
+        slot = (slot + 1) & mask;
+      }
+      resized[slot] = row;
+    }
+    slots = resized;
+  }
+
+  /** Add an identity, returning false if the UUID is already indexed. */
+  boolean put(long msb, long lsb, String system, String resource, String identifier) {
+    if (find(msb, lsb) != NO_ROW) {
+      return false;
+    }
+    if (size == mostSignificant.length) {
+      grow();
+    }
+    byte[] bytes = identifier.getBytes(StandardCharsets.UTF_8);
+    if (identifiersLength + bytes.length > identifiers.length) {
+      identifiers =
+          Arrays.copyOf(
+              identifiers,
+              Math.max(
+                  identifiersLength + bytes.length,
+                  identifiers.length + (identifiers.length >> 1)));
+    }
+    System.arraycopy(bytes, 0, identifiers, identifiersLength, bytes.length);
+    int row = size++;
+    mostSignificant[row] = msb;
+    leastSignificant[row] = lsb;
+    typeOfRow[row] = typeCode(system, resource);
+    identifierStart[row] = identifiersLength;
+    identifiersLength += bytes.length;
+    identifierStart[row + 1] = identifiersLength;
+    int mask = slots.length - 1;
+    int slot = hash(msb, lsb) & mask;
+    while (slots[slot] != NO_ROW) {
+      slot = (slot + 1) & mask;
+    }
+    slots[slot] = row;
+    return true;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** Release unused capacity once filling is complete. */
+  void trim() {
+    mostSignificant = Arrays.copyOf(mostSignificant, size);
+    leastSignificant = Arrays.copyOf(leastSignificant, size);
+    typeOfRow = Arrays.copyOf(typeOfRow, size);
+    identifierStart = Arrays.copyOf(identifierStart, size + 1);
+    identifiers = Arrays.copyOf(identifiers, identifiersLength);
+  }
+
+  private short typeCode(String system, String resource) {
+    String key = system + '\u0000' + resource;
+    Short code = typeCodes.get(key);
+    if (code == null) {
+      if (types.size() > Short.MAX_VALUE) {
+        throw new IllegalStateException("Too many distinct systems and resources");
+      }
+      code = (short) types.size();
+      types.add(new String[] {system, resource});
+      typeCodes.put(key, code);
+    }
+    return code;
+  }
+}
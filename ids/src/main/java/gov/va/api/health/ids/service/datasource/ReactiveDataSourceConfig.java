@@ -0,0 +1,47 @@
+package gov.va.api.health.ids.service.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+
+/**
+ * Spring Boot does not configure a JDBC data source when an R2DBC connection factory is present.
+ * The reactive profile serves requests over R2DBC, but still needs JDBC for migrations and
+ * background work, such as loading membership filters and draining the registration journal.
+ *
+ * <p>R2DBC auto-configuration is excluded in application.properties, since the servlet API has no
+ * R2DBC URL, and is imported here as plain configuration instead. Exclusions apply to everything
+ * imported as auto-configuration, so this leaves the exclusions in place, including any added by
+ * operators.
+ */
+@Configuration
+@Profile("reactive")
+@Import(R2dbcAutoConfiguration.class)
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class ReactiveDataSourceConfig {
+  /**
+   * The data source, configured like the default one would have been. Read replicas provide their
+   * own. Pool settings are bound here since {@link ReadReplicaConfig} already declares the {@code
+   * spring.datasource.hikari} properties.
+   */
+  @Bean
+  @ConditionalOnProperty(
+      name = "ids.read-replicas.enabled",
+      havingValue = "false",
+      matchIfMissing = true)
+  public HikariDataSource dataSource(DataSourceProperties properties, Environment environment) {
+    HikariDataSource dataSource =
+        properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+    return dataSource;
+  }
+}
@@ -0,0 +1,77 @@
+package gov.va.api.health.ids.service.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
+import javax.sql.DataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * Replaces the default data source with one that sends read-only transactions to replicas. The
+ * primary is still configured with {@code spring.datasource}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "ids.read-replicas.enabled", havingValue = "true")
+@EnableConfigurationProperties(ReadReplicaProperties.class)
+public class ReadReplicaConfig {
+  /**
+   * The data source used by JPA, JDBC templates, and migrations. Connections are not obtained until
+   * they are first used, at which point the transaction is known to be read-only or not.
+   */
+  @Bean
+  @Primary
+  public DataSource dataSource(ReadWriteRoutingDataSource readWriteRoutingDataSource) {
+    return new LazyConnectionDataSourceProxy(readWriteRoutingDataSource);
+  }
+
+  /** The primary data source, configured like the default one would have been. */
+  @Bean
+  @ConfigurationProperties("spring.datasource.hikari")
+  public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+    HikariDataSource primary =
+        properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    primary.setPoolName("ids-primary");
+    return primary;
+  }
+
+  /** Routing of read-only transactions, with replicas checked in the background. */
+  @Bean(destroyMethod = "close")
+  public ReadWriteRoutingDataSource readWriteRoutingDataSource(
+      HikariDataSource primaryDataSource,
+      DataSourceProperties primaryProperties,
+      ReadReplicaProperties properties,
+      MeterRegistry registry) {
+    ReadWriteRoutingDataSource.ReadWriteRoutingDataSourceBuilder routing =
+        ReadWriteRoutingDataSource.builder()
+            .primary(primaryDataSource)
+            .selection(properties.getSelection())
+            .lagQuery(properties.getLagQuery())
+            .maxLag(properties.getMaxLag())
+            .registry(registry);
+    List<ReadReplicaProperties.Replica> replicas = properties.getDatasources();
+    for (int i = 0; i < replicas.size(); i++) {
+      HikariDataSource replica = new HikariDataSource();
+      replica.setPoolName("ids-replica-" + i);
+      replica.setJdbcUrl(replicas.get(i).getUrl());
+      replica.setUsername(replicas.get(i).getUsername());
+      replica.setPassword(replicas.get(i).getPassword());
+      replica.setDriverClassName(primaryProperties.determineDriverClassName());
+      if (primaryDataSource.getMaximumPoolSize() > 0) {
+        replica.setMaximumPoolSize(primaryDataSource.getMaximumPoolSize());
+      }
+      replica.setReadOnly(true);
+      replica.setMetricRegistry(registry);
+      routing.replica(replica);
+    }
+    ReadWriteRoutingDataSource dataSource = routing.build();
+    dataSource.start(properties.getCheckInterval());
+    return dataSource;
+  }
+}
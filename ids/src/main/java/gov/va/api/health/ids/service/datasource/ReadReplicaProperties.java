@@ -0,0 +1,45 @@
+package gov.va.api.health.ids.service.datasource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/** Read replicas that serve lookups. The primary is configured with {@code spring.datasource}. */
+@ConfigurationProperties("ids.read-replicas")
+@Data
+@Accessors(fluent = false)
+@NoArgsConstructor
+public class ReadReplicaProperties {
+  private boolean enabled;
+
+  private ReplicaSelection selection = ReplicaSelection.ROUND_ROBIN;
+
+  /** Replicas further behind than this are not used until they catch up. */
+  private Duration maxLag = Duration.ofSeconds(5);
+
+  /**
+   * Optional query run on each replica that reports how far behind the primary it is in seconds,
+   * either as the first column or as a {@code Seconds_Behind_Master} column, e.g. {@code SHOW SLAVE
+   * STATUS}. Without it, replicas are only checked for availability.
+   */
+  private String lagQuery;
+
+  private Duration checkInterval = Duration.ofSeconds(5);
+
+  private List<Replica> datasources = new ArrayList<>();
+
+  @Data
+  @Accessors(fluent = false)
+  @NoArgsConstructor
+  public static class Replica {
+    private String url;
+
+    private String username;
+
+    private String password;
+  }
+}
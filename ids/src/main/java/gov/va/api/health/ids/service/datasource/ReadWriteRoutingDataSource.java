@@ -0,0 +1,156 @@
+package gov.va.api.health.ids.service.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import javax.sql.DataSource;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Singular;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Sends connections for read-only transactions to replicas and everything else to the primary.
+ * Replicas that fail to provide a connection, fail their periodic check, or fall too far behind are
+ * skipped until they recover. If no replica can be used, reads go to the primary.
+ *
+ * <p>The read-only flag of the transaction must be known when the connection is requested, so this
+ * should be used behind a {@link
+ * org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}.
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractDataSource {
+  private final RoutedDataSource primary;
+
+  private final List<RoutedDataSource> replicas;
+
+  private final ReplicaSelection selection;
+
+  private final String lagQuery;
+
+  private final Duration maxLag;
+
+  private final AtomicInteger turn = new AtomicInteger();
+
+  private final Counter replicaFailures;
+
+  private final Counter noReplicaAvailable;
+
+  private ScheduledExecutorService checker;
+
+  /** Create a new instance. Replicas are tagged replica-0, replica-1, and so on in metrics. */
+  @Builder
+  public ReadWriteRoutingDataSource(
+      @NonNull DataSource primary,
+      @Singular List<DataSource> replicas,
+      ReplicaSelection selection,
+      String lagQuery,
+      Duration maxLag,
+      @NonNull MeterRegistry registry) {
+    this.primary = new RoutedDataSource("primary", primary, registry);
+    this.replicas = new ArrayList<>(replicas.size());
+    for (int i = 0; i < replicas.size(); i++) {
+      this.replicas.add(new RoutedDataSource("replica-" + i, replicas.get(i), registry));
+    }
+    this.selection = selection == null ? ReplicaSelection.ROUND_ROBIN : selection;
+    this.lagQuery = lagQuery;
+    this.maxLag = maxLag == null ? Duration.ofSeconds(5) : maxLag;
+    replicaFailures = fallbacks(registry, "failure");
+    noReplicaAvailable = fallbacks(registry, "unavailable");
+  }
+
+  private static Counter fallbacks(MeterRegistry registry, String reason) {
+    return Counter.builder("ids.datasource.primary.fallback")
+        .description("Reads sent to the primary because no replica could serve them")
+        .tag("reason", reason)
+        .register(registry);
+  }
+
+  /** Check every replica now. */
+  public void checkReplicas() {
+    for (RoutedDataSource replica : replicas) {
+      replica.check(lagQuery, maxLag);
+    }
+  }
+
+  /** Stop checking replicas and close the ones that can be closed. */
+  public void close() {
+    stop();
+    for (RoutedDataSource replica : replicas) {
+      replica.close();
+    }
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    if (replicas.isEmpty() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+      return primary.connection();
+    }
+    List<RoutedDataSource> candidates =
+        replicas.stream().filter(RoutedDataSource::available).collect(Collectors.toList());
+    if (candidates.isEmpty()) {
+      noReplicaAvailable.increment();
+      return primary.connection();
+    }
+    for (RoutedDataSource replica : selection.order(candidates, turn.getAndIncrement())) {
+      try {
+        return replica.connection();
+      } catch (SQLException e) {
+        replica.failed(e);
+      }
+    }
+    replicaFailures.increment();
+    return primary.connection();
+  }
+
+  /** Credentials are configured per data source. */
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    throw new SQLFeatureNotSupportedException("Credentials are configured per data source");
+  }
+
+  /** Start checking replicas periodically. */
+  public synchronized void start(Duration interval) {
+    if (checker != null || replicas.isEmpty()) {
+      return;
+    }
+    checker =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread thread = new Thread(r, "ids-replica-check");
+              thread.setDaemon(true);
+              return thread;
+            });
+    checker.scheduleWithFixedDelay(
+        () -> {
+          try {
+            checkReplicas();
+          } catch (RuntimeException e) {
+            log.error("Failed to check replicas", e);
+          }
+        },
+        0,
+        interval.toMillis(),
+        TimeUnit.MILLISECONDS);
+  }
+
+  /** Stop checking replicas. */
+  public synchronized void stop() {
+    if (checker != null) {
+      checker.shutdownNow();
+      checker = null;
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package gov.va.api.health.ids.service.datasource;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/** How a replica is chosen for each read-only connection. */
+public enum ReplicaSelection {
+  /** Replicas take turns. */
+  ROUND_ROBIN {
+    @Override
+    List<RoutedDataSource> order(List<RoutedDataSource> candidates, int turn) {
+      return rotate(candidates, turn);
+    }
+  },
+  /** The replica with the fewest connections in use is preferred, taking turns on ties. */
+  LEAST_CONNECTIONS {
+    @Override
+    List<RoutedDataSource> order(List<RoutedDataSource> candidates, int turn) {
+      List<RoutedDataSource> ordered = rotate(candidates, turn);
+      ordered.sort(Comparator.comparingInt(RoutedDataSource::active));
+      return ordered;
+    }
+  };
+
+  private static List<RoutedDataSource> rotate(List<RoutedDataSource> candidates, int turn) {
+    int size = candidates.size();
+    List<RoutedDataSource> ordered = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      ordered.add(candidates.get(Math.floorMod(turn + i, size)));
+    }
+    return ordered;
+  }
+
+  /** The order in which the candidates should be tried for this turn. */
+  abstract List<RoutedDataSource> order(List<RoutedDataSource> candidates, int turn);
+}
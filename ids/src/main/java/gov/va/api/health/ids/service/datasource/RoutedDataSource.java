@@ -0,0 +1,160 @@
+package gov.va.api.health.ids.service.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * One of the data sources connections are routed to. It keeps track of the connections in use and
+ * whether it is currently fit to serve reads.
+ */
+@Slf4j
+final class RoutedDataSource {
+  private static final String MYSQL_LAG_COLUMN = "Seconds_Behind_Master";
+
+  private static final int CHECK_TIMEOUT_SECONDS = 5;
+
+  @Getter private final String name;
+
+  private final DataSource dataSource;
+
+  private final AtomicInteger active = new AtomicInteger();
+
+  private final Counter connections;
+
+  private volatile boolean available = true;
+
+  private volatile double lagSeconds;
+
+  RoutedDataSource(String name, DataSource dataSource, MeterRegistry registry) {
+    this.name = name;
+    this.dataSource = dataSource;
+    connections =
+        Counter.builder("ids.datasource.connections")
+            .description("Connections handed out")
+            .tag("datasource", name)
+            .register(registry);
+    Gauge.builder("ids.datasource.connections.active", active, AtomicInteger::get)
+        .description("Connections currently in use")
+        .tag("datasource", name)
+        .register(registry);
+    Gauge.builder("ids.datasource.available", this, d -> d.available ? 1 : 0)
+        .description("Whether the data source is used for reads")
+        .tag("datasource", name)
+        .register(registry);
+    Gauge.builder("ids.datasource.lag", this, d -> d.lagSeconds)
+        .description("Seconds the data source is behind the primary")
+        .baseUnit("seconds")
+        .tag("datasource", name)
+        .register(registry);
+  }
+
+  private static double lag(ResultSet rs) throws SQLException {
+    if (!rs.next()) {
+      return Double.NaN;
+    }
+    int column = 1;
+    for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
+      if (MYSQL_LAG_COLUMN.equalsIgnoreCase(rs.getMetaData().getColumnLabel(i))) {
+        column = i;
+      }
+    }
+    double lag = rs.getDouble(column);
+    return rs.wasNull() ? Double.NaN : lag;
+  }
+
+  int active() {
+    return active.get();
+  }
+
+  boolean available() {
+    return available;
+  }
+
+  /**
+   * Verify the data source can be reached and, if a lag query is given, that it is not too far
+   * behind the primary.
+   */
+  void check(String lagQuery, Duration maxLag) {
+    boolean fit;
+    try (Connection connection = dataSource.getConnection()) {
+      fit = connection.isValid(CHECK_TIMEOUT_SECONDS);
+      if (fit && lagQuery != null) {
+        try (Statement statement = connection.createStatement();
+            ResultSet rs = statement.executeQuery(lagQuery)) {
+          lagSeconds = lag(rs);
+        }
+        /* Replication that is stopped reports no lag at all. */
+        fit = !Double.isNaN(lagSeconds) && lagSeconds <= maxLag.getSeconds();
+      }
+    } catch (SQLException e) {
+      log.warn("Data source {} failed its check: {}", name, e.getMessage());
+      fit = false;
+    }
+    if (fit != available) {
+      log.info("Data source {} is {}", name, fit ? "available" : "unavailable");
+    }
+    available = fit;
+  }
+
+  /** Close the underlying data source, if it can be closed. */
+  void close() {
+    if (dataSource instanceof AutoCloseable) {
+      try {
+        ((AutoCloseable) dataSource).close();
+      } catch (Exception e) {
+        log.warn("Failed to close data source {}: {}", name, e.getMessage());
+      }
+    }
+  }
+
+  /** Get a connection and count it as active until it is closed. */
+  Connection connection() throws SQLException {
+    Connection connection = dataSource.getConnection();
+    active.incrementAndGet();
+    connections.increment();
+    AtomicBoolean closed = new AtomicBoolean();
+    return (Connection)
+        Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[] {Connection.class},
+            (proxy, method, args) -> {
+              switch (method.getName()) {
+                case "equals":
+                  return proxy == args[0];
+                case "hashCode":
+                  return System.identityHashCode(proxy);
+                case "close":
+                  if (closed.compareAndSet(false, true)) {
+                    active.decrementAndGet();
+                  }
+                  break;
+                default:
+                  break;
+              }
+              try {
+                return method.invoke(connection, args);
+              } catch (InvocationTargetException e) {
+                throw e.getCause();
+              }
+            });
+  }
+
+  /** Stop using the data source for reads until it passes its next check. */
+  void failed(SQLException e) {
+    log.warn("Data source {} failed to provide a connection: {}", name, e.getMessage());
+    available = false;
+  }
+}
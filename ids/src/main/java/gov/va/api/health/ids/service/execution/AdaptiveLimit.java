@@ -0,0 +1,159 @@
+package gov.va.api.health.ids.service.execution;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A limit on requests in progress that adapts to latency, using the gradient of a short term
+ * average latency against a long term one. While recent latency stays within the tolerance of the
+ * long term average, the limit grows by about the square root of itself, which allows some
+ * queueing. When recent latency rises, as it does when requests start waiting on the database, the
+ * limit shrinks in proportion, by at most half per sample. A request that failed because of
+ * overload halves the limit's distance to the minimum.
+ *
+ * <p>The limit only grows while at least half of it is in use, so it cannot drift upward while
+ * traffic is light.
+ */
+@Slf4j
+final class AdaptiveLimit {
+  private static final double SHORT_ALPHA = 2.0 / (10 + 1);
+
+  private static final double LONG_ALPHA = 2.0 / (600 + 1);
+
+  private final String name;
+
+  private final int min;
+
+  private final int max;
+
+  private final double tolerance;
+
+  private final double smoothing;
+
+  private final AtomicInteger inflight = new AtomicInteger();
+
+  private final Counter rejected;
+
+  private final Counter increases;
+
+  private final Counter decreases;
+
+  private double estimate;
+
+  private volatile int limit;
+
+  private double shortRtt;
+
+  private double longRtt;
+
+  AdaptiveLimit(
+      String name,
+      ConcurrencyLimitProperties.Limit bounds,
+      double tolerance,
+      double smoothing,
+      MeterRegistry registry) {
+    if (bounds.getMin() < 1 || bounds.getMax() < bounds.getMin()) {
+      throw new IllegalArgumentException(name + " limit needs 1 <= min <= max");
+    }
+    this.name = name;
+    this.min = bounds.getMin();
+    this.max = bounds.getMax();
+    this.tolerance = tolerance;
+    this.smoothing = smoothing;
+    estimate = Math.max(min, Math.min(max, bounds.getInitial()));
+    limit = (int) estimate;
+    Gauge.builder("ids.concurrency.limit", this, AdaptiveLimit::limit)
+        .tag("path", name)
+        .description("Requests allowed in progress at once")
+        .register(registry);
+    Gauge.builder("ids.concurrency.inflight", inflight, AtomicInteger::get)
+        .tag("path", name)
+        .description("Requests in progress")
+        .register(registry);
+    rejected =
+        Counter.builder("ids.concurrency.rejected")
+            .tag("path", name)
+            .description("Requests turned away because the limit was reached")
+            .register(registry);
+    increases = changes(registry, name, "increase");
+    decreases = changes(registry, name, "decrease");
+  }
+
+  private static Counter changes(MeterRegistry registry, String name, String direction) {
+    return Counter.builder("ids.concurrency.limit.changes")
+        .tag("path", name)
+        .tag("direction", direction)
+        .description("Changes to the limit")
+        .register(registry);
+  }
+
+  /** Publish the new estimate, if it changes the limit. */
+  private void adjust(double newEstimate) {
+    estimate = Math.max(min, Math.min(max, newEstimate));
+    int newLimit = (int) estimate;
+    if (newLimit == limit) {
+      return;
+    }
+    (newLimit > limit ? increases : decreases).increment();
+    log.debug("{} limit {} -> {}", name, limit, newLimit);
+    limit = newLimit;
+  }
+
+  int inflight() {
+    return inflight.get();
+  }
+
+  int limit() {
+    return limit;
+  }
+
+  String name() {
+    return name;
+  }
+
+  /**
+   * Finish a request started with {@link #tryAcquire()}, with the time it took and whether it
+   * failed because the service was overloaded.
+   */
+  void release(long rttNanos, boolean overloaded) {
+    int inProgress = inflight.getAndDecrement();
+    sample(rttNanos, inProgress, overloaded);
+  }
+
+  synchronized void sample(long rttNanos, int inProgress, boolean overloaded) {
+    if (overloaded) {
+      adjust(min + (estimate - min) / 2);
+      return;
+    }
+    double rtt = Math.max(1, rttNanos);
+    shortRtt = shortRtt == 0 ? rtt : shortRtt + SHORT_ALPHA * (rtt - shortRtt);
+    longRtt = longRtt == 0 ? rtt : longRtt + LONG_ALPHA * (rtt - longRtt);
+    if (longRtt > 2 * shortRtt) {
+      /* Latency has dropped for good, e.g. after the database recovered. Catch up sooner. */
+      longRtt *= 0.95;
+    }
+    if (inProgress < estimate / 2) {
+      return;
+    }
+    double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+    double target = estimate * gradient + Math.sqrt(estimate);
+    adjust(estimate * (1 - smoothing) + target * smoothing);
+  }
+
+  /** Start a request if the limit allows it. Rejections are counted. */
+  boolean tryAcquire() {
+    while (true) {
+      int current = inflight.get();
+      if (current >= limit) {
+        rejected.increment();
+        return false;
+      }
+      if (inflight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+}
@@ -0,0 +1,54 @@
+package gov.va.api.health.ids.service.execution;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Limits lookups and registrations in progress so that, when the database slows down, requests
+ * beyond what it can handle are turned away quickly with 503 and Retry-After instead of queueing in
+ * Tomcat and slowing down every other request. Lookups and registrations have separate limits so
+ * that a burst of one does not starve the other. See {@link ReactiveConcurrencyLimitConfig} for the
+ * reactive profile.
+ */
+@Configuration
+@ConditionalOnProperty(name = "ids.concurrency-limit.enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@EnableConfigurationProperties(ConcurrencyLimitProperties.class)
+@Slf4j
+public class ConcurrencyLimitConfig implements WebMvcConfigurer {
+  private final ConcurrencyLimitInterceptor interceptor;
+
+  /** Create the limits with their initial values. */
+  public ConcurrencyLimitConfig(ConcurrencyLimitProperties properties, MeterRegistry registry) {
+    AdaptiveLimit lookups = limit("lookup", properties.getLookup(), properties, registry);
+    AdaptiveLimit registrations =
+        limit("registration", properties.getRegistration(), properties, registry);
+    interceptor =
+        ConcurrencyLimitInterceptor.of(
+            lookups, registrations, Math.max(1, properties.getRetryAfter().toSeconds()));
+    log.info(
+        "Limiting concurrent lookups to {} and registrations to {}, adapting to latency",
+        lookups.limit(),
+        registrations.limit());
+  }
+
+  static AdaptiveLimit limit(
+      String name,
+      ConcurrencyLimitProperties.Limit bounds,
+      ConcurrencyLimitProperties properties,
+      MeterRegistry registry) {
+    return new AdaptiveLimit(
+        name, bounds, properties.getTolerance(), properties.getSmoothing(), registry);
+  }
+
+  @Override
+  public void addInterceptors(InterceptorRegistry registry) {
+    registry.addInterceptor(interceptor).addPathPatterns("/api/**");
+  }
+}
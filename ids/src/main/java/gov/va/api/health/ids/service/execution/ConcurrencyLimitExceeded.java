@@ -0,0 +1,16 @@
+package gov.va.api.health.ids.service.execution;
+
+import lombok.Getter;
+
+/**
+ * The request was turned away because too many like it are already in progress. This is an expected
+ * outcome under load and does not capture a stack trace.
+ */
+public class ConcurrencyLimitExceeded extends RuntimeException {
+  @Getter private final long retryAfterSeconds;
+
+  ConcurrencyLimitExceeded(String path, int limit, long retryAfterSeconds) {
+    super("Too many " + path + " requests in progress (limit " + limit + ")", null, false, false);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+}
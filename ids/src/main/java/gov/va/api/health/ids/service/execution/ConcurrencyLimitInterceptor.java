@@ -0,0 +1,87 @@
+package gov.va.api.health.ids.service.execution;
+
+import gov.va.api.health.ids.service.controller.IdServiceV1ApiController;
+import gov.va.api.health.ids.service.controller.IdServiceV1StreamingController;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Admits lookups and registrations up to their limits before the controller is invoked. Rejected
+ * requests do no work and are answered with 503 by the exception handler. Admitted requests report
+ * their latency when they complete, and whether they were turned away by the database connection
+ * pool.
+ */
+@AllArgsConstructor
+class ConcurrencyLimitInterceptor implements HandlerInterceptor {
+  private static final String LIMIT = ConcurrencyLimitInterceptor.class.getName() + ".limit";
+
+  private static final String START = ConcurrencyLimitInterceptor.class.getName() + ".start";
+
+  /** Limits by the name of the controller method they apply to. */
+  private final Map<String, AdaptiveLimit> limits;
+
+  private final long retryAfterSeconds;
+
+  /** Limits by the name of the controller method they apply to. */
+  static Map<String, AdaptiveLimit> byMethod(AdaptiveLimit lookups, AdaptiveLimit registrations) {
+    return Map.of(
+        "lookup",
+        lookups,
+        "register",
+        registrations,
+        "registerUuids",
+        registrations,
+        "registerStream",
+        registrations);
+  }
+
+  static ConcurrencyLimitInterceptor of(
+      AdaptiveLimit lookups, AdaptiveLimit registrations, long retryAfterSeconds) {
+    return new ConcurrencyLimitInterceptor(byMethod(lookups, registrations), retryAfterSeconds);
+  }
+
+  @Override
+  public void afterCompletion(
+      HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+    AdaptiveLimit limit = (AdaptiveLimit) request.getAttribute(LIMIT);
+    if (limit == null) {
+      return;
+    }
+    request.removeAttribute(LIMIT);
+    long start = (Long) request.getAttribute(START);
+    limit.release(
+        System.nanoTime() - start, response.getStatus() == HttpStatus.SERVICE_UNAVAILABLE.value());
+  }
+
+  private AdaptiveLimit limitFor(Object handler) {
+    if (!(handler instanceof HandlerMethod)) {
+      return null;
+    }
+    HandlerMethod method = (HandlerMethod) handler;
+    if (method.getBeanType() != IdServiceV1ApiController.class
+        && method.getBeanType() != IdServiceV1StreamingController.class) {
+      return null;
+    }
+    return limits.get(method.getMethod().getName());
+  }
+
+  @Override
+  public boolean preHandle(
+      HttpServletRequest request, HttpServletResponse response, Object handler) {
+    AdaptiveLimit limit = limitFor(handler);
+    if (limit == null) {
+      return true;
+    }
+    if (!limit.tryAcquire()) {
+      throw new ConcurrencyLimitExceeded(limit.name(), limit.limit(), retryAfterSeconds);
+    }
+    request.setAttribute(LIMIT, limit);
+    request.setAttribute(START, System.nanoTime());
+    return true;
+  }
+}
@@ -0,0 +1,45 @@
+package gov.va.api.health.ids.service.execution;
+
+import java.time.Duration;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/** Adaptive limits on the number of lookups and registrations in progress at once. */
+@ConfigurationProperties("ids.concurrency-limit")
+@Data
+@Accessors(fluent = false)
+@NoArgsConstructor
+public class ConcurrencyLimitProperties {
+  private boolean enabled;
+
+  /** How long rejected clients are asked to wait before trying again. */
+  private Duration retryAfter = Duration.ofSeconds(1);
+
+  /**
+   * How much recent latency may exceed the long term average before the limit is reduced, e.g. 1.5
+   * allows 50% more.
+   */
+  private double tolerance = 1.5;
+
+  /** How quickly the limit moves toward each new estimate, from 0 exclusive to 1. */
+  private double smoothing = 0.2;
+
+  private Limit lookup = new Limit(20, 4, 400);
+
+  private Limit registration = new Limit(4, 1, 40);
+
+  @Data
+  @Accessors(fluent = false)
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class Limit {
+    private int initial;
+
+    private int min;
+
+    private int max;
+  }
+}
@@ -0,0 +1,91 @@
+package gov.va.api.health.ids.service.execution;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.va.api.health.ids.service.controller.ErrorResponse;
+import gov.va.api.health.ids.service.controller.IdServiceV1ReactiveController;
+import gov.va.api.health.ids.service.controller.WebExceptionHandler;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * The reactive equivalent of {@link ConcurrencyLimitInterceptor}, with the same limits for the same
+ * controller methods. Web filters run outside of the controllers, so rejected requests are answered
+ * here with the response the exception handler would have given.
+ */
+@AllArgsConstructor
+class ConcurrencyLimitWebFilter implements WebFilter {
+  /** Finds the controller method for a request. */
+  private final HandlerMapping handlers;
+
+  /** Limits by the name of the controller method they apply to. */
+  private final Map<String, AdaptiveLimit> limits;
+
+  private final long retryAfterSeconds;
+
+  private final WebExceptionHandler errors;
+
+  private final ObjectMapper mapper;
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+    return handlers
+        .getHandler(exchange)
+        .mapNotNull(this::limitFor)
+        .map(limit -> Mono.defer(() -> limited(limit, exchange, chain)))
+        .switchIfEmpty(Mono.fromSupplier(() -> chain.filter(exchange)))
+        .flatMap(response -> response);
+  }
+
+  private AdaptiveLimit limitFor(Object handler) {
+    if (!(handler instanceof HandlerMethod)) {
+      return null;
+    }
+    HandlerMethod method = (HandlerMethod) handler;
+    if (method.getBeanType() != IdServiceV1ReactiveController.class) {
+      return null;
+    }
+    return limits.get(method.getMethod().getName());
+  }
+
+  private Mono<Void> limited(
+      AdaptiveLimit limit, ServerWebExchange exchange, WebFilterChain chain) {
+    if (!limit.tryAcquire()) {
+      return rejected(
+          exchange.getResponse(),
+          new ConcurrencyLimitExceeded(limit.name(), limit.limit(), retryAfterSeconds));
+    }
+    long start = System.nanoTime();
+    return chain
+        .filter(exchange)
+        .doFinally(
+            signal ->
+                limit.release(
+                    System.nanoTime() - start,
+                    exchange.getResponse().getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE));
+  }
+
+  private Mono<Void> rejected(ServerHttpResponse response, ConcurrencyLimitExceeded e) {
+    ResponseEntity<ErrorResponse> rejection = errors.handleConcurrencyLimitExceeded(e);
+    byte[] body;
+    try {
+      body = mapper.writeValueAsBytes(rejection.getBody());
+    } catch (JsonProcessingException jsonProcessingException) {
+      return Mono.error(jsonProcessingException);
+    }
+    response.setStatusCode(rejection.getStatusCode());
+    response.getHeaders().addAll(rejection.getHeaders());
+    response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+    return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+  }
+}
@@ -0,0 +1,47 @@
+package gov.va.api.health.ids.service.execution;
+
+import static gov.va.api.health.ids.service.execution.ConcurrencyLimitConfig.limit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.va.api.health.ids.service.controller.WebExceptionHandler;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.WebFilter;
+
+/** The same limits as {@link ConcurrencyLimitConfig}, applied to the reactive controller. */
+@Configuration
+@ConditionalOnProperty(name = "ids.concurrency-limit.enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@EnableConfigurationProperties(ConcurrencyLimitProperties.class)
+@Slf4j
+public class ReactiveConcurrencyLimitConfig {
+  /** Create the limits with their initial values, checked before the controller is invoked. */
+  @Bean
+  public WebFilter concurrencyLimitWebFilter(
+      ConcurrencyLimitProperties properties,
+      MeterRegistry registry,
+      @Qualifier("requestMappingHandlerMapping") HandlerMapping handlers,
+      WebExceptionHandler errors,
+      ObjectMapper mapper) {
+    AdaptiveLimit lookups = limit("lookup", properties.getLookup(), properties, registry);
+    AdaptiveLimit registrations =
+        limit("registration", properties.getRegistration(), properties, registry);
+    log.info(
+        "Limiting concurrent lookups to {} and registrations to {}, adapting to latency",
+        lookups.limit(),
+        registrations.limit());
+    return new ConcurrencyLimitWebFilter(
+        handlers,
+        ConcurrencyLimitInterceptor.byMethod(lookups, registrations),
+        Math.max(1, properties.getRetryAfter().toSeconds()),
+        errors,
+        mapper);
+  }
+}
@@ -0,0 +1,51 @@
+package gov.va.api.health.ids.service.execution;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Handles requests, and the database calls they make, on virtual threads instead of the Tomcat
+ * worker pool. Requests are then no longer limited by the number of worker threads, but by the
+ * database connection pools. A request that cannot get a connection within {@code
+ * spring.datasource.hikari.connection-timeout} is answered with 503.
+ *
+ * <p>Virtual threads need Java 21 or later. On earlier versions, requests continue to use the
+ * worker pool.
+ */
+@Configuration
+@ConditionalOnProperty(name = "ids.virtual-threads.enabled", havingValue = "true")
+@Slf4j
+public class VirtualThreadConfig {
+  /** Hikari reports no maximum until the pool is started, then uses this. */
+  private static final int HIKARI_DEFAULT_POOL_SIZE = 10;
+
+  static int maximumPoolSize(HikariDataSource pool) {
+    return pool.getMaximumPoolSize() > 0 ? pool.getMaximumPoolSize() : HIKARI_DEFAULT_POOL_SIZE;
+  }
+
+  /** Replace the Tomcat worker pool with a virtual thread per request. */
+  @Bean
+  public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer(
+      ObjectProvider<HikariDataSource> pools) {
+    if (!VirtualThreads.available()) {
+      log.warn("Virtual threads need Java 21 or later, requests will use platform threads");
+      return handler -> {};
+    }
+    int connections = pools.stream().mapToInt(VirtualThreadConfig::maximumPoolSize).sum();
+    VirtualThreads.ensureCarriers(connections);
+    Optional<ExecutorService> executor = VirtualThreads.perTaskExecutor("ids-request-");
+    log.info(
+        "Requests use virtual threads, limited by {} database connections ({} carrier threads)",
+        connections,
+        System.getProperty(VirtualThreads.PARALLELISM));
+    return handler -> executor.ifPresent(handler::setExecutor);
+  }
+}
@@ -0,0 +1,78 @@
+package gov.va.api.health.ids.service.execution;
+
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Access to virtual threads, which are only available on Java 21 and later. The service is built
+ * for Java 11, so they are found reflectively.
+ */
+@UtilityClass
+public class VirtualThreads {
+  static final String PARALLELISM = "jdk.virtualThreadScheduler.parallelism";
+
+  static final String MAX_POOL_SIZE = "jdk.virtualThreadScheduler.maxPoolSize";
+
+  /** The scheduler default maximum number of carrier threads. */
+  private static final int DEFAULT_MAX_POOL_SIZE = 256;
+
+  /** True if this runtime supports virtual threads. */
+  public static boolean available() {
+    try {
+      Thread.class.getMethod("ofVirtual");
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  /**
+   * The number of carrier threads needed so that every database connection can be busy at once,
+   * pinning a carrier, with carriers still left for everything else.
+   *
+   * <p>JDBC drivers, including MySQL Connector/J, hold monitors while waiting on the network. A
+   * virtual thread blocked while holding a monitor cannot unmount from its carrier thread. At most
+   * one thread can be using each connection, so the number of pinned carriers is limited by the
+   * size of the connection pools.
+   */
+  static int carriersFor(int connections, int processors) {
+    return connections + processors;
+  }
+
+  /**
+   * Size the virtual thread scheduler for the connection pools, unless it has been configured
+   * explicitly. This only has an effect before the first virtual thread is started.
+   */
+  public static void ensureCarriers(int connections) {
+    int carriers = carriersFor(connections, Runtime.getRuntime().availableProcessors());
+    if (System.getProperty(PARALLELISM) == null) {
+      System.setProperty(PARALLELISM, Integer.toString(carriers));
+    }
+    if (System.getProperty(MAX_POOL_SIZE) == null) {
+      System.setProperty(
+          MAX_POOL_SIZE,
+          Integer.toString(Math.max(DEFAULT_MAX_POOL_SIZE, Integer.getInteger(PARALLELISM))));
+    }
+  }
+
+  /** An executor that starts a new virtual thread for each task, if virtual threads available. */
+  public static Optional<ExecutorService> perTaskExecutor(String name) {
+    if (!available()) {
+      return Optional.empty();
+    }
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+      builder = builderType.getMethod("name", String.class, long.class).invoke(builder, name, 0L);
+      ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+      Method perTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+      return Optional.of((ExecutorService) perTask.invoke(null, factory));
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Cannot create virtual thread executor", e);
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package gov.va.api.health.ids.service.migration;
+
+import gov.va.api.health.ids.service.controller.impl.PublicIdConverter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+/**
+ * Copies each public ID into the binary column added by version 3. Rows are converted in batches
+ * that are committed separately, so large tables are not held in a single transaction. The
+ * conversion can safely be repeated if it is interrupted.
+ */
+@Slf4j
+public class V4__EncodePublicIds extends BaseJavaMigration {
+  private static final String SELECT =
+      "select id, uuid from resource_identity_detail where id > ? order by id limit ?";
+
+  private static final String UPDATE =
+      "update resource_identity_detail set public_id = ? where id = ?";
+
+  private final int batchSize;
+
+  public V4__EncodePublicIds() {
+    this(10_000);
+  }
+
+  V4__EncodePublicIds(int batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  @Override
+  public boolean canExecuteInTransaction() {
+    return false;
+  }
+
+  @Override
+  public void migrate(Context context) throws Exception {
+    Connection connection = context.getConnection();
+    boolean autoCommit = connection.getAutoCommit();
+    connection.setAutoCommit(false);
+    try (PreparedStatement select = connection.prepareStatement(SELECT);
+        PreparedStatement update = connection.prepareStatement(UPDATE)) {
+      long lastId = 0;
+      long converted = 0;
+      int rows;
+      do {
+        rows = 0;
+        select.setLong(1, lastId);
+        select.setInt(2, batchSize);
+        try (ResultSet rs = select.executeQuery()) {
+          while (rs.next()) {
+            lastId = rs.getLong("id");
+            update.setBytes(1, PublicIdConverter.encode(rs.getString("uuid")));
+            update.setLong(2, lastId);
+            update.addBatch();
+            rows++;
+          }
+        }
+        if (rows > 0) {
+          update.executeBatch();
+          connection.commit();
+          converted += rows;
+          log.info("Converted {} public IDs", converted);
+        }
+      } while (rows == batchSize);
+    } catch (Exception e) {
+      connection.rollback();
+      throw e;
+    } finally {
+      connection.setAutoCommit(autoCommit);
+    }
+  }
+}
@@ -0,0 +1,11 @@
+create table if not exists resource_identity_detail (
+  id int not null auto_increment,
+  identifier varchar(45) not null,
+  station_identifier varchar(45) default null,
+  uuid varchar(45) not null,
+  system varchar(45) not null,
+  resource varchar(45) not null,
+  primary key (id),
+  constraint uuid_unique unique (uuid),
+  constraint station_urn_unique unique (station_identifier, identifier)
+);
@@ -0,0 +1 @@
+create index system_resource_identifier on resource_identity_detail (system, resource, identifier, uuid);
@@ -0,0 +1 @@
+alter table resource_identity_detail add column public_id varbinary(135);
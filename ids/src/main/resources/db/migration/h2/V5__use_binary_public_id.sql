@@ -0,0 +1,7 @@
+drop index system_resource_identifier;
+alter table resource_identity_detail drop constraint uuid_unique;
+alter table resource_identity_detail drop column uuid;
+alter table resource_identity_detail alter column public_id rename to uuid;
+alter table resource_identity_detail alter column uuid set not null;
+alter table resource_identity_detail add constraint uuid_unique unique (uuid);
+create index system_resource_identifier on resource_identity_detail (system, resource, identifier, uuid);
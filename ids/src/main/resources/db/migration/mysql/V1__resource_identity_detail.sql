@@ -0,0 +1,11 @@
+CREATE TABLE IF NOT EXISTS `resource_identity_detail` (
+  `id` int(11) NOT NULL AUTO_INCREMENT,
+  `identifier` varchar(45) NOT NULL,
+  `station_identifier` varchar(45) DEFAULT NULL,
+  `uuid` varchar(45) NOT NULL,
+  `system` varchar(45) NOT NULL,
+  `resource` varchar(45) NOT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uuid_UNIQUE` (`uuid`),
+  UNIQUE KEY `station_urn_UNIQUE` (`station_identifier`,`identifier`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
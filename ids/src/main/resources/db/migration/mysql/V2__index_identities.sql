@@ -0,0 +1,5 @@
+-- The covering index lets registration find existing (system, resource, identifier) tuples and
+-- their public IDs without reading the table rows. Public IDs keep their width of 45 characters,
+-- since CDW patients use their identifier, which may be up to 45 characters, as their public ID.
+ALTER TABLE `resource_identity_detail`
+  ADD INDEX `system_resource_identifier` (`system`,`resource`,`identifier`,`uuid`);
@@ -0,0 +1,5 @@
+-- Public IDs are converted in batches by V4 and swapped into place by V5. Registration must be
+-- stopped while versions 3 through 5 are applied. UUIDs take 17 bytes, but other public IDs are
+-- stored as their UTF-8 text, so the column holds the 45 characters of the original utf8 column at
+-- up to 3 bytes each.
+ALTER TABLE `resource_identity_detail` ADD COLUMN `public_id` varbinary(135) NULL;
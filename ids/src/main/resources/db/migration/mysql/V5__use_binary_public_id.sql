@@ -0,0 +1,7 @@
+ALTER TABLE `resource_identity_detail`
+  DROP INDEX `system_resource_identifier`,
+  DROP INDEX `uuid_UNIQUE`,
+  DROP COLUMN `uuid`,
+  CHANGE COLUMN `public_id` `uuid` varbinary(135) NOT NULL,
+  ADD UNIQUE KEY `uuid_UNIQUE` (`uuid`),
+  ADD INDEX `system_resource_identifier` (`system`,`resource`,`identifier`,`uuid`);
@@ -0,0 +1,156 @@
+package gov.va.api.health.ids.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.va.api.health.autoconfig.configuration.JacksonConfig;
+import gov.va.api.health.ids.api.Registration;
+import gov.va.api.health.ids.api.ResourceIdentity;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Load test of the servlet and reactive versions of the service. Each is started on an in-memory H2
+ * database with the same number of connections and without the lookup cache, so every lookup is a
+ * database query. Clients keep a fixed number of lookups outstanding over HTTP, and throughput and
+ * latency are reported for each. This is only run when requested, e.g. {@code mvn test
+ * -Dbenchmark=true -Dtest=ServletVersusReactiveBenchmarkTest}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@Slf4j
+public class ServletVersusReactiveBenchmarkTest {
+  private static final int CONNECTIONS = 10;
+
+  private static final int OUTSTANDING = 256;
+
+  private static final int REQUESTS = 20_000;
+
+  private static final int IDENTITIES = 10_000;
+
+  private static final ObjectMapper MAPPER = JacksonConfig.createMapper();
+
+  private final HttpClient http = HttpClient.newHttpClient();
+
+  @SneakyThrows
+  private void measure(String mode, String base, List<String> uuids, int requests) {
+    long[] latencies = new long[requests];
+    AtomicInteger failures = new AtomicInteger();
+    Semaphore outstanding = new Semaphore(OUTSTANDING);
+    CountDownLatch done = new CountDownLatch(requests);
+    long start = System.nanoTime();
+    for (int i = 0; i < requests; i++) {
+      outstanding.acquire();
+      int request = i;
+      long submitted = System.nanoTime();
+      http.sendAsync(
+              HttpRequest.newBuilder(
+                      URI.create(base + "/api/v1/ids/" + uuids.get(i % uuids.size())))
+                  .GET()
+                  .build(),
+              HttpResponse.BodyHandlers.discarding())
+          .whenComplete(
+              (response, error) -> {
+                if (error != null || response.statusCode() != 200) {
+                  failures.incrementAndGet();
+                }
+                latencies[request] = System.nanoTime() - submitted;
+                outstanding.release();
+                done.countDown();
+              });
+    }
+    done.await();
+    long elapsed = System.nanoTime() - start;
+    Arrays.sort(latencies);
+    log.info(
+        "{}: {} requests/s, latency p50 {} ms, p99 {} ms, p99.9 {} ms",
+        mode,
+        requests * 1_000_000_000L / elapsed,
+        latencies[requests / 2] / 1_000_000,
+        latencies[(int) (requests * 0.99)] / 1_000_000,
+        latencies[(int) (requests * 0.999)] / 1_000_000);
+    assertThat(failures.get()).isZero();
+  }
+
+  @SneakyThrows
+  private List<String> register(String base) {
+    List<String> uuids = new ArrayList<>(IDENTITIES);
+    for (int start = 0; start < IDENTITIES; start += 1_000) {
+      List<ResourceIdentity> identities =
+          IntStream.range(start, start + 1_000)
+              .mapToObj(
+                  i ->
+                      ResourceIdentity.builder()
+                          .system("CDW")
+                          .resource("PATIENT")
+                          .identifier("p" + i)
+                          .build())
+              .collect(Collectors.toList());
+      HttpResponse<String> response =
+          http.send(
+              HttpRequest.newBuilder(URI.create(base + "/api/v1/ids"))
+                  .header("Content-Type", "application/json")
+                  .header("Accept", "application/json")
+                  .POST(HttpRequest.BodyPublishers.ofString(MAPPER.writeValueAsString(identities)))
+                  .build(),
+              HttpResponse.BodyHandlers.ofString());
+      assertThat(response.statusCode()).isEqualTo(201);
+      MAPPER.readValue(response.body(), new TypeReference<List<Registration>>() {}).stream()
+          .map(Registration::uuid)
+          .forEach(uuids::add);
+    }
+    return uuids;
+  }
+
+  private void run(String mode, String... profiles) {
+    String database = UUID.randomUUID().toString();
+    try (ConfigurableApplicationContext service =
+        new SpringApplicationBuilder(Application.class)
+            .profiles(profiles)
+            .run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.datasource.hikari.maximum-pool-size=" + CONNECTIONS,
+                "--spring.r2dbc.url=r2dbc:h2:mem:///" + database,
+                "--spring.r2dbc.username=sa",
+                "--spring.r2dbc.pool.max-size=" + CONNECTIONS,
+                "--ids.lookup-cache.maximum-size=0",
+                "--logging.level.gov.va.api.health.ids.service.controller=WARN")) {
+      String base = "http://localhost:" + service.getEnvironment().getProperty("local.server.port");
+      List<String> uuids = register(base);
+      measure(mode, base, uuids, REQUESTS / 10);
+      measure(mode, base, uuids, REQUESTS);
+    }
+  }
+
+  @Test
+  public void servletVersusReactive() {
+    log.info(
+        "{} connections, {} outstanding requests, {} registered identities",
+        CONNECTIONS,
+        OUTSTANDING,
+        IDENTITIES);
+    run("servlet");
+    run("reactive", "reactive");
+  }
+}
@@ -3,37 +3,73 @@ package gov.va.api.health.ids.service.controller;
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import gov.va.api.health.autoconfig.configuration.JacksonConfig;
 import gov.va.api.health.ids.api.IdentityService.UnknownIdentity;
 import gov.va.api.health.ids.api.Registration;
 import gov.va.api.health.ids.api.ResourceIdentity;
 import gov.va.api.health.ids.service.controller.IdServiceV1ApiController.UuidGenerator;
+import gov.va.api.health.ids.service.controller.impl.HotKeys;
+import gov.va.api.health.ids.service.controller.impl.HotKeys.Key;
+import gov.va.api.health.ids.service.controller.impl.InMemoryIndex;
+import gov.va.api.health.ids.service.controller.impl.MembershipFilters;
+import gov.va.api.health.ids.service.controller.impl.RegistrationJournal;
+import gov.va.api.health.ids.service.controller.impl.ResourceIdentityCache;
 import gov.va.api.health.ids.service.controller.impl.ResourceIdentityDetail;
 import gov.va.api.health.ids.service.controller.impl.ResourceIdentityDetailRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import lombok.SneakyThrows;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 public class IdServiceV1ApiControllerTest {
   @Mock ResourceIdentityDetailRepository repo;
   @Mock UuidGenerator uuidGenerator;
+  @Mock MembershipFilters filters;
   private IdServiceV1ApiController controller;
 
   @BeforeEach
   public void _init() {
     MockitoAnnotations.initMocks(this);
-    controller = new IdServiceV1ApiController(repo, uuidGenerator);
+    controller =
+        new IdServiceV1ApiController(
+            repo,
+            new IdentityRegistrar(
+                uuidGenerator,
+                new ResourceIdentityCache(100, new SimpleMeterRegistry()),
+                filters,
+                RegistrationJournal.disabled(new SimpleMeterRegistry()),
+                InMemoryIndex.disabled(new SimpleMeterRegistry()),
+                HotKeys.disabled(new SimpleMeterRegistry())));
+    when(filters.mightContainIdentity(Mockito.any())).thenReturn(true);
+    when(filters.mightContainUuid(Mockito.any())).thenReturn(true);
   }
 
   /**
@@ -50,11 +86,48 @@ public class IdServiceV1ApiControllerTest {
         .build();
   }
 
+  @Test
+  public void lookupIsAnsweredByInMemoryIndex() {
+    InMemoryIndex index = Mockito.mock(InMemoryIndex.class);
+    controller =
+        new IdServiceV1ApiController(
+            repo,
+            new IdentityRegistrar(
+                uuidGenerator,
+                new ResourceIdentityCache(100, new SimpleMeterRegistry()),
+                filters,
+                RegistrationJournal.disabled(new SimpleMeterRegistry()),
+                index,
+                HotKeys.disabled(new SimpleMeterRegistry())));
+    when(index.find("x")).thenReturn(List.of(resourceIdentity(1)));
+    assertThat(controller.lookup("x").getBody()).containsExactly(resourceIdentity(1));
+    verify(repo, never()).readIdentitiesByUuid("x");
+    when(repo.readIdentitiesByUuid("y")).thenReturn(List.of(resourceIdentity(2)));
+    assertThat(controller.lookup("y").getBody()).containsExactly(resourceIdentity(2));
+  }
+
+  @Test
+  public void lookupIsCacheableForeverWithStrongETag() {
+    when(repo.readIdentitiesByUuid("x")).thenReturn(List.of(resourceIdentity(1)));
+    when(repo.readIdentitiesByUuid("y")).thenReturn(List.of(resourceIdentity(2)));
+    HttpHeaders headers = controller.lookup("x").getHeaders();
+    assertThat(headers.getCacheControl()).isEqualTo("max-age=31536000, public, immutable");
+    assertThat(headers.getETag()).startsWith("\"").doesNotStartWith("W/");
+    assertThat(controller.lookup("x").getHeaders().getETag()).isEqualTo(headers.getETag());
+    assertThat(controller.lookup("y").getHeaders().getETag()).isNotEqualTo(headers.getETag());
+  }
+
+  @Test
+  public void lookupQueriesPrimaryWhenReplicaFindsNothing() {
+    when(repo.readIdentitiesByUuid("x")).thenReturn(List.of());
+    when(repo.findIdentitiesByUuid("x")).thenReturn(List.of(resourceIdentity(1)));
+    assertThat(controller.lookup("x").getBody()).containsExactly(resourceIdentity(1));
+  }
+
   @Test
   public void lookupReturns200AndIdentitiesWhenFound() {
-    List<ResourceIdentityDetail> searchResults =
-        asList(existingDetail(3), existingDetail(2), existingDetail(1));
-    when(repo.findByUuid("x")).thenReturn(searchResults);
+    when(repo.readIdentitiesByUuid("x"))
+        .thenReturn(List.of(resourceIdentity(3), resourceIdentity(2), resourceIdentity(1)));
 
     ResponseEntity<List<ResourceIdentity>> actual = controller.lookup("x");
 
@@ -63,14 +136,68 @@ public class IdServiceV1ApiControllerTest {
         .containsExactlyInAnyOrder(resourceIdentity(3), resourceIdentity(2), resourceIdentity(1));
   }
 
+  @Test
+  public void lookupReturnsCachedIdentitiesWithoutQueryingAgain() {
+    when(repo.readIdentitiesByUuid("x")).thenReturn(List.of(resourceIdentity(1)));
+    assertThat(controller.lookup("x").getBody()).containsExactly(resourceIdentity(1));
+    assertThat(controller.lookup("x").getBody()).containsExactly(resourceIdentity(1));
+    verify(repo, times(1)).readIdentitiesByUuid("x");
+  }
+
+  @Test
+  public void lookupsAndRegistrationsAreCountedAsHotKeys() {
+    HotKeys hotKeys = new HotKeys(new SimpleMeterRegistry(), true, 10, 1_000, 1, List.of(10));
+    controller =
+        new IdServiceV1ApiController(
+            repo,
+            new IdentityRegistrar(
+                uuidGenerator,
+                new ResourceIdentityCache(100, new SimpleMeterRegistry()),
+                filters,
+                RegistrationJournal.disabled(new SimpleMeterRegistry()),
+                InMemoryIndex.disabled(new SimpleMeterRegistry()),
+                hotKeys));
+    when(repo.readIdentitiesByUuid("x")).thenReturn(List.of(resourceIdentity(1)));
+    controller.lookup("x");
+    controller.lookup("x");
+    assertThatExceptionOfType(UnknownIdentity.class).isThrownBy(() -> controller.lookup("y"));
+    when(uuidGenerator.apply(resourceIdentity(2))).thenReturn("u2");
+    controller.register(List.of(resourceIdentity(2), resourceIdentity(2)));
+    assertThat(hotKeys.report(1).get("lookups").hottest()).containsExactly(new Key("x", 2));
+    assertThat(hotKeys.report(1).get("lookups").requests()).isEqualTo(2);
+    assertThat(hotKeys.report(1).get("registrations").hottest()).containsExactly(new Key("u2", 2));
+  }
+
+  @Test
+  public void lookupSkipsQueryForUuidsThatWereNeverRegistered() {
+    when(filters.mightContainUuid("x")).thenReturn(false);
+    assertThatExceptionOfType(UnknownIdentity.class).isThrownBy(() -> controller.lookup("x"));
+    verify(repo, never()).readIdentitiesByUuid("x");
+    verify(repo, never()).findIdentitiesByUuid("x");
+  }
+
   @Test
   public void lookupThrowsUnknownIdentityExceptionWhenNoIdentitiesAreFound() {
-    List<ResourceIdentityDetail> searchResults = new ArrayList<>();
-    when(repo.findByUuid("x")).thenReturn(searchResults);
+    when(repo.readIdentitiesByUuid("x")).thenReturn(List.of());
 
     assertThatExceptionOfType(UnknownIdentity.class).isThrownBy(() -> controller.lookup("x"));
   }
 
+  @Test
+  @SneakyThrows
+  public void lookupWithMatchingIfNoneMatchIsNotModified() {
+    when(repo.readIdentitiesByUuid("x")).thenReturn(List.of(resourceIdentity(1)));
+    MockMvc mvc = MockMvcBuilders.standaloneSetup(controller).build();
+    String eTag = IdServiceV1ApiController.eTag(List.of(resourceIdentity(1)));
+    mvc.perform(get("/api/v1/ids/x").header(HttpHeaders.IF_NONE_MATCH, eTag))
+        .andExpect(status().isNotModified())
+        .andExpect(header().string(HttpHeaders.ETAG, eTag))
+        .andExpect(content().string(""));
+    mvc.perform(get("/api/v1/ids/x").header(HttpHeaders.IF_NONE_MATCH, "\"other\""))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, eTag));
+  }
+
   /**
    * What a detail will look like if it does not exist in the database. The auto-incremented primary
    * key field 'pk' will be 0.
@@ -96,7 +223,7 @@ public class IdServiceV1ApiControllerTest {
     ResourceIdentity notRegisteredYet = resourceIdentity(2);
 
     when(uuidGenerator.apply(notRegisteredYet)).thenReturn("u2");
-    when(repo.findBySystemAndResourceAndIdentifier("s1", "r1", "i1"))
+    when(repo.findBySystemAndResourceAndIdentifierIn("s1", "r1", List.of("i1")))
         .thenReturn(asList(existingDetail(1)));
 
     ResponseEntity<List<Registration>> registrationResult =
@@ -104,43 +231,198 @@ public class IdServiceV1ApiControllerTest {
 
     assertThat(registrationResult.getStatusCode()).isEqualTo(HttpStatus.CREATED);
     assertThat(registrationResult.getBody())
-        .containsExactlyInAnyOrder(
+        .containsExactly(
             registration("x", alreadyRegistered), registration("u2", notRegisteredYet));
 
-    ArgumentCaptor<Iterable<ResourceIdentityDetail>> saveArgs =
-        ArgumentCaptor.forClass(Iterable.class);
-    verify(repo)
-        .findBySystemAndResourceAndIdentifier(
-            alreadyRegistered.system(),
-            alreadyRegistered.resource(),
-            alreadyRegistered.identifier());
-    verify(repo)
-        .findBySystemAndResourceAndIdentifier(
-            notRegisteredYet.system(), notRegisteredYet.resource(), notRegisteredYet.identifier());
-    verify(repo).saveAll(saveArgs.capture());
-    assertThat(saveArgs.getValue()).containsExactly(newDetail("2", 2));
+    ArgumentCaptor<Collection<ResourceIdentityDetail>> insertArgs =
+        ArgumentCaptor.forClass(Collection.class);
+    verify(repo).findBySystemAndResourceAndIdentifierIn("s1", "r1", List.of("i1"));
+    verify(repo).findBySystemAndResourceAndIdentifierIn("s2", "r2", List.of("i2"));
+    verify(repo).insertAllIfAbsent(insertArgs.capture());
+    assertThat(insertArgs.getValue()).containsExactly(newDetail("u2", 2));
     verifyNoMoreInteractions(repo);
   }
 
+  @Test
+  public void registrationIsJournaledWhenEnabled(@TempDir Path directory) {
+    controller =
+        new IdServiceV1ApiController(
+            repo,
+            new IdentityRegistrar(
+                uuidGenerator,
+                new ResourceIdentityCache(100, new SimpleMeterRegistry()),
+                filters,
+                new RegistrationJournal(
+                    repo, new SimpleMeterRegistry(), true, directory.toString(), 1),
+                InMemoryIndex.disabled(new SimpleMeterRegistry()),
+                HotKeys.disabled(new SimpleMeterRegistry())));
+    ResourceIdentity id1 = resourceIdentity(1);
+    when(uuidGenerator.apply(id1)).thenReturn("u1");
+    when(filters.mightContainUuid("u1")).thenReturn(false);
+
+    assertThat(controller.register(List.of(id1)).getBody())
+        .containsExactly(registration("u1", id1));
+    verify(repo, never()).insertAllIfAbsent(Mockito.anyCollection());
+    /* A restarted instance, without the cached lookup, finds it in the replayed journal. */
+    controller =
+        new IdServiceV1ApiController(
+            repo,
+            new IdentityRegistrar(
+                uuidGenerator,
+                new ResourceIdentityCache(100, new SimpleMeterRegistry()),
+                filters,
+                new RegistrationJournal(
+                    repo, new SimpleMeterRegistry(), true, directory.toString(), 1),
+                InMemoryIndex.disabled(new SimpleMeterRegistry()),
+                HotKeys.disabled(new SimpleMeterRegistry())));
+    assertThat(controller.lookup("u1").getBody()).containsExactly(id1);
+  }
+
+  @Test
+  public void registrationMatchesExistingIdentifiersIgnoringCase() {
+    ResourceIdentity identity =
+        ResourceIdentity.builder().system("s1").resource("r1").identifier("I1").build();
+    when(repo.findBySystemAndResourceAndIdentifierIn("s1", "r1", List.of("I1")))
+        .thenReturn(asList(existingDetail(1)));
+
+    ResponseEntity<List<Registration>> actual = controller.register(List.of(identity));
+
+    assertThat(actual.getBody()).containsExactly(registration("x", resourceIdentity(1)));
+    verify(repo).insertAllIfAbsent(Collections.emptyList());
+  }
+
+  @Test
+  public void registrationOnlyQueriesIdentitiesThatMightBeRegistered() {
+    ResourceIdentity id1 = resourceIdentity(1);
+    ResourceIdentity id2 = resourceIdentity(2);
+    when(filters.mightContainIdentity(id2)).thenReturn(false);
+    when(uuidGenerator.apply(Mockito.any())).thenReturn("u");
+
+    controller.register(asList(id1, id2));
+
+    verify(repo).findBySystemAndResourceAndIdentifierIn("s1", "r1", List.of("i1"));
+    verify(repo, never())
+        .findBySystemAndResourceAndIdentifierIn(
+            Mockito.eq("s2"), Mockito.eq("r2"), Mockito.anyCollection());
+    verify(filters, times(2)).add(Mockito.any());
+  }
+
+  @Test
+  public void registrationPopulatesLookupCacheForNewIdentities() {
+    ResourceIdentity id1 = resourceIdentity(1);
+    when(uuidGenerator.apply(id1)).thenReturn("u1");
+    controller.register(List.of(id1));
+    assertThat(controller.lookup("u1").getBody()).containsExactly(id1);
+    verify(repo, never()).readIdentitiesByUuid("u1");
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void registrationQueriesExistingIdentitiesInChunks() {
+    List<ResourceIdentity> identities = new ArrayList<>();
+    for (int i = 0; i < IdentityRegistrar.FIND_CHUNK_SIZE + 1; i++) {
+      identities.add(
+          ResourceIdentity.builder().system("s").resource("r").identifier("i" + i).build());
+    }
+    when(uuidGenerator.apply(Mockito.any())).thenAnswer(i -> i.getArgument(0).toString());
+
+    ResponseEntity<List<Registration>> actual = controller.register(identities);
+
+    assertThat(actual.getBody()).hasSize(identities.size());
+    ArgumentCaptor<Collection<String>> queryArgs = ArgumentCaptor.forClass(Collection.class);
+    verify(repo, times(2))
+        .findBySystemAndResourceAndIdentifierIn(
+            Mockito.eq("s"), Mockito.eq("r"), queryArgs.capture());
+    assertThat(queryArgs.getAllValues().get(0)).hasSize(IdentityRegistrar.FIND_CHUNK_SIZE);
+    assertThat(queryArgs.getAllValues().get(1)).containsExactly("i500");
+    ArgumentCaptor<Collection<ResourceIdentityDetail>> insertArgs =
+        ArgumentCaptor.forClass(Collection.class);
+    verify(repo).insertAllIfAbsent(insertArgs.capture());
+    assertThat(insertArgs.getValue()).hasSize(identities.size());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void registrationRegistersDuplicateIdentitiesOnce() {
+    ResourceIdentity id1 = resourceIdentity(1);
+    when(uuidGenerator.apply(id1)).thenReturn("1");
+
+    ResponseEntity<List<Registration>> actual = controller.register(asList(id1, id1));
+
+    assertThat(actual.getBody()).containsExactly(registration("1", id1), registration("1", id1));
+    verify(repo).findBySystemAndResourceAndIdentifierIn("s1", "r1", List.of("i1"));
+    ArgumentCaptor<Collection<ResourceIdentityDetail>> insertArgs =
+        ArgumentCaptor.forClass(Collection.class);
+    verify(repo).insertAllIfAbsent(insertArgs.capture());
+    assertThat(insertArgs.getValue()).hasSize(1);
+  }
+
   @SuppressWarnings("unchecked")
   @Test
   public void registrationReturn201AndRegistrationsForUnregisteredId() {
     ResourceIdentity id1 = resourceIdentity(1);
     ResourceIdentity id2 = resourceIdentity(2);
-    when(repo.findByUuid(Mockito.anyString())).thenReturn(Collections.emptyList());
     when(uuidGenerator.apply(id1)).thenReturn("1");
     when(uuidGenerator.apply(id2)).thenReturn("2");
 
-    ArgumentCaptor<Iterable<ResourceIdentityDetail>> saveArgs =
-        ArgumentCaptor.forClass(Iterable.class);
+    ArgumentCaptor<Collection<ResourceIdentityDetail>> insertArgs =
+        ArgumentCaptor.forClass(Collection.class);
 
     ResponseEntity<List<Registration>> actual = controller.register(asList(id1, id2));
 
     assertThat(actual.getStatusCode()).isEqualTo(HttpStatus.CREATED);
     assertThat(actual.getBody())
         .containsExactlyInAnyOrder(registration("1", id1), registration("2", id2));
-    verify(repo).saveAll(saveArgs.capture());
-    assertThat(saveArgs.getValue()).containsExactlyInAnyOrder(newDetail("1", 1), newDetail("2", 2));
+    verify(repo).insertAllIfAbsent(insertArgs.capture());
+    assertThat(insertArgs.getValue())
+        .containsExactlyInAnyOrder(newDetail("1", 1), newDetail("2", 2));
+  }
+
+  @Test
+  public void registrationReturnsOneUuidPerIdentityPreferringExactCase() {
+    ResourceIdentity lower = resourceIdentity(1);
+    ResourceIdentity upper = lower.toBuilder().identifier("I1").build();
+    ResourceIdentity mixed = lower.toBuilder().identifier("i1").build();
+    when(repo.findBySystemAndResourceAndIdentifierIn(
+            Mockito.eq("s1"), Mockito.eq("r1"), Mockito.anyCollection()))
+        .thenReturn(
+            List.of(
+                ResourceIdentityDetail.builder()
+                    .identifier("I1")
+                    .resource("r1")
+                    .system("s1")
+                    .uuid("u-upper")
+                    .build(),
+                newDetail("u-lower", 1)));
+    assertThat(controller.registerUuids(List.of(upper, lower, mixed)).getBody())
+        .containsExactly("u-upper", "u-lower", "u-lower");
+    assertThat(controller.registerAll(List.of(upper))).hasSize(2);
+    when(repo.findBySystemAndResourceAndIdentifierIn(
+            Mockito.eq("s1"), Mockito.eq("r1"), Mockito.anyCollection()))
+        .thenReturn(List.of(newDetail("u-lower", 1)));
+    assertThat(controller.registerUuids(List.of(upper)).getBody()).containsExactly("u-lower");
+  }
+
+  @Test
+  @SneakyThrows
+  public void registrationReturnsOnlyUuidsWhenRequested() {
+    ResourceIdentity id1 = resourceIdentity(1);
+    ResourceIdentity id2 = resourceIdentity(2);
+    when(uuidGenerator.apply(id1)).thenReturn("u1");
+    when(uuidGenerator.apply(id2)).thenReturn("u2");
+    assertThat(controller.registerUuids(List.of(id2, id1, id2)).getBody())
+        .containsExactly("u2", "u1", "u2");
+    MockMvc mvc =
+        MockMvcBuilders.standaloneSetup(controller)
+            .setMessageConverters(
+                new MappingJackson2HttpMessageConverter(JacksonConfig.createMapper()))
+            .build();
+    mvc.perform(
+            post("/api/v1/ids?response=uuids")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JacksonConfig.createMapper().writeValueAsString(List.of(id1))))
+        .andExpect(status().isCreated())
+        .andExpect(content().json("[\"u1\"]", true));
   }
 
   private ResourceIdentity resourceIdentity(int i) {
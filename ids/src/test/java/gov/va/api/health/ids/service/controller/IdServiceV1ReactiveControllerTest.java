@@ -0,0 +1,308 @@
+package gov.va.api.health.ids.service.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.va.api.health.autoconfig.configuration.JacksonConfig;
+import gov.va.api.health.ids.api.Registration;
+import gov.va.api.health.ids.api.ResourceIdentity;
+import gov.va.api.health.ids.service.controller.IdServiceV1ApiController.UuidGenerator;
+import gov.va.api.health.ids.service.controller.impl.HotKeys;
+import gov.va.api.health.ids.service.controller.impl.HotKeys.Key;
+import gov.va.api.health.ids.service.controller.impl.InMemoryIndex;
+import gov.va.api.health.ids.service.controller.impl.MembershipFilters;
+import gov.va.api.health.ids.service.controller.impl.ReactiveResourceIdentityDetailRepository;
+import gov.va.api.health.ids.service.controller.impl.RegistrationJournal;
+import gov.va.api.health.ids.service.controller.impl.ResourceIdentityCache;
+import gov.va.api.health.ids.service.controller.impl.ResourceIdentityDetail;
+import gov.va.api.health.ids.service.controller.impl.ResourceIdentityDetailRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.validation.Validation;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.CodecConfigurer;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/** The same contract as the servlet controllers, served by WebFlux. */
+public class IdServiceV1ReactiveControllerTest {
+  @Mock ReactiveResourceIdentityDetailRepository repo;
+
+  @Mock UuidGenerator uuidGenerator;
+
+  @Mock ResourceIdentityDetailRepository replicas;
+
+  private final ObjectMapper mapper = JacksonConfig.createMapper();
+
+  private WebTestClient client;
+
+  @BeforeEach
+  public void _init() {
+    MockitoAnnotations.initMocks(this);
+    client = client(HotKeys.disabled(new SimpleMeterRegistry()), null);
+    when(uuidGenerator.apply(Mockito.any()))
+        .thenAnswer(i -> "u-" + i.<ResourceIdentity>getArgument(0).identifier());
+    when(repo.findBySystemAndResourceAndIdentifierIn(any(), any(), anyCollection()))
+        .thenReturn(Flux.empty());
+    when(repo.insertAllIfAbsent(anyCollection())).thenReturn(Mono.empty());
+  }
+
+  private WebTestClient client(HotKeys hotKeys, ResourceIdentityDetailRepository replicas) {
+    return WebTestClient.bindToController(
+            new IdServiceV1ReactiveController(
+                repo,
+                new IdentityRegistrar(
+                    uuidGenerator,
+                    new ResourceIdentityCache(100, new SimpleMeterRegistry()),
+                    MembershipFilters.disabled(new SimpleMeterRegistry()),
+                    RegistrationJournal.disabled(new SimpleMeterRegistry()),
+                    InMemoryIndex.disabled(new SimpleMeterRegistry()),
+                    hotKeys),
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                replicas))
+        .controllerAdvice(new WebExceptionHandler(new SimpleMeterRegistry(), 60, 30))
+        .httpMessageCodecs(this::jackson)
+        .configureClient()
+        .codecs(this::jackson)
+        .build();
+  }
+
+  private ResourceIdentityDetail detail(int i) {
+    return ResourceIdentityDetail.builder()
+        .uuid("u-p" + i)
+        .system("CDW")
+        .resource("PATIENT")
+        .identifier("p" + i)
+        .build();
+  }
+
+  @Test
+  public void identifierLongerThanItsColumnIsBadRequest() {
+    client
+        .post()
+        .uri("/api/v1/ids")
+        .contentType(MediaType.APPLICATION_NDJSON)
+        .accept(MediaType.APPLICATION_NDJSON, MediaType.APPLICATION_JSON)
+        .bodyValue(
+            "{\"system\":\"CDW\",\"resource\":\"PATIENT\",\"identifier\":\""
+                + "x".repeat(46)
+                + "\"}\n")
+        .exchange()
+        .expectStatus()
+        .isBadRequest();
+  }
+
+  private ResourceIdentity identity(int i) {
+    return ResourceIdentity.builder().system("CDW").resource("PATIENT").identifier("p" + i).build();
+  }
+
+  @Test
+  public void invalidStreamedIdentityIsBadRequest() {
+    client
+        .post()
+        .uri("/api/v1/ids")
+        .contentType(MediaType.APPLICATION_NDJSON)
+        .accept(MediaType.APPLICATION_NDJSON, MediaType.APPLICATION_JSON)
+        .bodyValue("{\"system\":\"CDW\",\"resource\":\"PATIENT\",\"identifier\":\"\"}\n")
+        .exchange()
+        .expectStatus()
+        .isBadRequest();
+  }
+
+  private void jackson(CodecConfigurer codecs) {
+    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(mapper));
+    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(mapper));
+  }
+
+  @Test
+  public void lookupIsCachedAfterRegistration() {
+    client
+        .post()
+        .uri("/api/v1/ids")
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(List.of(identity(1)))
+        .exchange()
+        .expectStatus()
+        .isCreated();
+    client
+        .get()
+        .uri("/api/v1/ids/u-p1")
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectBodyList(ResourceIdentity.class)
+        .contains(identity(1))
+        .hasSize(1);
+    verify(repo, never()).findIdentitiesByUuid(any());
+  }
+
+  @Test
+  public void lookupReturns404ForUnknownId() {
+    when(repo.findIdentitiesByUuid("nope")).thenReturn(Flux.empty());
+    client.get().uri("/api/v1/ids/nope").exchange().expectStatus().isNotFound();
+  }
+
+  @Test
+  public void lookupReadsFromReplicaBeforePrimary() {
+    client = client(HotKeys.disabled(new SimpleMeterRegistry()), replicas);
+    when(replicas.readIdentitiesByUuid("u-p1")).thenReturn(List.of(identity(1)));
+    when(replicas.readIdentitiesByUuid("u-p2")).thenReturn(List.of());
+    when(repo.findIdentitiesByUuid("u-p2")).thenReturn(Flux.just(identity(2)));
+    client
+        .get()
+        .uri("/api/v1/ids/u-p1")
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectBodyList(ResourceIdentity.class)
+        .contains(identity(1))
+        .hasSize(1);
+    client
+        .get()
+        .uri("/api/v1/ids/u-p2")
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectBodyList(ResourceIdentity.class)
+        .contains(identity(2))
+        .hasSize(1);
+    verify(repo, never()).findIdentitiesByUuid("u-p1");
+  }
+
+  @Test
+  public void lookupsAndRegistrationsAreCountedAsHotKeys() {
+    HotKeys hotKeys = new HotKeys(new SimpleMeterRegistry(), true, 10, 1_000, 1, List.of(10));
+    client = client(hotKeys, null);
+    when(repo.findIdentitiesByUuid("u-p1")).thenReturn(Flux.just(identity(1)));
+    when(repo.findIdentitiesByUuid("nope")).thenReturn(Flux.empty());
+    client.get().uri("/api/v1/ids/u-p1").exchange().expectStatus().isOk();
+    client.get().uri("/api/v1/ids/u-p1").exchange().expectStatus().isOk();
+    client.get().uri("/api/v1/ids/nope").exchange().expectStatus().isNotFound();
+    client
+        .post()
+        .uri("/api/v1/ids")
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(List.of(identity(2)))
+        .exchange()
+        .expectStatus()
+        .isCreated();
+    assertThat(hotKeys.report(1).get("lookups").hottest()).containsExactly(new Key("u-p1", 2));
+    assertThat(hotKeys.report(1).get("lookups").requests()).isEqualTo(2);
+    assertThat(hotKeys.report(1).get("registrations").hottest())
+        .containsExactly(new Key("u-p2", 1));
+  }
+
+  @Test
+  public void lookupUsesLegacyAndCurrentPaths() {
+    when(repo.findIdentitiesByUuid("u-p1")).thenReturn(Flux.just(identity(1)));
+    for (String path : List.of("/api/v1/ids/u-p1", "/api/resourceIdentity/u-p1")) {
+      client
+          .get()
+          .uri(path)
+          .exchange()
+          .expectStatus()
+          .isOk()
+          .expectBodyList(ResourceIdentity.class)
+          .contains(identity(1))
+          .hasSize(1);
+    }
+    verify(repo, times(1)).findIdentitiesByUuid("u-p1");
+  }
+
+  @Test
+  public void registerReturnsOneUuidPerIdentityPreferringExactCase() {
+    when(repo.findBySystemAndResourceAndIdentifierIn(eq("CDW"), eq("PATIENT"), anyCollection()))
+        .thenReturn(
+            Flux.just(
+                ResourceIdentityDetail.builder()
+                    .uuid("u-P1")
+                    .system("CDW")
+                    .resource("PATIENT")
+                    .identifier("P1")
+                    .build(),
+                detail(1)));
+    client
+        .post()
+        .uri("/api/v1/ids?response=uuids")
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(List.of(identity(1), identity(1).toBuilder().identifier("P1").build()))
+        .exchange()
+        .expectStatus()
+        .isCreated()
+        .expectBody()
+        .json("[\"u-p1\",\"u-P1\"]");
+  }
+
+  @Test
+  public void registerReturnsExistingAndNewRegistrationsInOrder() {
+    when(repo.findBySystemAndResourceAndIdentifierIn(eq("CDW"), eq("PATIENT"), anyCollection()))
+        .thenReturn(Flux.just(detail(2)));
+    List<Registration> registrations =
+        client
+            .post()
+            .uri("/api/resourceIdentity")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(List.of(identity(1), identity(2), identity(1)))
+            .exchange()
+            .expectStatus()
+            .isCreated()
+            .expectBodyList(Registration.class)
+            .returnResult()
+            .getResponseBody();
+    assertThat(registrations.stream().map(Registration::uuid).collect(Collectors.toList()))
+        .containsExactly("u-p1", "u-p2", "u-p1");
+    verify(repo).insertAllIfAbsent(List.of(detail(1)));
+  }
+
+  @SneakyThrows
+  @Test
+  public void registrationsAreStreamedInChunks() {
+    int count = IdServiceV1StreamingController.STREAM_CHUNK_SIZE * 2 + 500;
+    StringBuilder body = new StringBuilder();
+    IntStream.range(0, count)
+        .mapToObj(this::identity)
+        .forEach(i -> body.append(write(i)).append('\n'));
+    List<Registration> registrations =
+        client
+            .post()
+            .uri("/api/v1/ids")
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .accept(MediaType.APPLICATION_NDJSON)
+            .bodyValue(body.toString())
+            .exchange()
+            .expectStatus()
+            .isCreated()
+            .returnResult(Registration.class)
+            .getResponseBody()
+            .collectList()
+            .block();
+    assertThat(registrations).hasSize(count);
+    for (int i = 0; i < count; i++) {
+      assertThat(registrations.get(i).uuid()).isEqualTo("u-p" + i);
+    }
+    verify(repo, times(3)).insertAllIfAbsent(anyCollection());
+  }
+
+  @SneakyThrows
+  private String write(Object value) {
+    return mapper.writeValueAsString(value);
+  }
+}
@@ -0,0 +1,165 @@
+package gov.va.api.health.ids.service.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.va.api.health.autoconfig.configuration.JacksonConfig;
+import gov.va.api.health.ids.api.Registration;
+import gov.va.api.health.ids.api.ResourceIdentity;
+import gov.va.api.health.ids.service.controller.IdServiceV1ApiController.UuidGenerator;
+import gov.va.api.health.ids.service.controller.impl.HotKeys;
+import gov.va.api.health.ids.service.controller.impl.InMemoryIndex;
+import gov.va.api.health.ids.service.controller.impl.MembershipFilters;
+import gov.va.api.health.ids.service.controller.impl.RegistrationJournal;
+import gov.va.api.health.ids.service.controller.impl.ResourceIdentityCache;
+import gov.va.api.health.ids.service.controller.impl.ResourceIdentityDetailRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.validation.Validation;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class IdServiceV1StreamingControllerTest {
+  @Mock ResourceIdentityDetailRepository repo;
+
+  @Mock UuidGenerator uuidGenerator;
+
+  @Mock PlatformTransactionManager transactionManager;
+
+  private final ObjectMapper mapper = JacksonConfig.createMapper();
+
+  private MockMvc mvc;
+
+  @BeforeEach
+  public void _init() {
+    MockitoAnnotations.initMocks(this);
+    IdServiceV1ApiController registrar =
+        new IdServiceV1ApiController(
+            repo,
+            new IdentityRegistrar(
+                uuidGenerator,
+                new ResourceIdentityCache(100, new SimpleMeterRegistry()),
+                MembershipFilters.disabled(new SimpleMeterRegistry()),
+                RegistrationJournal.disabled(new SimpleMeterRegistry()),
+                InMemoryIndex.disabled(new SimpleMeterRegistry()),
+                HotKeys.disabled(new SimpleMeterRegistry())));
+    mvc =
+        MockMvcBuilders.standaloneSetup(
+                new IdServiceV1StreamingController(
+                    registrar,
+                    mapper,
+                    Validation.buildDefaultValidatorFactory().getValidator(),
+                    new TransactionTemplate(transactionManager)))
+            .setControllerAdvice(new WebExceptionHandler(new SimpleMeterRegistry(), 60, 30))
+            .build();
+    when(uuidGenerator.apply(Mockito.any()))
+        .thenAnswer(i -> "u-" + i.<ResourceIdentity>getArgument(0).identifier());
+  }
+
+  @Test
+  public void emptyStreamRegistersNothing() {
+    MvcResult result = register("");
+    assertThat(result.getResponse().getStatus()).isEqualTo(201);
+    assertThat(result.getResponse().getContentLength()).isEqualTo(0);
+  }
+
+  private ResourceIdentity identity(int i) {
+    return ResourceIdentity.builder().system("CDW").resource("PATIENT").identifier("p" + i).build();
+  }
+
+  @Test
+  @SneakyThrows
+  public void invalidIdentityIsBadRequest() {
+    mvc.perform(
+            post("/api/v1/ids")
+                .contentType(IdServiceV1StreamingController.NDJSON)
+                .accept(IdServiceV1StreamingController.NDJSON, "application/json")
+                .content("{\"system\":\"CDW\",\"resource\":\"PATIENT\",\"identifier\":\"\"}\n"))
+        .andExpect(status().isBadRequest());
+    mvc.perform(
+            post("/api/v1/ids")
+                .contentType(IdServiceV1StreamingController.NDJSON)
+                .accept(IdServiceV1StreamingController.NDJSON, "application/json")
+                .content("[1,2,3]\n"))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  @SneakyThrows
+  public void invalidIdentityAfterFirstChunkEndsWithError() {
+    int count = IdServiceV1StreamingController.STREAM_CHUNK_SIZE + 10;
+    List<ResourceIdentity> identities =
+        IntStream.range(0, count).mapToObj(this::identity).collect(Collectors.toList());
+    MvcResult result =
+        register(
+            ndjson(identities)
+                + "{\"system\":\"CDW\",\"resource\":\"PATIENT\",\"identifier\":\"\"}\n");
+    assertThat(result.getResponse().getStatus()).isEqualTo(201);
+    String[] lines = result.getResponse().getContentAsString().split("\n");
+    assertThat(lines).hasSize(IdServiceV1StreamingController.STREAM_CHUNK_SIZE + 1);
+    ErrorResponse error = mapper.readValue(lines[lines.length - 1], ErrorResponse.class);
+    assertThat(error.type()).isEqualTo("ConstraintViolationException");
+    verify(transactionManager, times(1)).commit(Mockito.any());
+  }
+
+  @SneakyThrows
+  private String ndjson(List<?> values) {
+    StringBuilder body = new StringBuilder();
+    for (Object value : values) {
+      body.append(mapper.writeValueAsString(value)).append('\n');
+    }
+    return body.toString();
+  }
+
+  @SneakyThrows
+  private MvcResult register(String body) {
+    return mvc.perform(
+            post("/api/v1/ids")
+                .contentType(IdServiceV1StreamingController.NDJSON)
+                .accept(IdServiceV1StreamingController.NDJSON, "application/json")
+                .content(body.getBytes(StandardCharsets.UTF_8)))
+        .andReturn();
+  }
+
+  @Test
+  @SneakyThrows
+  public void registrationsAreStreamedInChunks() {
+    int count = IdServiceV1StreamingController.STREAM_CHUNK_SIZE * 2 + 500;
+    List<ResourceIdentity> identities =
+        IntStream.range(0, count).mapToObj(this::identity).collect(Collectors.toList());
+    MvcResult result = register(ndjson(identities));
+    assertThat(result.getResponse().getStatus()).isEqualTo(201);
+    assertThat(result.getResponse().getContentType())
+        .isEqualTo(IdServiceV1StreamingController.NDJSON);
+    String[] lines = result.getResponse().getContentAsString().split("\n");
+    assertThat(lines).hasSize(count);
+    List<Registration> registrations = new ArrayList<>(count);
+    for (String line : lines) {
+      registrations.add(mapper.readValue(line, Registration.class));
+    }
+    for (int i = 0; i < count; i++) {
+      assertThat(registrations.get(i).uuid()).isEqualTo("u-p" + i);
+      assertThat(registrations.get(i).resourceIdentities()).containsExactly(identity(i));
+    }
+    verify(transactionManager, times(3)).commit(Mockito.any());
+    verify(repo, times(3)).insertAllIfAbsent(Mockito.any());
+  }
+}
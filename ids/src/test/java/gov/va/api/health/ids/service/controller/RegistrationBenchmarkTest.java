@@ -0,0 +1,123 @@
+package gov.va.api.health.ids.service.controller;
+
+import gov.va.api.health.ids.api.ResourceIdentity;
+import gov.va.api.health.ids.service.controller.impl.HotKeys;
+import gov.va.api.health.ids.service.controller.impl.InMemoryIndex;
+import gov.va.api.health.ids.service.controller.impl.MembershipFilters;
+import gov.va.api.health.ids.service.controller.impl.RegistrationJournal;
+import gov.va.api.health.ids.service.controller.impl.ResourceIdentityCache;
+import gov.va.api.health.ids.service.controller.impl.ResourceIdentityDetail;
+import gov.va.api.health.ids.service.controller.impl.ResourceIdentityDetailRepository;
+import gov.va.api.health.ids.service.controller.impl.Type5UuidGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Compares registration latency of the per-identity lookup approach with the chunked, multi-key
+ * approach as the batch size grows. This uses an embedded database and is only run when requested,
+ * e.g. {@code mvn test -Dbenchmark=true -Dtest=RegistrationBenchmarkTest}. Each operation commits
+ * on its own, as it would in the service, rather than participating in a test transaction.
+ */
+@DataJpaTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Slf4j
+public class RegistrationBenchmarkTest {
+  private static final int[] BATCH_SIZES = {10, 100, 1_000, 2_000};
+
+  private static final int ROUNDS = 3;
+
+  @Autowired ResourceIdentityDetailRepository repository;
+
+  private final Type5UuidGenerator uuidGenerator =
+      new Type5UuidGenerator(UUID.randomUUID().toString());
+
+  @AfterEach
+  void _cleanup() {
+    repository.deleteAll();
+  }
+
+  private List<ResourceIdentity> identities(String prefix, int count) {
+    List<ResourceIdentity> identities = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      identities.add(
+          ResourceIdentity.builder()
+              .system("CDW")
+              .resource(i % 2 == 0 ? "OBSERVATION" : "CONDITION")
+              .identifier(prefix + i)
+              .build());
+    }
+    return identities;
+  }
+
+  /** Registration as it was done before: one query per identity, followed by a JPA save. */
+  private void oldRegister(List<ResourceIdentity> identities) {
+    List<ResourceIdentityDetail> newRegistrations = new ArrayList<>();
+    for (ResourceIdentity identity : identities) {
+      if (repository
+          .findBySystemAndResourceAndIdentifier(
+              identity.system(), identity.resource(), identity.identifier())
+          .isEmpty()) {
+        newRegistrations.add(
+            ResourceIdentityDetail.builder()
+                .uuid(uuidGenerator.apply(identity))
+                .system(identity.system())
+                .resource(identity.resource())
+                .identifier(identity.identifier())
+                .build());
+      }
+    }
+    repository.saveAll(newRegistrations);
+  }
+
+  @Test
+  public void registrationLatencyByBatchSize() {
+    IdServiceV1ApiController controller =
+        new IdServiceV1ApiController(
+            repository,
+            new IdentityRegistrar(
+                uuidGenerator,
+                new ResourceIdentityCache(100, new SimpleMeterRegistry()),
+                MembershipFilters.disabled(new SimpleMeterRegistry()),
+                RegistrationJournal.disabled(new SimpleMeterRegistry()),
+                InMemoryIndex.disabled(new SimpleMeterRegistry()),
+                HotKeys.disabled(new SimpleMeterRegistry())));
+    log.info("batch size | old new (ms) | new new (ms) | old repeat (ms) | new repeat (ms)");
+    int run = 0;
+    for (int batchSize : BATCH_SIZES) {
+      long[] nanos = new long[4];
+      for (int round = 0; round < ROUNDS; round++) {
+        List<ResourceIdentity> forOld = identities("old" + run + "-", batchSize);
+        List<ResourceIdentity> forNew = identities("new" + run + "-", batchSize);
+        run++;
+        nanos[0] += time(() -> oldRegister(forOld));
+        nanos[1] += time(() -> controller.register(forNew));
+        nanos[2] += time(() -> oldRegister(forOld));
+        nanos[3] += time(() -> controller.register(forNew));
+      }
+      log.info(
+          "{} | {} | {} | {} | {}",
+          batchSize,
+          nanos[0] / ROUNDS / 1_000_000.0,
+          nanos[1] / ROUNDS / 1_000_000.0,
+          nanos[2] / ROUNDS / 1_000_000.0,
+          nanos[3] / ROUNDS / 1_000_000.0);
+    }
+  }
+
+  private long time(Runnable task) {
+    long start = System.nanoTime();
+    task.run();
+    return System.nanoTime() - start;
+  }
+}
@@ -0,0 +1,109 @@
+package gov.va.api.health.ids.service.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import gov.va.api.health.ids.api.Registration;
+import gov.va.api.health.ids.api.ResourceIdentity;
+import gov.va.api.health.ids.service.controller.impl.HotKeys;
+import gov.va.api.health.ids.service.controller.impl.InMemoryIndex;
+import gov.va.api.health.ids.service.controller.impl.MembershipFilters;
+import gov.va.api.health.ids.service.controller.impl.RegistrationJournal;
+import gov.va.api.health.ids.service.controller.impl.ResourceIdentityCache;
+import gov.va.api.health.ids.service.controller.impl.ResourceIdentityDetailRepository;
+import gov.va.api.health.ids.service.controller.impl.Type5UuidGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Many threads register overlapping identities at the same time. Each registration commits on its
+ * own, as it would in the service, so that threads genuinely race each other.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class RegistrationConcurrencyTest {
+  private static final int THREADS = 8;
+
+  private static final int ROUNDS = 5;
+
+  private static final int IDENTITIES = 50;
+
+  @Autowired ResourceIdentityDetailRepository repository;
+
+  @AfterEach
+  void _cleanup() {
+    repository.deleteAll();
+  }
+
+  private List<ResourceIdentity> identities(int round) {
+    List<ResourceIdentity> identities = new ArrayList<>(IDENTITIES);
+    for (int i = 0; i < IDENTITIES; i++) {
+      identities.add(
+          ResourceIdentity.builder()
+              .system("CDW")
+              .resource("OBSERVATION")
+              .identifier(round + ":" + i)
+              .build());
+    }
+    return identities;
+  }
+
+  @Test
+  @SneakyThrows
+  public void concurrentRegistrationOfTheSameIdentitiesIsIdempotent() {
+    IdServiceV1ApiController controller =
+        new IdServiceV1ApiController(
+            repository,
+            new IdentityRegistrar(
+                new Type5UuidGenerator(UUID.randomUUID().toString()),
+                new ResourceIdentityCache(100, new SimpleMeterRegistry()),
+                MembershipFilters.disabled(new SimpleMeterRegistry()),
+                RegistrationJournal.disabled(new SimpleMeterRegistry()),
+                InMemoryIndex.disabled(new SimpleMeterRegistry()),
+                HotKeys.disabled(new SimpleMeterRegistry())));
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      for (int round = 0; round < ROUNDS; round++) {
+        List<ResourceIdentity> identities = identities(round);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Registration>>> results = new ArrayList<>(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+          List<ResourceIdentity> shuffled = new ArrayList<>(identities);
+          Collections.shuffle(shuffled);
+          results.add(
+              executor.submit(
+                  () -> {
+                    start.await();
+                    controller.register(shuffled);
+                    return controller.register(identities).getBody();
+                  }));
+        }
+        start.countDown();
+        List<Registration> expected = results.get(0).get(30, TimeUnit.SECONDS);
+        for (Future<List<Registration>> result : results) {
+          assertThat(result.get(30, TimeUnit.SECONDS)).isEqualTo(expected);
+        }
+        for (Registration registration : expected) {
+          assertThat(repository.findByUuid(registration.uuid())).hasSize(1);
+        }
+      }
+      assertThat(repository.count()).isEqualTo((long) ROUNDS * IDENTITIES);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package gov.va.api.health.ids.service.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.va.api.health.autoconfig.configuration.JacksonConfig;
+import gov.va.api.health.ids.api.Registration;
+import gov.va.api.health.ids.api.ResourceIdentity;
+import gov.va.api.health.ids.service.controller.IdServiceV1ApiController.UuidGenerator;
+import gov.va.api.health.ids.service.controller.impl.HotKeys;
+import gov.va.api.health.ids.service.controller.impl.InMemoryIndex;
+import gov.va.api.health.ids.service.controller.impl.MembershipFilters;
+import gov.va.api.health.ids.service.controller.impl.RegistrationJournal;
+import gov.va.api.health.ids.service.controller.impl.ResourceIdentityCache;
+import gov.va.api.health.ids.service.controller.impl.ResourceIdentityDetailRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+public class SmileConfigTest {
+  private static final TypeReference<List<Registration>> REGISTRATIONS =
+      new TypeReference<List<Registration>>() {};
+
+  static List<Registration> registrations(int count) {
+    return IntStream.range(0, count)
+        .mapToObj(
+            i ->
+                Registration.builder()
+                    .uuid("00000000-0000-5000-8000-" + String.format("%012d", i))
+                    .resourceIdentities(
+                        List.of(
+                            ResourceIdentity.builder()
+                                .system("CDW")
+                                .resource("OBSERVATION")
+                                .identifier("800000000" + i + ":L")
+                                .build()))
+                    .build())
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  @SneakyThrows
+  public void registrationsAreExchangedAsSmileWhenRequested() {
+    ResourceIdentityDetailRepository repo = Mockito.mock(ResourceIdentityDetailRepository.class);
+    UuidGenerator uuidGenerator = Mockito.mock(UuidGenerator.class);
+    when(uuidGenerator.apply(Mockito.any())).thenReturn("u");
+    IdServiceV1ApiController controller =
+        new IdServiceV1ApiController(
+            repo,
+            new IdentityRegistrar(
+                uuidGenerator,
+                new ResourceIdentityCache(100, new SimpleMeterRegistry()),
+                MembershipFilters.disabled(new SimpleMeterRegistry()),
+                RegistrationJournal.disabled(new SimpleMeterRegistry()),
+                InMemoryIndex.disabled(new SimpleMeterRegistry()),
+                HotKeys.disabled(new SimpleMeterRegistry())));
+    MockMvc mvc =
+        MockMvcBuilders.standaloneSetup(controller)
+            .setMessageConverters(
+                new MappingJackson2HttpMessageConverter(JacksonConfig.createMapper()),
+                new SmileConfig().smileHttpMessageConverter())
+            .build();
+    ObjectMapper smile = SmileConfig.createMapper();
+    ResourceIdentity identity =
+        ResourceIdentity.builder().system("CDW").resource("PATIENT").identifier("1").build();
+    byte[] body =
+        mvc.perform(
+                post("/api/v1/ids")
+                    .contentType(SmileConfig.SMILE)
+                    .header(HttpHeaders.ACCEPT, SmileConfig.SMILE)
+                    .content(smile.writeValueAsBytes(List.of(identity))))
+            .andExpect(status().isCreated())
+            .andExpect(content().contentType(SmileConfig.SMILE))
+            .andReturn()
+            .getResponse()
+            .getContentAsByteArray();
+    assertThat(smile.readValue(body, REGISTRATIONS))
+        .containsExactly(
+            Registration.builder().uuid("u").resourceIdentities(List.of(identity)).build());
+  }
+
+  @Test
+  @SneakyThrows
+  public void smileIsSmallerThanJsonAndReadsTheSame() {
+    List<Registration> registrations = registrations(1000);
+    ObjectMapper smile = SmileConfig.createMapper();
+    byte[] smileBytes = smile.writeValueAsBytes(registrations);
+    byte[] jsonBytes = JacksonConfig.createMapper().writeValueAsBytes(registrations);
+    assertThat(smileBytes.length).isLessThan(jsonBytes.length / 2);
+    assertThat(smile.readValue(smileBytes, REGISTRATIONS)).isEqualTo(registrations);
+  }
+}
@@ -0,0 +1,175 @@
+package gov.va.api.health.ids.service.controller;
+
+import gov.va.api.health.ids.api.ResourceIdentity;
+import gov.va.api.health.ids.service.controller.impl.HotKeys;
+import gov.va.api.health.ids.service.controller.impl.InMemoryIndex;
+import gov.va.api.health.ids.service.controller.impl.MembershipFilters;
+import gov.va.api.health.ids.service.controller.impl.PublicIdConverter;
+import gov.va.api.health.ids.service.controller.impl.RegistrationJournal;
+import gov.va.api.health.ids.service.controller.impl.ResourceIdentityCache;
+import gov.va.api.health.ids.service.controller.impl.ResourceIdentityDetailRepository;
+import gov.va.api.health.ids.service.controller.impl.Type5UuidGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Reports registration and lookup latency as the table grows, with and without the lookup index
+ * added by the migrations. This uses an embedded database and is only run when requested, e.g.
+ * {@code mvn test -Dbenchmark=true -Dtest=TableSizeBenchmarkTest}. Table sizes can be set with
+ * {@code -Dbenchmark.table-sizes=1000000,10000000,30000000}. The embedded database is in memory, so
+ * tens of millions of rows need a few gigabytes of heap.
+ */
+@DataJpaTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Slf4j
+public class TableSizeBenchmarkTest {
+  private static final int BATCH_SIZE = 100;
+
+  private static final int ROUNDS = 20;
+
+  private static final int UNINDEXED_ROUNDS = 3;
+
+  @Autowired ResourceIdentityDetailRepository repository;
+
+  @Autowired JdbcTemplate jdbc;
+
+  private final Random random = new Random(5);
+
+  private final Type5UuidGenerator uuidGenerator =
+      new Type5UuidGenerator(UUID.randomUUID().toString());
+
+  private static long[] tableSizes() {
+    return Arrays.stream(
+            System.getProperty("benchmark.table-sizes", "10000,100000,1000000").split(","))
+        .mapToLong(size -> Long.parseLong(size.trim()))
+        .toArray();
+  }
+
+  @AfterEach
+  void _cleanup() {
+    jdbc.execute("truncate table resource_identity_detail");
+  }
+
+  private void fill(long from, long to) {
+    /*
+     * Random UUIDs, in their stored form, spread writes across the unique index the way generated
+     * public IDs do.
+     */
+    jdbc.update(
+        "insert into resource_identity_detail (identifier, uuid, system, resource)"
+            + " select 'fill' || x, X'01' || cast(random_uuid() as binary(16)), 'CDW',"
+            + " case mod(x, 2) when 0 then 'OBSERVATION' else 'CONDITION' end"
+            + " from system_range(?, ?)",
+        from,
+        to - 1);
+  }
+
+  private void find(ResourceIdentity identity) {
+    repository.findBySystemAndResourceAndIdentifier(
+        identity.system(), identity.resource(), identity.identifier());
+  }
+
+  private List<ResourceIdentity> identities(String prefix, long offset, long bound) {
+    List<ResourceIdentity> identities = new ArrayList<>(BATCH_SIZE);
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      long x = offset + (long) (random.nextDouble() * bound);
+      identities.add(
+          ResourceIdentity.builder()
+              .system("CDW")
+              .resource(x % 2 == 0 ? "OBSERVATION" : "CONDITION")
+              .identifier(prefix + x)
+              .build());
+    }
+    return identities;
+  }
+
+  @Test
+  public void latencyByTableSize() {
+    IdServiceV1ApiController controller =
+        new IdServiceV1ApiController(
+            repository,
+            new IdentityRegistrar(
+                uuidGenerator,
+                new ResourceIdentityCache(1, new SimpleMeterRegistry()),
+                MembershipFilters.disabled(new SimpleMeterRegistry()),
+                RegistrationJournal.disabled(new SimpleMeterRegistry()),
+                InMemoryIndex.disabled(new SimpleMeterRegistry()),
+                HotKeys.disabled(new SimpleMeterRegistry())));
+    log.info(
+        "rows | lookup (ms) | find identity (ms) | find identity, no index (ms)"
+            + " | register {} new (ms) | register {} existing (ms)",
+        BATCH_SIZE,
+        BATCH_SIZE);
+    long rows = 0;
+    int run = 0;
+    for (long size : tableSizes()) {
+      fill(rows, size);
+      rows = size;
+      long[] nanos = new long[5];
+      for (String uuid : sampleUuids(rows)) {
+        nanos[0] += time(() -> repository.findIdentitiesByUuid(uuid));
+      }
+      for (ResourceIdentity identity : identities("fill", 0, rows).subList(0, ROUNDS)) {
+        nanos[1] += time(() -> find(identity));
+      }
+      jdbc.execute("drop index system_resource_identifier");
+      for (ResourceIdentity identity : identities("fill", 0, rows).subList(0, UNINDEXED_ROUNDS)) {
+        nanos[2] += time(() -> find(identity)) * ROUNDS / UNINDEXED_ROUNDS;
+      }
+      jdbc.execute(
+          "create index system_resource_identifier"
+              + " on resource_identity_detail (system, resource, identifier, uuid)");
+      for (int round = 0; round < ROUNDS; round++) {
+        List<ResourceIdentity> fresh = identities("new" + run++ + "-", 0, BATCH_SIZE);
+        List<ResourceIdentity> existing = identities("fill", 0, rows);
+        nanos[3] += time(() -> controller.register(fresh));
+        nanos[4] += time(() -> controller.register(existing));
+      }
+      log.info(
+          "{} | {} | {} | {} | {} | {}",
+          rows,
+          millis(nanos[0]),
+          millis(nanos[1]),
+          millis(nanos[2]),
+          millis(nanos[3]),
+          millis(nanos[4]));
+    }
+  }
+
+  private double millis(long nanos) {
+    return nanos / ROUNDS / 1_000_000.0;
+  }
+
+  private List<String> sampleUuids(long size) {
+    List<String> uuids = new ArrayList<>(ROUNDS);
+    for (int i = 0; i < ROUNDS; i++) {
+      uuids.add(
+          PublicIdConverter.decode(
+              jdbc.queryForObject(
+                  "select uuid from resource_identity_detail where id = ?",
+                  byte[].class,
+                  1 + (long) (random.nextDouble() * size))));
+    }
+    return uuids;
+  }
+
+  private long time(Runnable task) {
+    long start = System.nanoTime();
+    task.run();
+    return System.nanoTime() - start;
+  }
+}
@@ -13,13 +13,22 @@ import gov.va.api.health.ids.api.IdentityService.LookupFailed;
 import gov.va.api.health.ids.api.IdentityService.RegistrationFailed;
 import gov.va.api.health.ids.api.IdentityService.UnknownIdentity;
 import gov.va.api.health.ids.service.controller.IdServiceV1ApiController.UuidGenerator;
+import gov.va.api.health.ids.service.controller.WebExceptionHandler.RateLimitedLog;
+import gov.va.api.health.ids.service.controller.impl.HotKeys;
+import gov.va.api.health.ids.service.controller.impl.InMemoryIndex;
+import gov.va.api.health.ids.service.controller.impl.MembershipFilters;
+import gov.va.api.health.ids.service.controller.impl.RegistrationJournal;
+import gov.va.api.health.ids.service.controller.impl.ResourceIdentityCache;
 import gov.va.api.health.ids.service.controller.impl.ResourceIdentityDetailRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.lang.reflect.Method;
 import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 import javax.validation.ConstraintViolationException;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -28,6 +37,7 @@ import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.method.HandlerMethod;
@@ -36,12 +46,12 @@ import org.springframework.web.servlet.mvc.method.annotation.ExceptionHandlerExc
 import org.springframework.web.servlet.mvc.method.annotation.ServletInvocableHandlerMethod;
 
 public class WebExceptionHandlerTest {
-
   @Mock ResourceIdentityDetailRepository resources;
 
   @Mock UuidGenerator uuidGenerator;
 
   private IdServiceV1ApiController controller;
+
   private WebExceptionHandler exceptionHandler;
 
   static Stream<Arguments> parameters() {
@@ -50,14 +60,26 @@ public class WebExceptionHandlerTest {
         arguments(HttpStatus.BAD_REQUEST, new ConstraintViolationException(new HashSet<>())),
         arguments(HttpStatus.INTERNAL_SERVER_ERROR, new LookupFailed("1", "")),
         arguments(HttpStatus.INTERNAL_SERVER_ERROR, new RegistrationFailed("")),
+        arguments(
+            HttpStatus.SERVICE_UNAVAILABLE,
+            new CannotGetJdbcConnectionException("Connection is not available")),
         arguments(HttpStatus.INTERNAL_SERVER_ERROR, new RuntimeException()));
   }
 
   @BeforeEach
   public void _init() {
     MockitoAnnotations.initMocks(this);
-    controller = new IdServiceV1ApiController(resources, uuidGenerator);
-    exceptionHandler = new WebExceptionHandler();
+    controller =
+        new IdServiceV1ApiController(
+            resources,
+            new IdentityRegistrar(
+                uuidGenerator,
+                new ResourceIdentityCache(100, new SimpleMeterRegistry()),
+                MembershipFilters.disabled(new SimpleMeterRegistry()),
+                RegistrationJournal.disabled(new SimpleMeterRegistry()),
+                InMemoryIndex.disabled(new SimpleMeterRegistry()),
+                HotKeys.disabled(new SimpleMeterRegistry())));
+    exceptionHandler = new WebExceptionHandler(new SimpleMeterRegistry(), 60, 30);
   }
 
   private ExceptionHandlerExceptionResolver createExceptionResolver() {
@@ -79,11 +101,50 @@ public class WebExceptionHandlerTest {
     return exceptionResolver;
   }
 
+  @Test
+  public void errorsAreCountedByTypeAndStatus() {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    WebExceptionHandler handler = new WebExceptionHandler(registry, 60, 30);
+    handler.handleNotFound(new UnknownIdentity("1"));
+    handler.handleNotFound(new UnknownIdentity("2"));
+    handler.handleSnafu(new LookupFailed("1", ""));
+    assertThat(
+            registry
+                .get(WebExceptionHandler.ERRORS)
+                .tags("type", "UnknownIdentity", "status", "404")
+                .counter()
+                .count())
+        .isEqualTo(2);
+    assertThat(
+            registry
+                .get(WebExceptionHandler.ERRORS)
+                .tags("type", "LookupFailed", "status", "500")
+                .counter()
+                .count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  public void expectedErrorsAreLoggedOncePerIntervalPerType() {
+    AtomicLong now = new AtomicLong();
+    RateLimitedLog log = new RateLimitedLog(10, now::get);
+    assertThat(log.admit("a")).isZero();
+    assertThat(log.admit("a")).isEqualTo(-1);
+    assertThat(log.admit("a")).isEqualTo(-1);
+    assertThat(log.admit("b")).isZero();
+    now.set(9);
+    assertThat(log.admit("a")).isEqualTo(-1);
+    now.set(10);
+    assertThat(log.admit("a")).isEqualTo(3);
+    assertThat(log.admit("a")).isEqualTo(-1);
+    assertThat(log.admit("b")).isZero();
+  }
+
   @ParameterizedTest
   @MethodSource(value = "parameters")
   @SneakyThrows
   public void expectStatus(HttpStatus status, Exception exception) {
-    when(resources.findByUuid(Mockito.any())).thenThrow(exception);
+    when(resources.readIdentitiesByUuid(Mockito.any())).thenThrow(exception);
     when(uuidGenerator.apply(Mockito.any())).thenReturn("x");
     MockMvc mvc =
         MockMvcBuilders.standaloneSetup(controller)
@@ -94,4 +155,20 @@ public class WebExceptionHandlerTest {
         .andExpect(status().is(status.value()))
         .andExpect(jsonPath("type", equalTo(exception.getClass().getSimpleName())));
   }
+
+  @Test
+  public void unknownIdsAreCacheableBriefly() {
+    assertThat(
+            exceptionHandler
+                .handleNotFound(new UnknownIdentity("1"))
+                .getHeaders()
+                .getCacheControl())
+        .isEqualTo("max-age=30, public");
+    assertThat(
+            new WebExceptionHandler(new SimpleMeterRegistry(), 60, 0)
+                .handleNotFound(new UnknownIdentity("1"))
+                .getHeaders()
+                .getCacheControl())
+        .isEqualTo("no-store");
+  }
 }
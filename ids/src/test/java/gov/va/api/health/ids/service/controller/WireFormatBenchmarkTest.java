@@ -0,0 +1,93 @@
+package gov.va.api.health.ids.service.controller;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.va.api.health.autoconfig.configuration.JacksonConfig;
+import gov.va.api.health.ids.api.Registration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares writing and reading a batch of 10,000 registrations as JSON and as Smile. Payload sizes
+ * are logged before the benchmarks run, and the GC profiler reports allocation per operation. This
+ * is only run when requested, e.g. {@code mvn test -Dbenchmark=true
+ * -Dtest=WireFormatBenchmarkTest}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Slf4j
+public class WireFormatBenchmarkTest {
+  private static final TypeReference<List<Registration>> REGISTRATIONS =
+      new TypeReference<List<Registration>>() {};
+
+  private final ObjectMapper json = JacksonConfig.createMapper();
+
+  private final ObjectMapper smile = SmileConfig.createMapper();
+
+  private final List<Registration> batch = SmileConfigTest.registrations(10_000);
+
+  private final byte[] jsonBatch = write(json);
+
+  private final byte[] smileBatch = write(smile);
+
+  @Benchmark
+  public List<Registration> readJson() throws Exception {
+    return json.readValue(jsonBatch, REGISTRATIONS);
+  }
+
+  @Benchmark
+  public List<Registration> readSmile() throws Exception {
+    return smile.readValue(smileBatch, REGISTRATIONS);
+  }
+
+  @Test
+  @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+  public void run() throws Exception {
+    log.info(
+        "{} registrations are {} bytes as JSON and {} bytes as Smile",
+        batch.size(),
+        jsonBatch.length,
+        smileBatch.length);
+    new Runner(
+            new OptionsBuilder()
+                .include(getClass().getName())
+                .addProfiler(GCProfiler.class)
+                .build())
+        .run();
+  }
+
+  @SneakyThrows
+  private byte[] write(ObjectMapper mapper) {
+    return mapper.writeValueAsBytes(batch);
+  }
+
+  @Benchmark
+  public byte[] writeJson() throws Exception {
+    return json.writeValueAsBytes(batch);
+  }
+
+  @Benchmark
+  public byte[] writeSmile() throws Exception {
+    return smile.writeValueAsBytes(batch);
+  }
+}
@@ -0,0 +1,60 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import org.junit.jupiter.api.Test;
+
+public class BloomFilterTest {
+  @Test
+  public void addedValuesAreAlwaysFound() {
+    BloomFilter filter = new BloomFilter(10_000, 0.01);
+    for (int i = 0; i < 10_000; i++) {
+      filter.put("value" + i);
+    }
+    for (int i = 0; i < 10_000; i++) {
+      assertThat(filter.mightContain("value" + i)).isTrue();
+    }
+  }
+
+  @Test
+  public void emptyFilterContainsNothing() {
+    BloomFilter filter = new BloomFilter(100, 0.01);
+    assertThat(filter.mightContain("anything")).isFalse();
+    assertThat(filter.expectedFalsePositiveProbability()).isZero();
+  }
+
+  @Test
+  public void falsePositiveRateIsCloseToRequested() {
+    BloomFilter filter = new BloomFilter(10_000, 0.01);
+    for (int i = 0; i < 10_000; i++) {
+      filter.put("value" + i);
+    }
+    int falsePositives = 0;
+    for (int i = 0; i < 100_000; i++) {
+      if (filter.mightContain("other" + i)) {
+        falsePositives++;
+      }
+    }
+    assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+    assertThat(filter.expectedFalsePositiveProbability()).isBetween(0.005, 0.02);
+  }
+
+  @Test
+  public void invalidSizingIsRejected() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> new BloomFilter(0, 0.01));
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> new BloomFilter(10, 0));
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> new BloomFilter(10, 1));
+  }
+
+  @Test
+  public void sizeFollowsExpectedInsertionsAndProbability() {
+    BloomFilter filter = new BloomFilter(1_000_000, 0.01);
+    /* About 9.6 bits per value and 7 hash functions for 1%. */
+    assertThat(filter.bitSize()).isBetween(9_500_000L, 9_700_000L);
+    assertThat(filter.hashFunctions()).isEqualTo(7);
+  }
+}
@@ -0,0 +1,51 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import org.junit.jupiter.api.Test;
+
+public class CountMinSketchTest {
+  @Test
+  public void estimatesAreNeverTooLowAndRarelyMuchTooHigh() {
+    CountMinSketch sketch = new CountMinSketch(1024);
+    for (int i = 0; i < 1_000; i++) {
+      for (int j = 0; j <= i % 10; j++) {
+        sketch.add("value" + i);
+      }
+    }
+    int badEstimates = 0;
+    for (int i = 0; i < 1_000; i++) {
+      long estimate = sketch.estimate("value" + i);
+      assertThat(estimate).isGreaterThanOrEqualTo(i % 10 + 1);
+      if (estimate > i % 10 + 1 + 10) {
+        badEstimates++;
+      }
+    }
+    assertThat(badEstimates).isLessThan(10);
+    assertThat(sketch.estimate("never")).isLessThan(10);
+  }
+
+  @Test
+  public void halvingHalvesEstimates() {
+    CountMinSketch sketch = new CountMinSketch(64);
+    for (int i = 0; i < 9; i++) {
+      assertThat(sketch.add("x")).isEqualTo(i + 1);
+    }
+    sketch.halve();
+    assertThat(sketch.estimate("x")).isEqualTo(4);
+    assertThat(sketch.add("x")).isEqualTo(5);
+  }
+
+  @Test
+  public void invalidWidthIsRejected() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> new CountMinSketch(0));
+  }
+
+  @Test
+  public void widthIsRoundedUpToPowerOfTwo() {
+    assertThat(new CountMinSketch(1000).width()).isEqualTo(1024);
+    assertThat(new CountMinSketch(1024).width()).isEqualTo(1024);
+  }
+}
@@ -0,0 +1,125 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+import gov.va.api.health.ids.service.controller.impl.HotKeys.Key;
+import gov.va.api.health.ids.service.controller.impl.HotKeys.Report;
+import gov.va.api.health.ids.service.controller.impl.HotKeys.Tracker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+public class HotKeysTest {
+  /** Draw from a Zipf distribution over the given number of keys with exponent 1. */
+  private static int[] zipf(int keys, int draws) {
+    double[] cumulative = new double[keys];
+    double sum = 0;
+    for (int k = 0; k < keys; k++) {
+      sum += 1.0 / (k + 1);
+      cumulative[k] = sum;
+    }
+    Random random = new Random(42);
+    int[] drawn = new int[draws];
+    for (int i = 0; i < draws; i++) {
+      double r = random.nextDouble() * sum;
+      int k = Arrays.binarySearch(cumulative, r);
+      drawn[i] = k < 0 ? -k - 1 : k;
+    }
+    return drawn;
+  }
+
+  @Test
+  public void decayHalvesCounts() {
+    Tracker tracker = new Tracker(2, 10);
+    for (int i = 0; i < 9; i++) {
+      tracker.add("a");
+    }
+    assertThat(tracker.hottest()).containsExactly(new Key("a", 9));
+    tracker.add("b");
+    assertThat(tracker.total()).isEqualTo(5);
+    assertThat(tracker.hottest()).containsExactly(new Key("a", 4), new Key("b", 0));
+  }
+
+  @Test
+  public void decayHappensOncePerWindow() {
+    Tracker tracker = new Tracker(2, 10);
+    for (int i = 0; i < 10; i++) {
+      tracker.add("a");
+    }
+    assertThat(tracker.hottest()).containsExactly(new Key("a", 5));
+    for (int i = 0; i < 9; i++) {
+      tracker.add("a");
+    }
+    assertThat(tracker.hottest()).containsExactly(new Key("a", 14));
+    assertThat(tracker.total()).isEqualTo(14);
+    tracker.add("a");
+    assertThat(tracker.hottest()).containsExactly(new Key("a", 7));
+    assertThat(tracker.total()).isEqualTo(7);
+  }
+
+  @Test
+  public void disabledReportsNothing() {
+    HotKeys hotKeys = HotKeys.disabled(new SimpleMeterRegistry());
+    hotKeys.lookup("x");
+    hotKeys.registration("x");
+    assertThat(hotKeys.report(10)).isEmpty();
+    assertThat(new HotKeysEndpoint(hotKeys).hotKeys(null)).isEmpty();
+  }
+
+  @Test
+  public void hottestKeysOfSkewedTrafficAreFound() {
+    Tracker tracker = new Tracker(100, 1_000_000);
+    for (int k : zipf(100_000, 200_000)) {
+      tracker.add("key" + k);
+    }
+    List<String> hottest =
+        tracker.hottest().stream().limit(10).map(Key::uuid).collect(Collectors.toList());
+    assertThat(hottest).contains("key0", "key1", "key2", "key3", "key4");
+    assertThat(tracker.hottest()).hasSize(100);
+    assertThat(HotKeys.zipfExponent(tracker.hottest())).isBetween(0.7, 1.3);
+    /* The hottest 100 of 100k keys get about 5.2 / 12.1 of the traffic. */
+    assertThat(tracker.share(100)).isBetween(0.38, 0.48);
+    assertThat(tracker.share(10)).isLessThan(tracker.share(100));
+  }
+
+  @Test
+  public void reportAndGaugesCoverLookupsAndRegistrations() {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    HotKeys hotKeys = new HotKeys(registry, true, 10, 1_000, 1, List.of(1, 10));
+    for (int i = 0; i < 4; i++) {
+      hotKeys.lookup("HOT");
+    }
+    hotKeys.lookup("cold");
+    hotKeys.registration("new");
+    Map<String, Report> report = new HotKeysEndpoint(hotKeys).hotKeys(1);
+    assertThat(report.keySet()).containsExactly("lookups", "registrations");
+    assertThat(report.get("lookups").requests()).isEqualTo(5);
+    assertThat(report.get("lookups").hottest()).containsExactly(new Key("hot", 4));
+    assertThat(report.get("lookups").estimatedHitRatio())
+        .containsEntry("1", 0.8)
+        .containsEntry("10", 1.0);
+    assertThat(report.get("registrations").hottest()).containsExactly(new Key("new", 1));
+    assertThat(
+            registry
+                .get("ids.hot.keys.hit.ratio.estimate")
+                .tags("path", "lookup", "cache.size", "1")
+                .gauge()
+                .value())
+        .isEqualTo(0.8);
+    assertThat(registry.get("ids.hot.keys.skew").tags("path", "lookup").gauge().value())
+        .isPositive();
+  }
+
+  @Test
+  public void uniformTrafficHasNoSkew() {
+    assertThat(HotKeys.zipfExponent(List.of(new Key("a", 5), new Key("b", 5)))).isZero();
+    assertThat(HotKeys.zipfExponent(List.of(new Key("a", 5)))).isZero();
+    assertThat(HotKeys.zipfExponent(List.of(new Key("a", 4), new Key("b", 2))))
+        .isCloseTo(1, offset(0.001));
+  }
+}
@@ -0,0 +1,123 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import gov.va.api.health.ids.api.ResourceIdentity;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Reports the memory used by the in-memory index, the time to load it, and lookup latency compared
+ * with the database as the table grows. This uses an embedded database and is only run when
+ * requested, e.g. {@code mvn test -Dbenchmark=true -Dtest=InMemoryIndexBenchmarkTest}. Table sizes
+ * can be set with {@code -Dbenchmark.table-sizes=1000000,5000000}.
+ */
+@DataJpaTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Slf4j
+public class InMemoryIndexBenchmarkTest {
+  private static final int LOOKUPS = 10_000;
+
+  @Autowired ResourceIdentityDetailRepository repository;
+
+  @Autowired JdbcTemplate jdbc;
+
+  private final Random random = new Random(7);
+
+  private static long[] tableSizes() {
+    return Arrays.stream(System.getProperty("benchmark.table-sizes", "100000,1000000").split(","))
+        .mapToLong(size -> Long.parseLong(size.trim()))
+        .toArray();
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  @AfterEach
+  void _cleanup() {
+    jdbc.execute("truncate table resource_identity_detail");
+  }
+
+  private void fill(long from, long to) {
+    jdbc.update(
+        "insert into resource_identity_detail (identifier, uuid, system, resource)"
+            + " select '800000000' || x || ':L', X'01' || cast(random_uuid() as binary(16)),"
+            + " 'CDW', case mod(x, 2) when 0 then 'OBSERVATION' else 'CONDITION' end"
+            + " from system_range(?, ?)",
+        from,
+        to - 1);
+  }
+
+  @Test
+  public void memoryLoadTimeAndLatencyByTableSize() {
+    log.info(
+        "rows | load (ms) | index (bytes per row) | heap (MB per million rows)"
+            + " | index lookup (us) | database lookup (us)");
+    long rows = 0;
+    for (long size : tableSizes()) {
+      fill(rows, size);
+      rows = size;
+      List<String> uuids = sampleUuids(rows);
+      SimpleMeterRegistry registry = new SimpleMeterRegistry();
+      InMemoryIndex index = new InMemoryIndex(jdbc, registry, true, (int) rows, 1);
+      long heapBefore = usedHeap();
+      long start = System.nanoTime();
+      index.refresh();
+      long loadNanos = System.nanoTime() - start;
+      long heap = usedHeap() - heapBefore;
+      long indexNanos = time(uuids, index::find);
+      long databaseNanos = time(uuids, repository::readIdentitiesByUuid);
+      log.info(
+          "{} | {} | {} | {} | {} | {}",
+          rows,
+          loadNanos / 1_000_000,
+          Math.round(registry.get("ids.index.bytes").gauge().value() / rows),
+          heap * 1_000_000 / rows / (1024 * 1024),
+          String.format("%.1f", indexNanos / 1_000.0 / LOOKUPS),
+          String.format("%.1f", databaseNanos / 1_000.0 / LOOKUPS));
+    }
+  }
+
+  private List<String> sampleUuids(long size) {
+    List<String> uuids = new ArrayList<>(LOOKUPS);
+    long firstId = jdbc.queryForObject("select min(id) from resource_identity_detail", Long.class);
+    for (int i = 0; i < LOOKUPS; i++) {
+      uuids.add(
+          PublicIdConverter.decode(
+              jdbc.queryForObject(
+                  "select uuid from resource_identity_detail where id = ?",
+                  byte[].class,
+                  firstId + (long) (random.nextDouble() * size))));
+    }
+    return uuids;
+  }
+
+  private long time(List<String> uuids, Function<String, List<ResourceIdentity>> lookup) {
+    /* Warm up first. */
+    uuids.forEach(lookup::apply);
+    long start = System.nanoTime();
+    for (String uuid : uuids) {
+      if (lookup.apply(uuid).isEmpty()) {
+        throw new AssertionError("Missing " + uuid);
+      }
+    }
+    return System.nanoTime() - start;
+  }
+}
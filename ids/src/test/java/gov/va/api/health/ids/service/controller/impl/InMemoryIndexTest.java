@@ -0,0 +1,84 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import gov.va.api.health.ids.api.ResourceIdentity;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@DataJpaTest
+public class InMemoryIndexTest {
+  @Autowired ResourceIdentityDetailRepository repository;
+
+  @Autowired JdbcTemplate jdbc;
+
+  private SimpleMeterRegistry registry;
+
+  private InMemoryIndex index;
+
+  private static ResourceIdentityDetail detail(String uuid, String identifier) {
+    return ResourceIdentityDetail.builder()
+        .system("CDW")
+        .resource("OBSERVATION")
+        .identifier(identifier)
+        .uuid(uuid)
+        .build();
+  }
+
+  @BeforeEach
+  void _init() {
+    registry = new SimpleMeterRegistry();
+    index = new InMemoryIndex(jdbc, registry, true, 10, 1);
+  }
+
+  @Test
+  public void disabledIndexHasNothing() {
+    InMemoryIndex disabled = InMemoryIndex.disabled(registry);
+    assertThat(disabled.find(UUID.randomUUID().toString())).isEmpty();
+  }
+
+  @Test
+  public void indexIsLoadedInPages() {
+    List<ResourceIdentityDetail> details = new ArrayList<>();
+    for (int i = 0; i < InMemoryIndex.PAGE_SIZE + 1; i++) {
+      details.add(detail(UUID.randomUUID().toString(), "i" + i));
+    }
+    details.add(detail("1011537977V693883", "1011537977V693883"));
+    repository.insertAllIfAbsent(details);
+    index.refresh();
+    String last = details.get(InMemoryIndex.PAGE_SIZE).uuid();
+    assertThat(index.find(last))
+        .containsExactly(
+            ResourceIdentity.builder()
+                .system("CDW")
+                .resource("OBSERVATION")
+                .identifier("i" + InMemoryIndex.PAGE_SIZE)
+                .build());
+    assertThat(index.find(last.toUpperCase(Locale.ENGLISH))).hasSize(1);
+    assertThat(registry.get("ids.index.rows").gauge().value())
+        .isEqualTo(InMemoryIndex.PAGE_SIZE + 1);
+  }
+
+  @Test
+  public void missesAreCounted() {
+    String uuid = UUID.randomUUID().toString();
+    assertThat(index.find(uuid)).isEmpty();
+    repository.insertAllIfAbsent(List.of(detail(uuid, "i1")));
+    index.refresh();
+    assertThat(index.find(uuid)).hasSize(1);
+    assertThat(index.find(UUID.randomUUID().toString())).isEmpty();
+    assertThat(index.find("1011537977V693883")).isEmpty();
+    assertThat(registry.get("ids.index.lookups").tag("result", "hit").counter().count())
+        .isEqualTo(1);
+    assertThat(registry.get("ids.index.lookups").tag("result", "miss").counter().count())
+        .isEqualTo(2);
+  }
+}
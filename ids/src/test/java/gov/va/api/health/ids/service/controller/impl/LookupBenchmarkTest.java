@@ -0,0 +1,105 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import gov.va.api.health.ids.api.ResourceIdentity;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Compares lookup latency and allocation of loading JPA entities, as lookups did before, with
+ * selecting only the identity columns. This uses an embedded database and is only run when
+ * requested, e.g. {@code mvn test -Dbenchmark=true -Dtest=LookupBenchmarkTest}.
+ */
+@DataJpaTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Slf4j
+public class LookupBenchmarkTest {
+  private static final int ROWS = 10_000;
+
+  private static final int ROUNDS = 5;
+
+  @Autowired ResourceIdentityDetailRepository repository;
+
+  @Autowired PlatformTransactionManager transactionManager;
+
+  @AfterEach
+  void _cleanup() {
+    repository.deleteAll();
+  }
+
+  private static long allocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  @Test
+  public void entityVersusProjectionLookups() {
+    List<ResourceIdentityDetail> details = new ArrayList<>(ROWS);
+    for (int i = 0; i < ROWS; i++) {
+      details.add(
+          ResourceIdentityDetail.builder()
+              .uuid(UUID.randomUUID().toString())
+              .system("CDW")
+              .resource("OBSERVATION")
+              .identifier("800000000" + i + ":L")
+              .build());
+    }
+    repository.insertAllIfAbsent(details);
+    List<String> uuids =
+        details.stream().map(ResourceIdentityDetail::uuid).collect(Collectors.toList());
+    TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+    readOnly.setReadOnly(true);
+    Function<String, List<ResourceIdentity>> entities =
+        uuid ->
+            readOnly.execute(
+                status ->
+                    repository.findByUuid(uuid).stream()
+                        .map(ResourceIdentityDetail::asResourceIdentity)
+                        .collect(Collectors.toList()));
+    Function<String, List<ResourceIdentity>> projection = repository::readIdentitiesByUuid;
+    /* Warm up both. */
+    measure(uuids, entities);
+    measure(uuids, projection);
+    log.info("round | entities (us) | entities (bytes) | projection (us) | projection (bytes)");
+    for (int round = 0; round < ROUNDS; round++) {
+      double[] before = measure(uuids, entities);
+      double[] after = measure(uuids, projection);
+      log.info(
+          "{} | {} | {} | {} | {}",
+          round,
+          Math.round(before[0]),
+          Math.round(before[1]),
+          Math.round(after[0]),
+          Math.round(after[1]));
+    }
+  }
+
+  /** Average microseconds and bytes allocated per lookup. */
+  private double[] measure(List<String> uuids, Function<String, List<ResourceIdentity>> lookup) {
+    long bytes = allocatedBytes();
+    long start = System.nanoTime();
+    for (String uuid : uuids) {
+      if (lookup.apply(uuid).size() != 1) {
+        throw new AssertionError("Missing " + uuid);
+      }
+    }
+    return new double[] {
+      (System.nanoTime() - start) / 1_000.0 / uuids.size(),
+      (allocatedBytes() - bytes) / (double) uuids.size()
+    };
+  }
+}
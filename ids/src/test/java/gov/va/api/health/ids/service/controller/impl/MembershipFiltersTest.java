@@ -0,0 +1,141 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import gov.va.api.health.ids.api.ResourceIdentity;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@DataJpaTest
+public class MembershipFiltersTest {
+  @Autowired ResourceIdentityDetailRepository repository;
+
+  @Autowired JdbcTemplate jdbc;
+
+  private SimpleMeterRegistry registry;
+
+  private MembershipFilters filters;
+
+  @BeforeEach
+  void _init() {
+    registry = new SimpleMeterRegistry();
+    filters = new MembershipFilters(jdbc, registry, true, 100_000, 0.001, 10, 100);
+  }
+
+  private ResourceIdentityDetail detail(String identifier) {
+    return ResourceIdentityDetail.builder()
+        .system("CDW")
+        .resource("OBSERVATION")
+        .identifier(identifier)
+        .uuid("uuid-" + identifier)
+        .build();
+  }
+
+  @Test
+  public void disabledFiltersMightContainEverything() {
+    MembershipFilters disabled = MembershipFilters.disabled(registry);
+    disabled.refresh();
+    assertThat(disabled.mightContainUuid("nope")).isTrue();
+    assertThat(disabled.mightContainIdentity(identity("nope"))).isTrue();
+  }
+
+  @Test
+  public void filtersAreLoadedInPagesAndCaughtUp() {
+    List<ResourceIdentityDetail> details = new ArrayList<>();
+    for (int i = 0; i < MembershipFilters.PAGE_SIZE + 1; i++) {
+      details.add(detail("i" + i));
+    }
+    repository.insertAllIfAbsent(details);
+    filters.refresh();
+    assertThat(filters.mightContainUuid("uuid-i0")).isTrue();
+    assertThat(filters.mightContainUuid("uuid-i" + MembershipFilters.PAGE_SIZE)).isTrue();
+    assertThat(filters.mightContainUuid("uuid-later")).isFalse();
+
+    repository.insertAllIfAbsent(List.of(detail("later")));
+    assertThat(filters.catchUp()).isEqualTo(1);
+    assertThat(filters.mightContainUuid("uuid-later")).isTrue();
+    assertThat(filters.catchUp()).isZero();
+  }
+
+  @Test
+  public void filtersAreNotUsedUntilLoaded() {
+    assertThat(filters.mightContainUuid("nope")).isTrue();
+    assertThat(filters.mightContainIdentity(identity("nope"))).isTrue();
+    filters.refresh();
+    assertThat(filters.mightContainUuid("nope")).isFalse();
+    assertThat(filters.mightContainIdentity(identity("nope"))).isFalse();
+  }
+
+  private ResourceIdentity identity(String identifier) {
+    return ResourceIdentity.builder()
+        .system("CDW")
+        .resource("OBSERVATION")
+        .identifier(identifier)
+        .build();
+  }
+
+  @Test
+  public void matchingIgnoresCaseAndMetricsArePublished() {
+    repository.insertAllIfAbsent(List.of(detail("abc")));
+    filters.refresh();
+    assertThat(filters.mightContainUuid("UUID-ABC")).isTrue();
+    assertThat(
+            filters.mightContainIdentity(
+                ResourceIdentity.builder()
+                    .system("cdw")
+                    .resource("observation")
+                    .identifier("ABC")
+                    .build()))
+        .isTrue();
+    assertThat(filters.mightContainUuid("nope")).isFalse();
+    assertThat(filters.mightContainIdentity(identity("nope"))).isFalse();
+    assertThat(registry.get("ids.membership.skipped").tag("query", "lookup").counter().count())
+        .isEqualTo(1);
+    assertThat(
+            registry.get("ids.membership.skipped").tag("query", "registration").counter().count())
+        .isEqualTo(1);
+    assertThat(registry.get("ids.membership.filter.bytes").tag("filter", "uuid").gauge().value())
+        .isPositive();
+    assertThat(
+            registry
+                .get("ids.membership.filter.false.positive.rate")
+                .tag("filter", "identity")
+                .gauge()
+                .value())
+        .isPositive();
+  }
+
+  @Test
+  public void rowsCommittedOutOfOrderAreFoundByLaterCatchUps() {
+    repository.insertAllIfAbsent(List.of(detail("a"), detail("b"), detail("c")));
+    long b =
+        jdbc.queryForObject(
+            "select id from resource_identity_detail where identifier = 'b'", Long.class);
+    jdbc.update("delete from resource_identity_detail where id = ?", b);
+    filters.refresh();
+    assertThat(filters.mightContainUuid("uuid-c")).isTrue();
+    assertThat(filters.mightContainUuid("uuid-b")).isFalse();
+    jdbc.update(
+        "insert into resource_identity_detail (id, uuid, system, resource, identifier)"
+            + " values (?, ?, 'CDW', 'OBSERVATION', 'b')",
+        b,
+        PublicIdConverter.encode("uuid-b"));
+    assertThat(filters.catchUp()).isZero();
+    assertThat(filters.mightContainUuid("uuid-b")).isTrue();
+    assertThat(filters.mightContainIdentity(identity("b"))).isTrue();
+  }
+
+  @Test
+  public void newRegistrationsAreAdded() {
+    filters.refresh();
+    filters.add(detail("new"));
+    assertThat(filters.mightContainUuid("uuid-new")).isTrue();
+    assertThat(filters.mightContainIdentity(identity("new"))).isTrue();
+  }
+}
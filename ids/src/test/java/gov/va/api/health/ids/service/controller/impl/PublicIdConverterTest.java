@@ -0,0 +1,66 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+public class PublicIdConverterTest {
+  private final PublicIdConverter converter = new PublicIdConverter();
+
+  @Test
+  public void nullIsNull() {
+    assertThat(converter.convertToDatabaseColumn(null)).isNull();
+    assertThat(converter.convertToEntityAttribute(null)).isNull();
+  }
+
+  @Test
+  public void otherValuesAreStoredAsText() {
+    for (String value :
+        new String[] {
+          "1011537977V693883",
+          "",
+          "1-2-3-4-5",
+          "00000000-0000-0000-0000-00000000000g",
+          "0000000000000000000000000000000000000"
+        }) {
+      byte[] stored = converter.convertToDatabaseColumn(value);
+      assertThat(stored).isEqualTo(value.getBytes(StandardCharsets.UTF_8));
+      assertThat(converter.convertToEntityAttribute(stored)).isEqualTo(value);
+    }
+  }
+
+  @Test
+  public void otherValuesKeepTheirCase() {
+    assertThat(converter.convertToDatabaseColumn("1011537977v693883"))
+        .isNotEqualTo(converter.convertToDatabaseColumn("1011537977V693883"));
+  }
+
+  @Test
+  public void seventeenCharacterTextIsNotMistakenForUuid() {
+    String value = "abcdefghijklmnopq";
+    assertThat(converter.convertToEntityAttribute(converter.convertToDatabaseColumn(value)))
+        .isEqualTo(value);
+  }
+
+  @Test
+  public void uuidsAreStoredAsSeventeenBytes() {
+    String uuid = "6d0d3ad3-ea34-5ac3-a03c-6dafd30f6a4f";
+    byte[] stored = converter.convertToDatabaseColumn(uuid);
+    assertThat(stored).hasSize(17);
+    assertThat(stored[0]).isEqualTo((byte) 1);
+    assertThat(stored[1]).isEqualTo((byte) 0x6d);
+    assertThat(stored[16]).isEqualTo((byte) 0x4f);
+    assertThat(converter.convertToEntityAttribute(stored)).isEqualTo(uuid);
+  }
+
+  @Test
+  public void uuidsIgnoreCase() {
+    assertThat(converter.convertToDatabaseColumn("6D0D3AD3-EA34-5AC3-A03C-6DAFD30F6A4F"))
+        .isEqualTo(converter.convertToDatabaseColumn("6d0d3ad3-ea34-5ac3-a03c-6dafd30f6a4f"));
+    assertThat(
+            converter.convertToEntityAttribute(
+                converter.convertToDatabaseColumn("6D0D3AD3-EA34-5AC3-A03C-6DAFD30F6A4F")))
+        .isEqualTo("6d0d3ad3-ea34-5ac3-a03c-6dafd30f6a4f");
+  }
+}
@@ -0,0 +1,108 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Compares the size of the unique public ID index and the latency of looking up public IDs when
+ * they are stored as text and when they are stored in the form used by {@link PublicIdConverter}.
+ * This uses an embedded database on disk, so index sizes can be measured, and is only run when
+ * requested, e.g. {@code mvn test -Dbenchmark=true -Dtest=PublicIdStorageBenchmarkTest}. The number
+ * of rows can be set with {@code -Dbenchmark.rows=10000000}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@Slf4j
+public class PublicIdStorageBenchmarkTest {
+  private static final int LOOKUPS = 10_000;
+
+  @TempDir Path directory;
+
+  private final Random random = new Random(5);
+
+  private static long rows() {
+    return Long.getLong("benchmark.rows", 1_000_000);
+  }
+
+  @Test
+  public void indexSizeAndLookupLatency() {
+    log.info("storage | rows | index size (MB) | bytes per row | lookup (us)");
+    measure("text", "varchar(45)", "cast(random_uuid() as varchar)", String.class, v -> v, v -> v);
+    measure(
+        "binary",
+        "varbinary(135)",
+        "X'01' || cast(random_uuid() as binary(16))",
+        byte[].class,
+        PublicIdConverter::decode,
+        PublicIdConverter::encode);
+  }
+
+  private <T> void measure(
+      String name,
+      String type,
+      String randomValue,
+      Class<T> stored,
+      Function<T, String> decode,
+      Function<String, T> encode) {
+    String url = "jdbc:h2:file:" + directory.resolve(name);
+    Path file = directory.resolve(name + ".mv.db");
+    withDatabase(
+        url,
+        jdbc -> {
+          jdbc.execute("create table ids (id bigint primary key, uuid " + type + " not null)");
+          jdbc.update(
+              "insert into ids (id, uuid) select x, " + randomValue + " from system_range(1, ?)",
+              rows());
+        });
+    long withoutIndex = file.toFile().length();
+    withDatabase(url, jdbc -> jdbc.execute("create unique index ids_uuid on ids (uuid)"));
+    long indexBytes = file.toFile().length() - withoutIndex;
+    withDatabase(
+        url,
+        jdbc -> {
+          List<String> publicIds = new ArrayList<>(LOOKUPS);
+          for (int i = 0; i < LOOKUPS; i++) {
+            publicIds.add(
+                decode.apply(
+                    jdbc.queryForObject(
+                        "select uuid from ids where id = ?",
+                        stored,
+                        1 + (long) (random.nextDouble() * rows()))));
+          }
+          long start = System.nanoTime();
+          for (String publicId : publicIds) {
+            jdbc.queryForObject(
+                "select id from ids where uuid = ?", Long.class, encode.apply(publicId));
+          }
+          long nanos = System.nanoTime() - start;
+          log.info(
+              "{} | {} | {} | {} | {}",
+              name,
+              rows(),
+              indexBytes / 1_048_576.0,
+              (double) indexBytes / rows(),
+              nanos / LOOKUPS / 1_000.0);
+        });
+  }
+
+  /** The database is compacted when it is closed, so file sizes reflect what is stored. */
+  private void withDatabase(String url, Consumer<JdbcTemplate> work) {
+    SingleConnectionDataSource dataSource = new SingleConnectionDataSource(url, true);
+    try {
+      JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+      work.accept(jdbc);
+      jdbc.execute("shutdown compact");
+    } finally {
+      dataSource.destroy();
+    }
+  }
+}
@@ -0,0 +1,170 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import static gov.va.api.health.ids.service.controller.impl.ResourceIdentityDetailRepositoryImpl.INSERT_CHUNK_SIZE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import gov.va.api.health.ids.api.RegistrationPage;
+import gov.va.api.health.ids.api.ResourceIdentity;
+import gov.va.api.health.ids.service.controller.impl.ResourceIdentityDetailRepositoryImpl.IdempotentInsert;
+import io.r2dbc.h2.H2ConnectionConfiguration;
+import io.r2dbc.h2.H2ConnectionFactory;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import javax.sql.DataSource;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * The reactive repository works on the same in-memory database as the JPA test database, which has
+ * been migrated, so rows written by one are visible to the other.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ReactiveResourceIdentityDetailRepositoryTest {
+  @Autowired ResourceIdentityDetailRepository jpa;
+
+  @Autowired JdbcTemplate jdbc;
+
+  @Autowired DataSource dataSource;
+
+  private ReactiveResourceIdentityDetailRepository repository;
+
+  /** Connect R2DBC to the same in-memory H2 database as the test data source. */
+  @SneakyThrows
+  static DatabaseClient databaseClient(DataSource dataSource) {
+    String url;
+    try (Connection connection = dataSource.getConnection()) {
+      url = connection.getMetaData().getURL();
+    }
+    return DatabaseClient.create(
+        new H2ConnectionFactory(
+            H2ConnectionConfiguration.builder()
+                .url(url.substring("jdbc:h2:".length()))
+                .username("sa")
+                .build()));
+  }
+
+  @AfterEach
+  void _cleanup() {
+    jpa.deleteAll();
+  }
+
+  @BeforeEach
+  void _init() {
+    repository = new ReactiveResourceIdentityDetailRepository(databaseClient(dataSource));
+  }
+
+  private ResourceIdentityDetail detail(String system, String resource, String identifier) {
+    return ResourceIdentityDetail.builder()
+        .system(system)
+        .resource(resource)
+        .identifier(identifier)
+        .uuid(system + resource + identifier)
+        .build();
+  }
+
+  @Test
+  public void findBySystemAndResourceAndIdentifierInReturnsOnlyMatches() {
+    jpa.insertAllIfAbsent(
+        List.of(
+            detail("s1", "r1", "i1"),
+            detail("s1", "r1", "i2"),
+            detail("s1", "r2", "i1"),
+            detail("s2", "r1", "i1")));
+    assertThat(
+            repository
+                .findBySystemAndResourceAndIdentifierIn("s1", "r1", List.of("i1", "i2", "i3"))
+                .map(ResourceIdentityDetail::uuid)
+                .collectList()
+                .block())
+        .containsExactlyInAnyOrder("s1r1i1", "s1r1i2");
+  }
+
+  @Test
+  public void findIdentitiesByUuidReturnsOnlyIdentities() {
+    String uuid = UUID.randomUUID().toString();
+    jpa.insertAllIfAbsent(
+        List.of(
+            detail("s1", "r1", "i1"),
+            ResourceIdentityDetail.builder()
+                .system("s2")
+                .resource("r2")
+                .identifier("i2")
+                .uuid(uuid)
+                .build()));
+    ResourceIdentity expected =
+        ResourceIdentity.builder().system("s2").resource("r2").identifier("i2").build();
+    assertThat(repository.findIdentitiesByUuid(uuid).collectList().block())
+        .containsExactly(expected);
+    assertThat(
+            repository.findIdentitiesByUuid(uuid.toUpperCase(Locale.ENGLISH)).collectList().block())
+        .containsExactly(expected);
+    assertThat(repository.findIdentitiesByUuid("s1r1i1").collectList().block()).hasSize(1);
+    assertThat(repository.findIdentitiesByUuid("nope").collectList().block()).isEmpty();
+  }
+
+  @Test
+  public void insertAllIfAbsentChunksLargeCollections() {
+    List<ResourceIdentityDetail> details = new ArrayList<>();
+    for (int i = 0; i < INSERT_CHUNK_SIZE * 2 + 1; i++) {
+      details.add(detail("s", "r", "i" + i));
+    }
+    repository.insertAllIfAbsent(details).block();
+    assertThat(jpa.count()).isEqualTo(details.size());
+    assertThat(jpa.findByUuid("sri1000")).hasSize(1);
+  }
+
+  @Test
+  public void insertAllIfAbsentDoesNotDuplicateExistingUuids() {
+    repository.insertAllIfAbsent(List.of(detail("s", "r", "i1"), detail("s", "r", "i2"))).block();
+    repository
+        .insertAllIfAbsent(
+            List.of(detail("s", "r", "i2"), detail("s", "r", "i3"), detail("s", "r", "i3")))
+        .block();
+    assertThat(jpa.count()).isEqualTo(3);
+    assertThat(jpa.findByUuid("sri2")).hasSize(1);
+    repository.insertAllIfAbsent(List.of()).block();
+    assertThat(jpa.count()).isEqualTo(3);
+  }
+
+  @Test
+  public void namedSqlHasOneNamedGroupPerRow() {
+    assertThat(IdempotentInsert.MYSQL.namedSql(2))
+        .isEqualTo(
+            "insert into resource_identity_detail (identifier, uuid, system, resource)"
+                + " values (:identifier0,:uuid0,:system0,:resource0),"
+                + "(:identifier1,:uuid1,:system1,:resource1) on duplicate key update uuid = uuid");
+  }
+
+  @Test
+  public void readRegistrationsAfterPagesByPrimaryKey() {
+    jpa.insertAllIfAbsent(List.of(detail("s1", "r1", "i1"), detail("s1", "r1", "i2")));
+    jpa.insertAllIfAbsent(List.of(detail("s1", "r1", "i3")));
+    Long start = jdbc.queryForObject("select min(id) from resource_identity_detail", Long.class);
+    RegistrationPage first = repository.readRegistrationsAfter(start - 1, 2).block();
+    assertThat(first.registrations()).hasSize(2);
+    assertThat(first.next()).isEqualTo(start + 1);
+    RegistrationPage second = repository.readRegistrationsAfter(first.next(), 2).block();
+    assertThat(
+            second.registrations().stream()
+                .map(r -> r.resourceIdentities().get(0).identifier())
+                .collect(Collectors.toList()))
+        .containsExactly("i3");
+    assertThat(second.registrations().get(0).uuid()).isEqualTo("s1r1i3");
+    RegistrationPage last = repository.readRegistrationsAfter(second.next(), 2).block();
+    assertThat(last.registrations()).isEmpty();
+    assertThat(last.next()).isEqualTo(second.next());
+  }
+}
@@ -0,0 +1,243 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.validation.ConstraintViolationException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+public class RegistrationJournalTest {
+  private final ResourceIdentityDetailRepository repository =
+      mock(ResourceIdentityDetailRepository.class);
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  @TempDir Path directory;
+
+  private static ResourceIdentityDetail detail(int i) {
+    return ResourceIdentityDetail.builder()
+        .uuid("U" + i)
+        .system("CDW")
+        .resource("OBSERVATION")
+        .identifier("identifier-é-" + i)
+        .build();
+  }
+
+  @Test
+  public void appendedRegistrationsArePendingUntilDrained() {
+    RegistrationJournal journal = journal();
+    journal.append(List.of(detail(1), detail(2)));
+    journal.append(List.of(detail(2), detail(3)));
+    assertThat(journal.findPending("u1").identifier()).isEqualTo("identifier-é-1");
+    assertThat(registry.get("ids.journal.pending").gauge().value()).isEqualTo(3);
+    verify(repository, never()).insertAllIfAbsent(Mockito.anyCollection());
+
+    assertThat(journal.drain()).isEqualTo(3);
+    assertThat(journal.findPending("u1")).isNull();
+    assertThat(registry.get("ids.journal.drained").counter().count()).isEqualTo(3);
+  }
+
+  @Test
+  public void concurrentAppendsAreAllWritten() throws Exception {
+    RegistrationJournal journal = journal();
+    ExecutorService threads = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> appends = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        int n = i;
+        appends.add(threads.submit(() -> journal.append(List.of(detail(n)))));
+      }
+      for (Future<?> append : appends) {
+        append.get();
+      }
+    } finally {
+      threads.shutdown();
+    }
+    assertThat(registry.get("ids.journal.pending").gauge().value()).isEqualTo(200);
+    assertThat(RegistrationJournal.readSegment(segments().get(0)).records()).hasSize(200);
+    assertThat(journal.drain()).isEqualTo(200);
+  }
+
+  @Test
+  public void corruptRecordsBeforeOthersKeepTheSegment() throws IOException {
+    RegistrationJournal journal = journal();
+    journal.append(List.of(detail(1)));
+    journal.append(List.of(detail(2)));
+    Path segment = segments().get(0);
+    byte[] bytes = Files.readAllBytes(segment);
+    /* Damage the first record's data, leaving the second intact. */
+    bytes[15] ^= 1;
+    Files.write(segment, bytes);
+    assertThat(RegistrationJournal.readSegment(segment).unreadBytes()).isPositive();
+
+    assertThat(journal.drain()).isZero();
+    assertThat(segments())
+        .extracting(p -> p.getFileName().toString())
+        .containsExactly("registrations-0000000000000000000.corrupt");
+    assertThat(registry.get("ids.journal.corrupt.segments").counter().count()).isEqualTo(1);
+  }
+
+  @Test
+  public void disabledJournalHasNothingPending() {
+    RegistrationJournal journal = RegistrationJournal.disabled(registry);
+    assertThat(journal.enabled()).isFalse();
+    assertThat(journal.findPending("U1")).isNull();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void drainedSegmentsAreDeleted() throws IOException {
+    RegistrationJournal journal = journal();
+    journal.append(List.of(detail(1)));
+    journal.drain();
+    journal.append(List.of(detail(2)));
+    assertThat(segments()).hasSize(1);
+    journal.drain();
+    assertThat(segments()).isEmpty();
+    ArgumentCaptor<Collection<ResourceIdentityDetail>> inserted =
+        ArgumentCaptor.forClass(Collection.class);
+    verify(repository, Mockito.times(2)).insertAllIfAbsent(inserted.capture());
+    assertThat(inserted.getAllValues().get(1))
+        .extracting(ResourceIdentityDetail::uuid)
+        .containsExactly("U2");
+  }
+
+  @Test
+  public void failedDrainsAreRetried() throws IOException {
+    RegistrationJournal journal = journal();
+    journal.append(List.of(detail(1)));
+    doThrow(new DataAccessResourceFailureException("down"))
+        .when(repository)
+        .insertAllIfAbsent(Mockito.anyCollection());
+    assertThat(journal.drain()).isZero();
+    assertThat(journal.findPending("U1")).isNotNull();
+    assertThat(registry.get("ids.journal.drain.failures").counter().count()).isEqualTo(1);
+
+    Mockito.reset(repository);
+    journal.append(List.of(detail(2)));
+    assertThat(journal.drain()).isEqualTo(2);
+    assertThat(segments()).isEmpty();
+  }
+
+  private RegistrationJournal journal() {
+    return new RegistrationJournal(repository, registry, true, directory.toString(), 1);
+  }
+
+  @Test
+  public void pendingRegistrationsAreReplayedOnRestart() throws Exception {
+    RegistrationJournal journal = journal();
+    journal.append(List.of(detail(1), detail(2)));
+    /* Simulate a crash in the middle of writing the next record. */
+    Files.write(segments().get(0), new byte[] {0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+    RegistrationJournal restarted = journal();
+    assertThat(restarted.findPending("U1")).isNotNull();
+    assertThat(restarted.findPending("U2")).isNotNull();
+    restarted.append(List.of(detail(3)));
+    assertThat(segments()).hasSize(2);
+    assertThat(restarted.drain()).isEqualTo(3);
+    assertThat(segments()).isEmpty();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void recordsTheDatabaseRejectsAreSetAside() throws IOException {
+    RegistrationJournal journal = journal();
+    journal.append(List.of(detail(1), detail(2), detail(3)));
+    doAnswer(
+            invocation -> {
+              Collection<ResourceIdentityDetail> records = invocation.getArgument(0);
+              if (records.stream().anyMatch(d -> d.uuid().equals("U2"))) {
+                throw new DataIntegrityViolationException("Data too long for column");
+              }
+              return null;
+            })
+        .when(repository)
+        .insertAllIfAbsent(Mockito.anyCollection());
+    assertThat(journal.drain()).isEqualTo(2);
+    assertThat(journal.findPending("U2")).isNull();
+    assertThat(registry.get("ids.journal.rejected").counter().count()).isEqualTo(1);
+    assertThat(registry.get("ids.journal.set.aside").gauge().value()).isEqualTo(1);
+    assertThat(registry.get("ids.journal.drained").counter().count()).isEqualTo(2);
+    List<Path> files = segments();
+    assertThat(files)
+        .extracting(p -> p.getFileName().toString())
+        .containsExactly("registrations-0000000000000000000.rejected");
+    assertThat(RegistrationJournal.readSegment(files.get(0)).records())
+        .extracting(ResourceIdentityDetail::uuid)
+        .containsExactly("U2");
+
+    journal.append(List.of(detail(4)));
+    assertThat(journal.drain()).isEqualTo(1);
+  }
+
+  @Test
+  public void registrationsTheDatabaseWouldRejectAreRefused() throws IOException {
+    RegistrationJournal journal = journal();
+    for (ResourceIdentityDetail invalid :
+        List.of(
+            detail(1).identifier("i".repeat(46)),
+            detail(1).uuid("u".repeat(46)),
+            detail(1).system(" "),
+            detail(1).resource(null),
+            detail(1).identifier("identifier-\ud83d\ude00"))) {
+      assertThatExceptionOfType(ConstraintViolationException.class)
+          .isThrownBy(() -> journal.append(List.of(detail(2), invalid)));
+    }
+    assertThat(journal.findPending("U2")).isNull();
+    assertThat(segments()).isEmpty();
+    assertThat(registry.get("ids.journal.refused").counter().count()).isEqualTo(5);
+
+    String icn = "1".repeat(45);
+    journal.append(List.of(detail(1).uuid(icn).identifier(icn)));
+    assertThat(journal.findPending(icn)).isNotNull();
+  }
+
+  private List<Path> segments() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.sorted().collect(Collectors.toList());
+    }
+  }
+
+  @Test
+  public void stopDrainsWhatItCan() throws Exception {
+    RegistrationJournal journal = journal();
+    journal.start();
+    journal.append(List.of(detail(1)));
+    journal.stop();
+    assertThat(journal.findPending("U1")).isNull();
+    assertThat(segments()).isEmpty();
+  }
+
+  @Test
+  public void zerosAfterTheLastRecordAreATornTail() throws Exception {
+    RegistrationJournal journal = journal();
+    journal.append(List.of(detail(1)));
+    Files.write(segments().get(0), new byte[4096], StandardOpenOption.APPEND);
+    assertThat(journal.drain()).isEqualTo(1);
+    assertThat(segments()).isEmpty();
+  }
+}
@@ -0,0 +1,124 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import gov.va.api.health.ids.api.ResourceIdentity;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+
+public class ResourceIdentityCacheTest {
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  private final ResourceIdentityCache cache = new ResourceIdentityCache(2, registry);
+
+  private final AtomicInteger loads = new AtomicInteger();
+
+  @SneakyThrows
+  private void awaitQuietly(CountDownLatch latch) {
+    latch.await(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void asyncMissesShareOneLoad() {
+    CompletableFuture<List<ResourceIdentity>> load = new CompletableFuture<>();
+    CompletableFuture<List<ResourceIdentity>> first =
+        cache.lookupAsync(
+            "a",
+            uuid -> {
+              loads.incrementAndGet();
+              return load;
+            });
+    CompletableFuture<List<ResourceIdentity>> second =
+        cache.lookupAsync("a", uuid -> CompletableFuture.completedFuture(load(uuid)));
+    assertThat(first).isNotDone();
+    load.complete(List.of(identity("a")));
+    assertThat(first.join()).containsExactly(identity("a"));
+    assertThat(second.join()).containsExactly(identity("a"));
+    assertThat(cache.find("a")).containsExactly(identity("a"));
+    assertThat(loads.get()).isEqualTo(1);
+    assertThat(cache.lookupAsync("unknown", u -> CompletableFuture.completedFuture(load(u))).join())
+        .isEmpty();
+    assertThat(cache.find("unknown")).isEmpty();
+  }
+
+  @Test
+  @SneakyThrows
+  public void concurrentMissesAreCoalesced() {
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<List<ResourceIdentity>>> results = new ArrayList<>();
+      results.add(
+          executor.submit(
+              () ->
+                  cache.lookup(
+                      "a",
+                      uuid -> {
+                        loading.countDown();
+                        awaitQuietly(release);
+                        return load(uuid);
+                      })));
+      loading.await(5, TimeUnit.SECONDS);
+      for (int i = 0; i < 3; i++) {
+        results.add(executor.submit(() -> cache.lookup("a", this::load)));
+      }
+      release.countDown();
+      for (Future<List<ResourceIdentity>> result : results) {
+        assertThat(result.get(5, TimeUnit.SECONDS)).containsExactly(identity("a"));
+      }
+      assertThat(loads.get()).isEqualTo(1);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void hitRatioAndEvictionMetricsArePublished() {
+    cache.lookup("a", this::load);
+    cache.lookup("a", this::load);
+    assertThat(registry.get("ids.lookup.cache.hit.ratio").gauge().value()).isEqualTo(0.5);
+    assertThat(registry.find("cache.evictions").tag("cache", "ids.lookup").meters()).isNotEmpty();
+    assertThat(registry.find("cache.gets").tag("result", "hit").meters()).isNotEmpty();
+  }
+
+  private ResourceIdentity identity(String id) {
+    return ResourceIdentity.builder().system("s").resource("r").identifier(id).build();
+  }
+
+  @Test
+  public void knownUuidsAreLoadedOnce() {
+    assertThat(cache.lookup("a", this::load)).containsExactly(identity("a"));
+    assertThat(cache.lookup("a", this::load)).containsExactly(identity("a"));
+    assertThat(loads.get()).isEqualTo(1);
+  }
+
+  private List<ResourceIdentity> load(String uuid) {
+    loads.incrementAndGet();
+    return uuid.startsWith("unknown") ? List.of() : List.of(identity(uuid));
+  }
+
+  @Test
+  public void putPopulatesCache() {
+    cache.put("a", List.of(identity("x")));
+    assertThat(cache.lookup("a", this::load)).containsExactly(identity("x"));
+    assertThat(loads.get()).isZero();
+  }
+
+  @Test
+  public void unknownUuidsAreNotCached() {
+    assertThat(cache.lookup("unknown", this::load)).isEmpty();
+    assertThat(cache.lookup("unknown", this::load)).isEmpty();
+    assertThat(loads.get()).isEqualTo(2);
+  }
+}
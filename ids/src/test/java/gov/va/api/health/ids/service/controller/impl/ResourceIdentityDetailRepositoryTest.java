@@ -0,0 +1,202 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import static gov.va.api.health.ids.service.controller.impl.ResourceIdentityDetailRepositoryImpl.INSERT_CHUNK_SIZE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import gov.va.api.health.ids.api.Registration;
+import gov.va.api.health.ids.api.RegistrationPage;
+import gov.va.api.health.ids.api.ResourceIdentity;
+import gov.va.api.health.ids.service.controller.impl.ResourceIdentityDetailRepositoryImpl.IdempotentInsert;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@DataJpaTest
+public class ResourceIdentityDetailRepositoryTest {
+  @Autowired ResourceIdentityDetailRepository repository;
+
+  @Autowired JdbcTemplate jdbc;
+
+  private ResourceIdentityDetail detail(String system, String resource, String identifier) {
+    return ResourceIdentityDetail.builder()
+        .system(system)
+        .resource(resource)
+        .identifier(identifier)
+        .uuid(system + resource + identifier)
+        .build();
+  }
+
+  @Test
+  public void findBySystemAndResourceAndIdentifierInReturnsOnlyMatches() {
+    repository.insertAllIfAbsent(
+        List.of(
+            detail("s1", "r1", "i1"),
+            detail("s1", "r1", "i2"),
+            detail("s1", "r2", "i1"),
+            detail("s2", "r1", "i1")));
+    assertThat(
+            repository.findBySystemAndResourceAndIdentifierIn("s1", "r1", List.of("i1", "i2", "i3"))
+                .stream()
+                .map(ResourceIdentityDetail::uuid)
+                .collect(Collectors.toList()))
+        .containsExactlyInAnyOrder("s1r1i1", "s1r1i2");
+  }
+
+  @Test
+  public void findIdentitiesByUuidReturnsOnlyIdentities() {
+    String uuid = UUID.randomUUID().toString();
+    repository.insertAllIfAbsent(
+        List.of(
+            detail("s1", "r1", "i1"),
+            ResourceIdentityDetail.builder()
+                .system("s2")
+                .resource("r2")
+                .identifier("i2")
+                .uuid(uuid)
+                .build()));
+    ResourceIdentity expected =
+        ResourceIdentity.builder().system("s2").resource("r2").identifier("i2").build();
+    assertThat(repository.findIdentitiesByUuid(uuid)).containsExactly(expected);
+    assertThat(repository.findIdentitiesByUuid(uuid.toUpperCase(Locale.ENGLISH)))
+        .containsExactly(expected);
+    assertThat(repository.readIdentitiesByUuid(uuid)).containsExactly(expected);
+    assertThat(repository.readIdentitiesByUuid("s1r1i1")).hasSize(1);
+    assertThat(repository.findIdentitiesByUuid("nope")).isEmpty();
+  }
+
+  @Test
+  public void idempotentInsertSqlHasOnePlaceholderGroupPerRow() {
+    assertThat(IdempotentInsert.forDatabase("H2")).isEqualTo(IdempotentInsert.H2);
+    assertThat(IdempotentInsert.forDatabase("MySQL")).isEqualTo(IdempotentInsert.MYSQL);
+    assertThat(IdempotentInsert.MYSQL.sql(2))
+        .isEqualTo(
+            "insert into resource_identity_detail (identifier, uuid, system, resource)"
+                + " values (?,?,?,?),(?,?,?,?) on duplicate key update uuid = uuid");
+    assertThat(IdempotentInsert.H2.sql(2))
+        .isEqualTo(
+            "insert into resource_identity_detail (identifier, uuid, system, resource)"
+                + " select distinct * from (values"
+                + " (?,cast(? as varbinary(135)),?,?),(?,cast(? as varbinary(135)),?,?))"
+                + " v (identifier, uuid, system, resource) where not exists"
+                + " (select 1 from resource_identity_detail d where d.uuid = v.uuid)");
+  }
+
+  @Test
+  public void insertAllIfAbsentChunksLargeCollections() {
+    List<ResourceIdentityDetail> details = new ArrayList<>();
+    for (int i = 0; i < INSERT_CHUNK_SIZE * 2 + 1; i++) {
+      details.add(detail("s", "r", "i" + i));
+    }
+    repository.insertAllIfAbsent(details);
+    assertThat(repository.count()).isEqualTo(details.size());
+    assertThat(repository.findByUuid("sri1000")).hasSize(1);
+  }
+
+  @Test
+  public void insertAllIfAbsentDoesNotDuplicateExistingUuids() {
+    repository.insertAllIfAbsent(List.of(detail("s", "r", "i1"), detail("s", "r", "i2")));
+    repository.insertAllIfAbsent(
+        List.of(detail("s", "r", "i2"), detail("s", "r", "i3"), detail("s", "r", "i3")));
+    assertThat(repository.count()).isEqualTo(3);
+    assertThat(repository.findByUuid("sri2")).hasSize(1);
+  }
+
+  @Test
+  public void insertAllIfAbsentDoesNotOverwriteExistingRows() {
+    repository.insertAllIfAbsent(List.of(detail("s", "r", "i1")));
+    Long id = jdbc.queryForObject("select id from resource_identity_detail", Long.class);
+    repository.insertAllIfAbsent(
+        List.of(
+            ResourceIdentityDetail.builder()
+                .system("s")
+                .resource("r")
+                .identifier("other")
+                .uuid("sri1")
+                .build()));
+    assertThat(jdbc.queryForObject("select id from resource_identity_detail", Long.class))
+        .isEqualTo(id);
+    assertThat(repository.findIdentitiesByUuid("sri1"))
+        .containsExactly(
+            ResourceIdentity.builder().system("s").resource("r").identifier("i1").build());
+  }
+
+  @Test
+  public void insertAllIfAbsentIgnoresEmptyCollections() {
+    repository.insertAllIfAbsent(List.of());
+    assertThat(repository.count()).isZero();
+  }
+
+  @Test
+  public void migrationsIndexIdentities() {
+    assertThat(
+            jdbc.queryForList(
+                "select column_name from information_schema.index_columns"
+                    + " where index_name = 'SYSTEM_RESOURCE_IDENTIFIER' order by ordinal_position",
+                String.class))
+        .containsExactly("SYSTEM", "RESOURCE", "IDENTIFIER", "UUID");
+  }
+
+  @Test
+  public void publicIdsAsWideAsIdentifiersAreStored() {
+    String icn = "1".repeat(45);
+    String accented = "\u00e9".repeat(45);
+    repository.insertAllIfAbsent(
+        List.of(
+            ResourceIdentityDetail.builder()
+                .system("CDW")
+                .resource("PATIENT")
+                .identifier(icn)
+                .uuid(icn)
+                .build(),
+            ResourceIdentityDetail.builder()
+                .system("s")
+                .resource("r")
+                .identifier(accented)
+                .uuid(accented)
+                .build()));
+    assertThat(repository.findIdentitiesByUuid(icn))
+        .containsExactly(
+            ResourceIdentity.builder().system("CDW").resource("PATIENT").identifier(icn).build());
+    assertThat(repository.findIdentitiesByUuid(accented)).hasSize(1);
+  }
+
+  @Test
+  public void readRegistrationsAfterPagesByPrimaryKey() {
+    String uuid = UUID.randomUUID().toString();
+    repository.insertAllIfAbsent(List.of(detail("s1", "r1", "i1"), detail("s1", "r1", "i2")));
+    repository.insertAllIfAbsent(
+        List.of(
+            ResourceIdentityDetail.builder()
+                .system("s1")
+                .resource("r1")
+                .identifier("i3")
+                .uuid(uuid)
+                .build()));
+    Long start = jdbc.queryForObject("select min(id) from resource_identity_detail", Long.class);
+    RegistrationPage first = repository.readRegistrationsAfter(start - 1, 2);
+    assertThat(first.registrations()).hasSize(2);
+    assertThat(first.next()).isEqualTo(start + 1);
+    RegistrationPage second = repository.readRegistrationsAfter(first.next(), 2);
+    assertThat(second.registrations())
+        .containsExactly(
+            Registration.builder()
+                .uuid(uuid)
+                .resourceIdentities(
+                    List.of(
+                        ResourceIdentity.builder()
+                            .system("s1")
+                            .resource("r1")
+                            .identifier("i3")
+                            .build()))
+                .build());
+    RegistrationPage last = repository.readRegistrationsAfter(second.next(), 2);
+    assertThat(last.registrations()).isEmpty();
+    assertThat(last.next()).isEqualTo(second.next());
+  }
+}
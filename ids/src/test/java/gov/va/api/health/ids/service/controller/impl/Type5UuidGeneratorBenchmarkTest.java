@@ -0,0 +1,95 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import com.fasterxml.uuid.Generators;
+import gov.va.api.health.ids.api.ResourceIdentity;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the UUID generator with the Java UUID Generator library it replaced, which built a new
+ * generator for each call, and batch generation with and without parallelism. The GC profiler
+ * reports allocation per operation. This is only run when requested, e.g. {@code mvn test
+ * -Dbenchmark=true -Dtest=Type5UuidGeneratorBenchmarkTest}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Type5UuidGeneratorBenchmarkTest {
+  private static final String SEED = "a6c6bfdf-2ebb-5e8a-b69b-696ccd8731d9";
+
+  private final Type5UuidGenerator generator = new Type5UuidGenerator(SEED);
+
+  private final ResourceIdentity identity =
+      ResourceIdentity.builder()
+          .system("CDW")
+          .resource("OBSERVATION")
+          .identifier("800000000123456789:L")
+          .build();
+
+  private final List<ResourceIdentity> batch =
+      IntStream.range(0, 10_000)
+          .mapToObj(
+              i ->
+                  ResourceIdentity.builder()
+                      .system("CDW")
+                      .resource("OBSERVATION")
+                      .identifier("800000000" + i + ":L")
+                      .build())
+          .collect(Collectors.toList());
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public List<String> batchParallel() {
+    return batch.parallelStream().map(generator).collect(Collectors.toList());
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public List<String> batchSequential() {
+    return batch.stream().map(generator).collect(Collectors.toList());
+  }
+
+  @Benchmark
+  public String generator() {
+    return generator.apply(identity);
+  }
+
+  /** The previous implementation. */
+  @Benchmark
+  public String library() {
+    return Generators.nameBasedGenerator(UUID.fromString(SEED))
+        .generate(identity.resource() + ":" + identity.identifier())
+        .toString();
+  }
+
+  @Test
+  @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+  public void run() throws Exception {
+    new Runner(
+            new OptionsBuilder()
+                .include(getClass().getName())
+                .addProfiler(GCProfiler.class)
+                .build())
+        .run();
+  }
+}
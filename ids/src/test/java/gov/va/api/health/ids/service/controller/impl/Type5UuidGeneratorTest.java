@@ -4,14 +4,38 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 
 import gov.va.api.health.ids.api.ResourceIdentity;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import lombok.Getter;
+import lombok.SneakyThrows;
 import org.junit.jupiter.api.Test;
 
 public class Type5UuidGeneratorTest {
   @Getter
   private final Type5UuidGenerator generator = new Type5UuidGenerator(UUID.randomUUID().toString());
 
+  /**
+   * Tab separated seed, system, resource, identifier, and the UUID generated by the Java UUID
+   * Generator library that this generator replaced.
+   */
+  @SneakyThrows
+  private static List<String[]> corpus() {
+    try (var reader =
+        new BufferedReader(
+            new InputStreamReader(
+                Type5UuidGeneratorTest.class.getResourceAsStream("/type5-uuid-corpus.tsv"),
+                StandardCharsets.UTF_8))) {
+      return reader.lines().map(line -> line.split("\t", -1)).collect(Collectors.toList());
+    }
+  }
+
   @Test
   public void cdwPatientResourcesUseProvidedIdentityInsteadOfGeneratingUUID() {
     ResourceIdentity id1 =
@@ -27,6 +51,19 @@ public class Type5UuidGeneratorTest {
     assertThat(generator.apply(id1)).isEqualToIgnoringCase("Same Identifier");
   }
 
+  @Test
+  public void generatedUuidsMatchThePreviousImplementation() {
+    List<String[]> corpus = corpus();
+    assertThat(corpus).hasSizeGreaterThan(50);
+    Map<String, Type5UuidGenerator> generators = new HashMap<>();
+    for (String[] row : corpus) {
+      Type5UuidGenerator seeded = generators.computeIfAbsent(row[0], Type5UuidGenerator::new);
+      ResourceIdentity id =
+          ResourceIdentity.builder().system(row[1]).resource(row[2]).identifier(row[3]).build();
+      assertThat(seeded.apply(id)).as(String.join(" ", row)).isEqualTo(row[4]);
+    }
+  }
+
   @Test
   public void generationIsDeterministic() {
     ResourceIdentity id =
@@ -38,6 +75,23 @@ public class Type5UuidGeneratorTest {
     assertThat(UUID.fromString(uuid1)).isNotNull();
   }
 
+  @Test
+  public void generationIsThreadSafe() {
+    List<ResourceIdentity> ids =
+        IntStream.range(0, 10_000)
+            .mapToObj(
+                i ->
+                    ResourceIdentity.builder()
+                        .system("CDW")
+                        .resource("OBSERVATION")
+                        .identifier(i % 2 == 0 ? "o" + i : "ö" + i)
+                        .build())
+            .collect(Collectors.toList());
+    List<String> sequential = ids.stream().map(generator).collect(Collectors.toList());
+    List<String> parallel = ids.parallelStream().map(generator).collect(Collectors.toList());
+    assertThat(parallel).isEqualTo(sequential).doesNotHaveDuplicates();
+  }
+
   @Test
   public void nullValueIsRejected() {
     assertThatExceptionOfType(NullPointerException.class).isThrownBy(() -> generator().apply(null));
@@ -0,0 +1,65 @@
+package gov.va.api.health.ids.service.controller.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import gov.va.api.health.ids.api.ResourceIdentity;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+public class UuidIndexTest {
+  private static ResourceIdentity identity(String system, String resource, String identifier) {
+    return ResourceIdentity.builder()
+        .system(system)
+        .resource(resource)
+        .identifier(identifier)
+        .build();
+  }
+
+  @Test
+  public void duplicateUuidsAreIgnored() {
+    UuidIndex index = new UuidIndex(10);
+    assertThat(index.put(1, 2, "CDW", "OBSERVATION", "first")).isTrue();
+    assertThat(index.put(1, 2, "CDW", "OBSERVATION", "second")).isFalse();
+    assertThat(index.size()).isEqualTo(1);
+    assertThat(index.get(1, 2).identifier()).isEqualTo("first");
+  }
+
+  @Test
+  public void identifiersAreStoredCompactly() {
+    UuidIndex index = new UuidIndex(100);
+    for (int i = 0; i < 100; i++) {
+      index.put(i, i, "MVI", "PATIENT", "ébène-" + i);
+    }
+    assertThat(index.get(42, 42)).isEqualTo(identity("MVI", "PATIENT", "ébène-42"));
+    long before = index.bytes();
+    index.trim();
+    assertThat(index.bytes()).isLessThan(before);
+    assertThat(index.get(99, 99)).isEqualTo(identity("MVI", "PATIENT", "ébène-99"));
+  }
+
+  @Test
+  public void indexGrowsBeyondExpectedRows() {
+    UuidIndex index = new UuidIndex(1);
+    List<UUID> uuids = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++) {
+      UUID uuid = UUID.randomUUID();
+      uuids.add(uuid);
+      index.put(
+          uuid.getMostSignificantBits(),
+          uuid.getLeastSignificantBits(),
+          "CDW",
+          i % 2 == 0 ? "OBSERVATION" : "CONDITION",
+          "i" + i);
+    }
+    index.trim();
+    assertThat(index.size()).isEqualTo(10_000);
+    for (int i = 0; i < uuids.size(); i++) {
+      UUID uuid = uuids.get(i);
+      assertThat(index.get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()))
+          .isEqualTo(identity("CDW", i % 2 == 0 ? "OBSERVATION" : "CONDITION", "i" + i));
+    }
+    assertThat(index.get(0, 0)).isNull();
+  }
+}
@@ -0,0 +1,56 @@
+package gov.va.api.health.ids.service.datasource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+public class ReadReplicaConfigTest {
+  private final ApplicationContextRunner context =
+      new ApplicationContextRunner()
+          .withConfiguration(AutoConfigurations.of(DataSourceAutoConfiguration.class))
+          .withUserConfiguration(ReadReplicaConfig.class)
+          .withBean(MeterRegistry.class, SimpleMeterRegistry::new)
+          .withPropertyValues(
+              "spring.datasource.url=jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1",
+              "spring.datasource.username=sa",
+              "ids.read-replicas.datasources[0].url=jdbc:h2:mem:replica0;DB_CLOSE_DELAY=-1",
+              "ids.read-replicas.datasources[0].username=sa",
+              "ids.read-replicas.selection=least-connections",
+              "ids.read-replicas.max-lag=30s");
+
+  @Test
+  public void defaultDataSourceIsUsedWhenDisabled() {
+    context.run(
+        c -> {
+          assertThat(c).doesNotHaveBean(ReadWriteRoutingDataSource.class);
+          assertThat(c.getBean(DataSource.class))
+              .isNotInstanceOf(LazyConnectionDataSourceProxy.class);
+        });
+  }
+
+  @Test
+  public void routingDataSourceIsUsedWhenEnabled() {
+    context
+        .withPropertyValues("ids.read-replicas.enabled=true")
+        .run(
+            c -> {
+              assertThat(c).hasSingleBean(ReadWriteRoutingDataSource.class);
+              assertThat(c.getBean(DataSource.class))
+                  .isInstanceOf(LazyConnectionDataSourceProxy.class);
+              assertThat(c.getBean(ReadReplicaProperties.class).getSelection())
+                  .isEqualTo(ReplicaSelection.LEAST_CONNECTIONS);
+              assertThat(
+                      new JdbcTemplate(c.getBean(DataSource.class))
+                          .queryForObject("select 1", Integer.class))
+                  .isEqualTo(1);
+            });
+  }
+}
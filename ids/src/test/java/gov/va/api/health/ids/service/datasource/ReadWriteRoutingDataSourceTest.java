@@ -0,0 +1,217 @@
+package gov.va.api.health.ids.service.datasource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import javax.sql.DataSource;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class ReadWriteRoutingDataSourceTest {
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  /** An in-memory database that knows its own name and reports the given replication lag. */
+  private static DataSource database(String name, int lag) {
+    DriverManagerDataSource dataSource =
+        new DriverManagerDataSource(
+            "jdbc:h2:mem:" + name + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+    JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+    jdbc.execute("create table whoami (name varchar(20), lag int)");
+    jdbc.update("insert into whoami values (?, ?)", name, lag);
+    return dataSource;
+  }
+
+  @SneakyThrows
+  private static DataSource failing() {
+    DataSource dataSource = mock(DataSource.class);
+    when(dataSource.getConnection()).thenThrow(new SQLException("nope"));
+    return dataSource;
+  }
+
+  @Test
+  public void connectionsInUseAreCountedUntilClosed() throws SQLException {
+    ReadWriteRoutingDataSource routing =
+        ReadWriteRoutingDataSource.builder()
+            .primary(database("primary", 0))
+            .replica(database("r0", 0))
+            .registry(registry)
+            .build();
+    Connection connection = routing.getConnection();
+    assertThat(
+            registry
+                .get("ids.datasource.connections.active")
+                .tag("datasource", "primary")
+                .gauge()
+                .value())
+        .isEqualTo(1);
+    connection.close();
+    connection.close();
+    assertThat(
+            registry
+                .get("ids.datasource.connections.active")
+                .tag("datasource", "primary")
+                .gauge()
+                .value())
+        .isZero();
+    assertThat(counter("ids.datasource.connections", "datasource", "primary")).isEqualTo(1);
+  }
+
+  private double counter(String name, String tag, String value) {
+    return registry.get(name).tag(tag, value).counter().count();
+  }
+
+  @Test
+  public void failingReplicasFallBackToOtherReplicasThenPrimary() {
+    ReadWriteRoutingDataSource routing =
+        ReadWriteRoutingDataSource.builder()
+            .primary(database("primary", 0))
+            .replica(failing())
+            .replica(database("r1", 0))
+            .registry(registry)
+            .build();
+    Reader reader = new Reader(routing);
+    assertThat(reader.readOnly()).isEqualTo("r1");
+    assertThat(reader.readOnly()).isEqualTo("r1");
+    assertThat(
+            registry.get("ids.datasource.available").tag("datasource", "replica-0").gauge().value())
+        .isZero();
+
+    ReadWriteRoutingDataSource allFailing =
+        ReadWriteRoutingDataSource.builder()
+            .primary(database("primary", 0))
+            .replica(failing())
+            .registry(registry)
+            .build();
+    assertThat(new Reader(allFailing).readOnly()).isEqualTo("primary");
+    assertThat(counter("ids.datasource.primary.fallback", "reason", "failure")).isEqualTo(1);
+    assertThat(new Reader(allFailing).readOnly()).isEqualTo("primary");
+    assertThat(counter("ids.datasource.primary.fallback", "reason", "unavailable")).isEqualTo(1);
+  }
+
+  @Test
+  public void laggingReplicasAreSkippedUntilTheyCatchUp() {
+    DataSource lagging = database("r0", 30);
+    ReadWriteRoutingDataSource routing =
+        ReadWriteRoutingDataSource.builder()
+            .primary(database("primary", 0))
+            .replica(lagging)
+            .replica(database("r1", 2))
+            .lagQuery("select lag from whoami")
+            .maxLag(Duration.ofSeconds(10))
+            .registry(registry)
+            .build();
+    routing.checkReplicas();
+    Reader reader = new Reader(routing);
+    assertThat(List.of(reader.readOnly(), reader.readOnly())).containsOnly("r1");
+    assertThat(registry.get("ids.datasource.lag").tag("datasource", "replica-0").gauge().value())
+        .isEqualTo(30);
+
+    new JdbcTemplate(lagging).update("update whoami set lag = 1");
+    routing.checkReplicas();
+    assertThat(List.of(reader.readOnly(), reader.readOnly())).containsExactlyInAnyOrder("r0", "r1");
+  }
+
+  @Test
+  public void leastConnectionsPrefersIdleReplicas() throws SQLException {
+    ReadWriteRoutingDataSource routing =
+        ReadWriteRoutingDataSource.builder()
+            .primary(database("primary", 0))
+            .replica(database("r0", 0))
+            .replica(database("r1", 0))
+            .selection(ReplicaSelection.LEAST_CONNECTIONS)
+            .registry(registry)
+            .build();
+    Reader reader = new Reader(routing);
+    try (Connection held = reader.holdReadOnly()) {
+      String busy = name(held);
+      for (int i = 0; i < 5; i++) {
+        assertThat(reader.readOnly()).isNotEqualTo(busy);
+      }
+    }
+  }
+
+  @SneakyThrows
+  private String name(Connection connection) {
+    try (var statement = connection.createStatement();
+        var rs = statement.executeQuery("select name from whoami")) {
+      rs.next();
+      return rs.getString(1);
+    }
+  }
+
+  @Test
+  public void readOnlyTransactionsGoToReplicasInTurn() {
+    ReadWriteRoutingDataSource routing =
+        ReadWriteRoutingDataSource.builder()
+            .primary(database("primary", 0))
+            .replica(database("r0", 0))
+            .replica(database("r1", 0))
+            .registry(registry)
+            .build();
+    Reader reader = new Reader(routing);
+    assertThat(List.of(reader.readOnly(), reader.readOnly(), reader.readOnly(), reader.readOnly()))
+        .containsExactly("r0", "r1", "r0", "r1");
+    assertThat(reader.readWrite()).isEqualTo("primary");
+    assertThat(reader.withoutTransaction()).isEqualTo("primary");
+    assertThat(counter("ids.datasource.connections", "datasource", "replica-0")).isEqualTo(2);
+  }
+
+  /** Reads the name of the database used the way the service would. */
+  private static class Reader {
+    private final DataSource dataSource;
+
+    private final JdbcTemplate jdbc;
+
+    private final TransactionTemplate readOnly;
+
+    private final TransactionTemplate readWrite;
+
+    Reader(ReadWriteRoutingDataSource routing) {
+      dataSource = new LazyConnectionDataSourceProxy(routing);
+      jdbc = new JdbcTemplate(dataSource);
+      DataSourceTransactionManager transactions = new DataSourceTransactionManager(dataSource);
+      readOnly = new TransactionTemplate(transactions);
+      readOnly.setReadOnly(true);
+      readWrite = new TransactionTemplate(transactions);
+    }
+
+    /** Open a connection in a read-only transaction that is left open. */
+    @SneakyThrows
+    Connection holdReadOnly() {
+      return readOnly.execute(
+          status -> {
+            try {
+              return ((LazyConnectionDataSourceProxy) dataSource)
+                  .getTargetDataSource()
+                  .getConnection();
+            } catch (SQLException e) {
+              throw new IllegalStateException(e);
+            }
+          });
+    }
+
+    String readOnly() {
+      return readOnly.execute(status -> withoutTransaction());
+    }
+
+    String readWrite() {
+      return readWrite.execute(status -> withoutTransaction());
+    }
+
+    String withoutTransaction() {
+      return jdbc.queryForObject("select name from whoami", String.class);
+    }
+  }
+}
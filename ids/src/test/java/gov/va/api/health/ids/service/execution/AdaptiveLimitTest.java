@@ -0,0 +1,77 @@
+package gov.va.api.health.ids.service.execution;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class AdaptiveLimitTest {
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  private AdaptiveLimit limit(int initial, int min, int max) {
+    return new AdaptiveLimit(
+        "lookup", new ConcurrencyLimitProperties.Limit(initial, min, max), 1.5, 0.2, registry);
+  }
+
+  private void samples(AdaptiveLimit limit, int count, long millis, boolean busy) {
+    for (int i = 0; i < count; i++) {
+      limit.sample(TimeUnit.MILLISECONDS.toNanos(millis), busy ? limit.limit() : 0, false);
+    }
+  }
+
+  @Test
+  public void invalidBoundsAreRejected() {
+    assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> limit(1, 0, 10));
+    assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> limit(1, 5, 4));
+  }
+
+  @Test
+  public void limitDoesNotGrowWhileMostlyIdle() {
+    AdaptiveLimit limit = limit(10, 1, 100);
+    samples(limit, 100, 5, false);
+    assertThat(limit.limit()).isEqualTo(10);
+  }
+
+  @Test
+  public void limitGrowsWhileLatencyIsSteadyThenShrinksWhenItRises() {
+    AdaptiveLimit limit = limit(10, 1, 100);
+    samples(limit, 200, 5, true);
+    assertThat(limit.limit()).isEqualTo(100);
+    samples(limit, 100, 50, true);
+    assertThat(limit.limit()).isLessThan(20);
+    assertThat(
+            registry
+                .get("ids.concurrency.limit.changes")
+                .tags("path", "lookup", "direction", "decrease")
+                .counter()
+                .count())
+        .isPositive();
+    assertThat(registry.get("ids.concurrency.limit").tags("path", "lookup").gauge().value())
+        .isEqualTo(limit.limit());
+  }
+
+  @Test
+  public void overloadHalvesTheDistanceToTheMinimum() {
+    AdaptiveLimit limit = limit(21, 1, 100);
+    limit.sample(1, 0, true);
+    assertThat(limit.limit()).isEqualTo(11);
+    limit.sample(1, 0, true);
+    assertThat(limit.limit()).isEqualTo(6);
+  }
+
+  @Test
+  public void requestsBeyondTheLimitAreRejected() {
+    AdaptiveLimit limit = limit(2, 1, 100);
+    assertThat(limit.tryAcquire()).isTrue();
+    assertThat(limit.tryAcquire()).isTrue();
+    assertThat(limit.tryAcquire()).isFalse();
+    assertThat(limit.inflight()).isEqualTo(2);
+    limit.release(1_000_000, false);
+    assertThat(limit.inflight()).isEqualTo(1);
+    assertThat(limit.tryAcquire()).isTrue();
+    assertThat(registry.get("ids.concurrency.rejected").tags("path", "lookup").counter().count())
+        .isEqualTo(1);
+  }
+}
@@ -0,0 +1,38 @@
+package gov.va.api.health.ids.service.execution;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
+
+public class ConcurrencyLimitConfigTest {
+  private final WebApplicationContextRunner context =
+      new WebApplicationContextRunner()
+          .withUserConfiguration(ConcurrencyLimitConfig.class)
+          .withBean(MeterRegistry.class, SimpleMeterRegistry::new);
+
+  @Test
+  public void limitsAreCreatedWhenEnabled() {
+    context
+        .withPropertyValues(
+            "ids.concurrency-limit.enabled=true", "ids.concurrency-limit.lookup.initial=7")
+        .run(
+            c -> {
+              assertThat(c).hasSingleBean(ConcurrencyLimitConfig.class);
+              assertThat(
+                      c.getBean(MeterRegistry.class)
+                          .get("ids.concurrency.limit")
+                          .tags("path", "lookup")
+                          .gauge()
+                          .value())
+                  .isEqualTo(7);
+            });
+  }
+
+  @Test
+  public void nothingIsLimitedByDefault() {
+    context.run(c -> assertThat(c).doesNotHaveBean(ConcurrencyLimitConfig.class));
+  }
+}
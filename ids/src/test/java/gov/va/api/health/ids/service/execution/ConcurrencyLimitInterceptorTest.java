@@ -0,0 +1,111 @@
+package gov.va.api.health.ids.service.execution;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import gov.va.api.health.ids.api.ResourceIdentity;
+import gov.va.api.health.ids.service.controller.IdServiceV1ApiController;
+import gov.va.api.health.ids.service.controller.IdentityRegistrar;
+import gov.va.api.health.ids.service.controller.WebExceptionHandler;
+import gov.va.api.health.ids.service.controller.impl.HotKeys;
+import gov.va.api.health.ids.service.controller.impl.InMemoryIndex;
+import gov.va.api.health.ids.service.controller.impl.MembershipFilters;
+import gov.va.api.health.ids.service.controller.impl.RegistrationJournal;
+import gov.va.api.health.ids.service.controller.impl.ResourceIdentityCache;
+import gov.va.api.health.ids.service.controller.impl.ResourceIdentityDetailRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+public class ConcurrencyLimitInterceptorTest {
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  @Mock ResourceIdentityDetailRepository repo;
+
+  @Mock IdServiceV1ApiController.UuidGenerator uuidGenerator;
+
+  private AdaptiveLimit lookups;
+
+  private AdaptiveLimit registrations;
+
+  private MockMvc mvc;
+
+  @BeforeEach
+  public void _init() {
+    MockitoAnnotations.initMocks(this);
+    lookups =
+        new AdaptiveLimit(
+            "lookup", new ConcurrencyLimitProperties.Limit(20, 1, 20), 1.5, 0.2, registry);
+    registrations =
+        new AdaptiveLimit(
+            "registration", new ConcurrencyLimitProperties.Limit(1, 1, 1), 1.5, 0.2, registry);
+    IdServiceV1ApiController controller =
+        new IdServiceV1ApiController(
+            repo,
+            new IdentityRegistrar(
+                uuidGenerator,
+                new ResourceIdentityCache(0, registry),
+                MembershipFilters.disabled(registry),
+                RegistrationJournal.disabled(registry),
+                InMemoryIndex.disabled(registry),
+                HotKeys.disabled(registry)));
+    mvc =
+        MockMvcBuilders.standaloneSetup(controller)
+            .addInterceptors(ConcurrencyLimitInterceptor.of(lookups, registrations, 3))
+            .setControllerAdvice(new WebExceptionHandler(registry, 60, 30))
+            .build();
+  }
+
+  @Test
+  @SneakyThrows
+  public void admittedRequestsAreReleased() {
+    when(repo.readIdentitiesByUuid("x"))
+        .thenReturn(
+            List.of(ResourceIdentity.builder().system("s").resource("r").identifier("i").build()));
+    for (int i = 0; i < 30; i++) {
+      mvc.perform(get("/api/v1/ids/x")).andExpect(status().isOk());
+    }
+    assertThat(lookups.inflight()).isZero();
+  }
+
+  @Test
+  @SneakyThrows
+  public void overloadedRequestsReduceTheLimit() {
+    when(repo.readIdentitiesByUuid(Mockito.any()))
+        .thenThrow(new CannotGetJdbcConnectionException("Connection is not available"));
+    mvc.perform(get("/api/v1/ids/x")).andExpect(status().isServiceUnavailable());
+    assertThat(lookups.limit()).isEqualTo(10);
+    assertThat(lookups.inflight()).isZero();
+  }
+
+  @Test
+  @SneakyThrows
+  public void requestsBeyondTheLimitAreRejectedWithRetryAfter() {
+    assertThat(registrations.tryAcquire()).isTrue();
+    mvc.perform(
+            post("/api/v1/ids")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"system\":\"s\",\"resource\":\"r\",\"identifier\":\"i\"}]"))
+        .andExpect(status().isServiceUnavailable())
+        .andExpect(header().string("Retry-After", "3"))
+        .andExpect(jsonPath("type").value("ConcurrencyLimitExceeded"));
+    assertThat(
+            registry.get("ids.concurrency.rejected").tags("path", "registration").counter().count())
+        .isEqualTo(1);
+    assertThat(lookups.inflight()).isZero();
+  }
+}
@@ -0,0 +1,128 @@
+package gov.va.api.health.ids.service.execution;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import gov.va.api.health.autoconfig.configuration.JacksonConfig;
+import gov.va.api.health.ids.api.ResourceIdentity;
+import gov.va.api.health.ids.service.controller.IdServiceV1ApiController;
+import gov.va.api.health.ids.service.controller.IdServiceV1ReactiveController;
+import gov.va.api.health.ids.service.controller.IdentityRegistrar;
+import gov.va.api.health.ids.service.controller.WebExceptionHandler;
+import gov.va.api.health.ids.service.controller.impl.HotKeys;
+import gov.va.api.health.ids.service.controller.impl.InMemoryIndex;
+import gov.va.api.health.ids.service.controller.impl.MembershipFilters;
+import gov.va.api.health.ids.service.controller.impl.ReactiveResourceIdentityDetailRepository;
+import gov.va.api.health.ids.service.controller.impl.RegistrationJournal;
+import gov.va.api.health.ids.service.controller.impl.ResourceIdentityCache;
+import gov.va.api.health.ids.service.controller.impl.ResourceIdentityDetailRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import javax.validation.Validation;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.method.HandlerMethod;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class ConcurrencyLimitWebFilterTest {
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  @Mock ReactiveResourceIdentityDetailRepository repo;
+
+  @Mock ResourceIdentityDetailRepository jdbcRepo;
+
+  @Mock IdServiceV1ApiController.UuidGenerator uuidGenerator;
+
+  private AdaptiveLimit lookups;
+
+  private AdaptiveLimit registrations;
+
+  private WebTestClient client;
+
+  @BeforeEach
+  @SneakyThrows
+  public void _init() {
+    MockitoAnnotations.initMocks(this);
+    lookups =
+        new AdaptiveLimit(
+            "lookup", new ConcurrencyLimitProperties.Limit(20, 1, 20), 1.5, 0.2, registry);
+    registrations =
+        new AdaptiveLimit(
+            "registration", new ConcurrencyLimitProperties.Limit(1, 1, 1), 1.5, 0.2, registry);
+    IdServiceV1ReactiveController controller =
+        new IdServiceV1ReactiveController(
+            repo,
+            new IdentityRegistrar(
+                uuidGenerator,
+                new ResourceIdentityCache(0, registry),
+                MembershipFilters.disabled(registry),
+                RegistrationJournal.disabled(registry),
+                InMemoryIndex.disabled(registry),
+                HotKeys.disabled(registry)),
+            Validation.buildDefaultValidatorFactory().getValidator(),
+            jdbcRepo,
+            false);
+    HandlerMethod lookup =
+        new HandlerMethod(
+            controller, IdServiceV1ReactiveController.class.getMethod("lookup", String.class));
+    HandlerMethod register =
+        new HandlerMethod(
+            controller, IdServiceV1ReactiveController.class.getMethod("register", List.class));
+    WebExceptionHandler errors = new WebExceptionHandler(registry, 60, 30);
+    client =
+        WebTestClient.bindToController(controller)
+            .webFilter(
+                new ConcurrencyLimitWebFilter(
+                    exchange ->
+                        Mono.just(
+                            exchange.getRequest().getMethodValue().equals("GET")
+                                ? lookup
+                                : register),
+                    ConcurrencyLimitInterceptor.byMethod(lookups, registrations),
+                    3,
+                    errors,
+                    JacksonConfig.createMapper()))
+            .controllerAdvice(errors)
+            .build();
+  }
+
+  @Test
+  public void admittedRequestsAreReleased() {
+    when(repo.findIdentitiesByUuid("x"))
+        .thenReturn(
+            Flux.just(
+                ResourceIdentity.builder().system("s").resource("r").identifier("i").build()));
+    for (int i = 0; i < 30; i++) {
+      client.get().uri("/api/v1/ids/x").exchange().expectStatus().isOk();
+    }
+    assertThat(lookups.inflight()).isZero();
+  }
+
+  @Test
+  public void requestsBeyondTheLimitAreRejectedWithRetryAfter() {
+    assertThat(registrations.tryAcquire()).isTrue();
+    client
+        .post()
+        .uri("/api/v1/ids")
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue("[{\"system\":\"s\",\"resource\":\"r\",\"identifier\":\"i\"}]")
+        .exchange()
+        .expectStatus()
+        .isEqualTo(503)
+        .expectHeader()
+        .valueEquals("Retry-After", "3")
+        .expectBody()
+        .jsonPath("type")
+        .isEqualTo("ConcurrencyLimitExceeded");
+    assertThat(
+            registry.get("ids.concurrency.rejected").tags("path", "registration").counter().count())
+        .isEqualTo(1);
+    assertThat(lookups.inflight()).isZero();
+  }
+}
@@ -0,0 +1,129 @@
+package gov.va.api.health.ids.service.execution;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Load test of request handling on Tomcat sized platform threads and on virtual threads. Each
+ * request borrows a connection from a Hikari pool and waits on a database call, like a lookup that
+ * misses the caches. Clients keep a fixed number of requests outstanding, more than the worker pool
+ * has threads, and throughput and latency, including time spent queued, are reported for each mode.
+ * Virtual threads are only measured on Java 21 and later. This is only run when requested, e.g.
+ * {@code mvn test -Dbenchmark=true -Dtest=RequestExecutionBenchmarkTest}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@Slf4j
+public class RequestExecutionBenchmarkTest {
+  /** The default server.tomcat.threads.max. */
+  private static final int TOMCAT_THREADS = 200;
+
+  private static final int CONNECTIONS = 10;
+
+  private static final int OUTSTANDING = 1_000;
+
+  private static final int REQUESTS = 20_000;
+
+  private static final int DATABASE_MILLIS = 2;
+
+  @SneakyThrows
+  private static void measure(
+      String mode, ExecutorService executor, HikariDataSource pool, int requests) {
+    long[] latencies = new long[requests];
+    Semaphore outstanding = new Semaphore(OUTSTANDING);
+    CountDownLatch done = new CountDownLatch(requests);
+    long start = System.nanoTime();
+    for (int i = 0; i < requests; i++) {
+      outstanding.acquire();
+      int request = i;
+      long submitted = System.nanoTime();
+      executor.execute(
+          () -> {
+            try {
+              request(pool);
+            } finally {
+              latencies[request] = System.nanoTime() - submitted;
+              outstanding.release();
+              done.countDown();
+            }
+          });
+    }
+    done.await();
+    long elapsed = System.nanoTime() - start;
+    Arrays.sort(latencies);
+    log.info(
+        "{}: {} requests/s, latency p50 {} ms, p99 {} ms, p99.9 {} ms",
+        mode,
+        requests * 1_000_000_000L / elapsed,
+        latencies[requests / 2] / 1_000_000,
+        latencies[(int) (requests * 0.99)] / 1_000_000,
+        latencies[(int) (requests * 0.999)] / 1_000_000);
+  }
+
+  @SneakyThrows
+  private static void request(HikariDataSource pool) {
+    try (Connection connection = pool.getConnection();
+        Statement statement = connection.createStatement()) {
+      statement.execute("call sleep(" + DATABASE_MILLIS + ")");
+    }
+  }
+
+  @SneakyThrows
+  private static void run(String mode, ExecutorService executor) {
+    try (HikariDataSource pool = new HikariDataSource()) {
+      pool.setJdbcUrl("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+      pool.setMaximumPoolSize(CONNECTIONS);
+      pool.setMinimumIdle(CONNECTIONS);
+      try (Connection connection = pool.getConnection();
+          Statement statement = connection.createStatement()) {
+        statement.execute(
+            "create alias sleep for \""
+                + RequestExecutionBenchmarkTest.class.getName()
+                + ".sleep\"");
+      }
+      measure(mode, executor, pool, REQUESTS / 10);
+      measure(mode, executor, pool, REQUESTS);
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+  }
+
+  /** Waits while holding a monitor, the way JDBC drivers wait on the network. */
+  @SuppressWarnings("unused")
+  public static void sleep(long millis) throws InterruptedException {
+    Object monitor = new Object();
+    synchronized (monitor) {
+      Thread.sleep(millis);
+    }
+  }
+
+  @Test
+  public void platformVersusVirtualThreads() {
+    log.info(
+        "{} connections, {} outstanding requests, {} ms per database call",
+        CONNECTIONS,
+        OUTSTANDING,
+        DATABASE_MILLIS);
+    run("platform", Executors.newFixedThreadPool(TOMCAT_THREADS));
+    Optional<ExecutorService> virtual = VirtualThreads.perTaskExecutor("benchmark-");
+    if (virtual.isPresent()) {
+      VirtualThreads.ensureCarriers(CONNECTIONS);
+      run("virtual", virtual.get());
+    } else {
+      log.info("virtual: not available on Java {}", System.getProperty("java.version"));
+    }
+  }
+}
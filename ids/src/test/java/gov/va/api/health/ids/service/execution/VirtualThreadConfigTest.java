@@ -0,0 +1,38 @@
+package gov.va.api.health.ids.service.execution;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.apache.coyote.ProtocolHandler;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+public class VirtualThreadConfigTest {
+  @Test
+  void carriersCoverEveryConnection() {
+    assertThat(VirtualThreads.carriersFor(10, 4)).isEqualTo(14);
+    assertThat(VirtualThreads.carriersFor(0, 2)).isEqualTo(2);
+  }
+
+  @Test
+  void maximumPoolSizeUsesHikariDefaultUntilConfigured() {
+    HikariDataSource pool = new HikariDataSource();
+    assertThat(VirtualThreadConfig.maximumPoolSize(pool)).isEqualTo(10);
+    pool.setMaximumPoolSize(25);
+    assertThat(VirtualThreadConfig.maximumPoolSize(pool)).isEqualTo(25);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void platformThreadsAreUsedWithoutVirtualThreadSupport() {
+    assumeFalse(VirtualThreads.available());
+    assertThat(VirtualThreads.perTaskExecutor("x")).isEmpty();
+    ObjectProvider<HikariDataSource> pools = mock(ObjectProvider.class);
+    ProtocolHandler handler = mock(ProtocolHandler.class);
+    new VirtualThreadConfig().virtualThreadProtocolHandlerCustomizer(pools).customize(handler);
+    verifyNoInteractions(handler);
+  }
+}
@@ -0,0 +1,61 @@
+package gov.va.api.health.ids.service.migration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import gov.va.api.health.ids.service.controller.impl.PublicIdConverter;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+public class V4__EncodePublicIdsTest {
+  @Test
+  public void existingPublicIdsAreConvertedInBatches() {
+    DriverManagerDataSource dataSource =
+        new DriverManagerDataSource(
+            "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+    Flyway flyway =
+        Flyway.configure()
+            .dataSource(dataSource)
+            .locations("classpath:db/migration/h2")
+            .javaMigrations(new V4__EncodePublicIds(2))
+            .target("2")
+            .load();
+    flyway.migrate();
+    JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+    List<String> publicIds =
+        List.of(
+            "6d0d3ad3-ea34-5ac3-a03c-6dafd30f6a4f",
+            "1011537977V693883",
+            "0B0AB2F5-62C5-5A53-B3E1-F5F0C0AE1B8C",
+            "6d0d3ad3-ea34-5ac3-a03c-6dafd30f6a40",
+            "legacy");
+    for (String publicId : publicIds) {
+      jdbc.update(
+          "insert into resource_identity_detail (identifier, uuid, system, resource)"
+              + " values (?, ?, 'CDW', 'OBSERVATION')",
+          "i" + publicId,
+          publicId);
+    }
+    Flyway.configure().configuration(flyway.getConfiguration()).target("latest").load().migrate();
+    assertThat(
+            jdbc.queryForList("select uuid from resource_identity_detail order by id", byte[].class)
+                .stream()
+                .map(PublicIdConverter::decode)
+                .collect(Collectors.toList()))
+        .containsExactly(
+            "6d0d3ad3-ea34-5ac3-a03c-6dafd30f6a4f",
+            "1011537977V693883",
+            "0b0ab2f5-62c5-5a53-b3e1-f5f0c0ae1b8c",
+            "6d0d3ad3-ea34-5ac3-a03c-6dafd30f6a40",
+            "legacy");
+    assertThat(
+            jdbc.queryForObject(
+                "select octet_length(uuid) from resource_identity_detail where id = 1",
+                Integer.class))
+        .isEqualTo(17);
+  }
+}